@@ -5,15 +5,19 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.data.cassandra.repository.config.EnableCassandraRepositories;
+import org.springframework.data.cassandra.repository.config.EnableReactiveCassandraRepositories;
 
 @SpringBootApplication
 @EnableCaching
 @EnableKafka
 @EnableAsync
+@EnableScheduling
 @EnableTransactionManagement
 @EnableCassandraRepositories(basePackages = "com.yowyob.erp.accounting.repository")
+@EnableReactiveCassandraRepositories(basePackages = "com.yowyob.erp.accounting.reactive")
 public class YowyobErpBackendApplication {
 
     public static void main(String[] args) {
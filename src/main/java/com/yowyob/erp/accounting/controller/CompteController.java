@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -50,6 +51,22 @@ public class CompteController {
         return ResponseEntity.ok(comptes);
     }
 
+    // Récupérer un lot de comptes par ID en un seul aller-retour cache
+    @PostMapping("/by-ids")
+    public ResponseEntity<List<Compte>> findByIds(@RequestParam UUID tenantId, @RequestBody List<UUID> ids) {
+        // Comptes trouvés, dans l'ordre de la demande ; les IDs inconnus sont ignorés
+        List<Compte> comptes = new ArrayList<>(compteService.findByIds(tenantId, ids).values());
+        return ResponseEntity.ok(comptes);
+    }
+
+    // Récupérer un lot de comptes par numéro de compte
+    @PostMapping("/by-no-comptes")
+    public ResponseEntity<List<Compte>> findByNoComptes(@RequestParam UUID tenantId, @RequestBody List<String> noComptes) {
+        // Comptes trouvés, dans l'ordre de la demande ; les numéros inconnus sont ignorés
+        List<Compte> comptes = new ArrayList<>(compteService.findByNoComptes(tenantId, noComptes).values());
+        return ResponseEntity.ok(comptes);
+    }
+
     // Mettre à jour un compte
     @PutMapping("/{id}")
     public ResponseEntity<Compte> updateCompte(@PathVariable UUID id, @RequestParam UUID tenantId,
@@ -1,12 +1,17 @@
 package com.yowyob.erp.accounting.controller;
 
+import com.yowyob.erp.accounting.dto.DetailEcritureDto;
+import com.yowyob.erp.accounting.dto.EcritureBatchResultDto;
 import com.yowyob.erp.accounting.dto.EcritureComptableDto;
 import com.yowyob.erp.accounting.service.EcritureComptableService;
+import com.yowyob.erp.accounting.service.LectureFluxService;
 import com.yowyob.erp.common.dto.ApiResponseWrapper;
 import com.yowyob.erp.common.dto.ComptableObjectRequest;
+import com.yowyob.erp.common.dto.CursorPage;
 import com.yowyob.erp.common.entity.ComptableObject;
 import com.yowyob.erp.common.exception.BusinessException;
 import com.yowyob.erp.common.exception.ResourceNotFoundException;
+import com.yowyob.erp.common.util.FluxResponses;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,16 +20,21 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 //import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -39,6 +49,7 @@ import static com.yowyob.erp.accounting.util.AccountingUtils.mapToComptableObjec
 public class EcritureComptableController {
 
     private final EcritureComptableService ecritureService;
+    private final LectureFluxService lectureFluxService;
 
    @Operation(summary = "Créer une nouvelle écriture comptable", description = "Saisie manuelle d'une écriture comptable avec validation des périodes et journaux.")
     @ApiResponses({
@@ -61,6 +72,44 @@ public class EcritureComptableController {
         }
     }
 
+    @Operation(summary = "Créer un lot d'écritures comptables", description = "Saisie en masse d'écritures (tableau JSON). Chaque écriture est validée indépendamment ; le résultat indique le statut de chacune.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lot traité",
+                    content = @Content(schema = @Schema(implementation = EcritureBatchResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Lot trop volumineux ou illisible"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ApiResponseWrapper<EcritureBatchResultDto>> createEcrituresBatch(
+            @RequestBody List<EcritureComptableDto> ecritureDtos) {
+        EcritureBatchResultDto result = ecritureService.createEcrituresBatch(ecritureDtos);
+        return ResponseEntity.ok(ApiResponseWrapper.success(result, batchMessage(result)));
+    }
+
+    @Operation(summary = "Créer un lot d'écritures comptables (NDJSON)", description = "Saisie en masse d'écritures, une écriture JSON par ligne.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lot traité",
+                    content = @Content(schema = @Schema(implementation = EcritureBatchResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Lot trop volumineux ou illisible"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ApiResponseWrapper<EcritureBatchResultDto>> createEcrituresBatchNdjson(
+            HttpServletRequest request) {
+        try {
+            EcritureBatchResultDto result = ecritureService.createEcrituresBatchFromNdjson(request.getInputStream());
+            return ResponseEntity.ok(ApiResponseWrapper.success(result, batchMessage(result)));
+        } catch (IOException e) {
+            throw new BusinessException("Lecture du lot impossible : " + e.getMessage());
+        }
+    }
+
+    private String batchMessage(EcritureBatchResultDto result) {
+        return "Lot traité : " + result.getSucceeded() + " écriture(s) créée(s), " + result.getFailed() + " rejetée(s)";
+    }
+
   @Operation(summary = "Valider une écriture comptable", description = "Valide une écriture comptable existante avec enregistrement de l'utilisateur validant.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Écriture comptable validée avec succès",
@@ -79,7 +128,7 @@ public class EcritureComptableController {
         return ResponseEntity.ok(ApiResponseWrapper.success(validated, "Écriture comptable validée"));
     }
 
-    @Operation(summary = "Récupérer toutes les écritures comptables", description = "Liste paginée des écritures comptables")
+    @Operation(summary = "Récupérer les écritures comptables", description = "Liste paginée par curseur des écritures comptables, triées par date (ordre=asc|desc)")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des écritures comptables"),
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
@@ -87,11 +136,48 @@ public class EcritureComptableController {
     })
     @GetMapping
    //  @PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
-    public ResponseEntity<ApiResponseWrapper<List<EcritureComptableDto>>> getAllEcritures( ) {
-        List<EcritureComptableDto> ecritures = ecritureService.getAllEcritures(); 
+    public ResponseEntity<ApiResponseWrapper<CursorPage<EcritureComptableDto>>> getAllEcritures(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "desc") String ordre) {
+        CursorPage<EcritureComptableDto> ecritures = ecritureService.getAllEcritures(cursor, size, "asc".equalsIgnoreCase(ordre));
         return ResponseEntity.ok(ApiResponseWrapper.success(ecritures));
     }
 
+    @Operation(summary = "Exporter les écritures comptables en flux", description = "Toutes les écritures du tenant, écrites au fil de la lecture (NDJSON ou tableau JSON selon l'en-tête Accept)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux des écritures comptables"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<EcritureComptableDto> streamEcritures() {
+        return lectureFluxService.streamEcritures();
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamEcrituresJson() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(FluxResponses.tableauJson(lectureFluxService.streamEcritures()));
+    }
+
+    @Operation(summary = "Exporter les lignes d'écriture en flux", description = "Lignes d'écriture du tenant, ou d'une écriture (ecritureId), écrites au fil de la lecture (NDJSON ou tableau JSON)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux des lignes d'écriture"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @GetMapping(value = "/stream/details", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DetailEcritureDto> streamDetails(@RequestParam(required = false) UUID ecritureId) {
+        return lectureFluxService.streamDetails(ecritureId);
+    }
+
+    @GetMapping(value = "/stream/details", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamDetailsJson(@RequestParam(required = false) UUID ecritureId) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(FluxResponses.tableauJson(lectureFluxService.streamDetails(ecritureId)));
+    }
+
     @Operation(summary = "Récupérer une écriture comptable spécifique", description = "Récupère une écriture comptable par son ID avec ses détails d'écriture.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Écriture comptable récupérée avec succès",
@@ -117,8 +203,11 @@ public class EcritureComptableController {
     })
     @GetMapping("/non-validated")
    //  @PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT')")
-    public ResponseEntity<ApiResponseWrapper<List<EcritureComptableDto>>> getNonValidatedEcritures( ) {
-        List<EcritureComptableDto> ecritures = ecritureService.getNonValidatedEcritures(); 
+    public ResponseEntity<ApiResponseWrapper<CursorPage<EcritureComptableDto>>> getNonValidatedEcritures(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "desc") String ordre) {
+        CursorPage<EcritureComptableDto> ecritures = ecritureService.getNonValidatedEcritures(cursor, size, "asc".equalsIgnoreCase(ordre));
         return ResponseEntity.ok(ApiResponseWrapper.success(ecritures));
     }
 
@@ -0,0 +1,45 @@
+package com.yowyob.erp.accounting.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.yowyob.erp.accounting.dto.JournalAuditDto;
+import com.yowyob.erp.accounting.service.LectureFluxService;
+import com.yowyob.erp.common.util.FluxResponses;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/accounting/audit")
+@RequiredArgsConstructor
+@Tag(name = "Journal d'audit", description = "Consultation du journal d'audit comptable")
+public class JournalAuditController {
+
+    private final LectureFluxService lectureFluxService;
+
+    @Operation(summary = "Exporter le journal d'audit en flux", description = "Toutes les entrées d'audit du tenant courant, écrites au fil de la lecture (NDJSON ou tableau JSON selon l'en-tête Accept)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux des entrées d'audit"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<JournalAuditDto> streamJournalAudit() {
+        return lectureFluxService.streamJournalAudit();
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamJournalAuditJson() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(FluxResponses.tableauJson(lectureFluxService.streamJournalAudit()));
+    }
+}
@@ -1,8 +1,12 @@
 package com.yowyob.erp.accounting.controller;
 
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
 import com.yowyob.erp.accounting.dto.JournalComptableDto;
 import com.yowyob.erp.accounting.service.JournalComptableService;
 import com.yowyob.erp.common.dto.ApiResponseWrapper;
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.config.etag.EtagReferentiel;
+import com.yowyob.erp.config.etag.TypeReferentiel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +39,7 @@ public class JournalComptableController {
     }
 
     // Read a specific journal comptable by ID
+    @EtagReferentiel(TypeReferentiel.JOURNAL_COMPTABLE)
     @GetMapping("/{journalComptableId}")
     public ResponseEntity<ApiResponseWrapper<JournalComptableDto>> getJournalComptable(@PathVariable UUID journalComptableId) {
         logger.info("Requête pour récupérer le journal comptable avec ID: {}", journalComptableId);
@@ -43,15 +48,34 @@ public class JournalComptableController {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
-    // Read all journals comptables for the current tenant
+    // Read the écritures of a journal, page by page (cursor = paging state of the previous page)
+    @GetMapping("/{journalComptableId}/entries")
+    public ResponseEntity<ApiResponseWrapper<CursorPage<EcritureComptableDto>>> getEcrituresJournal(
+            @PathVariable UUID journalComptableId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        logger.info("Requête pour récupérer les écritures du journal comptable avec ID: {}", journalComptableId);
+        try {
+            CursorPage<EcritureComptableDto> page = journalComptableService.getEcrituresJournal(journalComptableId, cursor, size);
+            return ResponseEntity.ok(ApiResponseWrapper.success(page, "Écritures du journal récupérées avec succès"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Read the journals comptables of the current tenant, page by page
+    @EtagReferentiel(TypeReferentiel.JOURNAL_COMPTABLE)
     @GetMapping
-    public ResponseEntity<ApiResponseWrapper<List<JournalComptableDto>>> getAllJournalComptables() {
-        logger.info("Requête pour récupérer tous les journals comptables");
-        List<JournalComptableDto> journals = journalComptableService.getAllJournalComptables();
+    public ResponseEntity<ApiResponseWrapper<CursorPage<JournalComptableDto>>> getAllJournalComptables(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        logger.info("Requête pour récupérer les journals comptables");
+        CursorPage<JournalComptableDto> journals = journalComptableService.getAllJournalComptables(cursor, size);
         return ResponseEntity.ok(ApiResponseWrapper.success(journals, "Liste des journals récupérée avec succès"));
     }
 
     // Read all active journals comptables for the current tenant
+    @EtagReferentiel(TypeReferentiel.JOURNAL_COMPTABLE)
     @GetMapping("/active")
     public ResponseEntity<ApiResponseWrapper<List<JournalComptableDto>>> getActiveJournalComptables() {
         logger.info("Requête pour récupérer les journals comptables actifs");
@@ -0,0 +1,78 @@
+package com.yowyob.erp.accounting.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.yowyob.erp.common.dto.ApiResponseWrapper;
+import com.yowyob.erp.common.dto.DeadLetterDto;
+import com.yowyob.erp.config.kafka.KafkaRetryService;
+import com.yowyob.erp.config.tenant.TenantContext;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/accounting/kafka/dlt")
+@RequiredArgsConstructor
+@Tag(name = "Messages rejetés", description = "Consultation et rejeu des messages Kafka rejetés après réessais")
+public class KafkaDeadLetterController {
+
+    private static final int LIMITE_MAX = 500;
+
+    private final KafkaRetryService kafkaRetryService;
+
+    @Operation(summary = "Lister les messages rejetés", description = "Derniers messages rejetés du tenant courant pour un topic consommé (invoice.events, accounting.entries), du plus récent au plus ancien")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Messages rejetés"),
+            @ApiResponse(responseCode = "404", description = "Topic non géré"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @GetMapping("/{topic}")
+    public ResponseEntity<ApiResponseWrapper<List<DeadLetterDto>>> getRejets(
+            @PathVariable String topic,
+            @RequestParam(defaultValue = "50") int limite) {
+        List<DeadLetterDto> rejets = kafkaRetryService.lireRejets(topic, TenantContext.getCurrentTenant(),
+                Math.max(1, Math.min(limite, LIMITE_MAX)));
+        return ResponseEntity.ok(ApiResponseWrapper.success(rejets));
+    }
+
+    @Operation(summary = "Rejouer un message rejeté", description = "Republie le message sur son topic d'origine ; le traitement étant idempotent, un rejeu en double ne crée pas de doublon")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Message rejoué"),
+            @ApiResponse(responseCode = "404", description = "Topic non géré ou message introuvable pour le tenant"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @PostMapping("/{topic}/{partition}/{offset}/replay")
+    public ResponseEntity<ApiResponseWrapper<DeadLetterDto>> rejouer(
+            @PathVariable String topic,
+            @PathVariable int partition,
+            @PathVariable long offset) {
+        DeadLetterDto rejoue = kafkaRetryService.rejouer(topic, TenantContext.getCurrentTenant(), partition, offset);
+        return ResponseEntity.ok(ApiResponseWrapper.success(rejoue, "Message rejoué avec succès"));
+    }
+
+    @Operation(summary = "Rejouer tous les messages rejetés", description = "Republie sur leur topic d'origine les messages rejetés récents du tenant courant")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Nombre de messages rejoués"),
+            @ApiResponse(responseCode = "404", description = "Topic non géré"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @PostMapping("/{topic}/replay")
+    public ResponseEntity<ApiResponseWrapper<Integer>> rejouerTout(@PathVariable String topic) {
+        int rejoues = kafkaRetryService.rejouerTout(topic, TenantContext.getCurrentTenant());
+        return ResponseEntity.ok(ApiResponseWrapper.success(rejoues, rejoues + " messages rejoués"));
+    }
+}
@@ -3,6 +3,8 @@ package com.yowyob.erp.accounting.controller;
 import com.yowyob.erp.accounting.dto.OperationComptableDto;
 import com.yowyob.erp.accounting.service.OperationComptableService;
 import com.yowyob.erp.common.dto.ApiResponseWrapper;
+import com.yowyob.erp.config.etag.EtagReferentiel;
+import com.yowyob.erp.config.etag.TypeReferentiel;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -50,6 +52,7 @@ public class OperationComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.OPERATION_COMPTABLE)
     @GetMapping("/{id}")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<OperationComptableDto>> getOperationComptable(@PathVariable UUID id) {
@@ -66,6 +69,7 @@ public class OperationComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.OPERATION_COMPTABLE)
     @GetMapping("/by-no-compte")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<OperationComptableDto>>> getOperationsByNoCompte(@RequestParam String noCompte) {
@@ -78,6 +82,7 @@ public class OperationComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.OPERATION_COMPTABLE)
     @GetMapping
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<OperationComptableDto>>> getAllOperationsComptables() {
@@ -92,6 +97,7 @@ public class OperationComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.OPERATION_COMPTABLE)
     @GetMapping("/search")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<OperationComptableDto>> getOperationByTypeAndMode(
@@ -3,6 +3,8 @@ package com.yowyob.erp.accounting.controller;
 import com.yowyob.erp.accounting.dto.PeriodeComptableDto;
 import com.yowyob.erp.accounting.service.PeriodeComptableService;
 import com.yowyob.erp.common.dto.ApiResponseWrapper;
+import com.yowyob.erp.config.etag.EtagReferentiel;
+import com.yowyob.erp.config.etag.TypeReferentiel;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -52,6 +54,7 @@ public class PeriodeComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PERIODE_COMPTABLE)
     @GetMapping("/{id}")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<PeriodeComptableDto>> getPeriodeComptable(@PathVariable UUID id) {
@@ -67,6 +70,7 @@ public class PeriodeComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PERIODE_COMPTABLE)
     @GetMapping
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<PeriodeComptableDto>>> getAllPeriodeComptables() {
@@ -81,6 +85,7 @@ public class PeriodeComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PERIODE_COMPTABLE)
     @GetMapping("/code/{code}")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<PeriodeComptableDto>> getPeriodeByCode(@PathVariable String code) {
@@ -97,6 +102,7 @@ public class PeriodeComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PERIODE_COMPTABLE)
     @GetMapping("/date")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<PeriodeComptableDto>> getPeriodeByDate(
@@ -113,6 +119,7 @@ public class PeriodeComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PERIODE_COMPTABLE)
     @GetMapping("/non-closed")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<PeriodeComptableDto>>> getNonClosedPeriodes() {
@@ -127,6 +134,7 @@ public class PeriodeComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PERIODE_COMPTABLE)
     @GetMapping("/range")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<PeriodeComptableDto>>> getPeriodesByRange(
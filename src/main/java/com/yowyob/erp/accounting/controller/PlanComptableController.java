@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.UUID;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,11 +15,17 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import com.yowyob.erp.accounting.dto.PlanComptableDto;
 import com.yowyob.erp.accounting.entity.PlanComptable;
+import com.yowyob.erp.accounting.service.LectureFluxService;
 import com.yowyob.erp.accounting.service.PlanComptableService;
 import com.yowyob.erp.common.dto.ApiResponseWrapper;
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.common.util.FluxResponses;
+import com.yowyob.erp.config.etag.EtagReferentiel;
+import com.yowyob.erp.config.etag.TypeReferentiel;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -26,6 +33,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/api/accounting/plan-comptable")
@@ -35,6 +43,7 @@ import lombok.RequiredArgsConstructor;
 public class PlanComptableController {
 
     private final PlanComptableService planComptableService;
+    private final LectureFluxService lectureFluxService;
 
     @Operation(summary = "Créer un compte comptable", description = "Crée un nouveau compte comptable pour le tenant courant")
     @ApiResponses({
@@ -65,6 +74,7 @@ public class PlanComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
     @GetMapping("/{id}")
    // @PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<PlanComptableDto>> getAccountById(@PathVariable UUID id) {
@@ -73,26 +83,50 @@ public class PlanComptableController {
     }
 
 
-    @Operation(summary = "Lister tous les comptes comptables ", description = "Récupère tous les comptes comptables  du tenant courant")
+    @Operation(summary = "Lister les comptes comptables", description = "Récupère les comptes comptables du tenant courant page par page (curseur de la page précédente)")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des comptes comptables"),
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
     @GetMapping
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
-    public ResponseEntity<ApiResponseWrapper<List<PlanComptableDto>>> getAllPlanComptables() {
-        List<PlanComptableDto> accounts = planComptableService.getAllAccounts();
+    public ResponseEntity<ApiResponseWrapper<CursorPage<PlanComptableDto>>> getAllPlanComptables(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        CursorPage<PlanComptableDto> accounts = planComptableService.getAllAccounts(cursor, size);
         return ResponseEntity.ok(ApiResponseWrapper.success(accounts));
     }
 
     
+    @Operation(summary = "Exporter le plan comptable en flux", description = "Tous les comptes du tenant courant, écrits au fil de la lecture (NDJSON ou tableau JSON selon l'en-tête Accept)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux des comptes comptables"),
+            @ApiResponse(responseCode = "401", description = "Non autorisé"),
+            @ApiResponse(responseCode = "403", description = "Accès interdit")
+    })
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<PlanComptableDto> streamPlanComptable() {
+        return lectureFluxService.streamPlanComptable();
+    }
+
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamPlanComptableJson() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(FluxResponses.tableauJson(lectureFluxService.streamPlanComptable()));
+    }
+
+    
     @Operation(summary = "Lister tous les comptes comptables actifs", description = "Récupère tous les comptes comptables actifs du tenant courant")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des comptes comptables actif"),
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
     @GetMapping("/actif")
     //@PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<PlanComptableDto>>> getActifPlanComptables() {
@@ -108,6 +142,7 @@ public class PlanComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
     @GetMapping("/prefix/{prefix}")
    // @PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<PlanComptableDto>>> getPlanComptablesByPrefix(@PathVariable String prefix) {
@@ -128,6 +163,7 @@ public class PlanComptableController {
             @ApiResponse(responseCode = "401", description = "Non autorisé"),
             @ApiResponse(responseCode = "403", description = "Accès interdit")
     })
+    @EtagReferentiel(TypeReferentiel.PLAN_COMPTABLE)
     @GetMapping("/classe/{classe}")
    // @PreAuthorize("hasRole('ADMIN') or hasRole('ACCOUNTANT') or hasRole('USER')")
     public ResponseEntity<ApiResponseWrapper<List<PlanComptableDto>>> getPlanComptablesByClasse(@PathVariable Integer classe) {
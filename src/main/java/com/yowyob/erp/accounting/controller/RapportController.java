@@ -1,13 +1,22 @@
 package com.yowyob.erp.accounting.controller;
 
+import com.yowyob.erp.accounting.dto.BalanceDto;
+import com.yowyob.erp.accounting.dto.ReconstructionSoldesDto;
+import com.yowyob.erp.accounting.service.GrandLivreService;
+import com.yowyob.erp.accounting.service.ProjectionEcritureService;
 import com.yowyob.erp.accounting.service.RapportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.Map;
 import java.util.UUID;
 
@@ -17,6 +26,10 @@ public class RapportController {
 
     @Autowired
     private RapportService rapportService;
+    @Autowired
+    private GrandLivreService grandLivreService;
+    @Autowired
+    private ProjectionEcritureService projectionEcritureService;
 
     @GetMapping("/bilan")
     public ResponseEntity<Map<String, Object>> generateBilan(@RequestParam UUID tenantId,
@@ -26,6 +39,35 @@ public class RapportController {
         return ResponseEntity.ok(bilan);
     }
 
+    @GetMapping("/balance")
+    public ResponseEntity<BalanceDto> generateBalance(@RequestParam UUID tenantId,
+                                                      @RequestParam String dateDebut,
+                                                      @RequestParam String dateFin) {
+        BalanceDto balance = rapportService.generateBalance(tenantId, dateDebut, dateFin);
+        return ResponseEntity.ok(balance);
+    }
+
+    @GetMapping("/grand-livre")
+    public ResponseEntity<StreamingResponseBody> exportGrandLivre(@RequestParam UUID tenantId,
+                                                                  @RequestParam String compteDebut,
+                                                                  @RequestParam(required = false) String compteFin,
+                                                                  @RequestParam String dateDebut,
+                                                                  @RequestParam String dateFin,
+                                                                  @RequestParam(defaultValue = "ndjson") String format,
+                                                                  @RequestParam(required = false) String cursor) {
+        GrandLivreService.Format exportFormat = "csv".equalsIgnoreCase(format)
+                ? GrandLivreService.Format.CSV
+                : GrandLivreService.Format.NDJSON;
+        GrandLivreService.Export export = grandLivreService.preparerExport(tenantId, compteDebut, compteFin,
+                LocalDate.parse(dateDebut), LocalDate.parse(dateFin), exportFormat, cursor);
+        MediaType mediaType = exportFormat == GrandLivreService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(export::ecrire);
+    }
+
     @GetMapping("/compte-resultat")
     public ResponseEntity<Map<String, Object>> generateCompteResultat(@RequestParam UUID tenantId,
                                                                      @RequestParam String dateDebut,
@@ -33,4 +75,10 @@ public class RapportController {
         Map<String, Object> compteResultat = rapportService.generateCompteResultat(tenantId, dateDebut, dateFin);
         return ResponseEntity.ok(compteResultat);
     }
-}
\ No newline at end of file
+
+    // Recalcule les soldes du tenant depuis les écritures validées et complète le grand livre
+    @PostMapping("/soldes/reconstruction")
+    public ResponseEntity<ReconstructionSoldesDto> reconstruireSoldes(@RequestParam UUID tenantId) {
+        return ResponseEntity.ok(projectionEcritureService.reconstruire(tenantId));
+    }
+}
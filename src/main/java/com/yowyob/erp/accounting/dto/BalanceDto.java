@@ -21,6 +21,7 @@ public class BalanceDto {
     private Double totalDebit;
     private Double totalCredit;
     private List<BalanceLineDto> lignes;
+    private List<BalanceClasseDto> totauxParClasse;
 
     @Data
     @Builder
@@ -29,9 +30,22 @@ public class BalanceDto {
     public static class BalanceLineDto {
         private String numeroCompte;
         private String libelleCompte;
+        private Integer classe;
         private Double soldePrecedent;
         private Double mouvementDebit;
         private Double mouvementCredit;
         private Double soldeActuel;
     }
-}
\ No newline at end of file
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BalanceClasseDto {
+        private Integer classe;
+        private Double soldePrecedent;
+        private Double mouvementDebit;
+        private Double mouvementCredit;
+        private Double soldeActuel;
+    }
+}
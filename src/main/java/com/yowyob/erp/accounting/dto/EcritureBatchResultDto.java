@@ -0,0 +1,36 @@
+// DTO pour le résultat d'un lot d'écritures comptables
+package com.yowyob.erp.accounting.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EcritureBatchResultDto {
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<EntryResult> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EntryResult {
+        // Position de l'écriture dans le lot soumis (0-based)
+        private int index;
+        private boolean success;
+        private UUID ecritureId;
+        private String numeroEcriture;
+        private String referenceExterne;
+        private String error;
+    }
+}
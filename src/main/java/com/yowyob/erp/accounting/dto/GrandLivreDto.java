@@ -29,11 +29,15 @@ public class GrandLivreDto {
     @NoArgsConstructor
     @AllArgsConstructor
     public static class GrandLivreLineDto {
+        private String numeroCompte;
+        private String libelleCompte;
         private LocalDate date;
         private String numeroEcriture;
         private String libelle;
         private Double montantDebit;
         private Double montantCredit;
         private Double soldeProgressive;
+        // Position de reprise de l'export juste après cette ligne
+        private String curseur;
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+// DTO pour les entrées du journal d'audit
+package com.yowyob.erp.accounting.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalAuditDto {
+
+    private UUID id;
+
+    private UUID ecritureComptableId;
+
+    private String action;
+
+    private LocalDateTime dateAction;
+
+    private String utilisateur;
+
+    private String details;
+
+    private String adresseIP;
+
+    private String donneesAvant;
+
+    private String donneesApres;
+
+    private LocalDateTime createdAt;
+
+    private String createdBy;
+}
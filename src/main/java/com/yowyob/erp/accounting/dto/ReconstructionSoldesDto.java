@@ -0,0 +1,23 @@
+// DTO pour le résultat d'une reconstruction des soldes et du grand livre d'un tenant
+package com.yowyob.erp.accounting.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconstructionSoldesDto {
+
+    private Integer ecrituresValidees;
+    // Écritures reportées au grand livre par la reconstruction (report interrompu ou antérieur au suivi)
+    private Integer ecrituresReportees;
+    // Écritures validées trop récemment : leurs jours sont laissés à la prochaine reconstruction
+    private Integer ecrituresEnCours;
+    private Integer joursCorriges;
+    // Écritures non validées (ré)inscrites dans l'index ecriture_non_validee
+    private Integer ecrituresNonValidees;
+}
@@ -0,0 +1,25 @@
+// DTO pour le solde d'un compte à une date donnée
+package com.yowyob.erp.accounting.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SoldeCompteDto {
+
+    private UUID compteId;
+    // Solde arrêté à la fin de cette journée (incluse)
+    private LocalDate dateSolde;
+    private Double totalDebit;
+    private Double totalCredit;
+    // Solde débiteur positif, créditeur négatif
+    private Double solde;
+}
@@ -58,6 +58,10 @@ public class EcritureComptable implements Auditable {
     @NotNull(message = "Le statut validée ne peut pas être nul")
     private Boolean validee = false;
 
+    // Lignes reportées aux soldes et au grand livre (null : écriture validée avant ce suivi)
+    @Column("soldes_appliques")
+    private Boolean soldesAppliques;
+
     @Column("date_validation")
     private LocalDateTime dateValidation;
 
@@ -0,0 +1,29 @@
+package com.yowyob.erp.accounting.entity;
+
+import com.yowyob.erp.accounting.entityKey.EcritureNonValideeKey;
+import lombok.Data;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * Entrée de l'index des écritures non validées : insérée dans le batch de création de l'écriture,
+ * supprimée à sa validation ou dans le batch de sa suppression. Seule la clé est indexée, l'écriture
+ * est relue dans ecriture_comptable.
+ */
+@Table("ecriture_non_validee")
+@Data
+public class EcritureNonValidee {
+
+    @PrimaryKey
+    private EcritureNonValideeKey key;
+
+    public static EcritureNonValidee of(EcritureComptable ecriture) {
+        EcritureNonValideeKey key = new EcritureNonValideeKey();
+        key.setTenantId(ecriture.getKey().getTenantId());
+        key.setDateEcriture(ecriture.getDateEcriture());
+        key.setId(ecriture.getKey().getId());
+        EcritureNonValidee entree = new EcritureNonValidee();
+        entree.setKey(key);
+        return entree;
+    }
+}
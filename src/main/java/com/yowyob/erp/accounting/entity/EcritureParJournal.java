@@ -0,0 +1,30 @@
+package com.yowyob.erp.accounting.entity;
+
+import com.yowyob.erp.accounting.entityKey.EcritureParJournalKey;
+import lombok.Data;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * Entrée de l'index des écritures par journal et par date, écrite dans le batch de création de
+ * l'écriture et supprimée dans celui de sa suppression (journal et date ne changent pas ensuite).
+ * Seule la clé est indexée, l'écriture est relue dans ecriture_comptable.
+ */
+@Table("ecriture_par_journal")
+@Data
+public class EcritureParJournal {
+
+    @PrimaryKey
+    private EcritureParJournalKey key;
+
+    public static EcritureParJournal of(EcritureComptable ecriture) {
+        EcritureParJournalKey key = new EcritureParJournalKey();
+        key.setTenantId(ecriture.getKey().getTenantId());
+        key.setJournalComptableId(ecriture.getJournalComptableId());
+        key.setDateEcriture(ecriture.getDateEcriture());
+        key.setId(ecriture.getKey().getId());
+        EcritureParJournal entree = new EcritureParJournal();
+        entree.setKey(key);
+        return entree;
+    }
+}
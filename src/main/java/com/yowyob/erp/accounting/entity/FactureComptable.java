@@ -3,15 +3,19 @@ package com.yowyob.erp.accounting.entity;
 import com.yowyob.erp.common.entity.ComptableObject;    
 import com.yowyob.erp.common.enums.SourceType;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 
 import lombok.Data;
 /**
  * Cette classe représente une facture comptable avec gestion de la 
  * TVA (18% selon OHADA) et génère une écriture avec trois lignes : vente (débit), TVA (crédit), et client/fournisseur (crédit).
+ * Les montants sont arrondis à l'échelle de la devise (TVA arrondie, TTC = HT + TVA) : l'écriture reste équilibrée.
  */
 @Data
 public class FactureComptable implements ComptableObject {
@@ -24,6 +28,8 @@ public class FactureComptable implements ComptableObject {
     private UUID journalComptableId;
     private UUID clientId; // ou fournisseurId selon le cas
     private boolean isAchat; // true pour achat, false pour vente
+    // Comptes de contrôle et échelle de la devise, fournis à la comptabilisation
+    private ParametresFacture parametres = ParametresFacture.PAR_DEFAUT;
 
     public FactureComptable(UUID id, double montantHT, LocalDate date, String libelle, 
                            UUID journalComptableId, UUID clientId, boolean isAchat) {
@@ -43,7 +49,7 @@ public class FactureComptable implements ComptableObject {
 
     @Override
     public double getMontant() {
-        return montantHT * (1 + tauxTVA); // Montant TTC
+        return montants().ttc().doubleValue(); // Montant TTC
     }
 
     @Override
@@ -64,8 +70,10 @@ public class FactureComptable implements ComptableObject {
     @Override
     public List<DetailEcriture> generateEcritureDetails(UUID tenantId, UUID ecritureId) {
         List<DetailEcriture> details = new ArrayList<>();
-        double montantTVA = montantHT * tauxTVA;
-        double montantTTC = getMontant();
+        Montants montants = montants();
+        double montantHT = montants.ht().doubleValue();
+        double montantTVA = montants.tva().doubleValue();
+        double montantTTC = montants.ttc().doubleValue();
 
         // Ligne 1 : Débit (Compte de vente ou achat)
         DetailEcriture debit = new DetailEcriture();
@@ -97,6 +105,50 @@ public class FactureComptable implements ComptableObject {
         return details;
     }
 
+    /**
+     * Écriture équilibrée de la facture, comptes de contrôle des paramètres résolus par numéro :
+     * vente : débit client (TTC), crédit ventes (HT), crédit TVA collectée ;
+     * achat : débit achats (HT), débit TVA déductible, crédit fournisseur (TTC).
+     */
+    @Override
+    public List<DetailEcriture> generateEcritureDetails(UUID tenantId, UUID ecritureId, Function<String, UUID> comptes) {
+        Montants montants = montants();
+        double montantHT = montants.ht().doubleValue();
+        double montantTVA = montants.tva().doubleValue();
+        double montantTTC = montants.ttc().doubleValue();
+        List<DetailEcriture> details = new ArrayList<>();
+        if (isAchat) {
+            details.add(ligne(tenantId, comptes.apply(parametres.compteAchats()), "DEBIT", montantHT));
+            details.add(ligne(tenantId, comptes.apply(parametres.compteTvaDeductible()), "DEBIT", montantTVA));
+            details.add(ligne(tenantId, comptes.apply(parametres.compteFournisseurs()), "CREDIT", montantTTC));
+        } else {
+            details.add(ligne(tenantId, comptes.apply(parametres.compteClients()), "DEBIT", montantTTC));
+            details.add(ligne(tenantId, comptes.apply(parametres.compteVentes()), "CREDIT", montantHT));
+            details.add(ligne(tenantId, comptes.apply(parametres.compteTvaCollectee()), "CREDIT", montantTVA));
+        }
+        return details;
+    }
+
+    private Montants montants() {
+        int echelle = parametres.echelle();
+        BigDecimal ht = BigDecimal.valueOf(montantHT).setScale(echelle, RoundingMode.HALF_UP);
+        BigDecimal tva = ht.multiply(BigDecimal.valueOf(tauxTVA)).setScale(echelle, RoundingMode.HALF_UP);
+        return new Montants(ht, tva, ht.add(tva));
+    }
+
+    private record Montants(BigDecimal ht, BigDecimal tva, BigDecimal ttc) {
+    }
+
+    private static DetailEcriture ligne(UUID tenantId, UUID compteId, String sens, double montant) {
+        DetailEcriture ligne = new DetailEcriture();
+        ligne.setTenantId(tenantId);
+        ligne.setCompteComptableId(compteId);
+        ligne.setSens(sens);
+        ligne.setMontantDebit("DEBIT".equals(sens) ? montant : 0.0);
+        ligne.setMontantCredit("CREDIT".equals(sens) ? montant : 0.0);
+        return ligne;
+    }
+
     @Override
     public SourceType getSourceType() {
         return SourceType.FACTURE;
@@ -0,0 +1,46 @@
+package com.yowyob.erp.accounting.entity;
+
+import com.yowyob.erp.accounting.entityKey.OutboxMessageKey;
+import lombok.Data;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Message Kafka en attente de publication, écrit dans le même batch Cassandra que les lignes
+ * métier qu'il décrit et publié ensuite par OutboxRelay. Sans TTL : un message n'est supprimé
+ * qu'une fois publié.
+ */
+@Table("outbox_message")
+@Data
+public class OutboxMessage {
+
+    @PrimaryKey
+    private OutboxMessageKey key;
+
+    @Column("tenant_id")
+    private UUID tenantId;
+
+    private String topic;
+
+    @Column("message_key")
+    private String messageKey;
+
+    // Classe du payload, transmise dans l'en-tête de type lu par le JsonDeserializer des consommateurs
+    @Column("type_payload")
+    private String typePayload;
+
+    // Payload sérialisé en JSON
+    private String payload;
+
+    // Payload binaire (événements comptables en Avro) ; type_payload porte alors son content-type
+    @Column("payload_binaire")
+    private ByteBuffer payloadBinaire;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+}
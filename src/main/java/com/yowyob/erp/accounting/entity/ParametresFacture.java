@@ -0,0 +1,18 @@
+package com.yowyob.erp.accounting.entity;
+
+/**
+ * Comptes de contrôle des factures (numéros du plan comptable) et nombre de décimales de la devise,
+ * auquel les montants HT, TVA et TTC sont arrondis.
+ */
+public record ParametresFacture(String compteAchats,
+                                String compteVentes,
+                                String compteTvaDeductible,
+                                String compteTvaCollectee,
+                                String compteFournisseurs,
+                                String compteClients,
+                                int echelle) {
+
+    // Comptes historiques de l'application, montants en francs CFA (sans décimales)
+    public static final ParametresFacture PAR_DEFAUT =
+            new ParametresFacture("601000", "701000", "445620", "445710", "401000", "411000", 0);
+}
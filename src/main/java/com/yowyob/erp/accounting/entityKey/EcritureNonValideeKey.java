@@ -0,0 +1,26 @@
+package com.yowyob.erp.accounting.entityKey;
+
+import lombok.Data;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyClass;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+// Clé de l'index des écritures non validées : partition tenant, triée par date d'écriture
+@Data
+@PrimaryKeyClass
+public class EcritureNonValideeKey implements Serializable {
+
+    @PrimaryKeyColumn(name = "tenant_id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private UUID tenantId;
+
+    @PrimaryKeyColumn(name = "date_ecriture", ordinal = 1, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private LocalDate dateEcriture;
+
+    @PrimaryKeyColumn(name = "id", ordinal = 2, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private UUID id;
+}
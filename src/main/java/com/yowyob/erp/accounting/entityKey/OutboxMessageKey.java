@@ -0,0 +1,29 @@
+package com.yowyob.erp.accounting.entityKey;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyClass;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+// Clé d'un message en attente : shard dérivé du tenant, tranche de temps de l'id, id timeuuid (ordre de publication)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@PrimaryKeyClass
+public class OutboxMessageKey implements Serializable {
+
+    @PrimaryKeyColumn(name = "shard", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private Integer shard;
+
+    @PrimaryKeyColumn(name = "time_bucket", ordinal = 1, type = PrimaryKeyType.PARTITIONED)
+    private Long tranche;
+
+    @PrimaryKeyColumn(name = "id", ordinal = 2, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private UUID id;
+}
@@ -0,0 +1,101 @@
+package com.yowyob.erp.accounting.event;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.common.enums.SourceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Événement unique publié pour une écriture comptable enregistrée : l'en-tête et toutes ses lignes,
+ * sous forme compacte, à la place d'un message par ligne et par audit. Le champ version est
+ * incrémenté à chaque changement incompatible du format.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EcriturePosted {
+
+    public static final int VERSION = 1;
+
+    private int version;
+    private UUID tenantId;
+    private UUID ecritureId;
+    private String numeroEcriture;
+    private String libelle;
+    private LocalDate dateEcriture;
+    private UUID journalComptableId;
+    private UUID periodeComptableId;
+    private Double montantTotal;
+    private String referenceExterne;
+    private SourceType sourceType;
+    private UUID sourceId;
+    private String action;
+    private String utilisateur;
+    private LocalDateTime dateAction;
+    private List<Ligne> lignes;
+
+    /**
+     * Ligne sérialisée en tableau [id, compte, sens, montant, libellé] ; le libellé n'est renseigné
+     * que s'il diffère de celui de l'en-tête.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "compteId", "sens", "montant", "libelle"})
+    public static class Ligne {
+        private UUID id;
+        private UUID compteId;
+        // D ou C
+        private String sens;
+        private Double montant;
+        private String libelle;
+    }
+
+    public static EcriturePosted of(EcritureComptable ecriture, List<DetailEcriture> details, String utilisateur, String action) {
+        return EcriturePosted.builder()
+                .version(VERSION)
+                .tenantId(ecriture.getKey().getTenantId())
+                .ecritureId(ecriture.getKey().getId())
+                .numeroEcriture(ecriture.getNumeroEcriture())
+                .libelle(ecriture.getLibelle())
+                .dateEcriture(ecriture.getDateEcriture())
+                .journalComptableId(ecriture.getJournalComptableId())
+                .periodeComptableId(ecriture.getPeriodeComptableId())
+                .montantTotal(ecriture.getMontantTotalDebit())
+                .referenceExterne(ecriture.getReferenceExterne())
+                .sourceType(ecriture.getSourceType())
+                .sourceId(ecriture.getSourceId())
+                .action(action)
+                .utilisateur(utilisateur != null ? utilisateur : "system")
+                .dateAction(LocalDateTime.now())
+                .lignes(details.stream()
+                        .map(detail -> ligne(ecriture, detail))
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private static Ligne ligne(EcritureComptable ecriture, DetailEcriture detail) {
+        boolean debit = "DEBIT".equals(detail.getSens());
+        return new Ligne(detail.getKey().getId(),
+                detail.getCompteComptableId(),
+                debit ? "D" : "C",
+                debit ? detail.getMontantDebit() : detail.getMontantCredit(),
+                Objects.equals(detail.getLibelle(), ecriture.getLibelle()) ? null : detail.getLibelle());
+    }
+}
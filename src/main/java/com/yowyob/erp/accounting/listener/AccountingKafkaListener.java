@@ -1,61 +1,219 @@
 // Listener Kafka pour traiter les événements
 package com.yowyob.erp.accounting.listener;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.EcritureBatchResultDto;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.accounting.service.EcritureComptableService;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.ComptableObjectRequest;
 import com.yowyob.erp.common.dto.KafkaMessage;
+import com.yowyob.erp.common.entity.ComptableObject;
+import com.yowyob.erp.common.enums.SourceType;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.kafka.KafkaRetryService;
+import com.yowyob.erp.config.kafka.TenantDispatcher;
+import com.yowyob.erp.config.kafka.TenantRecordInterceptor;
+import com.yowyob.erp.config.tenant.TenantContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.yowyob.erp.accounting.util.AccountingUtils.mapToComptableObject;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class AccountingKafkaListener {
 
+    // Conteneur du listener de réessai, mis en pause par partition jusqu'à l'échéance des messages
+    public static final String RETRY_LISTENER_ID = "accounting-retry";
+
+    private final EcritureComptableService ecritureComptableService;
+    private final TenantRecordInterceptor tenantRecordInterceptor;
+    private final KafkaRetryService kafkaRetryService;
+    private final TenantDispatcher tenantDispatcher;
+    private final ObjectMapper objectMapper;
+
     /**
-     * Écoute les événements de facturation pour génération automatique d'écritures
+     * Écoute les événements de facturation par lots et génère les écritures correspondantes.
+     * Les enregistrements sont regroupés par tenant (ordre conservé) et chaque groupe est écrit
+     * en un seul appel groupé, dans la file de son tenant du TenantDispatcher : les tenants du lot
+     * sont traités en parallèle et un gros tenant n'occupe qu'un worker. Les événements en échec
+     * partent en réessai (ou en rejet s'ils sont illisibles) et le lot est acquitté une fois tous
+     * les groupes traités : un message défaillant ne bloque pas la partition. Seul un échec de ce
+     * renvoi laisse le lot non acquitté ; la génération étant idempotente par objet source, la
+     * relivraison ne crée pas de doublon. Le thread d'écoute attend la fin de tous les groupes
+     * avant d'acquitter : le lot suivant n'est lu qu'après le groupe le plus lent, qui doit rester
+     * sous max.poll.interval.ms.
      */
-    @KafkaListener(topics = "invoice.events", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleInvoiceEvents(@Payload KafkaMessage message,
-                                   @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-                                   @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-                                   Acknowledgment acknowledgment) {
+    @KafkaListener(topics = "invoice.events", groupId = "${spring.kafka.consumer.group-id}", batch = "true",
+            concurrency = "${app.kafka.invoice.concurrency:3}",
+            properties = "max.poll.records=${app.kafka.invoice.max-poll-records:1000}")
+    public void handleInvoiceEvents(List<ConsumerRecord<String, KafkaMessage>> records, Acknowledgment acknowledgment) {
+        log.info("Réception d'un lot de {} événements de facture", records.size());
+        List<CompletableFuture<Void>> groupes = new ArrayList<>();
+        regrouperFactures(records).forEach((tenantId, groupe) -> groupes.add(tenantDispatcher.soumettre(
+                tenantId, groupe.sources().get(0).timestamp(), () -> genererEcritures(tenantId, groupe))));
         try {
-            log.info("Réception d'un événement de facture: {} pour le tenant: {}", 
-                    message.getEventType(), message.getTenantId());
-
-            // Traitement selon le type d'événement
-            switch (message.getEventType()) {
-                case "INVOICE_CREATED" -> handleInvoiceCreated(message);
-                case "INVOICE_PAID" -> handleInvoicePaid(message);
-                default -> log.warn("Type d'événement non traité: {}", message.getEventType());
-            }
+            CompletableFuture.allOf(groupes.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            // Renvoi en réessai impossible : le lot remonte au gestionnaire d'erreurs du conteneur
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        acknowledgment.acknowledge();
+        log.debug("Lot de {} événements de facture acquitté", records.size());
+    }
 
+    /**
+     * Écoute les événements comptables pour mise à jour des caches. Chaque événement est traité
+     * dans la file de son tenant et acquitté par le worker. Si son traitement échoue malgré tout
+     * (renvoi en réessai impossible, erreur inattendue), il part au topic de rejet puis est acquitté ;
+     * seul un échec de ce rejet le laisse non acquitté, la partition n'étant alors plus validée
+     * au-delà jusqu'à sa relivraison. nack() n'est pas utilisable ici : il doit être appelé depuis
+     * le thread du consommateur.
+     */
+    @KafkaListener(topics = "accounting.entries", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "tenantDispatchContainerFactory")
+    public void handleAccountingEvents(ConsumerRecord<String, KafkaMessage> record,
+                                     Acknowledgment acknowledgment) {
+        UUID tenantId = record.value() != null ? tenantOf(record, record.value()) : null;
+        if (tenantId == null) {
+            traiterEvenementComptable(record);
             acknowledgment.acknowledge();
-            log.debug("Événement traité avec succès pour la partition: {}", partition);
+            return;
+        }
+        tenantDispatcher.soumettre(tenantId, record.timestamp(), () -> traiterEvenementComptable(record))
+                .whenComplete((ignore, erreur) -> {
+                    if (erreur == null) {
+                        acknowledgment.acknowledge();
+                    } else {
+                        rejeterEtAcquitter(record, acknowledgment, erreur);
+                    }
+                });
+    }
 
-        } catch (Exception e) {
-            log.error("Erreur lors du traitement de l'événement facture", e);
-            // Ne pas acknowledgment pour retraitement
+    private void rejeterEtAcquitter(ConsumerRecord<String, KafkaMessage> record, Acknowledgment acknowledgment,
+                                    Throwable erreur) {
+        try {
+            kafkaRetryService.rejeter(record, erreur);
+            acknowledgment.acknowledge();
+        } catch (RuntimeException e) {
+            log.error("Rejet du message {}-{}@{} impossible, laissé non acquitté: {}",
+                    record.topic(), record.partition(), record.offset(), e.getMessage());
         }
     }
 
     /**
-     * Écoute les événements comptables pour mise à jour des caches
+     * Rejoue les messages des topics de réessai une fois leur délai écoulé. Un nouvel échec
+     * les envoie au niveau suivant, puis au topic de rejet.
      */
-    @KafkaListener(topics = "accounting.entries", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleAccountingEvents(@Payload KafkaMessage message,
-                                     Acknowledgment acknowledgment) {
+    @KafkaListener(id = RETRY_LISTENER_ID, topicPattern = "#{@kafkaRetryService.motifReessais()}",
+            groupId = "${app.kafka.retry.group-id}")
+    public void handleRetries(ConsumerRecord<String, KafkaMessage> record, Acknowledgment acknowledgment,
+                              Consumer<?, ?> consumer) {
+        if (kafkaRetryService.differer(RETRY_LISTENER_ID, record, consumer)) {
+            return;
+        }
+        String origine = kafkaRetryService.origine(record);
+        log.info("Réessai du message {}-{}@{} (origine {})", record.topic(), record.partition(), record.offset(), origine);
+        if ("invoice.events".equals(origine)) {
+            regrouperFactures(List.of(record)).forEach(this::genererEcritures);
+        } else {
+            traiterEvenementComptable(record);
+        }
+        acknowledgment.acknowledge();
+    }
+
+    private Map<UUID, GroupeFactures> regrouperFactures(List<ConsumerRecord<String, KafkaMessage>> records) {
+        Map<UUID, GroupeFactures> parTenant = new LinkedHashMap<>();
+        for (ConsumerRecord<String, KafkaMessage> record : records) {
+            KafkaMessage message = record.value();
+            if (message == null || message.getEventType() == null) {
+                kafkaRetryService.rejeter(record, new IllegalArgumentException("Événement de facture illisible ou vide"));
+                continue;
+            }
+            UUID tenantId = tenantOf(record, message);
+            if (tenantId == null) {
+                kafkaRetryService.rejeter(record, new IllegalArgumentException("Événement de facture sans tenant"));
+                continue;
+            }
+            // Traitement selon le type d'événement
+            SourceType typeParDefaut = switch (message.getEventType()) {
+                case AppConstants.KafkaEvents.INVOICE_CREATED -> SourceType.FACTURE;
+                case AppConstants.KafkaEvents.INVOICE_PAID -> SourceType.TRANSACTION;
+                default -> null;
+            };
+            if (typeParDefaut == null) {
+                log.warn("Type d'événement non traité: {}", message.getEventType());
+                continue;
+            }
+            try {
+                ComptableObjectRequest request = objectMapper.convertValue(message.getPayload(), ComptableObjectRequest.class);
+                if (request.getType() == null) {
+                    request.setType(typeParDefaut);
+                }
+                request.setTenantId(tenantId);
+                ComptableObject objet = mapToComptableObject(request);
+                GroupeFactures groupe = parTenant.computeIfAbsent(tenantId,
+                        t -> new GroupeFactures(new ArrayList<>(), new ArrayList<>()));
+                groupe.objets().add(objet);
+                groupe.sources().add(record);
+            } catch (IllegalArgumentException e) {
+                kafkaRetryService.rejeter(record, e);
+            }
+        }
+        return parTenant;
+    }
+
+    private void genererEcritures(UUID tenantId, GroupeFactures groupe) {
+        List<ComptableObject> objets = groupe.objets();
+        List<ConsumerRecord<String, KafkaMessage>> sources = groupe.sources();
+        TenantContext.setCurrentTenant(tenantId);
+        try {
+            EcritureBatchResultDto resultat = ecritureComptableService.generateFromComptableObjects(objets);
+            resultat.getResults().stream()
+                    .filter(r -> !r.isSuccess())
+                    .forEach(r -> kafkaRetryService.renvoyer(sources.get(r.getIndex()), new BusinessException(
+                            "Écriture non générée pour l'objet " + objets.get(r.getIndex()).getId() + ": " + r.getError())));
+            log.info("{} écritures générées sur {} événements pour le tenant {}",
+                    resultat.getSucceeded(), resultat.getTotal(), tenantId);
+        } catch (RuntimeException e) {
+            log.error("Génération des écritures du tenant {} en échec, {} événements renvoyés en réessai: {}",
+                    tenantId, sources.size(), e.getMessage());
+            sources.forEach(source -> kafkaRetryService.renvoyer(source, e));
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private void traiterEvenementComptable(ConsumerRecord<String, KafkaMessage> record) {
+        KafkaMessage message = record.value();
+        if (message == null || message.getEventType() == null) {
+            kafkaRetryService.rejeter(record, new IllegalArgumentException("Événement comptable illisible ou vide"));
+            return;
+        }
         try {
             log.info("Réception d'un événement comptable: {} pour le tenant: {}", 
                     message.getEventType(), message.getTenantId());
 
             // Traitement selon le type d'événement
             switch (message.getEventType()) {
+                case AppConstants.KafkaEvents.ECRITURE_POSTED:
+                    handleEcriturePosted(message);
+                    break;
                 case "ACCOUNTING_ENTRY_CREATED":
                     handleAccountingEntryCreated(message);
                     break;
@@ -65,22 +223,35 @@ public class AccountingKafkaListener {
                 default:
                     log.warn("Type d'événement comptable non traité: {}", message.getEventType());
             }
-
-            acknowledgment.acknowledge();
-
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             log.error("Erreur lors du traitement de l'événement comptable", e);
+            kafkaRetryService.renvoyer(record, e);
         }
     }
 
-    private void handleInvoiceCreated(KafkaMessage message) {
-        // TODO: Générer automatiquement l'écriture comptable
-        log.info("Traitement de la création de facture: {}", message.getPayload());
+    private UUID tenantOf(ConsumerRecord<String, KafkaMessage> record, KafkaMessage message) {
+        if (message.getTenantId() != null) {
+            try {
+                return UUID.fromString(message.getTenantId().trim());
+            } catch (IllegalArgumentException e) {
+                log.debug("Tenant du message invalide: {}", message.getTenantId());
+            }
+        }
+        return tenantRecordInterceptor.extractTenantId(record);
     }
 
-    private void handleInvoicePaid(KafkaMessage message) {
-        // TODO: Générer l'écriture de règlement
-        log.info("Traitement du paiement de facture: {}", message.getPayload());
+    /**
+     * Consommateur sans effet de bord : les soldes et le grand livre sont tenus à jour de façon
+     * synchrone par ProjectionEcritureService lors de la validation, et aucun index de recherche
+     * n'est alimenté par cet événement. Le listener vérifie seulement que la version est lisible
+     * (une version inconnue part en réessai puis en rejet) et journalise l'écriture reçue.
+     */
+    private void handleEcriturePosted(KafkaMessage message) {
+        EcriturePosted evenement = objectMapper.convertValue(message.getPayload(), EcriturePosted.class);
+        if (evenement.getVersion() > EcriturePosted.VERSION) {
+            throw new IllegalArgumentException("Version d'EcriturePosted non prise en charge: " + evenement.getVersion());
+        }
+        log.info("Écriture {} enregistrée avec {} lignes", evenement.getNumeroEcriture(), evenement.getLignes().size());
     }
 
     private void handleAccountingEntryCreated(KafkaMessage message) {
@@ -92,4 +263,8 @@ public class AccountingKafkaListener {
         // TODO: Mettre à jour les soldes en cache
         log.info("Mise à jour des soldes suite à validation");
     }
+
+    // Événements de facture d'un tenant, dans l'ordre du lot, et les enregistrements dont ils viennent
+    private record GroupeFactures(List<ComptableObject> objets, List<ConsumerRecord<String, KafkaMessage>> sources) {
+    }
 }
@@ -0,0 +1,84 @@
+// Listener Kafka pour invalider les caches de données de référence
+package com.yowyob.erp.accounting.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.service.JournalComptableCache;
+import com.yowyob.erp.accounting.service.PlanComptableIndex;
+import com.yowyob.erp.config.kafka.TenantPartitioner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceDataCacheListener {
+
+    private final JournalComptableCache journalComptableCache;
+    private final PlanComptableIndex planComptableIndex;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Chaque instance utilise son propre groupe afin que tous les caches locaux soient invalidés.
+     * Seule la clé (tenant) est utile : la valeur est lue en texte brut, sans désérialisation JSON.
+     */
+    @KafkaListener(topicPattern = "journal\\.comptable\\..*",
+            groupId = "${spring.kafka.consumer.group-id}-journal-cache-${random.uuid}",
+            properties = {
+                    "auto.offset.reset=latest",
+                    "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer"
+            })
+    public void handleJournalEvents(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
+        try {
+            if (record.key() != null) {
+                log.debug("Événement {} reçu, invalidation du cache des journaux du tenant: {}", record.topic(), record.key());
+                journalComptableCache.invalidate(UUID.fromString(TenantPartitioner.tenant(record.key())));
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Clé tenant invalide sur {}: {}", record.topic(), record.key());
+        } finally {
+            acknowledgment.acknowledge();
+        }
+    }
+
+    /**
+     * Tient à jour l'index local du plan comptable. En cas de message illisible, l'index du tenant
+     * est simplement invalidé et sera rechargé à la prochaine demande.
+     */
+    @KafkaListener(topicPattern = "plan\\.comptable\\..*",
+            groupId = "${spring.kafka.consumer.group-id}-plan-index-${random.uuid}",
+            properties = {
+                    "auto.offset.reset=latest",
+                    "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer"
+            })
+    public void handlePlanComptableEvents(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
+        UUID tenantId = null;
+        try {
+            if (record.key() == null) {
+                return;
+            }
+            tenantId = UUID.fromString(TenantPartitioner.tenant(record.key()));
+            switch (record.topic()) {
+                case "plan.comptable.created", "plan.comptable.updated" ->
+                        planComptableIndex.upsert(tenantId, objectMapper.readValue(record.value(), PlanComptableDto.class));
+                case "plan.comptable.deactivated" ->
+                        planComptableIndex.deactivate(tenantId, objectMapper.readValue(record.value(), UUID.class));
+                default -> planComptableIndex.invalidate(tenantId);
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Événement {} illisible, rechargement de l'index du plan comptable: {}", record.topic(), e.getOriginalMessage());
+            planComptableIndex.invalidate(tenantId);
+        } catch (IllegalArgumentException e) {
+            log.warn("Clé tenant invalide sur {}: {}", record.topic(), record.key());
+        } finally {
+            acknowledgment.acknowledge();
+        }
+    }
+}
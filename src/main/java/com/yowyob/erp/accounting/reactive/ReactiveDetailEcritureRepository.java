@@ -0,0 +1,18 @@
+package com.yowyob.erp.accounting.reactive;
+
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entityKey.DetailEcritureKey;
+
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveDetailEcritureRepository extends ReactiveCassandraRepository<DetailEcriture, DetailEcritureKey> {
+
+    Flux<DetailEcriture> findByKeyTenantId(UUID tenantId);
+
+    Flux<DetailEcriture> findByKeyTenantIdAndKeyEcritureComptableId(UUID tenantId, UUID ecritureComptableId);
+}
@@ -0,0 +1,17 @@
+package com.yowyob.erp.accounting.reactive;
+
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
+
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveEcritureComptableRepository extends ReactiveCassandraRepository<EcritureComptable, EcritureComptableKey> {
+
+    // Partition du tenant lue page par page à la demande de l'abonné
+    Flux<EcritureComptable> findByKeyTenantId(UUID tenantId);
+}
@@ -0,0 +1,16 @@
+package com.yowyob.erp.accounting.reactive;
+
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
+
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveJournalAuditRepository extends ReactiveCassandraRepository<JournalAudit, JournalAuditKey> {
+
+    Flux<JournalAudit> findByKeyTenantId(UUID tenantId);
+}
@@ -0,0 +1,16 @@
+package com.yowyob.erp.accounting.reactive;
+
+import com.yowyob.erp.accounting.entity.PlanComptable;
+import com.yowyob.erp.accounting.entityKey.PlanComptableKey;
+
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactivePlanComptableRepository extends ReactiveCassandraRepository<PlanComptable, PlanComptableKey> {
+
+    Flux<PlanComptable> findByKeyTenantId(UUID tenantId);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.cassandra.repository.CassandraRepository;
 import org.springframework.data.cassandra.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,6 +18,9 @@ public interface CompteRepository extends CassandraRepository<Compte, CompteKey>
 
     Optional<Compte> findByKey(CompteKey key);
     List<Compte> findAllByKeyTenantId(UUID tenantId);
+
+    // IN sur la clé de clustering : une seule requête dans la partition du tenant
+    List<Compte> findByKeyTenantIdAndKeyIdIn(UUID tenantId, Collection<UUID> ids);
     
     void deleteById(CompteKey key);
 
@@ -4,10 +4,10 @@ import com.yowyob.erp.accounting.entity.DetailEcriture;
 import com.yowyob.erp.accounting.entityKey.DetailEcritureKey;
 
 import org.springframework.data.cassandra.repository.CassandraRepository;
-import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,18 +18,8 @@ public interface DetailEcritureRepository extends CassandraRepository<DetailEcri
 
     List<DetailEcriture> findByKeyTenantId(UUID tenantId);
 
+    Slice<DetailEcriture> findByKeyTenantId(UUID tenantId, Pageable pageable);
+
     // Requires secondary index on plan_comptable_id
     List<DetailEcriture> findByKeyTenantIdAndCompteComptableId(UUID tenantId, UUID compteComptableId);
-
-    // Balance calculation (application-side for ScyllaDB)
-    default Double calculateAccountBalance(UUID tenantId, UUID compteComptableId) {
-        List<DetailEcriture> entries = findByKeyTenantIdAndCompteComptableId(tenantId, compteComptableId);
-        return entries.stream()
-                .mapToDouble(e -> e.getMontantDebit() - e.getMontantCredit())
-                .sum();
-    }
-
-    // Date range query (requires materialized view)
-    @Query("SELECT * FROM detail_ecriture_by_date WHERE tenant_id = :tenantId AND date_ecriture >= :startDate AND date_ecriture <= :endDate")
-    List<DetailEcriture> findByTenantIdAndDateRange(UUID tenantId, LocalDateTime startDate, LocalDateTime endDate);
 }
\ No newline at end of file
@@ -5,9 +5,12 @@ import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
 
 import org.springframework.data.cassandra.repository.CassandraRepository;
 import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,16 +18,30 @@ import java.util.UUID;
 @Repository
 public interface EcritureComptableRepository extends CassandraRepository<EcritureComptable, EcritureComptableKey> {
     List<EcritureComptable> findByKeyTenantId(UUID tenantId);
+    Slice<EcritureComptable> findByKeyTenantId(UUID tenantId, Pageable pageable);
+    List<EcritureComptable> findByKeyTenantIdAndKeyIdIn(UUID tenantId, Collection<UUID> ids);
     Optional<EcritureComptable> findByKeyTenantIdAndKeyId(UUID tenantId, UUID id);
-    List<EcritureComptable> findByKeyTenantIdAndValideeFalse(UUID tenantId);
 
-    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId AND date_ecriture >= :startDate AND date_ecriture <= :endDate")
-    List<EcritureComptable> findByKeyTenantIdAndDateEcritureRange(UUID tenantId, LocalDateTime startDate, LocalDateTime endDate);
+    // Pages d'écritures triées par date (vue matérialisée par date)
+    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId ORDER BY date_ecriture DESC")
+    Slice<EcritureComptable> findSliceByTenantIdOrderByDateDesc(UUID tenantId, Pageable pageable);
+
+    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId ORDER BY date_ecriture ASC")
+    Slice<EcritureComptable> findSliceByTenantIdOrderByDateAsc(UUID tenantId, Pageable pageable);
+
+    // Reprise après une position (date, id), pour un curseur émis par l'index Redis
+    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId AND (date_ecriture, id) < (:dateEcriture, :id) ORDER BY date_ecriture DESC")
+    Slice<EcritureComptable> findSliceByTenantIdBeforeOrderByDateDesc(UUID tenantId, LocalDate dateEcriture, UUID id, Pageable pageable);
 
-    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId AND journal_comptable_id = :journalId AND date_ecriture >= :startDate AND date_ecriture <= :endDate")
-    List<EcritureComptable> findByKeyTenantIdAndJournalComptableIdAndDateEcritureRange(UUID tenantId, UUID journalId, LocalDateTime startDate, LocalDateTime endDate);
+    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId AND (date_ecriture, id) > (:dateEcriture, :id) ORDER BY date_ecriture ASC")
+    Slice<EcritureComptable> findSliceByTenantIdAfterOrderByDateAsc(UUID tenantId, LocalDate dateEcriture, UUID id, Pageable pageable);
+
+    @Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId AND date_ecriture >= :startDate AND date_ecriture <= :endDate")
+    List<EcritureComptable> findByKeyTenantIdAndDateEcritureRange(UUID tenantId, LocalDate startDate, LocalDate endDate);
 
     // New method to fetch all EcritureComptable entries for a specific journalComptableId
     //@Query("SELECT * FROM ecriture_comptable_by_date WHERE tenant_id = :tenantId AND journal_comptable_id = :journalId")
     List<EcritureComptable> findByKeyTenantIdAndJournalComptableId(UUID tenantId, UUID journalId);
+
+    Slice<EcritureComptable> findByKeyTenantIdAndJournalComptableId(UUID tenantId, UUID journalId, Pageable pageable);
 }
\ No newline at end of file
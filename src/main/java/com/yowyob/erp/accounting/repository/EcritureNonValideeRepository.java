@@ -0,0 +1,29 @@
+package com.yowyob.erp.accounting.repository;
+
+import com.yowyob.erp.accounting.entity.EcritureNonValidee;
+import com.yowyob.erp.accounting.entityKey.EcritureNonValideeKey;
+
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Repository
+public interface EcritureNonValideeRepository extends CassandraRepository<EcritureNonValidee, EcritureNonValideeKey> {
+
+    @Query("SELECT * FROM ecriture_non_validee WHERE tenant_id = :tenantId ORDER BY date_ecriture DESC")
+    Slice<EcritureNonValidee> findSliceByTenantIdOrderByDateDesc(UUID tenantId, Pageable pageable);
+
+    @Query("SELECT * FROM ecriture_non_validee WHERE tenant_id = :tenantId ORDER BY date_ecriture ASC")
+    Slice<EcritureNonValidee> findSliceByTenantIdOrderByDateAsc(UUID tenantId, Pageable pageable);
+
+    @Query("SELECT * FROM ecriture_non_validee WHERE tenant_id = :tenantId AND (date_ecriture, id) < (:dateEcriture, :id) ORDER BY date_ecriture DESC")
+    Slice<EcritureNonValidee> findSliceByTenantIdBeforeOrderByDateDesc(UUID tenantId, LocalDate dateEcriture, UUID id, Pageable pageable);
+
+    @Query("SELECT * FROM ecriture_non_validee WHERE tenant_id = :tenantId AND (date_ecriture, id) > (:dateEcriture, :id) ORDER BY date_ecriture ASC")
+    Slice<EcritureNonValidee> findSliceByTenantIdAfterOrderByDateAsc(UUID tenantId, LocalDate dateEcriture, UUID id, Pageable pageable);
+}
@@ -0,0 +1,24 @@
+package com.yowyob.erp.accounting.repository;
+
+import com.yowyob.erp.accounting.entity.EcritureParJournal;
+import com.yowyob.erp.accounting.entityKey.EcritureParJournalKey;
+
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface EcritureParJournalRepository extends CassandraRepository<EcritureParJournal, EcritureParJournalKey> {
+
+    @Query("SELECT * FROM ecriture_par_journal WHERE tenant_id = :tenantId AND journal_comptable_id = :journalId AND date_ecriture >= :startDate AND date_ecriture <= :endDate")
+    List<EcritureParJournal> findByTenantIdAndJournalIdAndDateRange(UUID tenantId, UUID journalId, LocalDate startDate, LocalDate endDate);
+
+    @Query("SELECT * FROM ecriture_par_journal WHERE tenant_id = :tenantId AND journal_comptable_id = :journalId")
+    Slice<EcritureParJournal> findSliceByTenantIdAndJournalId(UUID tenantId, UUID journalId, Pageable pageable);
+}
@@ -4,6 +4,8 @@ import com.yowyob.erp.accounting.entity.JournalComptable;
 import com.yowyob.erp.accounting.entityKey.JournalComptableKey;
 
 import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,6 +18,8 @@ public interface JournalComptableRepository extends CassandraRepository<JournalC
 
     List<JournalComptable> findByKeyTenantId(UUID tenantId);
 
+    Slice<JournalComptable> findByKeyTenantId(UUID tenantId, Pageable pageable);
+
     List<JournalComptable> findByKeyTenantIdAndActifTrue(UUID tenantId);
 
     Optional<JournalComptable> findByKeyTenantIdAndKeyId(UUID tenantId, UUID id);
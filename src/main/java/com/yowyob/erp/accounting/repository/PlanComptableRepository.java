@@ -4,7 +4,8 @@ import com.yowyob.erp.accounting.entity.PlanComptable;
 import com.yowyob.erp.accounting.entityKey.PlanComptableKey;
 
 import org.springframework.data.cassandra.repository.CassandraRepository;
-import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,6 +18,8 @@ public interface PlanComptableRepository extends CassandraRepository<PlanComptab
 
     List<PlanComptable> findAllByKeyTenantId(UUID tenantId);
 
+    Slice<PlanComptable> findByKeyTenantId(UUID tenantId, Pageable pageable);
+
     Optional<PlanComptable> findByKey(PlanComptableKey key);
     Optional<PlanComptable> findByKeyTenantIdAndKeyId(UUID tenantId, UUID infod);
 
@@ -26,8 +29,5 @@ public interface PlanComptableRepository extends CassandraRepository<PlanComptab
 
     List<PlanComptable> findByKeyTenantIdAndActifTrue(UUID tenantId);
 
-    @Query("SELECT * FROM plan_comptable WHERE tenant_id = ?0 AND no_compte LIKE ?1%")
-    List<PlanComptable> findByKeyTenantIdAndNoComptePrefix(UUID tenantId, String prefix);
-
     List<PlanComptable> findByKeyTenantIdAndClasse(UUID tenantId, Integer classe);
 }
\ No newline at end of file
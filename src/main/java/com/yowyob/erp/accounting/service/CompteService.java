@@ -1,30 +1,69 @@
 package com.yowyob.erp.accounting.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yowyob.erp.accounting.entity.Compte;
 import com.yowyob.erp.accounting.entityKey.CompteKey;
 import com.yowyob.erp.accounting.repository.CompteRepository;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CompteService {
 
+    private static final Logger logger = LoggerFactory.getLogger(CompteService.class);
+
     @Autowired
     private CompteRepository compteRepository;
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
-    private static final String CACHE_PREFIX = "compte:solde:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RedisCacheLoader cacheLoader;
+
+    private static final String CACHE_PREFIX = "compte:entite:";
+    private static final String CACHE_ALL = "compteAll";
     private static final String CACHE_ALL_PREFIX = "compte:all:";
     private static final String CACHE_BY_NO_COMPTE_PREFIX = "compte:nocompte:";
+    private static final Duration CACHE_ALL_TTL = Duration.ofHours(1);
+    private static final Duration CACHE_COMPTE_TTL = Duration.ofMinutes(15);
+    // Nombre maximal de comptes résolus par un appel groupé
+    public static final int MAX_COMPTES_PAR_LOT = 500;
+    private static final TypeReference<List<Compte>> COMPTES_TYPE = new TypeReference<>() {
+    };
 
     @Transactional
     public Compte createCompte(Compte compte) {
@@ -40,83 +79,84 @@ public class CompteService {
         compte.setSoldes(BigDecimal.ZERO); // Solde initial par défaut
 
         Compte savedCompte = compteRepository.save(compte);
-        // Mise à jour du cache Redis pour le solde
-        redisTemplate.opsForValue().set(CACHE_PREFIX + savedCompte.getKey().getTenantId() + ":" + savedCompte.getKey().getId(),
-                savedCompte.getSoldes());
-        // Invalide le cache global et par numéro de compte
-        redisTemplate.delete(CACHE_ALL_PREFIX + savedCompte.getKey().getTenantId());
-        redisTemplate.delete(CACHE_BY_NO_COMPTE_PREFIX + savedCompte.getKey().getTenantId() + ":" + savedCompte.getNoCompte());
+        // Invalide le cache global, par ID et par numéro de compte
+        evictCompte(savedCompte);
 
         return savedCompte;
     }
 
     public List<Compte> findAllByTenantId(UUID tenantId) {
-        // Clé de cache pour tous les comptes d'un tenant
-        String cacheKey = CACHE_ALL_PREFIX + tenantId;
-        List<Compte> comptes = (List<Compte>) redisTemplate.opsForValue().get(cacheKey);
-
-        if (comptes == null) {
-            comptes = compteRepository.findAllByKeyTenantId(tenantId);
-            if (!comptes.isEmpty()) {
-                redisTemplate.opsForValue().set(cacheKey, comptes);
-            }
-        }
+        // Clé de cache pour tous les comptes d'un tenant ; un seul chargement Cassandra par expiration
+        List<Compte> comptes = cacheLoader.get(CACHE_ALL, CACHE_ALL_PREFIX + tenantId, CACHE_ALL_TTL, COMPTES_TYPE,
+                () -> compteRepository.findAllByKeyTenantId(tenantId));
         return comptes != null ? comptes : List.of();
     }
 
     public Optional<Compte> findById(UUID tenantId, UUID id) {
-        String cacheKey = CACHE_PREFIX + tenantId + ":" + id;
-        Object cachedSolde = redisTemplate.opsForValue().get(cacheKey);
+        return Optional.ofNullable(findByIds(tenantId, List.of(id)).get(id));
+    }
 
-        CompteKey key = new CompteKey();
-        key.setTenantId(tenantId);
-        key.setId(id);
+    public List<Compte> findByNoCompte(UUID tenantId, String noCompte) {
+        // Liste d'au plus un compte, le numéro étant unique par tenant
+        return Optional.ofNullable(findByNoComptes(tenantId, List.of(noCompte)).get(noCompte))
+                .map(List::of)
+                .orElse(List.of());
+    }
 
-        if (cachedSolde != null && cachedSolde instanceof BigDecimal) {
-            // Si le solde est en cache, on le retourne directement
-            Compte compte = compteRepository.findByKey(key).orElse(null);
-            if (compte != null) compte.setSoldes((BigDecimal) cachedSolde);
-            return Optional.ofNullable(compte);
-        }
+    /**
+     * Résout un lot de comptes par ID : un MGET Redis, puis une requête Cassandra IN sur la clé
+     * de clustering pour les absents, remis en cache en un seul pipeline.
+     * Les IDs inconnus sont absents de la map retournée, qui suit l'ordre de la demande.
+     */
+    public Map<UUID, Compte> findByIds(UUID tenantId, Collection<UUID> ids) {
+        List<UUID> demandes = List.copyOf(new LinkedHashSet<>(ids));
+        verifierTailleLot(demandes.size());
+        Map<UUID, Compte> trouves = lireCache(demandes, id -> CACHE_PREFIX + tenantId + ":" + id,
+                (id, compte) -> id.equals(compte.getKey().getId()));
 
-        // Récupère un compte par ID et tenant
-        Optional<Compte> compteOpt = compteRepository.findByKey(key);
-        compteOpt.ifPresent(compte -> {
-            // Met à jour le cache Redis
-            redisTemplate.opsForValue().set(cacheKey, compte.getSoldes());
-        });
-        return compteOpt;
+        List<UUID> manquants = demandes.stream().filter(id -> !trouves.containsKey(id)).collect(Collectors.toList());
+        if (!manquants.isEmpty()) {
+            List<Compte> lus = compteRepository.findByKeyTenantIdAndKeyIdIn(tenantId, manquants);
+            lus.forEach(compte -> trouves.put(compte.getKey().getId(), compte));
+            ecrireCache(tenantId, lus);
+        }
+        return ordonner(demandes, trouves);
     }
 
-    public List<Compte> findByNoCompte(UUID tenantId, String noCompte) {
-        // Clé de cache pour les comptes par numéro de compte
-        String cacheKey = CACHE_BY_NO_COMPTE_PREFIX + tenantId + ":" + noCompte;
-        List<Compte> comptes = (List<Compte>) redisTemplate.opsForValue().get(cacheKey);
-
-        if (comptes == null) {
-            comptes = compteRepository.findByKeyTenantIdAndNoCompte(tenantId, noCompte)
-                    .map(List::of)
-                    .orElse(List.of());
-            if (!comptes.isEmpty()) {
-                redisTemplate.opsForValue().set(cacheKey, comptes);
-            }
+    /**
+     * Résout un lot de comptes par numéro : un MGET Redis, puis la liste des comptes du tenant
+     * (elle-même en cache) pour les absents, le numéro n'étant pas une colonne de clé sur laquelle
+     * un IN serait possible. Les comptes trouvés sont remis en cache en un seul pipeline.
+     */
+    public Map<String, Compte> findByNoComptes(UUID tenantId, Collection<String> noComptes) {
+        List<String> demandes = List.copyOf(new LinkedHashSet<>(noComptes));
+        verifierTailleLot(demandes.size());
+        Map<String, Compte> trouves = lireCache(demandes, no -> CACHE_BY_NO_COMPTE_PREFIX + tenantId + ":" + no,
+                (no, compte) -> no.equals(compte.getNoCompte()));
+
+        Set<String> manquants = demandes.stream().filter(no -> !trouves.containsKey(no)).collect(Collectors.toSet());
+        if (!manquants.isEmpty()) {
+            List<Compte> lus = findAllByTenantId(tenantId).stream()
+                    .filter(compte -> manquants.contains(compte.getNoCompte()))
+                    .collect(Collectors.toList());
+            lus.forEach(compte -> trouves.put(compte.getNoCompte(), compte));
+            ecrireCache(tenantId, lus);
         }
-        return comptes;
+        return ordonner(demandes, trouves);
     }
 
     @Transactional
     public Compte updateCompte(Compte compte) {
+        // Numéro avant modification : son entrée de cache désigne encore ce compte
+        String ancienNoCompte = compteRepository.findByKey(compte.getKey()).map(Compte::getNoCompte).orElse(null);
+
         // Met à jour les champs d'audit et persiste
         compte.setUpdatedAt(LocalDateTime.now());
         compte.setUpdatedBy("system");
         Compte updatedCompte = compteRepository.save(compte);
 
-        // Mise à jour du cache Redis pour le solde
-        redisTemplate.opsForValue().set(CACHE_PREFIX + updatedCompte.getKey().getTenantId() + ":" + updatedCompte.getKey().getId(),
-                updatedCompte.getSoldes());
-        // Invalide le cache global et par numéro de compte
-        redisTemplate.delete(CACHE_ALL_PREFIX + updatedCompte.getKey().getTenantId());
-        redisTemplate.delete(CACHE_BY_NO_COMPTE_PREFIX + updatedCompte.getKey().getTenantId() + ":" + updatedCompte.getNoCompte());
+        // Invalide le cache global, par ID et par numéro de compte (ancien et nouveau)
+        evictCompte(updatedCompte, ancienNoCompte);
 
         return updatedCompte;
     }
@@ -128,12 +168,97 @@ public class CompteService {
         key.setTenantId(tenantId);
         key.setId(id);
         Optional<Compte> compteOpt = compteRepository.findByKey(key);
-        compteOpt.ifPresent(compte -> {
-            // Invalide tous les caches liés à ce compte
-            redisTemplate.delete(CACHE_PREFIX + tenantId + ":" + id);
-            redisTemplate.delete(CACHE_ALL_PREFIX + tenantId);
-            redisTemplate.delete(CACHE_BY_NO_COMPTE_PREFIX + tenantId + ":" + compte.getNoCompte());
-        });
+        // Invalide tous les caches liés à ce compte
+        compteOpt.ifPresent(this::evictCompte);
         compteRepository.deleteById(key);
     }
-}
\ No newline at end of file
+
+    private void evictCompte(Compte compte) {
+        evictCompte(compte, null);
+    }
+
+    private void evictCompte(Compte compte, String ancienNoCompte) {
+        UUID tenantId = compte.getKey().getTenantId();
+        List<String> keys = new ArrayList<>(List.of(
+                CACHE_PREFIX + tenantId + ":" + compte.getKey().getId(),
+                CACHE_BY_NO_COMPTE_PREFIX + tenantId + ":" + compte.getNoCompte()));
+        if (ancienNoCompte != null && !ancienNoCompte.equals(compte.getNoCompte())) {
+            keys.add(CACHE_BY_NO_COMPTE_PREFIX + tenantId + ":" + ancienNoCompte);
+        }
+        redisTemplate.delete(keys);
+        // Liste chargée par le RedisCacheLoader : un chargement en cours ne la réécrira pas périmée
+        cacheLoader.invalider(List.of(CACHE_ALL_PREFIX + tenantId));
+    }
+
+    private void verifierTailleLot(int taille) {
+        if (taille > MAX_COMPTES_PAR_LOT) {
+            throw new BusinessException("Au plus " + MAX_COMPTES_PAR_LOT + " comptes peuvent être résolus par appel");
+        }
+    }
+
+    // Comptes présents en cache ; une entrée illisible ou qui ne correspond plus à sa clé est ignorée
+    private <K> Map<K, Compte> lireCache(List<K> demandes, Function<K, String> cle,
+                                         BiPredicate<K, Compte> correspond) {
+        Map<K, Compte> trouves = new LinkedHashMap<>();
+        if (demandes.isEmpty()) {
+            return trouves;
+        }
+        List<String> valeurs;
+        try {
+            valeurs = stringRedisTemplate.opsForValue().multiGet(demandes.stream().map(cle).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            logger.warn("Lecture groupée du cache des comptes impossible : {}", e.getMessage());
+            return trouves;
+        }
+        for (int i = 0; valeurs != null && i < demandes.size(); i++) {
+            String json = valeurs.get(i);
+            if (json == null) {
+                continue;
+            }
+            try {
+                Compte compte = objectMapper.readValue(json, Compte.class);
+                if (correspond.test(demandes.get(i), compte)) {
+                    trouves.put(demandes.get(i), compte);
+                }
+            } catch (JsonProcessingException e) {
+                logger.warn("Entrée de cache de compte illisible : {}", e.getMessage());
+            }
+        }
+        return trouves;
+    }
+
+    // Écrit chaque compte sous sa clé d'ID et sa clé de numéro, en un seul aller-retour
+    private void ecrireCache(UUID tenantId, List<Compte> comptes) {
+        if (comptes.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, byte[]> entrees = new LinkedHashMap<>();
+            for (Compte compte : comptes) {
+                byte[] json = objectMapper.writeValueAsBytes(compte);
+                entrees.put(CACHE_PREFIX + tenantId + ":" + compte.getKey().getId(), json);
+                if (compte.getNoCompte() != null) {
+                    entrees.put(CACHE_BY_NO_COMPTE_PREFIX + tenantId + ":" + compte.getNoCompte(), json);
+                }
+            }
+            long ttl = CACHE_COMPTE_TTL.toSeconds();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                entrees.forEach((key, json) -> connection.stringCommands().setEx(key.getBytes(StandardCharsets.UTF_8), ttl, json));
+                return null;
+            });
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("Mise en cache groupée des comptes impossible pour le tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    private static <K> Map<K, Compte> ordonner(List<K> demandes, Map<K, Compte> trouves) {
+        Map<K, Compte> resultat = new LinkedHashMap<>();
+        for (K demande : demandes) {
+            Compte compte = trouves.get(demande);
+            if (compte != null) {
+                resultat.put(demande, compte);
+            }
+        }
+        return resultat;
+    }
+}
@@ -3,18 +3,14 @@ package com.yowyob.erp.accounting.service;
 import com.yowyob.erp.config.tenant.TenantContext;
 import com.yowyob.erp.accounting.entity.DetailEcriture;
 import com.yowyob.erp.accounting.entity.JournalAudit;
-import com.yowyob.erp.accounting.entity.PlanComptable;
 import com.yowyob.erp.accounting.entityKey.DetailEcritureKey;
 import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
-import com.yowyob.erp.accounting.entityKey.PlanComptableKey;
 import com.yowyob.erp.accounting.repository.DetailEcritureRepository;
-import com.yowyob.erp.accounting.repository.JournalAuditRepository;
-import com.yowyob.erp.accounting.repository.PlanComptableRepository;
+import com.yowyob.erp.config.kafka.OutboxService;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,17 +24,15 @@ public class DetailEcritureService {
 
     private static final Logger logger = LoggerFactory.getLogger(DetailEcritureService.class);
     private final DetailEcritureRepository detailRepository;
-    private final PlanComptableRepository planComptableRepository;
-    private final JournalAuditRepository journalAuditRepository;
+    private final PlanComptableIndex planComptableIndex;
     private final Validator validator;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
 
-    public DetailEcritureService(DetailEcritureRepository detailRepository, PlanComptableRepository planComptableRepository, JournalAuditRepository journalAuditRepository, Validator validator, KafkaTemplate<String, Object> kafkaTemplate) {
+    public DetailEcritureService(DetailEcritureRepository detailRepository, PlanComptableIndex planComptableIndex, Validator validator, OutboxService outboxService) {
         this.detailRepository = detailRepository;
-        this.planComptableRepository = planComptableRepository;
-        this.journalAuditRepository = journalAuditRepository;
+        this.planComptableIndex = planComptableIndex;
         this.validator = validator;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxService = outboxService;
     }
 
     @Transactional
@@ -65,9 +59,9 @@ public class DetailEcritureService {
             detail.setMontantDebit(0.0);
         }
 
-        DetailEcriture savedDetail = detailRepository.save(detail);
+        outboxService.enregistrer(detail, outboxService.message(tenantId, "detail.ecriture.created", detail));
+        DetailEcriture savedDetail = detail;
         logAudit(tenantId, detail.getKey().getEcritureComptableId(), currentUser, "CREATE", "Created detail: " + savedDetail.getKey().getId());
-        kafkaTemplate.send("detail.ecriture.created", tenantId.toString(), savedDetail);
         logger.info("Détail d'écriture créé avec succès : {}", savedDetail.getKey().getId());
         return savedDetail;
     }
@@ -118,9 +112,9 @@ public class DetailEcritureService {
             updatedDetail.setMontantDebit(0.0);
         }
 
-        DetailEcriture savedDetail = detailRepository.save(updatedDetail);
+        outboxService.enregistrer(updatedDetail, outboxService.message(tenantId, "detail.ecriture.updated", updatedDetail));
+        DetailEcriture savedDetail = updatedDetail;
         logAudit(tenantId, ecritureComptableId, currentUser, "UPDATE", "Updated detail: " + detailId);
-        kafkaTemplate.send("detail.ecriture.updated", tenantId.toString(), savedDetail);
         logger.info("Détail d'écriture mis à jour avec succès : {}", detailId);
         return savedDetail;
     }
@@ -139,7 +133,7 @@ public class DetailEcritureService {
         }
         detailRepository.deleteById(key);
         logAudit(tenantId, ecritureComptableId, currentUser, "DELETE", "Deleted detail: " + detailId);
-        kafkaTemplate.send("detail.ecriture.deleted", tenantId.toString(), detailId);
+        outboxService.publier(outboxService.message(tenantId, "detail.ecriture.deleted", detailId));
         logger.info("Détail d'écriture supprimé avec succès : {}", detailId);
     }
 
@@ -148,15 +142,7 @@ public class DetailEcritureService {
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(violations);
         }
-        UUID tenantId = TenantContext.getCurrentTenant();
-        PlanComptableKey planKey = new PlanComptableKey();
-        planKey.setTenantId(tenantId);
-        planKey.setId(detail.getCompteComptableId());
-        PlanComptable plan = planComptableRepository.findByKey(planKey)
-                .orElseThrow(() -> new IllegalArgumentException("Plan comptable ID invalide : " + detail.getCompteComptableId()));
-        if (!plan.getActif()) {
-            throw new IllegalArgumentException("Compte inactif : " + plan.getNoCompte());
-        }
+        planComptableIndex.requireActiveAccount(TenantContext.getCurrentTenant(), detail.getCompteComptableId());
         if ("DEBIT".equals(detail.getSens()) && detail.getMontantDebit() <= 0) {
             throw new IllegalArgumentException("Montant débit doit être positif pour sens DEBIT");
         }
@@ -183,7 +169,6 @@ public class DetailEcritureService {
         audit.setAction(action);
         audit.setDetails(details);
         audit.setDateAction(LocalDateTime.now());
-        journalAuditRepository.save(audit);
-        kafkaTemplate.send("journal.audit.created", tenantId.toString(), audit);
+        outboxService.enregistrer(audit, outboxService.message(tenantId, "journal.audit.created", audit));
     }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.connection.ClosedConnectionException;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entity.EcritureNonValidee;
+import com.yowyob.erp.accounting.entity.EcritureParJournal;
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entity.OutboxMessage;
+import com.yowyob.erp.accounting.entityKey.DetailEcritureKey;
+import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.config.kafka.OutboxService;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Écrit une écriture comptable comme un agrégat : l'équilibre et les lignes sont contrôlés en mémoire,
+ * puis l'en-tête, ses entrées d'index (ecriture_par_journal, ecriture_non_validee), toutes les lignes,
+ * la ligne d'audit et l'événement EcriturePosted (outbox) partent dans un seul batch LOGGED, au lieu
+ * d'un aller-retour par ligne. Ces lignes vivent dans des tables et partitions différentes : c'est le
+ * batchlog qui garantit qu'elles sont toutes appliquées ou rejouées ensemble.
+ */
+@Component
+public class EcritureAggregateWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(EcritureAggregateWriter.class);
+
+    private final CassandraOperations cassandraOperations;
+    private final PlanComptableIndex planComptableIndex;
+    private final Validator validator;
+    private final OutboxService outboxService;
+    // Compatibilité : anciens messages par ligne (detail.ecriture.created) et par audit (audit.logs)
+    private final boolean evenementsParLigne;
+
+    public EcritureAggregateWriter(CassandraOperations cassandraOperations,
+                                   PlanComptableIndex planComptableIndex,
+                                   Validator validator,
+                                   OutboxService outboxService,
+                                   @Value("${app.kafka.evenements.compat-par-ligne:false}") boolean evenementsParLigne) {
+        this.cassandraOperations = cassandraOperations;
+        this.planComptableIndex = planComptableIndex;
+        this.validator = validator;
+        this.outboxService = outboxService;
+        this.evenementsParLigne = evenementsParLigne;
+    }
+
+    /**
+     * Complète et contrôle les lignes (compte actif, sens, montants) puis vérifie l'équilibre,
+     * sans aucune écriture.
+     */
+    public void validate(EcritureComptable ecriture, List<DetailEcriture> details) {
+        UUID tenantId = ecriture.getKey().getTenantId();
+        for (DetailEcriture detail : details) {
+            prepareLine(ecriture, detail);
+            var violations = validator.validate(detail);
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException(violations);
+            }
+            planComptableIndex.requireActiveAccount(tenantId, detail.getCompteComptableId());
+            if ("DEBIT".equals(detail.getSens())) {
+                if (detail.getMontantDebit() <= 0) {
+                    throw new IllegalArgumentException("Montant débit doit être positif pour sens DEBIT");
+                }
+                detail.setMontantCredit(0.0);
+            } else {
+                if (detail.getMontantCredit() <= 0) {
+                    throw new IllegalArgumentException("Montant crédit doit être positif pour sens CREDIT");
+                }
+                detail.setMontantDebit(0.0);
+            }
+        }
+        double totalDebit = details.stream().mapToDouble(DetailEcriture::getMontantDebit).sum();
+        double totalCredit = details.stream().mapToDouble(DetailEcriture::getMontantCredit).sum();
+        if (Math.abs(totalDebit - totalCredit) > 0.01) {
+            throw new IllegalStateException("Ecriture comptable unbalanced: debit=" + totalDebit + ", credit=" + totalCredit);
+        }
+    }
+
+    /**
+     * Persiste l'en-tête, les lignes, l'audit et l'événement EcriturePosted en un seul batch ;
+     * l'événement est publié ensuite par le relais de l'outbox. L'écriture doit avoir été contrôlée
+     * par validate : elle n'est pas revalidée ici.
+     */
+    public EcritureComptable write(EcritureComptable ecriture, List<DetailEcriture> details,
+                                   String utilisateur, String action, String auditDetails) {
+        UUID tenantId = ecriture.getKey().getTenantId();
+        JournalAudit audit = buildAudit(tenantId, ecriture.getKey().getId(), utilisateur, action, auditDetails);
+        List<OutboxMessage> evenements = evenements(ecriture, details, utilisateur, action);
+        if (evenementsParLigne) {
+            evenements.add(outboxService.auditLog(audit, tenantId, action));
+        }
+
+        cassandraOperations.batchOps(DefaultBatchType.LOGGED)
+                .insert(ecriture)
+                .insert(index(ecriture))
+                .insert(details)
+                .insert(audit)
+                .insert(evenements)
+                .execute();
+        logger.info("Ecriture {} persisted with {} lines in one batch for tenant {}",
+                ecriture.getKey().getId(), details.size(), tenantId);
+        return ecriture;
+    }
+
+    /**
+     * Entrées des index de l'écriture (par journal, non validées), écrites dans son batch pour
+     * qu'elle figure dans chacun.
+     */
+    public List<Object> index(EcritureComptable ecriture) {
+        List<Object> entrees = new ArrayList<>(2);
+        if (ecriture.getJournalComptableId() != null) {
+            entrees.add(EcritureParJournal.of(ecriture));
+        }
+        if (!Boolean.TRUE.equals(ecriture.getValidee())) {
+            entrees.add(EcritureNonValidee.of(ecriture));
+        }
+        return entrees;
+    }
+
+    /**
+     * Indique si l'échec d'un batch laisse son issue incertaine : délai dépassé ou connexion coupée
+     * après l'envoi. Un batch LOGGED parvenu au coordinateur est rejoué depuis le batchlog, l'écriture
+     * peut donc exister malgré l'exception ; son numéro ne doit pas être réattribué.
+     */
+    public static boolean issueIncertaine(Throwable erreur) {
+        for (Throwable cause = erreur; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof WriteTimeoutException
+                    || cause instanceof DriverTimeoutException || cause instanceof ClosedConnectionException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Événements d'une écriture enregistrée : un seul EcriturePosted (en-tête et lignes) ; les
+     * messages par ligne detail.ecriture.created ne sont ajoutés qu'en mode compatibilité.
+     */
+    public List<OutboxMessage> evenements(EcritureComptable ecriture, List<DetailEcriture> details,
+                                          String utilisateur, String action) {
+        UUID tenantId = ecriture.getKey().getTenantId();
+        List<OutboxMessage> evenements = new ArrayList<>(evenementsParLigne ? details.size() + 2 : 1);
+        evenements.add(outboxService.accountingEntry(EcriturePosted.of(ecriture, details, utilisateur, action),
+                tenantId, AppConstants.KafkaEvents.ECRITURE_POSTED));
+        if (evenementsParLigne) {
+            details.forEach(detail -> evenements.add(outboxService.message(tenantId, "detail.ecriture.created", detail)));
+        }
+        return evenements;
+    }
+
+    private void prepareLine(EcritureComptable ecriture, DetailEcriture detail) {
+        DetailEcritureKey key = detail.getKey() != null ? detail.getKey() : new DetailEcritureKey();
+        key.setTenantId(ecriture.getKey().getTenantId());
+        key.setEcritureComptableId(ecriture.getKey().getId());
+        if (key.getId() == null) {
+            key.setId(UUID.randomUUID());
+        }
+        detail.setKey(key);
+        if (detail.getSens() != null) {
+            detail.setSens(detail.getSens().trim());
+        }
+        if (detail.getLibelle() == null) {
+            detail.setLibelle(ecriture.getLibelle());
+        }
+        if (detail.getMontantDebit() == null) {
+            detail.setMontantDebit(0.0);
+        }
+        if (detail.getMontantCredit() == null) {
+            detail.setMontantCredit(0.0);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (detail.getDateEcriture() == null) {
+            detail.setDateEcriture(now);
+        }
+        if (detail.getCreatedAt() == null) {
+            detail.setCreatedAt(now);
+            detail.setCreatedBy(ecriture.getCreatedBy());
+        }
+        detail.setUpdatedAt(now);
+        detail.setUpdatedBy(ecriture.getUpdatedBy());
+    }
+
+    private JournalAudit buildAudit(UUID tenantId, UUID ecritureComptableId, String utilisateur, String action, String details) {
+        JournalAudit audit = new JournalAudit();
+        JournalAuditKey auditKey = new JournalAuditKey();
+        auditKey.setTenantId(tenantId);
+        auditKey.setId(UUID.randomUUID());
+        audit.setKey(auditKey);
+        audit.setEcritureComptableId(ecritureComptableId);
+        audit.setUtilisateur(utilisateur != null ? utilisateur : "system");
+        audit.setAction(action);
+        audit.setDetails(details);
+        audit.setDateAction(LocalDateTime.now());
+        return audit;
+    }
+}
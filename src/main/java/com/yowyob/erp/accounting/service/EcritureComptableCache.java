@@ -0,0 +1,412 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import com.yowyob.erp.config.redis.RedisCodecs;
+import com.yowyob.erp.config.redis.RedisValueCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cache Redis fin des écritures : une clé par écriture (en-tête sans lignes) et, par tenant,
+ * deux index triés par date (toutes les écritures, écritures non validées) dont les membres sont
+ * "date|id". Les écritures mettent à jour ces structures sur place par un script Lua, en pipeline
+ * pour les lots, au lieu de supprimer des listes entières.
+ * Les index ne servent les lectures qu'une fois complets (reconstruits en tâche de fond, par un seul
+ * nœud à la fois, et rafraîchis avant leur expiration).
+ * <p>
+ * Chaque entrée a une clé de version (updatedAt de l'écriture) ; une suppression y laisse une pierre
+ * tombale. Les valeurs relues dans Cassandra (reconstruction, entrées expirées) ne sont écrites que si
+ * elles ne sont pas plus anciennes que la version en cache ni supprimées depuis leur lecture.
+ * Les entrées sont encodées au format configuré pour le cache {@value #CACHE}.
+ */
+@Component
+public class EcritureComptableCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EcritureComptableCache.class);
+
+    static final String CACHE = "ecritures";
+
+    private static final Duration TTL_ENTREE = Duration.ofHours(1);
+    // Passé ce délai l'index est reconstruit, ce qui rattrape d'éventuelles mises à jour perdues
+    private static final Duration TTL_INDEX_COMPLET = Duration.ofHours(24);
+    private static final Duration DUREE_MAX_RECONSTRUCTION = Duration.ofMinutes(10);
+    // Préfixe distinguant un curseur Redis d'un paging state Cassandra (absent de l'alphabet base64url)
+    private static final String PREFIXE_CURSEUR = "r.";
+
+    private static final String PIERRE_TOMBALE = "-";
+
+    // KEYS : entrée, index par date, index non validées, version ;
+    // ARGV : valeur, ttl, membre, validée (1/0), version, conditionnel (1/0)
+    private static final RedisScript<Long> SCRIPT_UPSERT = RedisScript.of(
+            "local v = redis.call('GET', KEYS[4]) "
+                    + "if v == '" + PIERRE_TOMBALE + "' then return 0 end "
+                    + "if ARGV[6] == '1' and v and tonumber(v) > tonumber(ARGV[5]) then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+                    + "redis.call('SET', KEYS[4], ARGV[5], 'EX', ARGV[2]) "
+                    + "redis.call('ZADD', KEYS[2], 0, ARGV[3]) "
+                    + "if ARGV[4] == '1' then redis.call('ZREM', KEYS[3], ARGV[3]) "
+                    + "else redis.call('ZADD', KEYS[3], 0, ARGV[3]) end "
+                    + "return 1", Long.class);
+    // KEYS : entrée, index par date, index non validées, version ; ARGV : membre, ttl
+    private static final RedisScript<Long> SCRIPT_REMOVE = RedisScript.of(
+            "redis.call('DEL', KEYS[1]) "
+                    + "redis.call('SET', KEYS[4], '" + PIERRE_TOMBALE + "', 'EX', ARGV[2]) "
+                    + "redis.call('ZREM', KEYS[2], ARGV[1]) "
+                    + "redis.call('ZREM', KEYS[3], ARGV[1]) "
+                    + "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisValueCodec codec;
+    private final RedisCacheLoader cacheLoader;
+    private final Map<UUID, Reconstruction> reconstructionsEnCours = new ConcurrentHashMap<>();
+
+    public EcritureComptableCache(StringRedisTemplate redisTemplate, RedisCodecs codecs, RedisCacheLoader cacheLoader) {
+        this.redisTemplate = redisTemplate;
+        this.codec = codecs.codec(CACHE);
+        this.cacheLoader = cacheLoader;
+    }
+
+    /**
+     * Ajoute ou met à jour les écritures et leur position dans les index, en un seul aller-retour,
+     * après leur écriture dans Cassandra.
+     * En cas d'échec l'index est déclaré incomplet (il sera reconstruit) et faux est retourné.
+     */
+    public boolean upsert(UUID tenantId, List<EcritureComptableDto> ecritures) {
+        return ecrire(tenantId, ecritures, false);
+    }
+
+    /**
+     * Comme upsert, pour des écritures relues dans Cassandra : une entrée mise à jour ou supprimée
+     * depuis la lecture n'est pas écrasée.
+     */
+    public boolean completer(UUID tenantId, List<EcritureComptableDto> ecritures) {
+        return ecrire(tenantId, ecritures, true);
+    }
+
+    private boolean ecrire(UUID tenantId, List<EcritureComptableDto> ecritures, boolean conditionnel) {
+        if (ecritures.isEmpty()) {
+            return true;
+        }
+        try {
+            byte[] ttl = bytes(Long.toString(TTL_ENTREE.toSeconds()));
+            byte[] modeConditionnel = bytes(conditionnel ? "1" : "0");
+            List<byte[][]> appels = new ArrayList<>(ecritures.size());
+            for (EcritureComptableDto ecriture : ecritures) {
+                appels.add(new byte[][]{
+                        bytes(entryKey(tenantId, ecriture.getId())),
+                        bytes(indexKey(tenantId)),
+                        bytes(nonValideesKey(tenantId)),
+                        bytes(versionKey(tenantId, ecriture.getId())),
+                        codec.encoder(ecriture),
+                        ttl,
+                        bytes(membre(ecriture)),
+                        bytes(Boolean.TRUE.equals(ecriture.getValidee()) ? "1" : "0"),
+                        bytes(Long.toString(version(ecriture))),
+                        modeConditionnel});
+            }
+            executerEnPipeline(SCRIPT_UPSERT, appels);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Mise à jour du cache des écritures impossible pour le tenant {}: {}", tenantId, e.getMessage());
+            invaliderIndex(tenantId);
+            return false;
+        }
+    }
+
+    public boolean upsert(UUID tenantId, EcritureComptableDto ecriture) {
+        return upsert(tenantId, List.of(ecriture));
+    }
+
+    public void remove(UUID tenantId, UUID ecritureId, LocalDate dateEcriture) {
+        try {
+            executerEnPipeline(SCRIPT_REMOVE, List.<byte[][]>of(new byte[][]{
+                    bytes(entryKey(tenantId, ecritureId)),
+                    bytes(indexKey(tenantId)),
+                    bytes(nonValideesKey(tenantId)),
+                    bytes(versionKey(tenantId, ecritureId)),
+                    bytes(dateEcriture + "|" + ecritureId),
+                    bytes(Long.toString(TTL_ENTREE.toSeconds()))}));
+        } catch (RuntimeException e) {
+            logger.warn("Suppression du cache de l'écriture {} impossible pour le tenant {}: {}", ecritureId, tenantId, e.getMessage());
+            invaliderIndex(tenantId);
+        }
+    }
+
+    /**
+     * État de l'index du tenant. Un index complet proche de son expiration est signalé à rafraîchir,
+     * avec une probabilité qui dépend de la durée de sa dernière reconstruction.
+     */
+    public EtatIndex etatIndex(UUID tenantId) {
+        byte[] key = bytes(indexCompletKey(tenantId));
+        try {
+            List<Object> resultats = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().get(key);
+                connection.keyCommands().pTtl(key);
+                return null;
+            });
+            if (resultats.get(0) == null) {
+                return EtatIndex.ABSENT;
+            }
+            RedisCacheLoader.Entree entree = RedisCacheLoader.deballer((String) resultats.get(0));
+            long ttlRestant = resultats.get(1) instanceof Long ttl ? ttl : -1;
+            return entree != null && cacheLoader.doitRafraichir(entree.dureeChargementMillis(), ttlRestant)
+                    ? EtatIndex.A_RAFRAICHIR
+                    : EtatIndex.COMPLET;
+        } catch (RuntimeException e) {
+            logger.warn("Cache des écritures indisponible pour le tenant {}: {}", tenantId, e.getMessage());
+            return EtatIndex.ABSENT;
+        }
+    }
+
+    public static boolean isCurseurCache(String cursor) {
+        return cursor != null && cursor.startsWith(PREFIXE_CURSEUR);
+    }
+
+    /**
+     * Curseur de position : dernière écriture servie, sous la forme d'un membre d'index "date|id".
+     */
+    public static String curseur(LocalDate dateEcriture, UUID ecritureId) {
+        return curseur(dateEcriture + "|" + ecritureId);
+    }
+
+    private static String curseur(String membre) {
+        return PREFIXE_CURSEUR + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes(membre));
+    }
+
+    /**
+     * Position portée par un curseur Redis, pour poursuivre la pagination dans Cassandra quand l'index
+     * ne sert plus les lectures. L'ordre des membres "date|id" est celui des colonnes de clustering
+     * (date_ecriture, id) : UUID aléatoires, comparés octet par octet comme leur forme hexadécimale.
+     */
+    public static Position position(String cursor) {
+        String membre = decoderCurseur(cursor);
+        int separateur = membre.indexOf('|');
+        try {
+            return new Position(LocalDate.parse(membre.substring(0, separateur)), UUID.fromString(membre.substring(separateur + 1)));
+        } catch (RuntimeException e) {
+            throw new BusinessException("Curseur de pagination invalide");
+        }
+    }
+
+    /**
+     * Réserve la reconstruction de l'index du tenant pour l'appelant ; faux si une autre est en cours
+     * sur ce nœud ou sur un autre (bail Redis). Une réservation locale plus ancienne que le délai maximal
+     * est considérée comme abandonnée.
+     */
+    public boolean demarrerReconstruction(UUID tenantId) {
+        Instant maintenant = Instant.now();
+        Reconstruction precedente = reconstructionsEnCours.putIfAbsent(tenantId, new Reconstruction(maintenant, null));
+        if (precedente != null && (precedente.debut().isAfter(maintenant.minus(DUREE_MAX_RECONSTRUCTION))
+                || !reconstructionsEnCours.replace(tenantId, precedente, new Reconstruction(maintenant, null)))) {
+            return false;
+        }
+        String bail = cacheLoader.acquerirBail(bailKey(tenantId), DUREE_MAX_RECONSTRUCTION);
+        if (bail == null) {
+            reconstructionsEnCours.remove(tenantId);
+            return false;
+        }
+        reconstructionsEnCours.put(tenantId, new Reconstruction(maintenant, bail));
+        return true;
+    }
+
+    public void terminerReconstruction(UUID tenantId, boolean complet) {
+        Reconstruction reconstruction = reconstructionsEnCours.get(tenantId);
+        try {
+            if (complet) {
+                long duree = reconstruction == null ? 1
+                        : Math.max(1, Duration.between(reconstruction.debut(), Instant.now()).toMillis());
+                redisTemplate.opsForValue().set(indexCompletKey(tenantId),
+                        RedisCacheLoader.envelopper(duree, "1"), TTL_INDEX_COMPLET);
+                logger.info("Index des écritures reconstruit pour le tenant {} en {} ms", tenantId, duree);
+            }
+        } finally {
+            reconstructionsEnCours.remove(tenantId);
+            if (reconstruction != null) {
+                cacheLoader.libererBail(bailKey(tenantId), reconstruction.bail());
+            }
+        }
+    }
+
+    /**
+     * Page d'écritures servie depuis l'index par date. Les entrées expirées sont relues via le loader
+     * (par ids) puis remises en cache ; les ids introuvables sont retirés des index.
+     */
+    public CursorPage<EcritureComptableDto> page(UUID tenantId, boolean nonValidees, String cursor, int size,
+                                                 boolean ordreCroissant,
+                                                 Function<List<UUID>, List<EcritureComptableDto>> loader) {
+        String key = nonValidees ? nonValideesKey(tenantId) : indexKey(tenantId);
+        String dernier = cursor == null ? null : decoderCurseur(cursor);
+        Limit limit = Limit.limit().count(size + 1);
+        Set<String> membres = ordreCroissant
+                ? redisTemplate.opsForZSet().rangeByLex(key,
+                        dernier == null ? Range.unbounded() : Range.rightUnbounded(Range.Bound.exclusive(dernier)), limit)
+                : redisTemplate.opsForZSet().reverseRangeByLex(key,
+                        dernier == null ? Range.unbounded() : Range.leftUnbounded(Range.Bound.exclusive(dernier)), limit);
+        List<String> ordonnes = membres == null ? List.of() : new ArrayList<>(membres);
+        boolean hasNext = ordonnes.size() > size;
+        if (hasNext) {
+            ordonnes = ordonnes.subList(0, size);
+        }
+
+        List<UUID> ids = ordonnes.stream().map(m -> UUID.fromString(m.substring(m.indexOf('|') + 1))).collect(Collectors.toList());
+        byte[][] cles = ids.stream().map(id -> bytes(entryKey(tenantId, id))).toArray(byte[][]::new);
+        List<byte[]> valeurs = ids.isEmpty() ? List.of()
+                : redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(cles));
+        Map<UUID, EcritureComptableDto> trouvees = new HashMap<>();
+        List<UUID> manquantes = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            byte[] valeur = valeurs == null ? null : valeurs.get(i);
+            EcritureComptableDto dto = valeur == null ? null : lire(valeur);
+            if (dto != null) {
+                trouvees.put(ids.get(i), dto);
+            } else {
+                manquantes.add(ids.get(i));
+            }
+        }
+        if (!manquantes.isEmpty()) {
+            List<EcritureComptableDto> relues = loader.apply(manquantes);
+            relues.forEach(dto -> trouvees.put(dto.getId(), dto));
+            completer(tenantId, relues);
+            for (int i = 0; i < ids.size(); i++) {
+                if (!trouvees.containsKey(ids.get(i))) {
+                    // Écriture supprimée entre-temps : on nettoie les index
+                    String membre = ordonnes.get(i);
+                    redisTemplate.opsForZSet().remove(indexKey(tenantId), membre);
+                    redisTemplate.opsForZSet().remove(nonValideesKey(tenantId), membre);
+                }
+            }
+        }
+
+        List<EcritureComptableDto> content = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            EcritureComptableDto dto = trouvees.get(ids.get(i));
+            if (dto != null && nonValidees && Boolean.TRUE.equals(dto.getValidee())) {
+                // Validée pendant une reconstruction concurrente : retirée de l'index des non validées
+                redisTemplate.opsForZSet().remove(key, ordonnes.get(i));
+            } else if (dto != null) {
+                content.add(dto);
+            }
+        }
+        String nextCursor = hasNext && !ordonnes.isEmpty() ? curseur(ordonnes.get(ordonnes.size() - 1)) : null;
+        return CursorPage.<EcritureComptableDto>builder()
+                .content(content)
+                .size(content.size())
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+    }
+
+    private static String decoderCurseur(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor.substring(PREFIXE_CURSEUR.length())), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Curseur de pagination invalide");
+        }
+    }
+
+    private void executerEnPipeline(RedisScript<Long> script, List<byte[][]> appels) {
+        byte[] source = bytes(script.getScriptAsString());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // SCRIPT LOAD dans le même pipeline : le script est connu du serveur avant les EVALSHA qui suivent
+            connection.scriptingCommands().scriptLoad(source);
+            for (byte[][] appel : appels) {
+                connection.scriptingCommands().evalSha(script.getSha1(), ReturnType.INTEGER, 4, appel);
+            }
+            return null;
+        });
+    }
+
+    private void invaliderIndex(UUID tenantId) {
+        try {
+            redisTemplate.delete(indexCompletKey(tenantId));
+        } catch (RuntimeException e) {
+            logger.warn("Invalidation de l'index des écritures impossible pour le tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    private EcritureComptableDto lire(byte[] valeur) {
+        try {
+            return codec.decoder(valeur, EcritureComptableDto.class);
+        } catch (SerializationException e) {
+            logger.warn("Entrée de cache d'écriture illisible : {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Version d'une écriture : date de dernière mise à jour, en millisecondes UTC
+    private static long version(EcritureComptableDto ecriture) {
+        return ecriture.getUpdatedAt() == null ? 0 : ecriture.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static String membre(EcritureComptableDto ecriture) {
+        return ecriture.getDateEcriture() + "|" + ecriture.getId();
+    }
+
+    private static byte[] bytes(String valeur) {
+        return valeur.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String entryKey(UUID tenantId, UUID ecritureId) {
+        return "ecriture:" + tenantId + ":" + ecritureId;
+    }
+
+    private static String versionKey(UUID tenantId, UUID ecritureId) {
+        return "ecriture-version:" + tenantId + ":" + ecritureId;
+    }
+
+    private static String indexKey(UUID tenantId) {
+        return "ecritures:par-date:" + tenantId;
+    }
+
+    private static String nonValideesKey(UUID tenantId) {
+        return "ecritures:non-validees:" + tenantId;
+    }
+
+    private static String indexCompletKey(UUID tenantId) {
+        return "ecritures:index-complet:" + tenantId;
+    }
+
+    private static String bailKey(UUID tenantId) {
+        return "ecritures:index-reconstruction:" + tenantId;
+    }
+
+    public enum EtatIndex {
+        ABSENT,
+        COMPLET,
+        // Complet, mais à reconstruire en tâche de fond avant son expiration
+        A_RAFRAICHIR
+    }
+
+    private record Reconstruction(Instant debut, String bail) {
+    }
+
+    public record Position(LocalDate dateEcriture, UUID id) {
+    }
+}
@@ -1,7 +1,12 @@
 package com.yowyob.erp.accounting.service;
 
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.EcritureBatchResultDto;
 import com.yowyob.erp.accounting.dto.EcritureComptableDto;
 import com.yowyob.erp.accounting.dto.PeriodeComptableDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
 import com.yowyob.erp.accounting.dto.DetailEcritureDto;
 import com.yowyob.erp.accounting.dto.JournalComptableDto;
 import com.yowyob.erp.accounting.entity.*;
@@ -9,75 +14,131 @@ import com.yowyob.erp.accounting.entityKey.DetailEcritureKey;
 import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
 import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
 import com.yowyob.erp.accounting.repository.*;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.CursorPage;
 import com.yowyob.erp.common.entity.ComptableObject;
+import com.yowyob.erp.common.enums.SourceType;
 import com.yowyob.erp.common.exception.BusinessException;
 import com.yowyob.erp.common.exception.ResourceNotFoundException;
+import com.yowyob.erp.common.util.CursorUtils;
 import com.yowyob.erp.config.tenant.TenantContext;
-import com.yowyob.erp.config.kafka.KafkaMessageService;
+import com.yowyob.erp.config.kafka.OutboxService;
+import com.yowyob.erp.config.redis.RedisService;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.cassandra.core.CassandraBatchOperations;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class EcritureComptableService {
 
     private static final Logger logger = LoggerFactory.getLogger(EcritureComptableService.class);
-    private static final String CACHE_ALL_ECRITURES = "ecritures:all:";
-    private static final String CACHE_NON_VALIDATED_ECRITURES = "ecritures:nonvalidated:";
-    private static final String CACHE_SEARCH_ECRITURES = "ecritures:search:";
+    // Taille maximale d'un lot
+    private static final int MAX_BATCH_SIZE = 5000;
+    // Ids relus par requête IN sur la partition du tenant
+    private static final int TAILLE_LOT_IDS = 100;
 
     private final EcritureComptableRepository ecritureRepository;
+    private final EcritureNonValideeRepository ecritureNonValideeRepository;
+    private final EcritureParJournalRepository ecritureParJournalRepository;
     private final OperationComptableRepository operationComptableRepository;
     private final TransactionRepository transactionRepository;
     private final DetailEcritureService detailEcritureService;
-    private final PlanComptableRepository planComptableRepository;
+    private final PlanComptableIndex planComptableIndex;
     private final JournalComptableService journalComptableService;
     private final PeriodeComptableService periodeComptableService;
-    private final JournalAuditRepository journalAuditRepository;
     private final Validator validator;
-    private final KafkaMessageService kafkaMessageService;
-    private final KafkaOperations<String, Object> kafkaOperations;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final OutboxService outboxService;
+    private final CassandraOperations cassandraOperations;
+    private final ObjectMapper objectMapper;
+    private final EcritureAggregateWriter ecritureAggregateWriter;
+    private final NumerotationEcritureService numerotationEcritureService;
+    private final EcritureSourceService ecritureSourceService;
+    private final ParametresFacture parametresFacture;
+    private final ProjectionEcritureService projectionEcritureService;
+    private final EcritureComptableCache ecritureComptableCache;
+    private final EcritureSearchCache ecritureSearchCache;
+    private final Executor taskExecutor;
+    private final RedisService redisService;
 
     @Autowired
     public EcritureComptableService(EcritureComptableRepository ecritureRepository,
+                                    EcritureNonValideeRepository ecritureNonValideeRepository,
+                                    EcritureParJournalRepository ecritureParJournalRepository,
                                     OperationComptableRepository operationComptableRepository,
                                     TransactionRepository transactionRepository,
                                     DetailEcritureService detailEcritureService,
-                                    PlanComptableRepository planComptableRepository,
+                                    PlanComptableIndex planComptableIndex,
                                     JournalComptableService journalComptableService,
                                     PeriodeComptableService periodeComptableService,
-                                    JournalAuditRepository journalAuditRepository,
                                     Validator validator,
-                                    KafkaMessageService kafkaMessageService,
-                                    KafkaOperations<String, Object> kafkaOperations,
-                                    RedisTemplate<String, Object> redisTemplate) {
+                                    OutboxService outboxService,
+                                    CassandraOperations cassandraOperations,
+                                    ObjectMapper objectMapper,
+                                    EcritureAggregateWriter ecritureAggregateWriter,
+                                    NumerotationEcritureService numerotationEcritureService,
+                                    EcritureSourceService ecritureSourceService,
+                                    ParametresFacture parametresFacture,
+                                    ProjectionEcritureService projectionEcritureService,
+                                    EcritureComptableCache ecritureComptableCache,
+                                    EcritureSearchCache ecritureSearchCache,
+                                    @Qualifier("taskExecutor") Executor taskExecutor,
+                                    RedisService redisService) {
         this.ecritureRepository = ecritureRepository;
+        this.ecritureNonValideeRepository = ecritureNonValideeRepository;
+        this.ecritureParJournalRepository = ecritureParJournalRepository;
         this.operationComptableRepository = operationComptableRepository;
         this.transactionRepository = transactionRepository;
         this.detailEcritureService = detailEcritureService;
-        this.planComptableRepository = planComptableRepository;
+        this.planComptableIndex = planComptableIndex;
         this.journalComptableService = journalComptableService;
         this.periodeComptableService = periodeComptableService;
-        this.journalAuditRepository = journalAuditRepository;
         this.validator = validator;
-        this.kafkaMessageService = kafkaMessageService;
-        this.kafkaOperations = kafkaOperations;
-        this.redisTemplate = redisTemplate;
+        this.outboxService = outboxService;
+        this.cassandraOperations = cassandraOperations;
+        this.objectMapper = objectMapper;
+        this.ecritureAggregateWriter = ecritureAggregateWriter;
+        this.numerotationEcritureService = numerotationEcritureService;
+        this.ecritureSourceService = ecritureSourceService;
+        this.parametresFacture = parametresFacture;
+        this.projectionEcritureService = projectionEcritureService;
+        this.ecritureComptableCache = ecritureComptableCache;
+        this.ecritureSearchCache = ecritureSearchCache;
+        this.taskExecutor = taskExecutor;
+        this.redisService = redisService;
     }
 
     @Transactional
@@ -92,7 +153,7 @@ public class EcritureComptableService {
         validateEcritureDto(ecritureDto);
 
         //Recuperation du journal comptable 
-        journalComptableService.getJournalComptable(ecritureDto.getJournalComptableId())
+        JournalComptableDto journal = journalComptableService.getActiveJournalComptable(ecritureDto.getJournalComptableId())
                 .filter(JournalComptableDto::getActif)
                 .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + ecritureDto.getJournalComptableId()));
 
@@ -101,25 +162,269 @@ public class EcritureComptableService {
                 .filter(p -> !p.getCloturee())
                 .orElseThrow(() -> new IllegalArgumentException("Période comptable invalide ou clôturée : " + ecritureDto.getPeriodeComptableId()));
 
-        EcritureComptable ecriture = mapToEntity(ecritureDto, tenantId);
+        EcritureComptable ecriture = buildEcriture(ecritureDto, tenantId, currentUser);
+        List<DetailEcriture> details = buildDetails(ecritureDto, ecriture);
+        ecritureAggregateWriter.validate(ecriture, details);
+        checkTotals(ecritureDto, details);
+
+        // En-tête, lignes et audit écrits en un seul batch après contrôle de l'équilibre en mémoire
+        EcritureComptable saved = writeNumbered(ecriture, details, journal, periode, currentUser, "Created ecriture: ");
+        EcritureComptableDto created = mapToDto(saved);
+        // Mis en cache sans ses lignes (sérialisé avant leur ajout)
+        updateCaches(tenantId, List.of(created));
+        created.setDetailsEcriture(details.stream().map(this::mapToDetailEcritureDto).collect(Collectors.toList()));
+        return created;
+    }
+
+    /**
+     * Crée un lot d'écritures : journaux et périodes sont contrôlés une seule fois par lot,
+     * chaque écriture (en-tête, lignes, événement) est écrite en un batch LOGGED mono-partition,
+     * et un seul audit / événement Kafka est émis pour tout le lot.
+     * Une écriture invalide est rejetée sans faire échouer les autres.
+     */
+    @Transactional
+    public EcritureBatchResultDto createEcrituresBatch(List<EcritureComptableDto> ecritureDtos) {
+        return processBatch(ecritureDtos != null ? ecritureDtos : List.of(), Map.of());
+    }
+
+    /**
+     * Variante NDJSON : une écriture JSON par ligne. Une ligne illisible est rejetée à son index.
+     */
+    @Transactional
+    public EcritureBatchResultDto createEcrituresBatchFromNdjson(InputStream ndjson) throws IOException {
+        List<EcritureComptableDto> ecritureDtos = new ArrayList<>();
+        Map<Integer, String> rejected = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (ecritureDtos.size() >= MAX_BATCH_SIZE) {
+                    throw new BusinessException("Le lot dépasse la taille maximale de " + MAX_BATCH_SIZE + " écritures");
+                }
+                try {
+                    ecritureDtos.add(objectMapper.readValue(line, EcritureComptableDto.class));
+                } catch (JsonProcessingException e) {
+                    rejected.put(ecritureDtos.size(), "JSON invalide : " + e.getOriginalMessage());
+                    ecritureDtos.add(null);
+                }
+            }
+        }
+        return processBatch(ecritureDtos, rejected);
+    }
+
+    private EcritureBatchResultDto processBatch(List<EcritureComptableDto> ecritureDtos, Map<Integer, String> rejected) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        String currentUser = TenantContext.getCurrentUser();
+        if (ecritureDtos.size() > MAX_BATCH_SIZE) {
+            throw new BusinessException("Le lot dépasse la taille maximale de " + MAX_BATCH_SIZE + " écritures");
+        }
+        logger.info("Creating batch of {} ecritures for tenant: {}", ecritureDtos.size(), tenantId);
+
+        // Contrôles mutualisés pour tout le lot
+        Map<UUID, Optional<JournalComptableDto>> journauxActifs = new HashMap<>();
+        Map<UUID, Optional<PeriodeComptableDto>> periodesOuvertes = new HashMap<>();
+
+        EcritureBatchResultDto.EntryResult[] results = new EcritureBatchResultDto.EntryResult[ecritureDtos.size()];
+        List<BatchEntry> prepared = new ArrayList<>();
+        for (int i = 0; i < ecritureDtos.size(); i++) {
+            EcritureComptableDto dto = ecritureDtos.get(i);
+            if (dto == null || rejected.containsKey(i)) {
+                results[i] = batchFailure(i, dto, rejected.getOrDefault(i, "Écriture vide"));
+                continue;
+            }
+            try {
+                prepared.add(prepareBatchEntry(i, dto, tenantId, currentUser, journauxActifs, periodesOuvertes));
+            } catch (ConstraintViolationException e) {
+                results[i] = batchFailure(i, dto, "Données invalides : " + e.getConstraintViolations().stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .collect(Collectors.joining(", ")));
+            } catch (RuntimeException e) {
+                results[i] = batchFailure(i, dto, e.getMessage());
+            }
+        }
+
+        List<UUID> createdIds = new ArrayList<>();
+        List<EcritureComptableDto> created = new ArrayList<>();
+        for (BatchEntry entry : prepared) {
+            try {
+                writeBatchEntry(entry);
+                createdIds.add(entry.ecriture().getKey().getId());
+                created.add(mapToDto(entry.ecriture()));
+                results[entry.index()] = batchSuccess(entry.index(), entry.ecriture());
+            } catch (RuntimeException e) {
+                logger.error("Failed to write ecriture {} of batch for tenant {}: {}", entry.index(), tenantId, e.getMessage());
+                rendreNumeroApresEchec(entry.ecriture(), entry.numero(), e);
+                results[entry.index()] = batchFailure(entry.index(), entry.dto(), "Échec d'enregistrement : " + e.getMessage());
+            }
+        }
+
+        if (!createdIds.isEmpty()) {
+            // Tout le lot entre dans le cache en un seul pipeline
+            updateCaches(tenantId, created);
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("count", createdIds.size());
+            event.put("ecritureIds", createdIds);
+            logAuditAndSendKafka(tenantId, null, currentUser, "CREATE_BATCH",
+                    "Created " + createdIds.size() + " ecritures in batch",
+                    outboxService.accountingEntry(event, tenantId, AppConstants.KafkaEvents.ACCOUNTING_ENTRIES_BATCH_CREATED));
+        }
+
+        List<EcritureBatchResultDto.EntryResult> resultList = Arrays.asList(results);
+        int succeeded = (int) resultList.stream().filter(EcritureBatchResultDto.EntryResult::isSuccess).count();
+        logger.info("Batch processed for tenant {}: {} created, {} rejected", tenantId, succeeded, resultList.size() - succeeded);
+        return EcritureBatchResultDto.builder()
+                .total(resultList.size())
+                .succeeded(succeeded)
+                .failed(resultList.size() - succeeded)
+                .results(resultList)
+                .build();
+    }
+
+    private BatchEntry prepareBatchEntry(int index, EcritureComptableDto dto, UUID tenantId, String currentUser,
+                                         Map<UUID, Optional<JournalComptableDto>> journauxActifs,
+                                         Map<UUID, Optional<PeriodeComptableDto>> periodesOuvertes) {
+        validateEcritureDto(dto);
+
+        JournalComptableDto journal = journauxActifs.computeIfAbsent(dto.getJournalComptableId(),
+                        id -> journalComptableService.getActiveJournalComptable(id).filter(JournalComptableDto::getActif))
+                .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + dto.getJournalComptableId()));
+        PeriodeComptableDto periode = periodesOuvertes.computeIfAbsent(dto.getPeriodeComptableId(),
+                        id -> periodeComptableService.getPeriodeComptable(id).filter(p -> !p.getCloturee()))
+                .orElseThrow(() -> new IllegalArgumentException("Période comptable invalide ou clôturée : " + dto.getPeriodeComptableId()));
+
+        EcritureComptable ecriture = buildEcriture(dto, tenantId, currentUser);
+        List<DetailEcriture> details = buildDetails(dto, ecriture);
+        ecritureAggregateWriter.validate(ecriture, details);
+        checkTotals(dto, details);
+        // Numéro attribué une fois l'écriture validée, rendu si son batch échoue
+        long numero = assignerNumero(ecriture, journal, periode);
+        return new BatchEntry(index, dto, ecriture, details, numero, null, null);
+    }
+
+    // Attribue le numéro séquentiel juste avant l'écriture, déjà contrôlée par l'appelant, et le rend si la persistance a échoué
+    private EcritureComptable writeNumbered(EcritureComptable ecriture, List<DetailEcriture> details,
+                                            JournalComptableDto journal, PeriodeComptableDto periode,
+                                            String currentUser, String auditPrefix) {
+        long numero = assignerNumero(ecriture, journal, periode);
+        try {
+            return ecritureAggregateWriter.write(ecriture, details, currentUser, "CREATE",
+                    auditPrefix + ecriture.getNumeroEcriture());
+        } catch (RuntimeException e) {
+            rendreNumeroApresEchec(ecriture, numero, e);
+            throw e;
+        }
+    }
+
+    private long assignerNumero(EcritureComptable ecriture, JournalComptableDto journal, PeriodeComptableDto periode) {
+        long numero = numerotationEcritureService.nextNumber(ecriture.getKey().getTenantId(), journal.getId(), periode.getId());
+        ecriture.setNumeroEcriture(NumerotationEcritureService.format(journal.getCodeJournal(), periode.getCode(), numero));
+        return numero;
+    }
+
+    private void libererNumero(EcritureComptable ecriture, long numero) {
+        numerotationEcritureService.release(ecriture.getKey().getTenantId(), ecriture.getJournalComptableId(),
+                ecriture.getPeriodeComptableId(), numero);
+    }
+
+    // Après l'échec d'une écriture : le numéro n'est rendu que si l'écriture n'a certainement pas eu lieu
+    private void rendreNumeroApresEchec(EcritureComptable ecriture, long numero, RuntimeException erreur) {
+        if (EcritureAggregateWriter.issueIncertaine(erreur)) {
+            numerotationEcritureService.signalerNumeroIncertain(ecriture.getKey().getTenantId(),
+                    ecriture.getJournalComptableId(), ecriture.getPeriodeComptableId(), numero, erreur);
+        } else {
+            libererNumero(ecriture, numero);
+        }
+    }
+
+    private EcritureComptable buildEcriture(EcritureComptableDto dto, UUID tenantId, String currentUser) {
+        EcritureComptable ecriture = mapToEntity(dto, tenantId);
         EcritureComptableKey key = new EcritureComptableKey();
         key.setTenantId(tenantId);
         key.setId(UUID.randomUUID());
-        ecriture.setNumeroEcriture("ECR-" +key.getId() + "-" + System.currentTimeMillis());
         ecriture.setKey(key);
+        ecriture.setValidee(false);
         ecriture.setCreatedAt(LocalDateTime.now());
         ecriture.setUpdatedAt(LocalDateTime.now());
         ecriture.setCreatedBy(currentUser != null ? currentUser : "system");
         ecriture.setUpdatedBy(currentUser != null ? currentUser : "system");
+        return ecriture;
+    }
 
-        EcritureComptable saved = ecritureRepository.save(ecriture);
-        // Validation des détails après sauvegarde
-        List<DetailEcriture> details = detailEcritureService.findByKeyTenantIdAndKeyEcritureComptableId(tenantId, key.getId());
-        validateBalance(details);
+    private List<DetailEcriture> buildDetails(EcritureComptableDto dto, EcritureComptable ecriture) {
+        List<DetailEcriture> details = new ArrayList<>();
+        if (dto.getDetailsEcriture() == null) {
+            return details;
+        }
+        for (DetailEcritureDto detailDto : dto.getDetailsEcriture()) {
+            DetailEcriture detail = new DetailEcriture();
+            DetailEcritureKey detailKey = new DetailEcritureKey();
+            detailKey.setTenantId(ecriture.getKey().getTenantId());
+            detailKey.setEcritureComptableId(ecriture.getKey().getId());
+            detailKey.setId(UUID.randomUUID());
+            detail.setKey(detailKey);
+            detail.setCompteComptableId(detailDto.getCompteComptableId());
+            detail.setLibelle(detailDto.getLibelle());
+            detail.setSens(detailDto.getSens());
+            detail.setMontantDebit(detailDto.getMontantDebit() != null ? detailDto.getMontantDebit() : 0.0);
+            detail.setMontantCredit(detailDto.getMontantCredit() != null ? detailDto.getMontantCredit() : 0.0);
+            detail.setNotes(detailDto.getNotes());
+            detail.setDateEcriture(detailDto.getDateEcriture());
+            details.add(detail);
+        }
+        return details;
+    }
+
+    // Les totaux de l'en-tête doivent être équilibrés et, s'il y a des lignes, cohérents avec celles-ci
+    private void checkTotals(EcritureComptableDto dto, List<DetailEcriture> details) {
+        if (details.isEmpty()) {
+            if (Math.abs(dto.getMontantTotalDebit() - dto.getMontantTotalCredit()) > 0.01) {
+                throw new IllegalStateException("Ecriture comptable unbalanced: debit=" + dto.getMontantTotalDebit()
+                        + ", credit=" + dto.getMontantTotalCredit());
+            }
+            return;
+        }
+        double totalDebit = details.stream().mapToDouble(DetailEcriture::getMontantDebit).sum();
+        if (Math.abs(totalDebit - dto.getMontantTotalDebit()) > 0.01) {
+            throw new IllegalStateException("Montant total débit incohérent avec les lignes : " + dto.getMontantTotalDebit()
+                    + " au lieu de " + totalDebit);
+        }
+    }
+
+    // En-tête, lignes et événement EcriturePosted d'une écriture dans un seul batch LOGGED : une ligne
+    // n'existe jamais sans son en-tête, et une écriture visible est toujours publiée
+    private void writeBatchEntry(BatchEntry entry) {
+        cassandraOperations.batchOps(DefaultBatchType.LOGGED)
+                .insert(entry.ecriture())
+                .insert(ecritureAggregateWriter.index(entry.ecriture()))
+                .insert(entry.details())
+                .insert(ecritureAggregateWriter.evenements(entry.ecriture(), entry.details(),
+                        entry.ecriture().getCreatedBy(), "CREATE"))
+                .execute();
+    }
+
+    private EcritureBatchResultDto.EntryResult batchFailure(int index, EcritureComptableDto dto, String error) {
+        return EcritureBatchResultDto.EntryResult.builder()
+                .index(index)
+                .success(false)
+                .referenceExterne(dto != null ? dto.getReferenceExterne() : null)
+                .error(error)
+                .build();
+    }
 
-        logAuditAndSendKafka(tenantId, key.getId(), currentUser, "CREATE", "Created ecriture: " + ecritureDto.getNumeroEcriture());
-        invalidateCaches(tenantId);
-        return mapToDto(saved);
+    private record BatchEntry(int index, EcritureComptableDto dto, EcritureComptable ecriture, List<DetailEcriture> details,
+                              long numero, SourceType sourceType, UUID sourceId) {
+    }
+
+    private EcritureBatchResultDto.EntryResult batchSuccess(int index, EcritureComptable ecriture) {
+        return EcritureBatchResultDto.EntryResult.builder()
+                .index(index)
+                .success(true)
+                .ecritureId(ecriture.getKey().getId())
+                .numeroEcriture(ecriture.getNumeroEcriture())
+                .referenceExterne(ecriture.getReferenceExterne())
+                .build();
     }
 
     @Transactional
@@ -142,42 +447,89 @@ public class EcritureComptableService {
         validateBalance(details);
 
         ecriture.setValidee(true);
+        ecriture.setSoldesAppliques(false);
         ecriture.setDateValidation(LocalDateTime.now());
         ecriture.setUtilisateurValidation(user);
         ecriture.setUpdatedAt(LocalDateTime.now());
         ecriture.setUpdatedBy(user != null ? user : "system");
 
-        EcritureComptable validated = ecritureRepository.save(ecriture);
-        logAuditAndSendKafka(tenantId, id, user, "VALIDATE", "Validated ecriture: " + validated.getNumeroEcriture());
-        invalidateCaches(tenantId);
-        return mapToDto(validated);
+        // Basculement conditionnel : une validation concurrente ou rejouée ne reporte pas l'écriture une seconde fois
+        boolean basculee = cassandraOperations.update(ecriture, UpdateOptions.builder()
+                .ifCondition(Criteria.where("validee").is(false))
+                .build()).wasApplied();
+        if (!basculee) {
+            throw new IllegalStateException("Ecriture comptable already validated");
+        }
+        retirerDeLIndex(ecriture);
+        projectionEcritureService.reporter(tenantId, ecriture, details);
+        details.forEach(detail -> planComptableIndex.findById(tenantId, detail.getCompteComptableId())
+                .ifPresent(compte -> redisService.evictAccountBalance(tenantId.toString(), compte.getNoCompte())));
+        logAuditAndSendKafka(tenantId, id, user, "VALIDATE", "Validated ecriture: " + ecriture.getNumeroEcriture());
+        EcritureComptableDto dto = mapToDto(ecriture);
+        updateCaches(tenantId, List.of(dto));
+        return dto;
     }
 
-    public List<EcritureComptableDto> getAllEcritures() {
-        UUID tenantId = TenantContext.getCurrentTenant();
-        logger.info("Fetching all ecritures comptables for tenant: {}", tenantId);
-
-        String cacheKey = CACHE_ALL_ECRITURES + tenantId;
-        List<EcritureComptableDto> ecritures = null;
-
+    // Hors du basculement conditionnel (un batch LWT ne couvre qu'une table) : une entrée restée en
+    // place après un échec est écartée et supprimée à la lecture de l'index
+    private void retirerDeLIndex(EcritureComptable ecriture) {
         try {
-            ecritures = (List<EcritureComptableDto>) redisTemplate.opsForValue().get(cacheKey);
-        } catch (Exception e) {
-            logger.warn("Failed to retrieve ecritures from Redis for tenant {}: {}", tenantId, e.getMessage());
+            ecritureNonValideeRepository.delete(EcritureNonValidee.of(ecriture));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to remove validated ecriture {} from the non-validated index: {}",
+                    ecriture.getKey().getId(), e.getMessage());
         }
+    }
 
-        if (ecritures == null) {
-            ecritures = ecritureRepository.findByKeyTenantId(tenantId)
-                    .stream()
-                    .map(this::mapToDto)
-                    .collect(Collectors.toList());
-            try {
-                redisTemplate.opsForValue().set(cacheKey, ecritures, Duration.ofMinutes(10));
-            } catch (Exception e) {
-                logger.warn("Failed to cache ecritures in Redis for tenant {}: {}", tenantId, e.getMessage());
-            }
+    /**
+     * Écritures du tenant page par page, triées par date (les plus récentes d'abord par défaut).
+     * Servies par l'index Redis quand il est complet, sinon par Cassandra (curseur = paging state)
+     * pendant que l'index est reconstruit en tâche de fond. Les deux sortes de curseurs sont acceptées
+     * quel que soit l'état de l'index : un paging state poursuit sur Cassandra, un curseur Redis reprend
+     * dans Cassandra après la position qu'il porte si l'index ne sert plus.
+     */
+    public CursorPage<EcritureComptableDto> getAllEcritures(String cursor, Integer size, boolean ordreCroissant) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        logger.info("Fetching ecritures comptables page for tenant: {}", tenantId);
+        Optional<CursorPage<EcritureComptableDto>> cached = pageFromCache(tenantId, false, cursor, size, ordreCroissant);
+        if (cached.isPresent()) {
+            return cached.get();
         }
-        return ecritures != null ? ecritures : List.of();
+        if (EcritureComptableCache.isCurseurCache(cursor)) {
+            EcritureComptableCache.Position position = EcritureComptableCache.position(cursor);
+            Pageable suivante = CassandraPageRequest.first(CursorUtils.pageSize(size) + 1);
+            Slice<EcritureComptable> slice = ordreCroissant
+                    ? ecritureRepository.findSliceByTenantIdAfterOrderByDateAsc(tenantId, position.dateEcriture(), position.id(), suivante)
+                    : ecritureRepository.findSliceByTenantIdBeforeOrderByDateDesc(tenantId, position.dateEcriture(), position.id(), suivante);
+            return pageApresPosition(slice.getContent(), CursorUtils.pageSize(size),
+                    EcritureComptable::getDateEcriture, e -> e.getKey().getId(),
+                    lues -> lues.stream().map(this::mapToDto).collect(Collectors.toList()));
+        }
+        Pageable pageable = CursorUtils.toPageable(cursor, size);
+        Slice<EcritureComptable> slice = ordreCroissant
+                ? ecritureRepository.findSliceByTenantIdOrderByDateAsc(tenantId, pageable)
+                : ecritureRepository.findSliceByTenantIdOrderByDateDesc(tenantId, pageable);
+        return CursorUtils.toCursorPage(slice, this::mapToDto);
+    }
+
+    // Page lue après la position d'un curseur Redis (taille + 1 lignes) ; la suivante repart de la
+    // dernière écriture servie, avec un curseur de même nature
+    private static <E> CursorPage<EcritureComptableDto> pageApresPosition(List<E> lues, int pageSize,
+                                                                          Function<E, LocalDate> date, Function<E, UUID> id,
+                                                                          Function<List<E>, List<EcritureComptableDto>> mapper) {
+        boolean hasNext = lues.size() > pageSize;
+        List<E> servies = hasNext ? lues.subList(0, pageSize) : lues;
+        List<EcritureComptableDto> content = mapper.apply(servies);
+        E derniere = servies.isEmpty() ? null : servies.get(servies.size() - 1);
+        String nextCursor = hasNext && derniere != null
+                ? EcritureComptableCache.curseur(date.apply(derniere), id.apply(derniere))
+                : null;
+        return CursorPage.<EcritureComptableDto>builder()
+                .content(content)
+                .size(content.size())
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
     }
 
     public Optional<EcritureComptableDto> getEcritureById(UUID id) {
@@ -196,31 +548,120 @@ public class EcritureComptableService {
                     return dto;
                 });
     }
-    public List<EcritureComptableDto> getNonValidatedEcritures() {
+    public CursorPage<EcritureComptableDto> getNonValidatedEcritures(String cursor, Integer size, boolean ordreCroissant) {
         UUID tenantId = TenantContext.getCurrentTenant();
-        logger.info("Fetching non-validated ecritures comptables for tenant: {}", tenantId);
-
-        String cacheKey = CACHE_NON_VALIDATED_ECRITURES + tenantId;
-        List<EcritureComptableDto> ecritures = null;
+        logger.info("Fetching non-validated ecritures comptables page for tenant: {}", tenantId);
+        Optional<CursorPage<EcritureComptableDto>> cached = pageFromCache(tenantId, true, cursor, size, ordreCroissant);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        if (EcritureComptableCache.isCurseurCache(cursor)) {
+            EcritureComptableCache.Position position = EcritureComptableCache.position(cursor);
+            Pageable suivante = CassandraPageRequest.first(CursorUtils.pageSize(size) + 1);
+            Slice<EcritureNonValidee> slice = ordreCroissant
+                    ? ecritureNonValideeRepository.findSliceByTenantIdAfterOrderByDateAsc(tenantId, position.dateEcriture(), position.id(), suivante)
+                    : ecritureNonValideeRepository.findSliceByTenantIdBeforeOrderByDateDesc(tenantId, position.dateEcriture(), position.id(), suivante);
+            return pageApresPosition(slice.getContent(), CursorUtils.pageSize(size),
+                    e -> e.getKey().getDateEcriture(), e -> e.getKey().getId(),
+                    entrees -> chargerNonValidees(tenantId, entrees));
+        }
+        Pageable pageable = CursorUtils.toPageable(cursor, size);
+        Slice<EcritureNonValidee> slice = ordreCroissant
+                ? ecritureNonValideeRepository.findSliceByTenantIdOrderByDateAsc(tenantId, pageable)
+                : ecritureNonValideeRepository.findSliceByTenantIdOrderByDateDesc(tenantId, pageable);
+        List<EcritureComptableDto> content = chargerNonValidees(tenantId, slice.getContent());
+        String nextCursor = CursorUtils.nextCursor(slice);
+        return CursorPage.<EcritureComptableDto>builder()
+                .content(content)
+                .size(content.size())
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+    }
 
-        try {
-            ecritures = (List<EcritureComptableDto>) redisTemplate.opsForValue().get(cacheKey);
-        } catch (Exception e) {
-            logger.warn("Failed to retrieve non-validated ecritures from Redis for tenant {}: {}", tenantId, e.getMessage());
+    // Écritures des entrées d'index, dans l'ordre de l'index
+    private List<EcritureComptableDto> chargerNonValidees(UUID tenantId, List<EcritureNonValidee> entrees) {
+        Map<UUID, EcritureComptable> ecritures = ecritureRepository.findByKeyTenantIdAndKeyIdIn(tenantId,
+                        entrees.stream().map(entree -> entree.getKey().getId()).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(ecriture -> ecriture.getKey().getId(), Function.identity()));
+        List<EcritureComptableDto> content = new ArrayList<>();
+        for (EcritureNonValidee entree : entrees) {
+            EcritureComptable ecriture = ecritures.get(entree.getKey().getId());
+            if (ecriture == null) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(ecriture.getValidee())) {
+                // Entrée laissée par une validation dont le retrait de l'index a échoué
+                retirerDeLIndex(ecriture);
+                continue;
+            }
+            content.add(mapToDto(ecriture));
         }
+        return content;
+    }
 
-        if (ecritures == null) {
-            ecritures = ecritureRepository.findByKeyTenantIdAndValideeFalse(tenantId)
-                    .stream()
-                    .map(this::mapToDto)
-                    .collect(Collectors.toList());
+    private Optional<CursorPage<EcritureComptableDto>> pageFromCache(UUID tenantId, boolean nonValidees, String cursor,
+                                                                     Integer size, boolean ordreCroissant) {
+        if (cursor != null && !EcritureComptableCache.isCurseurCache(cursor)) {
+            // Pagination commencée sur Cassandra : on la poursuit sur Cassandra
+            return Optional.empty();
+        }
+        int pageSize = CursorUtils.pageSize(size);
+        EcritureComptableCache.EtatIndex etat = ecritureComptableCache.etatIndex(tenantId);
+        if (etat != EcritureComptableCache.EtatIndex.ABSENT) {
+            if (etat == EcritureComptableCache.EtatIndex.A_RAFRAICHIR) {
+                // Reconstruit avant expiration pendant que l'index actuel continue de servir les lectures
+                rebuildCacheIndex(tenantId);
+            }
             try {
-                redisTemplate.opsForValue().set(cacheKey, ecritures, Duration.ofMinutes(10));
-            } catch (Exception e) {
-                logger.warn("Failed to cache non-validated ecritures in Redis for tenant {}: {}", tenantId, e.getMessage());
+                return Optional.of(ecritureComptableCache.page(tenantId, nonValidees, cursor, pageSize, ordreCroissant,
+                        ids -> ecritureRepository.findByKeyTenantIdAndKeyIdIn(tenantId, ids).stream()
+                                .map(this::mapToDto)
+                                .collect(Collectors.toList())));
+            } catch (BusinessException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to read ecritures page from Redis for tenant {}: {}", tenantId, e.getMessage());
             }
+        } else {
+            rebuildCacheIndex(tenantId);
+        }
+        // Index indisponible : un curseur Redis est repris dans Cassandra à partir de sa position
+        return Optional.empty();
+    }
+
+    // Recharge l'index Redis du tenant page par page depuis Cassandra, sans bloquer la requête courante
+    private void rebuildCacheIndex(UUID tenantId) {
+        if (!ecritureComptableCache.demarrerReconstruction(tenantId)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> reconstruireIndex(tenantId));
+        } catch (RejectedExecutionException e) {
+            // Exécuteur saturé : la reconstruction sera redemandée par une prochaine lecture
+            ecritureComptableCache.terminerReconstruction(tenantId, false);
+            logger.warn("Rebuild of ecritures cache index postponed for tenant {}: executor saturated", tenantId);
+        }
+    }
+
+    private void reconstruireIndex(UUID tenantId) {
+        boolean complet = true;
+        try {
+            Pageable pageable = CassandraPageRequest.first(CursorUtils.MAX_PAGE_SIZE);
+            Slice<EcritureComptable> slice;
+            do {
+                slice = ecritureRepository.findByKeyTenantId(tenantId, pageable);
+                complet &= ecritureComptableCache.completer(tenantId,
+                        slice.getContent().stream().map(this::mapToDto).collect(Collectors.toList()));
+                pageable = slice.nextPageable();
+            } while (complet && slice.hasNext());
+        } catch (RuntimeException e) {
+            complet = false;
+            logger.warn("Failed to rebuild ecritures cache index for tenant {}: {}", tenantId, e.getMessage());
+        } finally {
+            ecritureComptableCache.terminerReconstruction(tenantId, complet);
         }
-        return ecritures != null ? ecritures : List.of();
     }
 
     @Transactional
@@ -237,28 +678,186 @@ public class EcritureComptableService {
             throw new BusinessException("Impossible de supprimer une écriture déjà validée");
         }
 
-        ecritureRepository.delete(ecriture);
+        CassandraBatchOperations suppression = cassandraOperations.batchOps(DefaultBatchType.LOGGED)
+                .delete(ecriture)
+                .delete(EcritureNonValidee.of(ecriture));
+        if (ecriture.getJournalComptableId() != null) {
+            suppression.delete(EcritureParJournal.of(ecriture));
+        }
+        if (ecriture.getSourceType() != null && ecriture.getSourceId() != null) {
+            // La source est libérée avec l'écriture : elle pourra être comptabilisée à nouveau
+            suppression.addStatement(ecritureSourceService.suppression(tenantId, ecriture.getSourceType(), ecriture.getSourceId()));
+        }
+        suppression.execute();
+        ecritureComptableCache.remove(tenantId, id, ecriture.getDateEcriture());
+        ecritureSearchCache.invalidate(tenantId, ecriture.getJournalComptableId(), ecriture.getDateEcriture());
         logger.info("Écriture avec ID {} supprimée avec succès pour le tenant {}", id, tenantId);
     }
     
+    /**
+     * Génère l'écriture d'un objet comptable. Idempotent : un objet source déjà comptabilisé
+     * (redélivrance Kafka, nouvel essai client) renvoie l'écriture existante.
+     */
     @Transactional
     public EcritureComptableDto generateFromComptableObject(ComptableObject comptableObject) {
         UUID tenantId = TenantContext.getCurrentTenant();
-        String currentUser = TenantContext.getCurrentUser();
         logger.info("Generating ecriture from comptable object for tenant: {}, type: {}, id: {}", 
                 tenantId, comptableObject.getClass().getSimpleName(), comptableObject.getId());
+        return postOnce(tenantId, comptableObject.getSourceType(), comptableObject.getId(),
+                ecritureId -> createFromComptableObject(comptableObject, ecritureId));
+    }
+
+    private EcritureComptableDto createFromComptableObject(ComptableObject comptableObject, UUID ecritureId) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        String currentUser = TenantContext.getCurrentUser();
+        preparer(comptableObject);
+
+        JournalComptableDto journal = journalComptableService.getActiveJournalComptable(comptableObject.getJournalComptableId())
+                .filter(JournalComptableDto::getActif)
+                .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + comptableObject.getJournalComptableId()));
 
         UUID periodeComptableId = getCurrentPeriodeComptableId(tenantId);
-        periodeComptableService.getPeriodeComptable(periodeComptableId)
+        PeriodeComptableDto periode = periodeComptableService.getPeriodeComptable(periodeComptableId)
                 .filter(p -> !p.getCloturee())
                 .orElseThrow(() -> new IllegalStateException("Période comptable clôturée : " + periodeComptableId));
 
+        EcritureComptable ecriture = buildFromComptableObject(comptableObject, ecritureId, tenantId, currentUser, periodeComptableId);
+        List<DetailEcriture> details = comptableObject.generateEcritureDetails(tenantId, ecritureId, resolveurComptes(tenantId));
+        ecritureAggregateWriter.validate(ecriture, details);
+        EcritureComptable saved = writeNumbered(ecriture, details, journal, periode, currentUser,
+                "Generated ecriture from " + comptableObject.getClass().getSimpleName() + ": ");
+        EcritureComptableDto dto = mapToDto(saved);
+        updateCaches(tenantId, List.of(dto));
+        return dto;
+    }
+
+    /**
+     * Génère en lot les écritures d'objets comptables du tenant courant (événements de facturation).
+     * Journaux, période courante et comptes sont résolus une seule fois pour le lot, puis chaque écriture
+     * est écrite en un batch LOGGED comme dans createEcrituresBatch, avec un seul audit pour le lot.
+     * Idempotent par objet source. Un objet invalide est rejeté à son index sans bloquer les autres ;
+     * une erreur technique (Cassandra indisponible) est propagée, les réservations non écrites étant
+     * libérées, pour que le lot soit relivré.
+     */
+    public EcritureBatchResultDto generateFromComptableObjects(List<? extends ComptableObject> comptableObjects) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        String currentUser = TenantContext.getCurrentUser();
+        if (comptableObjects.size() > MAX_BATCH_SIZE) {
+            throw new BusinessException("Le lot dépasse la taille maximale de " + MAX_BATCH_SIZE + " écritures");
+        }
+        logger.info("Generating batch of {} ecritures from comptable objects for tenant: {}", comptableObjects.size(), tenantId);
+
+        // Résolutions mutualisées pour tout le lot
+        Map<UUID, Optional<JournalComptableDto>> journauxActifs = new HashMap<>();
+        Function<String, UUID> comptes = resolveurComptes(tenantId);
+        PeriodeComptableDto periode = null;
+        RuntimeException periodeIndisponible = null;
+        try {
+            UUID periodeComptableId = getCurrentPeriodeComptableId(tenantId);
+            periode = periodeComptableService.getPeriodeComptable(periodeComptableId)
+                    .filter(p -> !p.getCloturee())
+                    .orElseThrow(() -> new IllegalStateException("Période comptable clôturée : " + periodeComptableId));
+        } catch (IllegalStateException e) {
+            periodeIndisponible = e;
+        }
+
+        EcritureBatchResultDto.EntryResult[] results = new EcritureBatchResultDto.EntryResult[comptableObjects.size()];
+        List<BatchEntry> prepared = new ArrayList<>();
+        try {
+            for (int i = 0; i < comptableObjects.size(); i++) {
+                final int index = i;
+                ComptableObject objet = comptableObjects.get(i);
+                UUID ecritureId = UUID.randomUUID();
+                Optional<EcritureSourceService.Reservation> existante = ecritureSourceService.claim(tenantId, objet.getSourceType(), objet.getId(), ecritureId);
+                if (existante.isPresent()) {
+                    Optional<EcritureComptable> ecrite = ecritureRepository.findByKeyTenantIdAndKeyId(tenantId, existante.get().ecritureId());
+                    if (ecrite.isPresent()) {
+                        results[i] = batchSuccess(index, ecrite.get());
+                        continue;
+                    }
+                    if (!ecritureSourceService.reprendre(tenantId, objet.getSourceType(), objet.getId(), existante.get(), ecritureId)) {
+                        results[i] = batchFailure(index, null, "L'écriture de la source " + objet.getSourceType() + " "
+                                + objet.getId() + " est en cours de création");
+                        continue;
+                    }
+                }
+                preparer(objet);
+                try {
+                    if (periodeIndisponible != null) {
+                        throw periodeIndisponible;
+                    }
+                    JournalComptableDto journal = journauxActifs.computeIfAbsent(objet.getJournalComptableId(),
+                                    id -> journalComptableService.getActiveJournalComptable(id).filter(JournalComptableDto::getActif))
+                            .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + objet.getJournalComptableId()));
+                    EcritureComptable ecriture = buildFromComptableObject(objet, ecritureId, tenantId, currentUser, periode.getId());
+                    List<DetailEcriture> details = objet.generateEcritureDetails(tenantId, ecritureId, comptes);
+                    ecritureAggregateWriter.validate(ecriture, details);
+                    long numero = assignerNumero(ecriture, journal, periode);
+                    prepared.add(new BatchEntry(i, null, ecriture, details, numero, objet.getSourceType(), objet.getId()));
+                } catch (IllegalArgumentException | IllegalStateException | BusinessException
+                         | ResourceNotFoundException | ConstraintViolationException e) {
+                    ecritureSourceService.release(tenantId, objet.getSourceType(), objet.getId(), ecritureId);
+                    results[i] = batchFailure(i, null, e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            prepared.forEach(this::libererEntree);
+            throw e;
+        }
+
+        List<EcritureComptableDto> created = new ArrayList<>();
+        for (int position = 0; position < prepared.size(); position++) {
+            BatchEntry entry = prepared.get(position);
+            try {
+                writeBatchEntry(entry);
+            } catch (RuntimeException e) {
+                // Les écritures déjà écrites restent acquises : à la relivraison leurs sources renvoient l'écriture existante
+                logger.error("Failed to write generated ecritures for tenant {}: {}", tenantId, e.getMessage());
+                if (EcritureAggregateWriter.issueIncertaine(e)) {
+                    // L'écriture a pu être appliquée : numéro et source restent réservés
+                    rendreNumeroApresEchec(entry.ecriture(), entry.numero(), e);
+                    prepared.subList(position + 1, prepared.size()).forEach(this::libererEntree);
+                } else {
+                    prepared.subList(position, prepared.size()).forEach(this::libererEntree);
+                }
+                if (!created.isEmpty()) {
+                    updateCaches(tenantId, created);
+                }
+                throw e;
+            }
+            created.add(mapToDto(entry.ecriture()));
+            results[entry.index()] = batchSuccess(entry.index(), entry.ecriture());
+        }
+
+        if (!created.isEmpty()) {
+            updateCaches(tenantId, created);
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("count", created.size());
+            event.put("ecritureIds", created.stream().map(EcritureComptableDto::getId).collect(Collectors.toList()));
+            logAuditAndSendKafka(tenantId, null, currentUser, "CREATE_BATCH",
+                    "Generated " + created.size() + " ecritures from comptable objects",
+                    outboxService.accountingEntry(event, tenantId, AppConstants.KafkaEvents.ACCOUNTING_ENTRIES_BATCH_CREATED));
+        }
+
+        List<EcritureBatchResultDto.EntryResult> resultList = Arrays.asList(results);
+        int succeeded = (int) resultList.stream().filter(EcritureBatchResultDto.EntryResult::isSuccess).count();
+        logger.info("Comptable objects batch processed for tenant {}: {} posted, {} rejected",
+                tenantId, succeeded, resultList.size() - succeeded);
+        return EcritureBatchResultDto.builder()
+                .total(resultList.size())
+                .succeeded(succeeded)
+                .failed(resultList.size() - succeeded)
+                .results(resultList)
+                .build();
+    }
+
+    private EcritureComptable buildFromComptableObject(ComptableObject comptableObject, UUID ecritureId, UUID tenantId,
+                                                       String currentUser, UUID periodeComptableId) {
         EcritureComptable ecriture = new EcritureComptable();
         EcritureComptableKey key = new EcritureComptableKey();
         key.setTenantId(tenantId);
-        key.setId(UUID.randomUUID());
+        key.setId(ecritureId);
         ecriture.setKey(key);
-        ecriture.setNumeroEcriture("ECR-" + comptableObject.getId() + "-" + System.currentTimeMillis());
         ecriture.setLibelle(comptableObject.getLibelle());
         ecriture.setDateEcriture(comptableObject.getDate());
         ecriture.setJournalComptableId(comptableObject.getJournalComptableId());
@@ -272,16 +871,46 @@ public class EcritureComptableService {
         ecriture.setUpdatedAt(LocalDateTime.now());
         ecriture.setCreatedBy(currentUser != null ? currentUser : "system");
         ecriture.setUpdatedBy(currentUser != null ? currentUser : "system");
+        return ecriture;
+    }
 
-        EcritureComptable saved = ecritureRepository.save(ecriture);
-        List<DetailEcriture> details = comptableObject.generateEcritureDetails(tenantId, saved.getKey().getId());
-        details.forEach(detailEcritureService::createDetailEcriture);
-        validateBalance(details);
+    // Comptes de contrôle et devise configurés, appliqués aux factures avant le calcul de leurs montants
+    private void preparer(ComptableObject objet) {
+        if (objet instanceof FactureComptable facture) {
+            facture.setParametres(parametresFacture);
+        }
+    }
+
+    /**
+     * Numéro de compte → id du compte actif, chaque numéro n'étant résolu qu'une fois. Un numéro absent
+     * du plan du tenant est remplacé par le premier compte actif de sa racine (numéro sans ses zéros
+     * finaux) : 411000 est résolu en 411100 dans un plan qui subdivise les clients.
+     */
+    private Function<String, UUID> resolveurComptes(UUID tenantId) {
+        Map<String, UUID> comptes = new HashMap<>();
+        return noCompte -> comptes.computeIfAbsent(noCompte, no -> planComptableIndex.findByNoCompte(tenantId, no)
+                .filter(PlanComptableDto::getActif)
+                .or(() -> planComptableIndex.findByPrefix(tenantId, racine(no)).stream()
+                        .filter(PlanComptableDto::getActif)
+                        .min(Comparator.comparing(PlanComptableDto::getNoCompte)))
+                .map(PlanComptableDto::getId)
+                .orElseThrow(() -> new ResourceNotFoundException("Compte", no)));
+    }
+
+    private static String racine(String noCompte) {
+        int fin = noCompte.length();
+        while (fin > 1 && noCompte.charAt(fin - 1) == '0') {
+            fin--;
+        }
+        return noCompte.substring(0, fin);
+    }
 
-        logAuditAndSendKafka(tenantId, key.getId(), currentUser, "CREATE", 
-                "Generated ecriture from " + comptableObject.getClass().getSimpleName() + ": " + ecriture.getNumeroEcriture());
-        invalidateCaches(tenantId);
-        return mapToDto(saved);
+    private void libererEntree(BatchEntry entry) {
+        libererNumero(entry.ecriture(), entry.numero());
+        if (entry.sourceId() != null) {
+            ecritureSourceService.release(entry.ecriture().getKey().getTenantId(), entry.sourceType(), entry.sourceId(),
+                    entry.ecriture().getKey().getId());
+        }
     }
 
     public List<EcritureComptableDto> searchEcritures(LocalDateTime startDate, LocalDateTime endDate, UUID journalId) {
@@ -289,70 +918,82 @@ public class EcritureComptableService {
         logger.info("Searching ecritures comptables for tenant: {}, startDate: {}, endDate: {}, journalId: {}", tenantId, startDate, endDate, journalId);
 
         if (journalId != null) {
-            journalComptableService.getJournalComptable(journalId)
+            journalComptableService.getActiveJournalComptable(journalId)
                     .filter(JournalComptableDto::getActif)
                     .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + journalId));
         }
 
-        String cacheKey = CACHE_SEARCH_ECRITURES + tenantId + ":" + (journalId != null ? journalId : "") + ":" + startDate + ":" + endDate;
-        List<EcritureComptableDto> ecritures = null;
-
-        try {
-            ecritures = (List<EcritureComptableDto>) redisTemplate.opsForValue().get(cacheKey);
-        } catch (Exception e) {
-            logger.warn("Failed to retrieve search ecritures from Redis for tenant {}: {}", tenantId, e.getMessage());
+        if (startDate == null || endDate == null) {
+            throw new BusinessException("Les dates de début et de fin de la recherche sont obligatoires");
         }
 
-        if (ecritures == null) {
-            List<EcritureComptable> results;
-            if (journalId != null) {
-                results = ecritureRepository.findByKeyTenantIdAndJournalComptableIdAndDateEcritureRange(tenantId, journalId, startDate, endDate);
-            } else {
-                results = ecritureRepository.findByKeyTenantIdAndDateEcritureRange(tenantId, startDate, endDate);
-            }
-            ecritures = results.stream().map(this::mapToDto).collect(Collectors.toList());
-            try {
-                redisTemplate.opsForValue().set(cacheKey, ecritures, Duration.ofMinutes(10));
-            } catch (Exception e) {
-                logger.warn("Failed to cache search ecritures in Redis for tenant {}: {}", tenantId, e.getMessage());
-            }
+        // Segments jour / mois en cache, seules les plages manquantes sont relues dans Cassandra
+        return ecritureSearchCache.search(tenantId, journalId, startDate.toLocalDate(), endDate.toLocalDate(),
+                (debut, fin) -> (journalId != null
+                        ? ecrituresDuJournal(tenantId, journalId, debut, fin)
+                        : ecritureRepository.findByKeyTenantIdAndDateEcritureRange(tenantId, debut, fin))
+                        .stream()
+                        .map(this::mapToDto)
+                        .collect(Collectors.toList()));
+    }
+
+    // Écritures d'un journal sur la plage, via l'index par journal puis par lots d'ids, dans l'ordre de l'index
+    private List<EcritureComptable> ecrituresDuJournal(UUID tenantId, UUID journalId, LocalDate debut, LocalDate fin) {
+        List<UUID> ids = ecritureParJournalRepository.findByTenantIdAndJournalIdAndDateRange(tenantId, journalId, debut, fin)
+                .stream()
+                .map(entree -> entree.getKey().getId())
+                .collect(Collectors.toList());
+        Map<UUID, EcritureComptable> lues = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += TAILLE_LOT_IDS) {
+            ecritureRepository.findByKeyTenantIdAndKeyIdIn(tenantId, ids.subList(i, Math.min(ids.size(), i + TAILLE_LOT_IDS)))
+                    .forEach(ecriture -> lues.put(ecriture.getKey().getId(), ecriture));
         }
-        return ecritures;
+        return ids.stream().map(lues::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
+    /**
+     * Génère l'écriture automatique d'une transaction. Idempotent sur la transaction :
+     * une transaction déjà comptabilisée renvoie l'écriture existante.
+     */
     @Transactional
     public EcritureComptableDto generateAutomaticEntry(UUID transactionId, UUID operationId) {
         UUID tenantId = TenantContext.getCurrentTenant();
-        String currentUser = TenantContext.getCurrentUser();
         logger.info("Generating automatic ecriture for tenant: {}, transactionId: {}, operationId: {}", tenantId, transactionId, operationId);
+        return postOnce(tenantId, SourceType.TRANSACTION, transactionId,
+                ecritureId -> createAutomaticEntry(transactionId, operationId, ecritureId));
+    }
+
+    private EcritureComptableDto createAutomaticEntry(UUID transactionId, UUID operationId, UUID ecritureId) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        String currentUser = TenantContext.getCurrentUser();
 
         Transaction transaction = transactionRepository.findByKeyTenantIdAndKeyId(tenantId, transactionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction", transactionId.toString()));
         OperationComptable operation = operationComptableRepository.findByKeyTenantIdAndKeyId(tenantId, operationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Operation comptable", operationId.toString()));
 
-        journalComptableService.getJournalComptable(operation.getJournalComptableId())
+        JournalComptableDto journal = journalComptableService.getActiveJournalComptable(operation.getJournalComptableId())
                 .filter(JournalComptableDto::getActif)
                 .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + operation.getJournalComptableId()));
 
         UUID periodeComptableId = getCurrentPeriodeComptableId(tenantId);
-        periodeComptableService.getPeriodeComptable(periodeComptableId)
+        PeriodeComptableDto periode = periodeComptableService.getPeriodeComptable(periodeComptableId)
                 .filter(p -> !p.getCloturee())
                 .orElseThrow(() -> new IllegalStateException("Période comptable clôturée : " + periodeComptableId));
 
         EcritureComptable ecriture = new EcritureComptable();
         EcritureComptableKey key = new EcritureComptableKey();
         key.setTenantId(tenantId);
-        key.setId(UUID.randomUUID());
+        key.setId(ecritureId);
         ecriture.setKey(key);
-        ecriture.setNumeroEcriture("ECR-" + transactionId + "-" + System.currentTimeMillis());
         ecriture.setLibelle("Ecriture auto pour transaction: " + transaction.getNumeroRecu() + ", operation: " + operation.getTypeOperation());
         ecriture.setDateEcriture(LocalDate.now());
         ecriture.setJournalComptableId(operation.getJournalComptableId());
         ecriture.setPeriodeComptableId(periodeComptableId);
         ecriture.setMontantTotalDebit(transaction.getMontantTransaction());
-        //A partir du sens de la transaction
-       // ecriture.setMontantTotalDebit(transaction.getMontantTransaction());
+        ecriture.setMontantTotalCredit(transaction.getMontantTransaction());
+        ecriture.setSourceType(SourceType.TRANSACTION);
+        ecriture.setSourceId(transactionId);
 
         ecriture.setValidee(false);
         ecriture.setCreatedAt(LocalDateTime.now());
@@ -360,26 +1001,52 @@ public class EcritureComptableService {
         ecriture.setCreatedBy(currentUser != null ? currentUser : "system");
         ecriture.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        EcritureComptable saved = ecritureRepository.save(ecriture);
-        generateDetailsForEcriture(saved, operation, transaction);
-        List<DetailEcriture> details = detailEcritureService.findByKeyTenantIdAndKeyEcritureComptableId(tenantId, key.getId());
-        validateBalance(details);
+        List<DetailEcriture> details = generateDetailsForEcriture(ecriture, operation, transaction);
+        ecritureAggregateWriter.validate(ecriture, details);
+        EcritureComptable saved = writeNumbered(ecriture, details, journal, periode, currentUser,
+                "Generated automatic ecriture: ");
+        EcritureComptableDto dto = mapToDto(saved);
+        updateCaches(tenantId, List.of(dto));
+        return dto;
+    }
 
-        logAuditAndSendKafka(tenantId, key.getId(), currentUser, "CREATE", "Generated automatic ecriture: " + ecriture.getNumeroEcriture());
-        invalidateCaches(tenantId);
-        return mapToDto(saved);
+    // Réserve la source avant création ; une source déjà réservée renvoie l'écriture existante
+    private EcritureComptableDto postOnce(UUID tenantId, SourceType sourceType, UUID sourceId,
+                                          Function<UUID, EcritureComptableDto> creation) {
+        UUID ecritureId = UUID.randomUUID();
+        Optional<EcritureSourceService.Reservation> existante = ecritureSourceService.claim(tenantId, sourceType, sourceId, ecritureId);
+        if (existante.isPresent()) {
+            Optional<EcritureComptable> ecrite = ecritureRepository.findByKeyTenantIdAndKeyId(tenantId, existante.get().ecritureId());
+            if (ecrite.isPresent()) {
+                return mapToDto(ecrite.get());
+            }
+            // Réservation sans écriture : reprise seulement après le délai, sinon l'écriture est en cours
+            if (!ecritureSourceService.reprendre(tenantId, sourceType, sourceId, existante.get(), ecritureId)) {
+                throw new BusinessException("L'écriture de la source " + sourceType + " " + sourceId
+                        + " est en cours de création, réessayez plus tard");
+            }
+        }
+        try {
+            return creation.apply(ecritureId);
+        } catch (RuntimeException e) {
+            // Issue incertaine : l'écriture a pu être appliquée, la source reste réservée
+            if (!EcritureAggregateWriter.issueIncertaine(e)) {
+                ecritureSourceService.release(tenantId, sourceType, sourceId, ecritureId);
+            }
+            throw e;
+        }
     }
 
-    private void generateDetailsForEcriture(EcritureComptable ecriture, OperationComptable operation, Transaction transaction) {
+    private List<DetailEcriture> generateDetailsForEcriture(EcritureComptable ecriture, OperationComptable operation, Transaction transaction) {
         UUID tenantId = ecriture.getKey().getTenantId();
         UUID ecritureComptableId = ecriture.getKey().getId();
         String currentUser = TenantContext.getCurrentUser();
 
-        PlanComptable principalAccount = planComptableRepository.findByKeyTenantIdAndNoCompte(tenantId, operation.getComptePrincipal())
-                .filter(PlanComptable::getActif)
+        PlanComptableDto principalAccount = planComptableIndex.findByNoCompte(tenantId, operation.getComptePrincipal())
+                .filter(PlanComptableDto::getActif)
                 .orElseThrow(() -> new ResourceNotFoundException("Compte", operation.getComptePrincipal()));
-        PlanComptable counterAccount = planComptableRepository.findByKeyTenantIdAndNoCompte(tenantId, operation.getEstCompteStatique() ? "445710" : "411000")
-                .filter(PlanComptable::getActif)
+        PlanComptableDto counterAccount = planComptableIndex.findByNoCompte(tenantId, operation.getEstCompteStatique() ? "445710" : "411000")
+                .filter(PlanComptableDto::getActif)
                 .orElseThrow(() -> new ResourceNotFoundException("Compte", operation.getEstCompteStatique() ? "445710" : "411000"));
 
         DetailEcriture debitEntry = new DetailEcriture();
@@ -388,7 +1055,7 @@ public class EcritureComptableService {
         debitKey.setEcritureComptableId(ecritureComptableId);
         debitKey.setId(UUID.randomUUID());
         debitEntry.setKey(debitKey);
-        debitEntry.setCompteComptableId(operation.getSensPrincipal().equals("DEBIT") ? principalAccount.getKey().getId() : counterAccount.getKey().getId());
+        debitEntry.setCompteComptableId(operation.getSensPrincipal().equals("DEBIT") ? principalAccount.getId() : counterAccount.getId());
         debitEntry.setLibelle("Transaction " + transaction.getNumeroRecu() + ", operation: " + operation.getTypeOperation());
         debitEntry.setSens("DEBIT");
         debitEntry.setMontantDebit(transaction.getMontantTransaction());
@@ -405,7 +1072,7 @@ public class EcritureComptableService {
         creditKey.setEcritureComptableId(ecritureComptableId);
         creditKey.setId(UUID.randomUUID());
         creditEntry.setKey(creditKey);
-        creditEntry.setCompteComptableId(operation.getSensPrincipal().equals("CREDIT") ? principalAccount.getKey().getId() : counterAccount.getKey().getId());
+        creditEntry.setCompteComptableId(operation.getSensPrincipal().equals("CREDIT") ? principalAccount.getId() : counterAccount.getId());
         creditEntry.setLibelle("Transaction " + transaction.getNumeroRecu() + ", operation: " + operation.getTypeOperation());
         creditEntry.setSens("CREDIT");
         creditEntry.setMontantCredit(transaction.getMontantTransaction());
@@ -416,8 +1083,7 @@ public class EcritureComptableService {
         creditEntry.setCreatedBy(currentUser != null ? currentUser : "system");
         creditEntry.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        detailEcritureService.createDetailEcriture(debitEntry);
-        detailEcritureService.createDetailEcriture(creditEntry);
+        return List.of(debitEntry, creditEntry);
     }
 
     private void validateEcritureDto(EcritureComptableDto dto) {
@@ -446,7 +1112,7 @@ public class EcritureComptableService {
         return ecriture;
     }
 
-    private EcritureComptableDto mapToDto(EcritureComptable ecriture) {
+    EcritureComptableDto mapToDto(EcritureComptable ecriture) {
         return EcritureComptableDto.builder()
                 .id(ecriture.getKey().getId())
                 .numeroEcriture(ecriture.getNumeroEcriture())
@@ -466,7 +1132,7 @@ public class EcritureComptableService {
                 .build();
     }
     
-    private DetailEcritureDto mapToDetailEcritureDto(DetailEcriture detail) {
+    DetailEcritureDto mapToDetailEcritureDto(DetailEcriture detail) {
         return DetailEcritureDto.builder()
                 .id(detail.getKey().getId())
                 .ecritureComptableId(detail.getKey().getEcritureComptableId())
@@ -480,22 +1146,23 @@ public class EcritureComptableService {
                 .build();
     }
 
-    private void logAuditAndSendKafka(UUID tenantId, UUID ecritureComptableId, String utilisateur, String action, String details) {
-        kafkaOperations.executeInTransaction(operations -> {
-            JournalAudit audit = new JournalAudit();
-            JournalAuditKey auditKey = new JournalAuditKey();
-            auditKey.setTenantId(tenantId);
-            auditKey.setId(UUID.randomUUID());
-            audit.setKey(auditKey);
-            audit.setEcritureComptableId(ecritureComptableId);
-            audit.setUtilisateur(utilisateur != null ? utilisateur : "system");
-            audit.setAction(action);
-            audit.setDetails(details);
-            audit.setDateAction(LocalDateTime.now());
-            journalAuditRepository.save(audit);
-            kafkaMessageService.sendAuditLog(audit, tenantId.toString(), action);
-            return null;
-        });
+    // L'audit, son événement et les événements associés sont écrits ensemble puis publiés par l'outbox
+    private void logAuditAndSendKafka(UUID tenantId, UUID ecritureComptableId, String utilisateur, String action, String details,
+                                      OutboxMessage... evenements) {
+        JournalAudit audit = new JournalAudit();
+        JournalAuditKey auditKey = new JournalAuditKey();
+        auditKey.setTenantId(tenantId);
+        auditKey.setId(UUID.randomUUID());
+        audit.setKey(auditKey);
+        audit.setEcritureComptableId(ecritureComptableId);
+        audit.setUtilisateur(utilisateur != null ? utilisateur : "system");
+        audit.setAction(action);
+        audit.setDetails(details);
+        audit.setDateAction(LocalDateTime.now());
+        List<OutboxMessage> messages = new ArrayList<>(evenements.length + 1);
+        messages.add(outboxService.auditLog(audit, tenantId, action));
+        messages.addAll(Arrays.asList(evenements));
+        outboxService.enregistrer(audit, messages);
     }
 
     private void validateBalance(List<DetailEcriture> details) {
@@ -506,13 +1173,13 @@ public class EcritureComptableService {
         }
     }
 
-    private void invalidateCaches(UUID tenantId) {
-        try {
-            redisTemplate.delete(CACHE_ALL_ECRITURES + tenantId);
-            redisTemplate.delete(CACHE_NON_VALIDATED_ECRITURES + tenantId);
-        } catch (Exception e) {
-            logger.warn("Failed to invalidate caches in Redis for tenant {}: {}", tenantId, e.getMessage());
-        }
+    // Met à jour les entrées et index en place, et n'invalide que les segments de recherche des dates touchées
+    private void updateCaches(UUID tenantId, List<EcritureComptableDto> ecritures) {
+        ecritureComptableCache.upsert(tenantId, ecritures);
+        ecritures.stream()
+                .map(e -> Map.entry(Optional.ofNullable(e.getJournalComptableId()), e.getDateEcriture()))
+                .distinct()
+                .forEach(e -> ecritureSearchCache.invalidate(tenantId, e.getKey().orElse(null), e.getValue()));
     }
 
     private UUID getCurrentPeriodeComptableId(UUID tenantId) {
@@ -0,0 +1,313 @@
+package com.yowyob.erp.accounting.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import com.yowyob.erp.config.redis.RedisCodecs;
+import com.yowyob.erp.config.redis.RedisValueCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Cache de recherche des écritures par segments de dates : un segment par mois complet couvert par
+ * la plage, un segment par jour pour les extrémités, par tenant et par journal le cas échéant.
+ * Une plage quelconque est reconstituée à partir des segments en cache ; seuls les segments absents
+ * sont relus, par plages contiguës. Une écriture n'invalide que le jour et le mois de sa date.
+ * <p>
+ * Chaque invalidation incrémente la génération du tenant. Un chargement n'écrit ses segments que si
+ * la génération n'a pas changé depuis le début de sa lecture dans Cassandra : une lecture concurrente
+ * d'une écriture ne remet pas en cache un segment qui vient d'être invalidé.
+ * Les segments sont encodés au format configuré pour le cache {@value #CACHE}.
+ */
+@Component
+public class EcritureSearchCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EcritureSearchCache.class);
+
+    static final String CACHE = "ecrituresSearch";
+
+    private static final Duration TTL_SEGMENT = Duration.ofMinutes(10);
+    private static final String TOUS_JOURNAUX = "all";
+    private static final TypeReference<List<EcritureComptableDto>> TYPE_SEGMENT = new TypeReference<>() {
+    };
+    // Survit largement à un chargement en cours : une génération expirée ne peut revenir à une valeur lue
+    private static final Duration TTL_GENERATION = Duration.ofHours(1);
+
+    // KEYS : génération, segments ; ARGV : génération lue, ttl, valeurs des segments
+    private static final RedisScript<Long> SCRIPT_ECRIRE_SEGMENTS = RedisScript.of(
+            "if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then return 0 end "
+                    + "for i = 2, #KEYS do redis.call('SET', KEYS[i], ARGV[i + 1], 'EX', ARGV[2]) end "
+                    + "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisValueCodec codec;
+    private final RedisCacheLoader cacheLoader;
+    private final int segmentsMax;
+
+    public EcritureSearchCache(StringRedisTemplate redisTemplate, RedisCodecs codecs, RedisCacheLoader cacheLoader,
+                               @Value("${app.accounting.recherche.segments-max:120}") int segmentsMax) {
+        this.redisTemplate = redisTemplate;
+        this.codec = codecs.codec(CACHE);
+        this.cacheLoader = cacheLoader;
+        this.segmentsMax = segmentsMax;
+    }
+
+    /**
+     * Écritures datées entre dateDebut et dateFin incluses. Le loader lit Cassandra pour une plage
+     * de dates contiguë (bornes incluses) ; ses résultats sont répartis dans les segments manquants.
+     * Une plage manquante n'est lue qu'une fois pour toutes les requêtes concurrentes, et un segment
+     * lu peu avant son expiration est rechargé en tâche de fond. Une plage découpée en plus de
+     * segments que la limite configurée est refusée.
+     */
+    public List<EcritureComptableDto> search(UUID tenantId, UUID journalId, LocalDate dateDebut, LocalDate dateFin,
+                                             BiFunction<LocalDate, LocalDate, List<EcritureComptableDto>> loader) {
+        if (dateFin.isBefore(dateDebut)) {
+            throw new BusinessException("La date de fin de la recherche précède la date de début");
+        }
+        List<Segment> segments = decouper(dateDebut, dateFin, segmentsMax);
+        Map<Segment, List<EcritureComptableDto>> contenus = lireSegments(tenantId, journalId, segments, loader);
+
+        List<Segment> manquants = segments.stream().filter(s -> !contenus.containsKey(s)).collect(Collectors.toList());
+        if (!manquants.isEmpty()) {
+            for (List<Segment> plage : plagesContigues(manquants)) {
+                LocalDate debut = plage.get(0).debut();
+                LocalDate fin = plage.get(plage.size() - 1).fin();
+                String plageKey = "ecritures:search-load:" + tenantId + ":" + (journalId != null ? journalId : TOUS_JOURNAUX)
+                        + ":" + debut + ":" + fin;
+                contenus.putAll(cacheLoader.coalesce(plageKey,
+                        () -> {
+                            Map<Segment, List<EcritureComptableDto>> relus = lireSegments(tenantId, journalId, plage, null);
+                            return relus.size() == plage.size() ? relus : null;
+                        },
+                        () -> charger(tenantId, journalId, plage, loader)));
+            }
+            logger.debug("Recherche d'écritures pour le tenant {} : {} segments en cache, {} relus",
+                    tenantId, segments.size() - manquants.size(), manquants.size());
+        }
+
+        List<EcritureComptableDto> resultat = new ArrayList<>();
+        segments.forEach(segment -> resultat.addAll(contenus.get(segment)));
+        return resultat;
+    }
+
+    /**
+     * Invalide les segments (jour et mois, tous journaux et journal de l'écriture) couvrant la date.
+     */
+    public void invalidate(UUID tenantId, UUID journalId, LocalDate dateEcriture) {
+        if (dateEcriture == null) {
+            return;
+        }
+        Segment jour = Segment.jour(dateEcriture);
+        Segment mois = Segment.mois(YearMonth.from(dateEcriture));
+        List<String> keys = new ArrayList<>(List.of(key(tenantId, null, jour), key(tenantId, null, mois)));
+        if (journalId != null) {
+            keys.add(key(tenantId, journalId, jour));
+            keys.add(key(tenantId, journalId, mois));
+        }
+        try {
+            // Génération incrémentée avant la suppression : un chargement en cours n'écrira plus ses segments
+            byte[] generation = generationKey(tenantId).getBytes(StandardCharsets.UTF_8);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().incr(generation);
+                connection.keyCommands().expire(generation, TTL_GENERATION.toSeconds());
+                connection.keyCommands().del(keys.stream().map(k -> k.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Invalidation du cache de recherche impossible pour le tenant {} au {}: {}", tenantId, dateEcriture, e.getMessage());
+        }
+    }
+
+    // Mois entiers compris dans la plage, jours isolés aux extrémités
+    static List<Segment> decouper(LocalDate dateDebut, LocalDate dateFin, int segmentsMax) {
+        List<Segment> segments = new ArrayList<>();
+        LocalDate date = dateDebut;
+        while (!date.isAfter(dateFin)) {
+            if (segments.size() == segmentsMax) {
+                throw new BusinessException("La plage de recherche est trop étendue (plus de " + segmentsMax
+                        + " segments jours / mois), réduisez-la");
+            }
+            YearMonth mois = YearMonth.from(date);
+            if (date.getDayOfMonth() == 1 && !mois.atEndOfMonth().isAfter(dateFin)) {
+                segments.add(Segment.mois(mois));
+                date = mois.plusMonths(1).atDay(1);
+            } else {
+                segments.add(Segment.jour(date));
+                date = date.plusDays(1);
+            }
+        }
+        return segments;
+    }
+
+    private static List<List<Segment>> plagesContigues(List<Segment> segments) {
+        List<List<Segment>> plages = new ArrayList<>();
+        List<Segment> courante = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!courante.isEmpty() && !courante.get(courante.size() - 1).fin().plusDays(1).equals(segment.debut())) {
+                plages.add(courante);
+                courante = new ArrayList<>();
+            }
+            courante.add(segment);
+        }
+        if (!courante.isEmpty()) {
+            plages.add(courante);
+        }
+        return plages;
+    }
+
+    // Segments présents en cache ; ceux proches de l'expiration sont rechargés en tâche de fond si un loader est fourni
+    private Map<Segment, List<EcritureComptableDto>> lireSegments(UUID tenantId, UUID journalId, List<Segment> segments,
+                                                                 BiFunction<LocalDate, LocalDate, List<EcritureComptableDto>> loader) {
+        Map<Segment, List<EcritureComptableDto>> contenus = new HashMap<>();
+        List<Object> resultats;
+        try {
+            resultats = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Segment segment : segments) {
+                    byte[] key = key(tenantId, journalId, segment).getBytes(StandardCharsets.UTF_8);
+                    connection.stringCommands().get(key);
+                    connection.keyCommands().pTtl(key);
+                }
+                return null;
+            }, RedisSerializer.byteArray());
+        } catch (RuntimeException e) {
+            logger.warn("Lecture du cache de recherche impossible pour le tenant {}: {}", tenantId, e.getMessage());
+            return contenus;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            RedisCacheLoader.Entree entree = RedisCacheLoader.deballer((byte[]) resultats.get(2 * i));
+            List<EcritureComptableDto> contenu = entree == null ? null : lire(entree.valeur());
+            if (contenu == null) {
+                continue;
+            }
+            contenus.put(segment, contenu);
+            long ttlRestant = resultats.get(2 * i + 1) instanceof Long ttl ? ttl : -1;
+            if (loader != null && cacheLoader.doitRafraichir(entree.dureeChargementMillis(), ttlRestant)) {
+                cacheLoader.rafraichirEnFond(key(tenantId, journalId, segment),
+                        () -> charger(tenantId, journalId, List.of(segment), loader));
+            }
+        }
+        return contenus;
+    }
+
+    // Lit une plage contiguë de segments dans Cassandra et les écrit en cache en un seul pipeline
+    private Map<Segment, List<EcritureComptableDto>> charger(UUID tenantId, UUID journalId, List<Segment> plage,
+                                                             BiFunction<LocalDate, LocalDate, List<EcritureComptableDto>> loader) {
+        // Lue avant Cassandra : une invalidation survenue pendant la lecture empêche l'écriture des segments
+        String generation = generation(tenantId);
+        long debutChargement = System.nanoTime();
+        List<EcritureComptableDto> lues = loader.apply(plage.get(0).debut(), plage.get(plage.size() - 1).fin());
+        long duree = Math.max(1, (System.nanoTime() - debutChargement) / 1_000_000);
+
+        Map<Segment, List<EcritureComptableDto>> contenus = new HashMap<>();
+        Map<String, byte[]> aEcrire = new LinkedHashMap<>();
+        for (Segment segment : plage) {
+            List<EcritureComptableDto> contenu = lues.stream()
+                    .filter(e -> !e.getDateEcriture().isBefore(segment.debut()) && !e.getDateEcriture().isAfter(segment.fin()))
+                    .collect(Collectors.toList());
+            contenus.put(segment, contenu);
+            ecrire(aEcrire, key(tenantId, journalId, segment), duree, contenu);
+        }
+        if (generation != null) {
+            ecrireSegments(tenantId, generation, aEcrire);
+        }
+        return contenus;
+    }
+
+    // Génération courante du tenant ("0" si aucune invalidation récente), null si Redis est indisponible
+    private String generation(UUID tenantId) {
+        try {
+            String generation = redisTemplate.opsForValue().get(generationKey(tenantId));
+            return generation != null ? generation : "0";
+        } catch (RuntimeException e) {
+            logger.warn("Génération du cache de recherche illisible pour le tenant {}: {}", tenantId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void ecrireSegments(UUID tenantId, String generation, Map<String, byte[]> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        // Clés puis arguments, les valeurs des segments étant binaires selon le format du cache
+        List<byte[]> keysEtArgs = new ArrayList<>(2 * segments.size() + 3);
+        keysEtArgs.add(bytes(generationKey(tenantId)));
+        segments.keySet().forEach(key -> keysEtArgs.add(bytes(key)));
+        keysEtArgs.add(bytes(generation));
+        keysEtArgs.add(bytes(Long.toString(TTL_SEGMENT.toSeconds())));
+        keysEtArgs.addAll(segments.values());
+        byte[] source = bytes(SCRIPT_ECRIRE_SEGMENTS.getScriptAsString());
+        int nombreKeys = segments.size() + 1;
+        try {
+            Long ecrits = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                    .eval(source, ReturnType.INTEGER, nombreKeys, keysEtArgs.toArray(byte[][]::new)));
+            if (ecrits == null || ecrits == 0) {
+                logger.debug("Segments de recherche du tenant {} invalidés pendant leur chargement, non mis en cache", tenantId);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Écriture du cache de recherche impossible pour le tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    private void ecrire(Map<String, byte[]> aEcrire, String key, long dureeChargement, List<EcritureComptableDto> contenu) {
+        try {
+            aEcrire.put(key, RedisCacheLoader.envelopper(dureeChargement, codec.encoder(contenu)));
+        } catch (SerializationException e) {
+            logger.warn("Segment de recherche non sérialisable {}: {}", key, e.getMessage());
+        }
+    }
+
+    private List<EcritureComptableDto> lire(byte[] valeur) {
+        try {
+            return codec.decoder(valeur, TYPE_SEGMENT);
+        } catch (SerializationException e) {
+            logger.warn("Segment de recherche illisible : {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String valeur) {
+        return valeur.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String generationKey(UUID tenantId) {
+        return "ecritures:search-generation:" + tenantId;
+    }
+
+    private static String key(UUID tenantId, UUID journalId, Segment segment) {
+        return "ecritures:search:" + tenantId + ":" + (journalId != null ? journalId : TOUS_JOURNAUX) + ":" + segment.code();
+    }
+
+    record Segment(String code, LocalDate debut, LocalDate fin) {
+
+        static Segment jour(LocalDate date) {
+            return new Segment(date.toString(), date, date);
+        }
+
+        static Segment mois(YearMonth mois) {
+            return new Segment(mois.toString(), mois.atDay(1), mois.atEndOfMonth());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.yowyob.erp.common.enums.SourceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Registre d'idempotence des objets sources (tenant, type de source, id de source) → écriture.
+ * La réservation se fait par un seul INSERT IF NOT EXISTS, qui renvoie l'écriture déjà associée
+ * lorsque la source est connue : aucune lecture préalable n'est nécessaire.
+ * <p>
+ * Une réservation dont l'écriture n'a jamais été écrite (nœud arrêté entre la réservation et
+ * l'écriture) peut être reprise une fois le délai de reprise écoulé, par un LWT conditionné sur
+ * l'écriture réservée : un seul nœud la reprend. Le délai doit dépasser la durée d'une écriture.
+ */
+@Service
+public class EcritureSourceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EcritureSourceService.class);
+
+    private static final String INSERT_SOURCE =
+            "INSERT INTO ecriture_source (tenant_id, source_type, source_id, ecriture_id, created_at) VALUES (?, ?, ?, ?, ?) IF NOT EXISTS";
+    private static final String DELETE_SOURCE =
+            "DELETE FROM ecriture_source WHERE tenant_id = ? AND source_type = ? AND source_id = ? IF ecriture_id = ?";
+    private static final String UPDATE_REPRISE =
+            "UPDATE ecriture_source SET ecriture_id = ?, created_at = ? WHERE tenant_id = ? AND source_type = ? AND source_id = ? IF ecriture_id = ?";
+    private static final String DELETE_SOURCE_ECRITURE =
+            "DELETE FROM ecriture_source WHERE tenant_id = ? AND source_type = ? AND source_id = ?";
+
+    private final CqlSession session;
+    private final Duration delaiReprise;
+
+    public EcritureSourceService(CqlSession session,
+                                 @Value("${app.accounting.sources.delai-reprise:PT5M}") Duration delaiReprise) {
+        this.session = session;
+        this.delaiReprise = delaiReprise;
+    }
+
+    /**
+     * Réservation existante d'une source : écriture associée et date de la réservation.
+     */
+    public record Reservation(UUID ecritureId, Instant reserveeLe) {
+    }
+
+    /**
+     * Réserve la source pour l'écriture donnée. Retourne la réservation existante si la source
+     * a déjà été comptabilisée (ou est en cours de comptabilisation), ou vide si la réservation a réussi.
+     */
+    public Optional<Reservation> claim(UUID tenantId, SourceType sourceType, UUID sourceId, UUID ecritureId) {
+        Row resultat = session.execute(session.prepare(INSERT_SOURCE)
+                .bind(tenantId, sourceType.name(), sourceId, ecritureId, Instant.now())).one();
+        if (resultat != null && !resultat.getBoolean("[applied]")) {
+            logger.info("Source {} {} déjà comptabilisée pour le tenant {}", sourceType, sourceId, tenantId);
+            return Optional.of(new Reservation(resultat.getUuid("ecriture_id"), resultat.getInstant("created_at")));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reprend pour l'écriture donnée une réservation dont l'écriture est introuvable. Réussit seulement
+     * si la réservation a dépassé le délai de reprise et n'a pas été reprise entre-temps par un autre nœud.
+     */
+    public boolean reprendre(UUID tenantId, SourceType sourceType, UUID sourceId, Reservation abandonnee, UUID ecritureId) {
+        Instant maintenant = Instant.now();
+        if (abandonnee.reserveeLe() != null && abandonnee.reserveeLe().plus(delaiReprise).isAfter(maintenant)) {
+            return false;
+        }
+        Row resultat = session.execute(session.prepare(UPDATE_REPRISE)
+                .bind(ecritureId, maintenant, tenantId, sourceType.name(), sourceId, abandonnee.ecritureId())).one();
+        boolean reprise = resultat == null || resultat.getBoolean("[applied]");
+        if (reprise) {
+            logger.warn("Réservation abandonnée de la source {} {} reprise pour le tenant {} (écriture {} jamais écrite)",
+                    sourceType, sourceId, tenantId, abandonnee.ecritureId());
+        }
+        return reprise;
+    }
+
+    /**
+     * Libère la réservation si l'écriture n'a pas pu être persistée, pour permettre un nouvel essai.
+     */
+    public void release(UUID tenantId, SourceType sourceType, UUID sourceId, UUID ecritureId) {
+        try {
+            session.execute(session.prepare(DELETE_SOURCE).bind(tenantId, sourceType.name(), sourceId, ecritureId));
+        } catch (RuntimeException e) {
+            logger.warn("Impossible de libérer la source {} {} pour le tenant {}: {}", sourceType, sourceId, tenantId, e.getMessage());
+        }
+    }
+
+    /**
+     * Suppression de la réservation d'une écriture supprimée, à exécuter dans le même batch que la
+     * suppression de l'écriture : la source peut ensuite être comptabilisée à nouveau.
+     */
+    public BoundStatement suppression(UUID tenantId, SourceType sourceType, UUID sourceId) {
+        return session.prepare(DELETE_SOURCE_ECRITURE).bind(tenantId, sourceType.name(), sourceId);
+    }
+}
@@ -0,0 +1,266 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.GrandLivreDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.common.exception.BusinessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Grand livre : lignes des écritures validées rangées par (tenant, compte, année) puis par date,
+ * écrites à la validation. L'export parcourt les partitions avec la pagination du driver et écrit
+ * chaque ligne au fil de l'eau avec son solde progressif, sans jamais matérialiser le résultat.
+ * Le curseur de reprise porte ce solde : il est signé (HMAC-SHA256, lié au tenant et à la date de début)
+ * pour qu'un client ne puisse pas le modifier. Les écritures validées avant l'alimentation du grand livre
+ * y sont reportées par la reconstruction des soldes (ProjectionEcritureService).
+ */
+@Service
+public class GrandLivreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GrandLivreService.class);
+
+    private static final String INSERT_LIGNE =
+            "INSERT INTO grand_livre (tenant_id, compte_id, annee, date_ecriture, ecriture_id, ligne_id, numero_ecriture, "
+                    + "libelle, montant_debit, montant_credit) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_LIGNES =
+            "SELECT date_ecriture, ecriture_id, ligne_id, numero_ecriture, libelle, montant_debit, montant_credit FROM grand_livre "
+                    + "WHERE tenant_id = ? AND compte_id = ? AND annee = ? AND date_ecriture >= ? AND date_ecriture <= ?";
+    // Reprise après un curseur : lignes strictement postérieures à la position (date, écriture, ligne)
+    private static final String SELECT_LIGNES_APRES =
+            "SELECT date_ecriture, ecriture_id, ligne_id, numero_ecriture, libelle, montant_debit, montant_credit FROM grand_livre "
+                    + "WHERE tenant_id = ? AND compte_id = ? AND annee = ? AND (date_ecriture, ecriture_id, ligne_id) > (?, ?, ?) "
+                    + "AND date_ecriture <= ?";
+
+    private static final int TAILLE_PAGE = 1000;
+    private static final String ALGORITHME_SIGNATURE = "HmacSHA256";
+    private static final String ENTETE_CSV =
+            "numeroCompte;libelleCompte;date;numeroEcriture;libelle;montantDebit;montantCredit;soldeProgressive;curseur";
+
+    public enum Format { NDJSON, CSV }
+
+    @FunctionalInterface
+    public interface Export {
+        void ecrire(OutputStream out) throws IOException;
+    }
+
+    private final CqlSession session;
+    private final PlanComptableIndex planComptableIndex;
+    private final SoldeCompteService soldeCompteService;
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec cleCurseur;
+
+    public GrandLivreService(CqlSession session,
+                             PlanComptableIndex planComptableIndex,
+                             SoldeCompteService soldeCompteService,
+                             ObjectMapper objectMapper,
+                             @Value("${app.accounting.grand-livre.cle-curseur}") String cleCurseur) {
+        this.session = session;
+        this.planComptableIndex = planComptableIndex;
+        this.soldeCompteService = soldeCompteService;
+        this.objectMapper = objectMapper;
+        this.cleCurseur = new SecretKeySpec(cleCurseur.getBytes(StandardCharsets.UTF_8), ALGORITHME_SIGNATURE);
+    }
+
+    /**
+     * Reporte les lignes d'une écriture validée au grand livre de chaque compte.
+     */
+    public void enregistrerLignes(UUID tenantId, EcritureComptable ecriture, List<DetailEcriture> details) {
+        PreparedStatement insert = session.prepare(INSERT_LIGNE);
+        LocalDate date = ecriture.getDateEcriture();
+        BatchStatementBuilder batch = BatchStatement.builder(DefaultBatchType.LOGGED);
+        for (DetailEcriture detail : details) {
+            batch.addStatement(insert.bind(tenantId, detail.getCompteComptableId(), date.getYear(), date,
+                    ecriture.getKey().getId(), detail.getKey().getId(), ecriture.getNumeroEcriture(), detail.getLibelle(),
+                    montant(detail.getMontantDebit()), montant(detail.getMontantCredit())));
+        }
+        session.execute(batch.build());
+    }
+
+    /**
+     * Prépare l'export du grand livre des comptes compris entre compteDebut et compteFin (numéros inclus)
+     * sur la période, en NDJSON ou CSV. Les paramètres sont validés ici, avant que la réponse ne soit
+     * engagée ; chaque ligne exportée porte un curseur permettant de reprendre juste après elle.
+     */
+    public Export preparerExport(UUID tenantId, String compteDebut, String compteFin, LocalDate dateDebut,
+                                 LocalDate dateFin, Format format, String curseur) {
+        if (dateFin.isBefore(dateDebut)) {
+            throw new BusinessException("La date de fin doit être postérieure à la date de début");
+        }
+        String fin = compteFin == null || compteFin.isBlank() ? compteDebut : compteFin;
+        Position reprise = curseur == null || curseur.isBlank() ? null : lireCurseur(tenantId, dateDebut, curseur);
+
+        List<PlanComptableDto> comptes = planComptableIndex.findAll(tenantId).stream()
+                .filter(c -> c.getNoCompte().compareTo(compteDebut) >= 0 && c.getNoCompte().compareTo(fin) <= 0)
+                .filter(c -> reprise == null || c.getNoCompte().compareTo(reprise.noCompte()) >= 0)
+                .collect(Collectors.toList());
+        return out -> exporter(tenantId, comptes, dateDebut, dateFin, format, reprise, out);
+    }
+
+    private void exporter(UUID tenantId, List<PlanComptableDto> comptes, LocalDate dateDebut, LocalDate dateFin,
+                          Format format, Position reprise, OutputStream out) throws IOException {
+        PreparedStatement selectLignes = session.prepare(SELECT_LIGNES);
+        PreparedStatement selectLignesApres = session.prepare(SELECT_LIGNES_APRES);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // Un Mac par export (non thread-safe) : clé initialisée une fois pour toutes les lignes
+        Mac mac = nouveauMac();
+        if (format == Format.CSV && reprise == null) {
+            writer.write(ENTETE_CSV);
+            writer.write('\n');
+        }
+
+        long lignes = 0;
+        for (PlanComptableDto compte : comptes) {
+            boolean repriseCompte = reprise != null && reprise.noCompte().equals(compte.getNoCompte());
+            long solde = repriseCompte
+                    ? reprise.soldeCentimes()
+                    : Math.round(soldeCompteService.getSoldeAu(tenantId, compte.getId(), dateDebut.minusDays(1)).getSolde() * 100);
+            int premiereAnnee = repriseCompte ? reprise.date().getYear() : dateDebut.getYear();
+
+            for (int annee = premiereAnnee; annee <= dateFin.getYear(); annee++) {
+                BoundStatement requete = repriseCompte && annee == reprise.date().getYear()
+                        ? selectLignesApres.bind(tenantId, compte.getId(), annee,
+                                reprise.date(), reprise.ecritureId(), reprise.ligneId(), dateFin)
+                        : selectLignes.bind(tenantId, compte.getId(), annee, dateDebut, dateFin);
+                // L'itération récupère les pages suivantes à la demande : une seule page en mémoire
+                for (Row row : session.execute(requete.setPageSize(TAILLE_PAGE))) {
+                    long debit = Math.round(row.getDouble("montant_debit") * 100);
+                    long credit = Math.round(row.getDouble("montant_credit") * 100);
+                    solde += debit - credit;
+                    Position position = new Position(compte.getNoCompte(), row.getLocalDate("date_ecriture"),
+                            row.getUuid("ecriture_id"), row.getUuid("ligne_id"), solde);
+                    GrandLivreDto.GrandLivreLineDto ligne = GrandLivreDto.GrandLivreLineDto.builder()
+                            .numeroCompte(compte.getNoCompte())
+                            .libelleCompte(compte.getLibelle())
+                            .date(position.date())
+                            .numeroEcriture(row.getString("numero_ecriture"))
+                            .libelle(row.getString("libelle"))
+                            .montantDebit(debit / 100.0)
+                            .montantCredit(credit / 100.0)
+                            .soldeProgressive(solde / 100.0)
+                            .curseur(signerCurseur(mac, tenantId, dateDebut, position))
+                            .build();
+                    ecrireLigne(writer, format, ligne);
+                    if (++lignes % TAILLE_PAGE == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        writer.flush();
+        logger.info("Grand livre exporté pour le tenant {} ({} comptes) : {} lignes", tenantId, comptes.size(), lignes);
+    }
+
+    private void ecrireLigne(Writer writer, Format format, GrandLivreDto.GrandLivreLineDto ligne) throws IOException {
+        if (format == Format.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(ligne));
+        } else {
+            writer.write(String.join(";",
+                    csv(ligne.getNumeroCompte()), csv(ligne.getLibelleCompte()), ligne.getDate().toString(),
+                    csv(ligne.getNumeroEcriture()), csv(ligne.getLibelle()), ligne.getMontantDebit().toString(),
+                    ligne.getMontantCredit().toString(), ligne.getSoldeProgressive().toString(), ligne.getCurseur()));
+        }
+        writer.write('\n');
+    }
+
+    private static String csv(String valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        if (valeur.indexOf(';') >= 0 || valeur.indexOf('"') >= 0 || valeur.indexOf('\n') >= 0) {
+            return '"' + valeur.replace("\"", "\"\"") + '"';
+        }
+        return valeur;
+    }
+
+    private static double montant(Double valeur) {
+        return valeur == null ? 0.0 : valeur;
+    }
+
+    // Curseur : position encodée, suivie de sa signature liée au tenant et à la date de début de l'export
+    private String signerCurseur(Mac mac, UUID tenantId, LocalDate dateDebut, Position position) {
+        String brut = position.encode();
+        return brut + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(signature(mac, tenantId, dateDebut, brut));
+    }
+
+    private Position lireCurseur(UUID tenantId, LocalDate dateDebut, String curseur) {
+        int separateur = curseur.lastIndexOf('.');
+        if (separateur < 0) {
+            throw new BusinessException("Curseur de grand livre invalide");
+        }
+        String brut = curseur.substring(0, separateur);
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(curseur.substring(separateur + 1));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Curseur de grand livre invalide");
+        }
+        if (!MessageDigest.isEqual(signature, signature(nouveauMac(), tenantId, dateDebut, brut))) {
+            throw new BusinessException("Curseur de grand livre invalide");
+        }
+        return Position.decode(brut);
+    }
+
+    private Mac nouveauMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHME_SIGNATURE);
+            mac.init(cleCurseur);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Signature du curseur de grand livre impossible", e);
+        }
+    }
+
+    // doFinal remet le Mac à zéro : il est réutilisable pour la ligne suivante avec la même clé
+    private static byte[] signature(Mac mac, UUID tenantId, LocalDate dateDebut, String brut) {
+        return mac.doFinal((tenantId + "|" + dateDebut + "|" + brut).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Position d'une ligne exportée et solde progressif à cette ligne, encodés dans le curseur
+    private record Position(String noCompte, LocalDate date, UUID ecritureId, UUID ligneId, long soldeCentimes) {
+
+        String encode() {
+            String brut = String.join("|", noCompte, date.toString(), ecritureId.toString(),
+                    ligneId.toString(), Long.toString(soldeCentimes));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String curseur) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8).split("\\|");
+                return new Position(parts[0], LocalDate.parse(parts[1]), UUID.fromString(parts[2]),
+                        UUID.fromString(parts[3]), Long.parseLong(parts[4]));
+            } catch (RuntimeException e) {
+                throw new BusinessException("Curseur de grand livre invalide");
+            }
+        }
+    }
+}
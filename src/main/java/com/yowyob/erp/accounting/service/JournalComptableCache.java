@@ -0,0 +1,79 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.JournalComptableDto;
+import com.yowyob.erp.accounting.entity.JournalComptable;
+import com.yowyob.erp.accounting.repository.JournalComptableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cache en mémoire des journaux actifs par tenant (métadonnées uniquement).
+ * Chargé à la première demande pour un tenant, invalidé par les événements journal.comptable.*.
+ * La lecture Cassandra se fait hors de la map, pour ne pas bloquer les autres tenants du même segment.
+ */
+@Component
+public class JournalComptableCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalComptableCache.class);
+
+    private final JournalComptableRepository journalComptableRepository;
+    private final Map<UUID, Map<UUID, JournalComptableDto>> journauxActifsParTenant = new ConcurrentHashMap<>();
+    // Incrémenté à chaque invalidation : un chargement commencé avant n'est pas conservé
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public JournalComptableCache(JournalComptableRepository journalComptableRepository) {
+        this.journalComptableRepository = journalComptableRepository;
+    }
+
+    public Optional<JournalComptableDto> getActiveJournal(UUID tenantId, UUID journalComptableId) {
+        Map<UUID, JournalComptableDto> journaux = journauxActifsParTenant.get(tenantId);
+        if (journaux == null) {
+            long generation = invalidations.get();
+            Map<UUID, JournalComptableDto> charges = loadActiveJournals(tenantId);
+            Map<UUID, JournalComptableDto> existants = journauxActifsParTenant.putIfAbsent(tenantId, charges);
+            journaux = existants != null ? existants : charges;
+            if (existants == null && invalidations.get() != generation) {
+                // Invalidation pendant le chargement : la prochaine lecture recharge
+                journauxActifsParTenant.remove(tenantId, charges);
+            }
+        }
+        return Optional.ofNullable(journaux.get(journalComptableId));
+    }
+
+    public void invalidate(UUID tenantId) {
+        invalidations.incrementAndGet();
+        if (journauxActifsParTenant.remove(tenantId) != null) {
+            logger.debug("Cache des journaux actifs invalidé pour le tenant : {}", tenantId);
+        }
+    }
+
+    private Map<UUID, JournalComptableDto> loadActiveJournals(UUID tenantId) {
+        logger.debug("Chargement des journaux actifs en cache pour le tenant : {}", tenantId);
+        return journalComptableRepository.findByKeyTenantIdAndActifTrue(tenantId)
+                .stream()
+                .map(JournalComptableCache::toMetadata)
+                .collect(Collectors.toUnmodifiableMap(JournalComptableDto::getId, Function.identity()));
+    }
+
+    private static JournalComptableDto toMetadata(JournalComptable journal) {
+        return JournalComptableDto.builder()
+                .id(journal.getKey().getId())
+                .codeJournal(journal.getCodeJournal())
+                .libelle(journal.getLibelle())
+                .typeJournal(journal.getTypeJournal())
+                .notes(journal.getNotes())
+                .actif(journal.getActif())
+                .createdAt(journal.getCreatedAt())
+                .updatedAt(journal.getUpdatedAt())
+                .build();
+    }
+}
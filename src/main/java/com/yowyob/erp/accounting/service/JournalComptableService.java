@@ -5,23 +5,32 @@ import com.yowyob.erp.accounting.dto.EcritureComptableDto;
 import com.yowyob.erp.accounting.entity.JournalAudit;
 import com.yowyob.erp.accounting.entity.JournalComptable;
 import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entity.EcritureParJournal;
 import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
 import com.yowyob.erp.accounting.entityKey.JournalComptableKey;
-import com.yowyob.erp.accounting.repository.JournalAuditRepository;
 import com.yowyob.erp.accounting.repository.JournalComptableRepository;
 import com.yowyob.erp.accounting.repository.EcritureComptableRepository;
+import com.yowyob.erp.accounting.repository.EcritureParJournalRepository;
 import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.common.util.CursorUtils;
 import com.yowyob.erp.config.tenant.TenantContext;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
+import com.yowyob.erp.config.kafka.OutboxService;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -30,23 +39,31 @@ import java.util.stream.Collectors;
 public class JournalComptableService {
 
     private static final Logger logger = LoggerFactory.getLogger(JournalComptableService.class);
+    // Ids relus par requête IN sur la partition du tenant
+    private static final int TAILLE_LOT_IDS = 100;
     private final JournalComptableRepository journalComptableRepository;
     private final EcritureComptableRepository ecritureComptableRepository;
-    private final JournalAuditRepository journalAuditRepository;
+    private final EcritureParJournalRepository ecritureParJournalRepository;
     private final Validator validator;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final JournalComptableCache journalComptableCache;
+    private final VersionReferentielService versionReferentielService;
 
     public JournalComptableService(
         JournalComptableRepository journalComptableRepository, 
-       JournalAuditRepository journalAuditRepository, 
        EcritureComptableRepository ecritureComptableRepository,
+       EcritureParJournalRepository ecritureParJournalRepository,
        Validator validator, 
-       KafkaTemplate<String, Object> kafkaTemplate) {
+       OutboxService outboxService,
+       JournalComptableCache journalComptableCache,
+       VersionReferentielService versionReferentielService) {
         this.journalComptableRepository = journalComptableRepository;
-        this.journalAuditRepository = journalAuditRepository;
         this.ecritureComptableRepository = ecritureComptableRepository;
+        this.ecritureParJournalRepository = ecritureParJournalRepository;
         this.validator = validator;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxService = outboxService;
+        this.journalComptableCache = journalComptableCache;
+        this.versionReferentielService = versionReferentielService;
     }
 
     @Transactional
@@ -71,9 +88,12 @@ public class JournalComptableService {
         journalComptable.setCreatedBy(currentUser != null ? currentUser : "system");
         journalComptable.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        JournalComptable savedJournalComptable = journalComptableRepository.save(journalComptable);
+        // Le journal et son événement sont écrits dans le même batch
+        outboxService.enregistrer(journalComptable, outboxService.message(tenantId, "journal.comptable.created", journalComptable));
+        JournalComptable savedJournalComptable = journalComptable;
         logAudit(tenantId, null, currentUser, "CREATE", "Created journal: " + journalComptableDto.getCodeJournal());
-        kafkaTemplate.send("journal.comptable.created", tenantId.toString(), savedJournalComptable);
+        journalComptableCache.invalidate(tenantId);
+        versionReferentielService.incrementer(TypeReferentiel.JOURNAL_COMPTABLE);
         logger.info("Journal comptable créé avec succès : {}", savedJournalComptable.getKey().getId());
         return mapToDto(savedJournalComptable);
     }
@@ -81,30 +101,58 @@ public class JournalComptableService {
     public Optional<JournalComptableDto> getJournalComptable(UUID journalComptableId) {
         logger.info("Récupération du journal comptable avec l'ID : {}", journalComptableId);
         validerAccesTenantId();
-        UUID tenantId = TenantContext.getCurrentTenant();
-        return journalComptableRepository.findByKeyTenantIdAndKeyId(tenantId, journalComptableId)
-                .map(journal -> {
-                    JournalComptableDto dto = mapToDto(journal);
-                    // Fetch and map all associated EcritureComptable entries
-                    List<EcritureComptableDto> ecritures = ecritureComptableRepository.findByKeyTenantIdAndJournalComptableId(tenantId, journalComptableId)
-                            .stream()
-                            .map(this::mapEcritureToDto) 
-                            .collect(Collectors.toList());
-                    dto.setEcritureComptable(ecritures);
-                    return dto;
-                });
+        return journalComptableRepository.findByKeyTenantIdAndKeyId(TenantContext.getCurrentTenant(), journalComptableId)
+                .map(this::mapToDto);
     }
-        
 
-        
+    /**
+     * Recherche légère d'un journal actif (métadonnées seules) servie par le cache en mémoire,
+     * à utiliser sur le chemin de saisie des écritures.
+     */
+    public Optional<JournalComptableDto> getActiveJournalComptable(UUID journalComptableId) {
+        validerAccesTenantId();
+        return journalComptableCache.getActiveJournal(TenantContext.getCurrentTenant(), journalComptableId);
+    }
 
-    public List<JournalComptableDto> getAllJournalComptables() {
-        logger.info("Récupération de tous les journals comptables pour le tenant");
+    /**
+     * Écritures du journal par date, paginées sur l'index ecriture_par_journal (partition du journal)
+     * puis relues par lot d'ids, au lieu de l'index secondaire de ecriture_comptable.
+     */
+    public CursorPage<EcritureComptableDto> getEcrituresJournal(UUID journalComptableId, String cursor, Integer size) {
+        logger.info("Récupération paginée des écritures du journal comptable : {}", journalComptableId);
         validerAccesTenantId();
-        return journalComptableRepository.findByKeyTenantId(TenantContext.getCurrentTenant())
-                .stream()
-                .map(this::mapToDto)
+        UUID tenantId = TenantContext.getCurrentTenant();
+        if (!journalComptableRepository.existsByKeyTenantIdAndKeyId(tenantId, journalComptableId)) {
+            throw new IllegalArgumentException("L'ID du journal comptable n'existe pas : " + journalComptableId);
+        }
+        Slice<EcritureParJournal> entrees = ecritureParJournalRepository.findSliceByTenantIdAndJournalId(tenantId,
+                journalComptableId, CursorUtils.toPageable(cursor, size));
+        List<UUID> ids = entrees.getContent().stream().map(entree -> entree.getKey().getId()).collect(Collectors.toList());
+        Map<UUID, EcritureComptable> ecritures = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += TAILLE_LOT_IDS) {
+            ecritureComptableRepository.findByKeyTenantIdAndKeyIdIn(tenantId, ids.subList(i, Math.min(ids.size(), i + TAILLE_LOT_IDS)))
+                    .forEach(ecriture -> ecritures.put(ecriture.getKey().getId(), ecriture));
+        }
+        List<EcritureComptableDto> content = ids.stream()
+                .map(ecritures::get)
+                .filter(Objects::nonNull)
+                .map(this::mapEcritureToDto)
                 .collect(Collectors.toList());
+        String nextCursor = CursorUtils.nextCursor(entrees);
+        return CursorPage.<EcritureComptableDto>builder()
+                .content(content)
+                .size(content.size())
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+    }
+
+    public CursorPage<JournalComptableDto> getAllJournalComptables(String cursor, Integer size) {
+        logger.info("Récupération paginée des journals comptables pour le tenant");
+        validerAccesTenantId();
+        return CursorUtils.toCursorPage(
+                journalComptableRepository.findByKeyTenantId(TenantContext.getCurrentTenant(), CursorUtils.toPageable(cursor, size)),
+                this::mapToDto);
     }
 
     public List<JournalComptableDto> getActiveJournalComptables() {
@@ -133,9 +181,12 @@ public class JournalComptableService {
         updatedJournalComptable.setUpdatedAt(LocalDateTime.now());
         updatedJournalComptable.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        JournalComptable savedJournalComptable = journalComptableRepository.save(updatedJournalComptable);
+        outboxService.enregistrer(updatedJournalComptable,
+                outboxService.message(tenantId, "journal.comptable.updated", updatedJournalComptable));
+        JournalComptable savedJournalComptable = updatedJournalComptable;
         logAudit(tenantId, null, currentUser, "UPDATE", "Updated journal: " + updatedJournalComptableDto.getCodeJournal());
-        kafkaTemplate.send("journal.comptable.updated", tenantId.toString(), savedJournalComptable);
+        journalComptableCache.invalidate(tenantId);
+        versionReferentielService.incrementer(TypeReferentiel.JOURNAL_COMPTABLE);
         logger.info("Journal comptable mis à jour avec succès : {}", journalComptableId);
         return mapToDto(savedJournalComptable);
     }
@@ -152,7 +203,9 @@ public class JournalComptableService {
         }
         journalComptableRepository.deleteById(key);
         logAudit(tenantId, null, currentUser, "DELETE", "Deleted journal ID: " + journalComptableId);
-        kafkaTemplate.send("journal.comptable.deleted", tenantId.toString(), journalComptableId);
+        journalComptableCache.invalidate(tenantId);
+        versionReferentielService.incrementer(TypeReferentiel.JOURNAL_COMPTABLE);
+        outboxService.publier(outboxService.message(tenantId, "journal.comptable.deleted", journalComptableId));
         logger.info("Journal comptable supprimé avec succès : {}", journalComptableId);
     }
 
@@ -193,8 +246,7 @@ public class JournalComptableService {
         audit.setAction(action);
         audit.setDetails(details);
         audit.setDateAction(LocalDateTime.now());
-        journalAuditRepository.save(audit);
-        kafkaTemplate.send("journal.audit.created", tenantId.toString(), audit);
+        outboxService.enregistrer(audit, outboxService.message(tenantId, "journal.audit.created", audit));
     }
 
     private JournalComptable mapToEntity(JournalComptableDto dto, UUID tenantId) {
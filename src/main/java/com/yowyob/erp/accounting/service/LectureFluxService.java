@@ -0,0 +1,100 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.DetailEcritureDto;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.accounting.dto.JournalAuditDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.reactive.ReactiveDetailEcritureRepository;
+import com.yowyob.erp.accounting.reactive.ReactiveEcritureComptableRepository;
+import com.yowyob.erp.accounting.reactive.ReactiveJournalAuditRepository;
+import com.yowyob.erp.accounting.reactive.ReactivePlanComptableRepository;
+import com.yowyob.erp.config.tenant.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+/**
+ * Lectures intégrales d'un tenant sous forme de Flux, pour les listes trop grandes pour être
+ * construites en mémoire. Les pages Cassandra sont lues au rythme de l'abonné (le client HTTP).
+ * Le tenant est lu au moment de l'appel, sur le thread de la requête.
+ */
+@Service
+public class LectureFluxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LectureFluxService.class);
+
+    private final ReactiveEcritureComptableRepository ecritureRepository;
+    private final ReactiveDetailEcritureRepository detailEcritureRepository;
+    private final ReactiveJournalAuditRepository journalAuditRepository;
+    private final ReactivePlanComptableRepository planComptableRepository;
+    private final EcritureComptableService ecritureComptableService;
+    private final PlanComptableService planComptableService;
+
+    public LectureFluxService(ReactiveEcritureComptableRepository ecritureRepository,
+                              ReactiveDetailEcritureRepository detailEcritureRepository,
+                              ReactiveJournalAuditRepository journalAuditRepository,
+                              ReactivePlanComptableRepository planComptableRepository,
+                              EcritureComptableService ecritureComptableService,
+                              PlanComptableService planComptableService) {
+        this.ecritureRepository = ecritureRepository;
+        this.detailEcritureRepository = detailEcritureRepository;
+        this.journalAuditRepository = journalAuditRepository;
+        this.planComptableRepository = planComptableRepository;
+        this.ecritureComptableService = ecritureComptableService;
+        this.planComptableService = planComptableService;
+    }
+
+    public Flux<EcritureComptableDto> streamEcritures() {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        logger.info("Streaming des écritures du tenant {}", tenantId);
+        return ecritureRepository.findByKeyTenantId(tenantId)
+                .map(ecritureComptableService::mapToDto);
+    }
+
+    /**
+     * Lignes d'écriture du tenant, ou d'une seule écriture si ecritureId est renseigné.
+     */
+    public Flux<DetailEcritureDto> streamDetails(UUID ecritureId) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        logger.info("Streaming des lignes d'écriture du tenant {} (écriture {})", tenantId, ecritureId);
+        return (ecritureId != null
+                ? detailEcritureRepository.findByKeyTenantIdAndKeyEcritureComptableId(tenantId, ecritureId)
+                : detailEcritureRepository.findByKeyTenantId(tenantId))
+                .map(ecritureComptableService::mapToDetailEcritureDto);
+    }
+
+    public Flux<JournalAuditDto> streamJournalAudit() {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        logger.info("Streaming du journal d'audit du tenant {}", tenantId);
+        return journalAuditRepository.findByKeyTenantId(tenantId)
+                .map(LectureFluxService::mapToDto);
+    }
+
+    public Flux<PlanComptableDto> streamPlanComptable() {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        logger.info("Streaming du plan comptable du tenant {}", tenantId);
+        return planComptableRepository.findByKeyTenantId(tenantId)
+                .map(planComptableService::mapToDto);
+    }
+
+    // Entrée d'audit exposée sans sa clé de partition (tenant) ni ses champs techniques de mise à jour
+    static JournalAuditDto mapToDto(JournalAudit audit) {
+        return JournalAuditDto.builder()
+                .id(audit.getKey().getId())
+                .ecritureComptableId(audit.getEcritureComptableId())
+                .action(audit.getAction())
+                .dateAction(audit.getDateAction())
+                .utilisateur(audit.getUtilisateur())
+                .details(audit.getDetails())
+                .adresseIP(audit.getAdresseIP())
+                .donneesAvant(audit.getDonneesAvant())
+                .donneesApres(audit.getDonneesApres())
+                .createdAt(audit.getCreatedAt())
+                .createdBy(audit.getCreatedBy())
+                .build();
+    }
+}
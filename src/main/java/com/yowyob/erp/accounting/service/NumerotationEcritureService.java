@@ -0,0 +1,218 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Numérotation séquentielle des écritures par journal et période.
+ * Chaque instance réserve des blocs de numéros par une seule mise à jour conditionnelle (LWT)
+ * puis les distribue localement sans verrou. Les numéros non utilisés (rollback) sont rendus
+ * et réattribués en priorité ; à l'arrêt, ceux qui restent sont restitués au compteur ou
+ * déposés dans sequence_ecriture_libre pour qu'une autre instance les reprenne.
+ * <p>
+ * Trous de numérotation possibles, tracés pour l'audit :
+ * <ul>
+ *   <li>arrêt brutal de l'instance : la fin de son bloc courant n'est ni utilisée ni restituée.
+ *   Chaque réservation est journalisée (« Bloc [début, fin) réservé ») ; les numéros du bloc
+ *   absents des écritures sont des trous ;</li>
+ *   <li>écriture d'issue incertaine (délai dépassé) : le numéro n'est pas rendu, l'écriture pouvant
+ *   exister, et il est journalisé par {@link #signalerNumeroIncertain}.</li>
+ * </ul>
+ */
+@Service
+public class NumerotationEcritureService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NumerotationEcritureService.class);
+    private static final int MAX_TENTATIVES_RESERVATION = 10;
+
+    private static final String SELECT_COMPTEUR =
+            "SELECT prochain_numero FROM sequence_ecriture WHERE tenant_id = ? AND journal_comptable_id = ? AND periode_comptable_id = ?";
+    private static final String INSERT_COMPTEUR =
+            "INSERT INTO sequence_ecriture (tenant_id, journal_comptable_id, periode_comptable_id, prochain_numero) VALUES (?, ?, ?, ?) IF NOT EXISTS";
+    private static final String UPDATE_COMPTEUR =
+            "UPDATE sequence_ecriture SET prochain_numero = ? WHERE tenant_id = ? AND journal_comptable_id = ? AND periode_comptable_id = ? IF prochain_numero = ?";
+    private static final String SELECT_LIBRES =
+            "SELECT numero FROM sequence_ecriture_libre WHERE tenant_id = ? AND journal_comptable_id = ? AND periode_comptable_id = ? LIMIT ?";
+    private static final String DELETE_LIBRE =
+            "DELETE FROM sequence_ecriture_libre WHERE tenant_id = ? AND journal_comptable_id = ? AND periode_comptable_id = ? AND numero = ? IF EXISTS";
+    private static final String INSERT_LIBRE =
+            "INSERT INTO sequence_ecriture_libre (tenant_id, journal_comptable_id, periode_comptable_id, numero) VALUES (?, ?, ?, ?)";
+
+    private final CqlSession session;
+    private final int tailleBloc;
+    private final Map<SequenceKey, Sequence> sequences = new ConcurrentHashMap<>();
+
+    public NumerotationEcritureService(CqlSession session,
+                                       @Value("${app.accounting.numerotation.taille-bloc:50}") int tailleBloc) {
+        this.session = session;
+        this.tailleBloc = tailleBloc;
+    }
+
+    /**
+     * Retourne le prochain numéro du journal pour la période. Un aller-retour Cassandra n'a lieu
+     * qu'à l'épuisement du bloc local.
+     */
+    public long nextNumber(UUID tenantId, UUID journalComptableId, UUID periodeComptableId) {
+        SequenceKey key = new SequenceKey(tenantId, journalComptableId, periodeComptableId);
+        Sequence sequence = sequences.computeIfAbsent(key, k -> new Sequence());
+        while (true) {
+            Long rendu = sequence.rendus.poll();
+            if (rendu != null) {
+                return rendu;
+            }
+            Bloc bloc = sequence.bloc.get();
+            if (bloc != null) {
+                long numero = bloc.prochain.getAndIncrement();
+                if (numero < bloc.fin) {
+                    return numero;
+                }
+            }
+            refill(key, sequence, bloc);
+        }
+    }
+
+    /**
+     * Rend un numéro non utilisé (écriture non persistée) afin qu'il soit réattribué.
+     */
+    public void release(UUID tenantId, UUID journalComptableId, UUID periodeComptableId, long numero) {
+        sequences.computeIfAbsent(new SequenceKey(tenantId, journalComptableId, periodeComptableId), k -> new Sequence())
+                .rendus.add(numero);
+        logger.debug("Numéro {} rendu pour le journal {} / période {}", numero, journalComptableId, periodeComptableId);
+    }
+
+    /**
+     * Numéro retenu sans certitude que son écriture ait été persistée : il n'est pas rendu (un doublon
+     * serait pire qu'un trou) et il est journalisé pour que l'audit puisse expliquer un trou éventuel.
+     */
+    public void signalerNumeroIncertain(UUID tenantId, UUID journalComptableId, UUID periodeComptableId,
+                                        long numero, Throwable cause) {
+        logger.warn("Numéro {} non rendu (tenant {}, journal {}, période {}) : issue de l'écriture incertaine ({}) ; "
+                        + "trou de numérotation si l'écriture n'a pas été appliquée",
+                numero, tenantId, journalComptableId, periodeComptableId, cause.getMessage());
+    }
+
+    public static String format(String codeJournal, String codePeriode, long numero) {
+        return String.format("%s-%s-%06d", codeJournal, codePeriode, numero);
+    }
+
+    @PreDestroy
+    public void restituerNumerosNonUtilises() {
+        sequences.forEach((key, sequence) -> {
+            try {
+                List<Long> libres = new ArrayList<>();
+                Long rendu;
+                while ((rendu = sequence.rendus.poll()) != null) {
+                    libres.add(rendu);
+                }
+                Bloc bloc = sequence.bloc.getAndSet(null);
+                if (bloc != null) {
+                    long debut = Math.min(bloc.prochain.getAndSet(bloc.fin), bloc.fin);
+                    if (debut < bloc.fin && !restituerFinDeBloc(key, debut, bloc.fin)) {
+                        for (long numero = debut; numero < bloc.fin; numero++) {
+                            libres.add(numero);
+                        }
+                    }
+                }
+                for (Long numero : libres) {
+                    session.execute(session.prepare(INSERT_LIBRE)
+                            .bind(key.tenantId(), key.journalComptableId(), key.periodeComptableId(), numero));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Impossible de restituer les numéros du journal {} / période {} : {}",
+                        key.journalComptableId(), key.periodeComptableId(), e.getMessage());
+            }
+        });
+    }
+
+    private void refill(SequenceKey key, Sequence sequence, Bloc epuise) {
+        // Seule la recharge est synchronisée ; la distribution courante reste sans verrou
+        synchronized (sequence) {
+            if (sequence.bloc.get() != epuise || !sequence.rendus.isEmpty()) {
+                return;
+            }
+            reclamerNumerosLibres(key, sequence.rendus);
+            if (sequence.rendus.isEmpty()) {
+                sequence.bloc.set(reserverBloc(key));
+            }
+        }
+    }
+
+    private Bloc reserverBloc(SequenceKey key) {
+        for (int tentative = 0; tentative < MAX_TENTATIVES_RESERVATION; tentative++) {
+            Row courant = session.execute(session.prepare(SELECT_COMPTEUR)
+                    .bind(key.tenantId(), key.journalComptableId(), key.periodeComptableId())).one();
+            ResultSet resultat;
+            long debut;
+            if (courant == null) {
+                debut = 1;
+                resultat = session.execute(session.prepare(INSERT_COMPTEUR)
+                        .bind(key.tenantId(), key.journalComptableId(), key.periodeComptableId(), debut + tailleBloc));
+            } else {
+                debut = courant.getLong("prochain_numero");
+                resultat = session.execute(session.prepare(UPDATE_COMPTEUR)
+                        .bind(debut + tailleBloc, key.tenantId(), key.journalComptableId(), key.periodeComptableId(), debut));
+            }
+            if (resultat.wasApplied()) {
+                logger.info("Bloc [{}, {}) réservé pour le tenant {}, journal {} / période {}",
+                        debut, debut + tailleBloc, key.tenantId(), key.journalComptableId(), key.periodeComptableId());
+                return new Bloc(debut, debut + tailleBloc);
+            }
+            // Une autre instance a réservé entre-temps : relire et réessayer
+        }
+        throw new IllegalStateException("Impossible de réserver un bloc de numéros pour le journal "
+                + key.journalComptableId() + " après " + MAX_TENTATIVES_RESERVATION + " tentatives");
+    }
+
+    private void reclamerNumerosLibres(SequenceKey key, Queue<Long> rendus) {
+        ResultSet libres = session.execute(session.prepare(SELECT_LIBRES)
+                .bind(key.tenantId(), key.journalComptableId(), key.periodeComptableId(), tailleBloc));
+        for (Row row : libres) {
+            long numero = row.getLong("numero");
+            boolean reclame = session.execute(session.prepare(DELETE_LIBRE)
+                    .bind(key.tenantId(), key.journalComptableId(), key.periodeComptableId(), numero)).wasApplied();
+            if (reclame) {
+                rendus.add(numero);
+            }
+        }
+    }
+
+    // Rend la fin du bloc au compteur si aucun autre bloc n'a été réservé depuis
+    private boolean restituerFinDeBloc(SequenceKey key, long debut, long fin) {
+        return session.execute(session.prepare(UPDATE_COMPTEUR)
+                .bind(debut, key.tenantId(), key.journalComptableId(), key.periodeComptableId(), fin)).wasApplied();
+    }
+
+    private record SequenceKey(UUID tenantId, UUID journalComptableId, UUID periodeComptableId) {
+    }
+
+    private static final class Bloc {
+        private final AtomicLong prochain;
+        private final long fin;
+
+        private Bloc(long debut, long fin) {
+            this.prochain = new AtomicLong(debut);
+            this.fin = fin;
+        }
+    }
+
+    private static final class Sequence {
+        private final AtomicReference<Bloc> bloc = new AtomicReference<>();
+        private final Queue<Long> rendus = new ConcurrentLinkedQueue<>();
+    }
+}
@@ -2,25 +2,25 @@ package com.yowyob.erp.accounting.service;
 
 import com.yowyob.erp.accounting.dto.ContrepartieDto;
 import com.yowyob.erp.accounting.dto.OperationComptableDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
 import com.yowyob.erp.accounting.entity.Contrepartie;
 import com.yowyob.erp.accounting.entity.JournalAudit;
 import com.yowyob.erp.accounting.entity.JournalComptable;
 import com.yowyob.erp.accounting.entity.OperationComptable;
-import com.yowyob.erp.accounting.entity.PlanComptable;
 import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
 import com.yowyob.erp.accounting.entityKey.OperationComptableKey;
 import com.yowyob.erp.accounting.repository.ContrepartieRepository;
-import com.yowyob.erp.accounting.repository.JournalAuditRepository;
 import com.yowyob.erp.accounting.repository.JournalComptableRepository;
 import com.yowyob.erp.accounting.repository.OperationComptableRepository;
-import com.yowyob.erp.accounting.repository.PlanComptableRepository;
 import com.yowyob.erp.common.exception.ResourceNotFoundException;
 import com.yowyob.erp.config.tenant.TenantContext;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
+import com.yowyob.erp.config.kafka.OutboxService;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -37,25 +37,25 @@ public class OperationComptableService {
     private final OperationComptableRepository operationComptableRepository;
     private final ContrepartieRepository contrePartieRepository;
     private final JournalComptableRepository journalComptableRepository;
-    private final PlanComptableRepository planComptableRepository;
-    private final JournalAuditRepository journalAuditRepository;
+    private final PlanComptableIndex planComptableIndex;
     private final Validator validator;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final VersionReferentielService versionReferentielService;
 
     public OperationComptableService(OperationComptableRepository operationComptableRepository,
                                     JournalComptableRepository journalComptableRepository,
-                                    PlanComptableRepository planComptableRepository,
-                                    JournalAuditRepository journalAuditRepository,
+                                    PlanComptableIndex planComptableIndex,
                                     ContrepartieRepository contrePartieRepository,
                                     Validator validator,
-                                    KafkaTemplate<String, Object> kafkaTemplate) {
+                                    OutboxService outboxService,
+                                    VersionReferentielService versionReferentielService) {
         this.operationComptableRepository = operationComptableRepository;
         this.journalComptableRepository = journalComptableRepository;
-        this.planComptableRepository = planComptableRepository;
-        this.journalAuditRepository = journalAuditRepository;
+        this.planComptableIndex = planComptableIndex;
         this.contrePartieRepository = contrePartieRepository;
         this.validator = validator;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxService = outboxService;
+        this.versionReferentielService = versionReferentielService;
     }
 
     @Transactional
@@ -71,8 +71,8 @@ public class OperationComptableService {
                 .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + dto.getJournalComptableId()));
 
         // Validate comptePrincipal
-        planComptableRepository.findByKeyTenantIdAndNoCompte(tenantId, dto.getComptePrincipal())
-                .filter(PlanComptable::getActif)
+        planComptableIndex.findByNoCompte(tenantId, dto.getComptePrincipal())
+                .filter(PlanComptableDto::getActif)
                 .orElseThrow(() -> new IllegalArgumentException("Compte principal invalide ou inactif : " + dto.getComptePrincipal()));
 
         // Check uniqueness of typeOperation and modeReglement
@@ -90,8 +90,10 @@ public class OperationComptableService {
         operation.setCreatedBy(currentUser != null ? currentUser : "system");
         operation.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        OperationComptable savedOperation = operationComptableRepository.save(operation);
+        // L'opération et son événement sont écrits dans le même batch
+        OperationComptable savedOperation = operation;
         OperationComptableDto savedDto = mapToDto(savedOperation);
+        outboxService.enregistrer(operation, outboxService.message(tenantId, "operation.comptable.created", savedDto));
 
         // Enregistrement des contreparties
         if (dto.getContreparties() != null && !dto.getContreparties().isEmpty()) {
@@ -112,7 +114,7 @@ public class OperationComptableService {
         }
 
         logAudit(tenantId, null, currentUser, "CREATE", "Created operation: " + savedDto.getTypeOperation() + ", " + savedDto.getModeReglement());
-        kafkaTemplate.send("operation.comptable.created", tenantId.toString(), savedDto);
+        versionReferentielService.incrementer(TypeReferentiel.OPERATION_COMPTABLE);
         logger.info("Opération comptable créée avec succès : {}", savedOperation.getKey().getId());
         return savedDto;
     }
@@ -139,8 +141,8 @@ public class OperationComptableService {
         UUID tenantId = TenantContext.getCurrentTenant();
 
         // Validate that the comptePrincipal exists and is active
-        planComptableRepository.findByKeyTenantIdAndNoCompte(tenantId, noCompte)
-                .filter(PlanComptable::getActif)
+        planComptableIndex.findByNoCompte(tenantId, noCompte)
+                .filter(PlanComptableDto::getActif)
                 .orElseThrow(() -> new IllegalArgumentException("Compte principal invalide ou inactif : " + noCompte));
 
         return operationComptableRepository.findByKeyTenantIdAndComptePrincipal(tenantId, noCompte)
@@ -173,8 +175,8 @@ public class OperationComptableService {
                 .orElseThrow(() -> new IllegalArgumentException("Journal comptable invalide ou inactif : " + dto.getJournalComptableId()));
 
         // Validate comptePrincipal
-        planComptableRepository.findByKeyTenantIdAndNoCompte(tenantId, dto.getComptePrincipal())
-                .filter(PlanComptable::getActif)
+        planComptableIndex.findByNoCompte(tenantId, dto.getComptePrincipal())
+                .filter(PlanComptableDto::getActif)
                 .orElseThrow(() -> new IllegalArgumentException("Compte principal invalide ou inactif : " + dto.getComptePrincipal()));
 
         OperationComptable operation = mapToEntity(dto, tenantId);
@@ -183,8 +185,9 @@ public class OperationComptableService {
         operation.setUpdatedAt(LocalDateTime.now());
         operation.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        OperationComptable savedOperation = operationComptableRepository.save(operation);
+        OperationComptable savedOperation = operation;
         OperationComptableDto savedDto = mapToDto(savedOperation);
+        outboxService.enregistrer(operation, outboxService.message(tenantId, "operation.comptable.updated", savedDto));
 
         // Update or create contreparties
         contrePartieRepository.deleteByKeyTenantIdAndKeyOperationComptableId(tenantId, operationId);
@@ -204,7 +207,7 @@ public class OperationComptableService {
         }
 
         logAudit(tenantId, null, currentUser, "UPDATE", "Updated operation: " + savedDto.getTypeOperation() + ", " + savedDto.getModeReglement());
-        kafkaTemplate.send("operation.comptable.updated", tenantId.toString(), savedDto);
+        versionReferentielService.incrementer(TypeReferentiel.OPERATION_COMPTABLE);
         logger.info("Opération comptable mise à jour avec succès : {}", operationId);
         return savedDto;
     }
@@ -224,7 +227,8 @@ public class OperationComptableService {
         contrePartieRepository.deleteByKeyTenantIdAndKeyOperationComptableId(tenantId, operationId);
         operationComptableRepository.deleteById(key);
         logAudit(tenantId, null, currentUser, "DELETE", "Deleted operation: " + operation.getTypeOperation() + ", " + operation.getModeReglement());
-        kafkaTemplate.send("operation.comptable.deleted", tenantId.toString(), operationId);
+        versionReferentielService.incrementer(TypeReferentiel.OPERATION_COMPTABLE);
+        outboxService.publier(outboxService.message(tenantId, "operation.comptable.deleted", operationId));
         logger.info("Opération comptable supprimée avec succès : {}", operationId);
     }
 
@@ -302,7 +306,6 @@ public class OperationComptableService {
         audit.setAction(action);
         audit.setDetails(details);
         audit.setDateAction(LocalDateTime.now());
-        journalAuditRepository.save(audit);
-        kafkaTemplate.send("journal.audit.created", tenantId.toString(), audit);
+        outboxService.enregistrer(audit, outboxService.message(tenantId, "journal.audit.created", audit));
     }
 }
\ No newline at end of file
@@ -5,15 +5,16 @@ import com.yowyob.erp.accounting.entity.JournalAudit;
 import com.yowyob.erp.accounting.entity.PeriodeComptable;
 import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
 import com.yowyob.erp.accounting.entityKey.PeriodeComptableKey;
-import com.yowyob.erp.accounting.repository.JournalAuditRepository;
 import com.yowyob.erp.accounting.repository.PeriodeComptableRepository;
 import com.yowyob.erp.common.exception.ResourceNotFoundException;
 import com.yowyob.erp.config.tenant.TenantContext;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
+import com.yowyob.erp.config.kafka.OutboxService;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,18 +30,18 @@ public class PeriodeComptableService {
 
     private static final Logger logger = LoggerFactory.getLogger(PeriodeComptableService.class);
     private final PeriodeComptableRepository periodeComptableRepository;
-    private final JournalAuditRepository journalAuditRepository;
     private final Validator validator;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final VersionReferentielService versionReferentielService;
 
     public PeriodeComptableService(PeriodeComptableRepository periodeComptableRepository,
-                                   JournalAuditRepository journalAuditRepository,
                                    Validator validator,
-                                   KafkaTemplate<String, Object> kafkaTemplate) {
+                                   OutboxService outboxService,
+                                   VersionReferentielService versionReferentielService) {
         this.periodeComptableRepository = periodeComptableRepository;
-        this.journalAuditRepository = journalAuditRepository;
         this.validator = validator;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxService = outboxService;
+        this.versionReferentielService = versionReferentielService;
     }
 
     @Transactional
@@ -68,10 +69,12 @@ public class PeriodeComptableService {
         periode.setCreatedBy(currentUser != null ? currentUser : "system");
         periode.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        PeriodeComptable savedPeriode = periodeComptableRepository.save(periode);
+        // La période et son événement sont écrits dans le même batch
+        PeriodeComptable savedPeriode = periode;
         PeriodeComptableDto savedDto = mapToDto(savedPeriode);
+        outboxService.enregistrer(periode, outboxService.message(tenantId, "periode.comptable.created", savedDto));
         logAudit(tenantId, null, currentUser, "CREATE", "Created periode: " + savedDto.getCode());
-        kafkaTemplate.send("periode.comptable.created", tenantId.toString(), savedDto);
+        versionReferentielService.incrementer(TypeReferentiel.PERIODE_COMPTABLE);
         logger.info("Période comptable créée avec succès : {}", savedPeriode.getKey().getId());
         return savedDto;
     }
@@ -153,10 +156,11 @@ public class PeriodeComptableService {
         periode.setUpdatedAt(LocalDateTime.now());
         periode.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        PeriodeComptable savedPeriode = periodeComptableRepository.save(periode);
+        PeriodeComptable savedPeriode = periode;
         PeriodeComptableDto savedDto = mapToDto(savedPeriode);
+        outboxService.enregistrer(periode, outboxService.message(tenantId, "periode.comptable.updated", savedDto));
         logAudit(tenantId, null, currentUser, "UPDATE", "Updated periode: " + savedDto.getCode());
-        kafkaTemplate.send("periode.comptable.updated", tenantId.toString(), savedDto);
+        versionReferentielService.incrementer(TypeReferentiel.PERIODE_COMPTABLE);
         logger.info("Période comptable mise à jour avec succès : {}", periodeComptableId);
         return savedDto;
     }
@@ -180,10 +184,11 @@ public class PeriodeComptableService {
         periode.setUpdatedAt(LocalDateTime.now());
         periode.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        PeriodeComptable savedPeriode = periodeComptableRepository.save(periode);
+        PeriodeComptable savedPeriode = periode;
         PeriodeComptableDto savedDto = mapToDto(savedPeriode);
+        outboxService.enregistrer(periode, outboxService.message(tenantId, "periode.comptable.closed", savedDto));
         logAudit(tenantId, null, currentUser, "CLOSE", "Closed periode: " + savedDto.getCode());
-        kafkaTemplate.send("periode.comptable.closed", tenantId.toString(), savedDto);
+        versionReferentielService.incrementer(TypeReferentiel.PERIODE_COMPTABLE);
         logger.info("Période comptable clôturée avec succès : {}", periodeComptableId);
         return savedDto;
     }
@@ -204,7 +209,8 @@ public class PeriodeComptableService {
 
         periodeComptableRepository.deleteById(new PeriodeComptableKey(tenantId, periodeComptableId));
         logAudit(tenantId, null, currentUser, "DELETE", "Deleted periode: " + periode.getCode());
-        kafkaTemplate.send("periode.comptable.deleted", tenantId.toString(), periodeComptableId);
+        versionReferentielService.incrementer(TypeReferentiel.PERIODE_COMPTABLE);
+        outboxService.publier(outboxService.message(tenantId, "periode.comptable.deleted", periodeComptableId));
         logger.info("Période comptable supprimée avec succès : {}", periodeComptableId);
     }
 
@@ -276,7 +282,6 @@ public class PeriodeComptableService {
         audit.setAction(action);
         audit.setDetails(details);
         audit.setDateAction(LocalDateTime.now());
-        journalAuditRepository.save(audit);
-        kafkaTemplate.send("journal.audit.created", tenantId.toString(), audit);
+        outboxService.enregistrer(audit, outboxService.message(tenantId, "journal.audit.created", audit));
     }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.entity.PlanComptable;
+import com.yowyob.erp.accounting.repository.PlanComptableRepository;
+import com.yowyob.erp.accounting.util.NoCompteTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Index en mémoire du plan comptable par tenant : comptes par id, par numéro et arbre préfixe
+ * sur les numéros. Chargé à la première demande, puis tenu à jour par les événements plan.comptable.*.
+ * Sert les recherches par préfixe et par classe ainsi que la validation des lignes d'écriture
+ * sans aller à Cassandra.
+ */
+@Component
+@Slf4j
+public class PlanComptableIndex {
+
+    private final PlanComptableRepository planComptableRepository;
+    private final Map<UUID, TenantIndex> indexParTenant = new ConcurrentHashMap<>();
+
+    public PlanComptableIndex(PlanComptableRepository planComptableRepository) {
+        this.planComptableRepository = planComptableRepository;
+    }
+
+    public Optional<PlanComptableDto> findById(UUID tenantId, UUID compteId) {
+        TenantIndex index = index(tenantId);
+        return index.read(() -> Optional.ofNullable(index.parId.get(compteId)));
+    }
+
+    public Optional<PlanComptableDto> findByNoCompte(UUID tenantId, String noCompte) {
+        TenantIndex index = index(tenantId);
+        return index.read(() -> Optional.ofNullable(index.parNoCompte.get(noCompte)));
+    }
+
+    public List<PlanComptableDto> findByPrefix(UUID tenantId, String prefix) {
+        TenantIndex index = index(tenantId);
+        return index.read(() -> index.trie.findByPrefix(prefix));
+    }
+
+    public List<PlanComptableDto> findByClasse(UUID tenantId, Integer classe) {
+        TenantIndex index = index(tenantId);
+        return index.read(() -> index.trie.findByPrefix("").stream()
+                .filter(compte -> Objects.equals(compte.getClasse(), classe))
+                .collect(Collectors.toList()));
+    }
+
+    public List<PlanComptableDto> findAll(UUID tenantId) {
+        TenantIndex index = index(tenantId);
+        return index.read(() -> index.trie.findByPrefix(""));
+    }
+
+    /**
+     * Retourne le compte actif correspondant à l'id, ou lève une exception comme la validation
+     * des lignes d'écriture le faisait auparavant.
+     */
+    public PlanComptableDto requireActiveAccount(UUID tenantId, UUID compteId) {
+        PlanComptableDto compte = findById(tenantId, compteId)
+                .orElseThrow(() -> new IllegalArgumentException("Plan comptable ID invalide : " + compteId));
+        if (!Boolean.TRUE.equals(compte.getActif())) {
+            throw new IllegalArgumentException("Compte inactif : " + compte.getNoCompte());
+        }
+        return compte;
+    }
+
+    /**
+     * Ajoute ou remplace un compte. Sans effet si l'index du tenant n'est pas encore chargé :
+     * le chargement paresseux lira l'état à jour.
+     */
+    public void upsert(UUID tenantId, PlanComptableDto compte) {
+        TenantIndex index = indexParTenant.get(tenantId);
+        if (index == null || compte.getId() == null || compte.getNoCompte() == null) {
+            return;
+        }
+        index.write(() -> {
+            PlanComptableDto previous = index.parId.put(compte.getId(), compte);
+            if (previous != null && !previous.getNoCompte().equals(compte.getNoCompte())) {
+                index.parNoCompte.remove(previous.getNoCompte());
+                index.trie.remove(previous.getNoCompte());
+            }
+            index.parNoCompte.put(compte.getNoCompte(), compte);
+            index.trie.put(compte.getNoCompte(), compte);
+        });
+    }
+
+    public void deactivate(UUID tenantId, UUID compteId) {
+        TenantIndex index = indexParTenant.get(tenantId);
+        if (index == null) {
+            return;
+        }
+        PlanComptableDto current = index.read(() -> index.parId.get(compteId));
+        if (current != null) {
+            PlanComptableDto inactive = PlanComptableDto.builder()
+                    .id(current.getId())
+                    .noCompte(current.getNoCompte())
+                    .libelle(current.getLibelle())
+                    .classe(current.getClasse())
+                    .notes(current.getNotes())
+                    .actif(false)
+                    .createdAt(current.getCreatedAt())
+                    .updatedAt(current.getUpdatedAt())
+                    .build();
+            upsert(tenantId, inactive);
+        }
+    }
+
+    public void invalidate(UUID tenantId) {
+        indexParTenant.remove(tenantId);
+    }
+
+    private TenantIndex index(UUID tenantId) {
+        return indexParTenant.computeIfAbsent(tenantId, this::load);
+    }
+
+    private TenantIndex load(UUID tenantId) {
+        List<PlanComptable> comptes = planComptableRepository.findAllByKeyTenantId(tenantId);
+        TenantIndex index = new TenantIndex();
+        for (PlanComptable compte : comptes) {
+            PlanComptableDto dto = mapToDto(compte);
+            index.parId.put(dto.getId(), dto);
+            index.parNoCompte.put(dto.getNoCompte(), dto);
+            index.trie.put(dto.getNoCompte(), dto);
+        }
+        log.info("Index du plan comptable chargé pour le tenant {} : {} comptes", tenantId, comptes.size());
+        return index;
+    }
+
+    private PlanComptableDto mapToDto(PlanComptable account) {
+        return PlanComptableDto.builder()
+                .id(account.getKey().getId())
+                .noCompte(account.getNoCompte())
+                .libelle(account.getLibelle())
+                .classe(account.getClasse())
+                .notes(account.getNotes())
+                .actif(account.getActif())
+                .createdAt(account.getCreatedAt())
+                .updatedAt(account.getUpdatedAt())
+                .build();
+    }
+
+    private static final class TenantIndex {
+        private final Map<UUID, PlanComptableDto> parId = new HashMap<>();
+        private final Map<String, PlanComptableDto> parNoCompte = new HashMap<>();
+        private final NoCompteTrie<PlanComptableDto> trie = new NoCompteTrie<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private <T> T read(Supplier<T> action) {
+            lock.readLock().lock();
+            try {
+                return action.get();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void write(Runnable action) {
+            lock.writeLock().lock();
+            try {
+                action.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
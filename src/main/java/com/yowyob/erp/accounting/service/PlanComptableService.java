@@ -5,13 +5,17 @@ import com.yowyob.erp.accounting.entity.PlanComptable;
 
 import com.yowyob.erp.accounting.entityKey.PlanComptableKey;
 import com.yowyob.erp.accounting.repository.PlanComptableRepository;
+import com.yowyob.erp.common.dto.CursorPage;
 import com.yowyob.erp.common.exception.ResourceNotFoundException;
 import com.yowyob.erp.common.exception.BusinessException;
 import com.yowyob.erp.common.service.ValidationService;
+import com.yowyob.erp.common.util.CursorUtils;
 import com.yowyob.erp.config.tenant.TenantContext;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
+import com.yowyob.erp.config.kafka.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,7 +36,9 @@ public class PlanComptableService {
 
     private final PlanComptableRepository planComptableRepository;
     private final ValidationService validationService;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final PlanComptableIndex planComptableIndex;
+    private final VersionReferentielService versionReferentielService;
 
 
     @Transactional
@@ -64,19 +70,21 @@ public class PlanComptableService {
         account.setCreatedBy(currentUser != null ? currentUser : "system");
         account.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        PlanComptable saved = planComptableRepository.save(account);
-        kafkaTemplate.send("plan.comptable.created", tenantId.toString(), mapToDto(saved));
+        // Le compte et son événement sont écrits dans le même batch
+        outboxService.enregistrer(account, outboxService.message(tenantId, "plan.comptable.created", mapToDto(account)));
+        PlanComptable saved = account;
+        planComptableIndex.upsert(tenantId, mapToDto(saved));
+        versionReferentielService.incrementer(TypeReferentiel.PLAN_COMPTABLE);
         log.info("Compte Comptable créé: {} - {}", saved.getNoCompte(), saved.getLibelle());
         return mapToDto(saved);
     }
 
 
-  public List<PlanComptableDto> getAllAccounts() {
+    public CursorPage<PlanComptableDto> getAllAccounts(String cursor, Integer size) {
         UUID tenantId = TenantContext.getCurrentTenant();
-        return planComptableRepository.findAllByKeyTenantId(tenantId)
-                .stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return CursorUtils.toCursorPage(
+                planComptableRepository.findByKeyTenantId(tenantId, CursorUtils.toPageable(cursor, size)),
+                this::mapToDto);
     }
 
     public List<PlanComptableDto> getAllActiveAccounts() {
@@ -100,19 +108,13 @@ public class PlanComptableService {
     
    public List<PlanComptableDto> getPlanComptablesByClasse(Integer classe) {
         UUID tenantId = TenantContext.getCurrentTenant();
-        return planComptableRepository.findByKeyTenantIdAndClasse(tenantId, classe)
-                    .stream()   
-                     .map(this::mapToDto)
-                     .collect(Collectors.toList());
+        return planComptableIndex.findByClasse(tenantId, classe);
     }
     
 
     public List<PlanComptableDto> getAccountsByPrefix(String prefix) {
         UUID tenantId = TenantContext.getCurrentTenant();
-        return planComptableRepository.findByKeyTenantIdAndNoComptePrefix(tenantId, prefix)
-                .stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return planComptableIndex.findByPrefix(tenantId, prefix);
     }
 
     @Transactional
@@ -129,8 +131,10 @@ public class PlanComptableService {
         account.setUpdatedAt(LocalDateTime.now());
         account.setUpdatedBy(currentUser != null ? currentUser : "system");
 
-        PlanComptable saved = planComptableRepository.save(account);
-        kafkaTemplate.send("planComptable.updated", tenantId.toString(), mapToDto(saved));
+        outboxService.enregistrer(account, outboxService.message(tenantId, "plan.comptable.updated", mapToDto(account)));
+        PlanComptable saved = account;
+        planComptableIndex.upsert(tenantId, mapToDto(saved));
+        versionReferentielService.incrementer(TypeReferentiel.PLAN_COMPTABLE);
         return mapToDto(saved);
     }
 
@@ -146,13 +150,14 @@ public class PlanComptableService {
         account.setActif(false);
         account.setUpdatedAt(LocalDateTime.now());
         account.setUpdatedBy(currentUser != null ? currentUser : "system");
-        planComptableRepository.save(account);
+        outboxService.enregistrer(account, outboxService.message(tenantId, "plan.comptable.deactivated", id));
+        planComptableIndex.deactivate(tenantId, id);
 
-        kafkaTemplate.send("account.deactivated", tenantId.toString(), id);
+        versionReferentielService.incrementer(TypeReferentiel.PLAN_COMPTABLE);
         log.info("PlanComptable désactivé: {}", account.getNoCompte());
     }
 
-    private PlanComptableDto mapToDto(PlanComptable account) {
+    PlanComptableDto mapToDto(PlanComptable account) {
         return PlanComptableDto.builder()
                 .id(account.getKey().getId())
                 .noCompte(account.getNoCompte())
@@ -0,0 +1,254 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.yowyob.erp.accounting.dto.ReconstructionSoldesDto;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.repository.DetailEcritureRepository;
+import com.yowyob.erp.accounting.repository.EcritureComptableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Report des écritures validées dans les mouvements journaliers des comptes (compteurs) et le grand livre.
+ * <p>
+ * La validation bascule l'écriture par une mise à jour conditionnelle (validee = false → true,
+ * soldes_appliques = false) : seule la validation qui a réussi ce basculement reporte l'écriture, une
+ * seule fois. Le report marque ensuite soldes_appliques = true. Compteurs, grand livre et drapeau ne
+ * pouvant partager un batch, un report interrompu laisse soldes_appliques = false ; la reconstruction
+ * recalcule alors les compteurs du tenant à partir des lignes des écritures validées et complète le
+ * grand livre. Elle sert aussi de reprise pour les écritures validées avant ce suivi (soldes_appliques nul)
+ * et réindexe les écritures dans ecriture_par_journal et ecriture_non_validee.
+ */
+@Service
+public class ProjectionEcritureService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectionEcritureService.class);
+
+    private static final String UPDATE_SOLDES_APPLIQUES =
+            "UPDATE ecriture_comptable SET soldes_appliques = true WHERE tenant_id = ? AND id = ?";
+    private static final String INSERT_NON_VALIDEE =
+            "INSERT INTO ecriture_non_validee (tenant_id, date_ecriture, id) VALUES (?, ?, ?)";
+    private static final String INSERT_PAR_JOURNAL =
+            "INSERT INTO ecriture_par_journal (tenant_id, journal_comptable_id, date_ecriture, id) VALUES (?, ?, ?, ?)";
+    private static final int TAILLE_PAGE = 1000;
+
+    private final CqlSession session;
+    private final EcritureComptableRepository ecritureRepository;
+    private final DetailEcritureRepository detailEcritureRepository;
+    private final SoldeCompteService soldeCompteService;
+    private final GrandLivreService grandLivreService;
+    private final PlanComptableIndex planComptableIndex;
+    // Au-delà de ce délai après la validation, un report non marqué est considéré comme interrompu
+    private final Duration delaiReport;
+    private final Set<UUID> tenantsAReconstruire = ConcurrentHashMap.newKeySet();
+
+    public ProjectionEcritureService(CqlSession session,
+                                     EcritureComptableRepository ecritureRepository,
+                                     DetailEcritureRepository detailEcritureRepository,
+                                     SoldeCompteService soldeCompteService,
+                                     GrandLivreService grandLivreService,
+                                     PlanComptableIndex planComptableIndex,
+                                     @Value("${app.accounting.soldes.delai-report:PT5M}") Duration delaiReport) {
+        this.session = session;
+        this.ecritureRepository = ecritureRepository;
+        this.detailEcritureRepository = detailEcritureRepository;
+        this.soldeCompteService = soldeCompteService;
+        this.grandLivreService = grandLivreService;
+        this.planComptableIndex = planComptableIndex;
+        this.delaiReport = delaiReport;
+    }
+
+    /**
+     * Reporte une écriture que l'appelant vient de basculer en validée. Un échec n'annule pas la
+     * validation : il est journalisé et le tenant est reconstruit au prochain passage du job.
+     *
+     * @return true si le report est complet
+     */
+    public boolean reporter(UUID tenantId, EcritureComptable ecriture, List<DetailEcriture> details) {
+        try {
+            grandLivreService.enregistrerLignes(tenantId, ecriture, details);
+            soldeCompteService.appliquerEcriture(tenantId, ecriture.getDateEcriture(), details);
+            session.execute(session.prepare(UPDATE_SOLDES_APPLIQUES).bind(tenantId, ecriture.getKey().getId()));
+            return true;
+        } catch (RuntimeException e) {
+            tenantsAReconstruire.add(tenantId);
+            logger.error("Report de l'écriture {} aux soldes interrompu pour le tenant {}, reconstruction planifiée : {}",
+                    ecriture.getKey().getId(), tenantId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reconstruit les tenants dont un report a échoué, une fois le délai de report écoulé.
+     */
+    @Scheduled(fixedDelayString = "${app.accounting.soldes.reconstruction-intervalle:600000}",
+            initialDelayString = "${app.accounting.soldes.reconstruction-intervalle:600000}")
+    public void reconstruireTenantsInterrompus() {
+        for (UUID tenantId : Set.copyOf(tenantsAReconstruire)) {
+            tenantsAReconstruire.remove(tenantId);
+            try {
+                ReconstructionSoldesDto resultat = reconstruire(tenantId);
+                if (resultat.getEcrituresEnCours() > 0) {
+                    tenantsAReconstruire.add(tenantId);
+                }
+            } catch (RuntimeException e) {
+                tenantsAReconstruire.add(tenantId);
+                logger.warn("Reconstruction des soldes impossible pour le tenant {}: {}", tenantId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Recalcule les mouvements journaliers de tous les comptes du tenant à partir des lignes des
+     * écritures validées, corrige les compteurs de l'écart, puis reporte au grand livre les écritures
+     * dont le report n'est pas marqué.
+     * <p>
+     * Les compteurs sont lus avant les écritures : un report postérieur à cette lecture porte sur une
+     * écriture validée depuis moins que le délai de report, dont les jours sont laissés intacts, ou
+     * validée après le parcours, absente à la fois des compteurs lus et des montants attendus.
+     * Opération de maintenance : elle parcourt toutes les écritures et lignes du tenant, page par page.
+     */
+    public ReconstructionSoldesDto reconstruire(UUID tenantId) {
+        logger.info("Reconstruction des soldes du tenant {}", tenantId);
+        Map<UUID, Map<LocalDate, long[]>> enregistres = new HashMap<>();
+        planComptableIndex.findAll(tenantId).forEach(compte -> enregistres.put(compte.getId(),
+                soldeCompteService.getMouvementsJournaliers(tenantId, compte.getId())));
+        LocalDateTime limite = LocalDateTime.now().minus(delaiReport);
+
+        // Écritures validées : date de report, et celles dont le report reste à faire ou peut être en cours
+        Map<UUID, LocalDate> validees = new HashMap<>();
+        Set<UUID> enCours = new HashSet<>();
+        List<UUID> aReporter = new ArrayList<>();
+        int nonValidees = 0;
+        PreparedStatement insertNonValidee = session.prepare(INSERT_NON_VALIDEE);
+        PreparedStatement insertParJournal = session.prepare(INSERT_PAR_JOURNAL);
+        Pageable pageable = CassandraPageRequest.first(TAILLE_PAGE);
+        Slice<EcritureComptable> ecritures;
+        do {
+            ecritures = ecritureRepository.findByKeyTenantId(tenantId, pageable);
+            for (EcritureComptable ecriture : ecritures) {
+                // Reprise des index pour les écritures créées avant eux (insertions idempotentes)
+                if (ecriture.getJournalComptableId() != null) {
+                    session.execute(insertParJournal.bind(tenantId, ecriture.getJournalComptableId(),
+                            ecriture.getDateEcriture(), ecriture.getKey().getId()));
+                }
+                if (!Boolean.TRUE.equals(ecriture.getValidee())) {
+                    session.execute(insertNonValidee.bind(tenantId, ecriture.getDateEcriture(), ecriture.getKey().getId()));
+                    nonValidees++;
+                    continue;
+                }
+                UUID id = ecriture.getKey().getId();
+                validees.put(id, ecriture.getDateEcriture());
+                if (ecriture.getDateValidation() != null && ecriture.getDateValidation().isAfter(limite)) {
+                    enCours.add(id);
+                } else if (!Boolean.TRUE.equals(ecriture.getSoldesAppliques())) {
+                    aReporter.add(id);
+                }
+            }
+            pageable = ecritures.nextPageable();
+        } while (ecritures.hasNext());
+
+        // Montants attendus par compte et par jour, en centimes [débit, crédit]
+        Map<UUID, Map<LocalDate, long[]>> attendus = new HashMap<>();
+        Map<UUID, Set<LocalDate>> exclus = new HashMap<>();
+        Map<UUID, List<DetailEcriture>> lignesAReporter = new HashMap<>();
+        Set<UUID> idsAReporter = Set.copyOf(aReporter);
+        pageable = CassandraPageRequest.first(TAILLE_PAGE);
+        Slice<DetailEcriture> lignes;
+        do {
+            lignes = detailEcritureRepository.findByKeyTenantId(tenantId, pageable);
+            for (DetailEcriture ligne : lignes) {
+                UUID ecritureId = ligne.getKey().getEcritureComptableId();
+                LocalDate jour = validees.get(ecritureId);
+                if (jour == null) {
+                    continue;
+                }
+                UUID compteId = ligne.getCompteComptableId();
+                if (enCours.contains(ecritureId)) {
+                    exclus.computeIfAbsent(compteId, c -> new HashSet<>()).add(jour);
+                    continue;
+                }
+                long[] montants = attendus.computeIfAbsent(compteId, c -> new HashMap<>())
+                        .computeIfAbsent(jour, j -> new long[2]);
+                montants[0] += SoldeCompteService.centimes(ligne.getMontantDebit());
+                montants[1] += SoldeCompteService.centimes(ligne.getMontantCredit());
+                if (idsAReporter.contains(ecritureId)) {
+                    lignesAReporter.computeIfAbsent(ecritureId, e -> new ArrayList<>()).add(ligne);
+                }
+            }
+            pageable = lignes.nextPageable();
+        } while (lignes.hasNext());
+
+        Set<UUID> comptes = new HashSet<>(enregistres.keySet());
+        comptes.addAll(attendus.keySet());
+        int joursCorriges = 0;
+        for (UUID compteId : comptes) {
+            // Compte absent du plan (supprimé depuis) : ses compteurs ne peuvent être lus qu'ici
+            Map<LocalDate, long[]> ecarts = ecarts(attendus.getOrDefault(compteId, Map.of()),
+                    enregistres.computeIfAbsent(compteId, c -> soldeCompteService.getMouvementsJournaliers(tenantId, c)),
+                    exclus.getOrDefault(compteId, Set.of()));
+            soldeCompteService.corrigerMouvements(tenantId, compteId, ecarts);
+            joursCorriges += ecarts.size();
+        }
+
+        int reportees = 0;
+        for (UUID ecritureId : aReporter) {
+            EcritureComptable ecriture = ecritureRepository.findByKeyTenantIdAndKeyId(tenantId, ecritureId).orElse(null);
+            if (ecriture == null) {
+                continue;
+            }
+            List<DetailEcriture> lignesEcriture = lignesAReporter.getOrDefault(ecritureId, List.of());
+            if (!lignesEcriture.isEmpty()) {
+                grandLivreService.enregistrerLignes(tenantId, ecriture, lignesEcriture);
+            }
+            session.execute(session.prepare(UPDATE_SOLDES_APPLIQUES).bind(tenantId, ecritureId));
+            reportees++;
+        }
+
+        logger.info("Soldes du tenant {} reconstruits : {} écritures validées, {} reportées, {} en cours, {} jours corrigés, "
+                + "{} non validées indexées", tenantId, validees.size(), reportees, enCours.size(), joursCorriges, nonValidees);
+        return ReconstructionSoldesDto.builder()
+                .ecrituresValidees(validees.size())
+                .ecrituresReportees(reportees)
+                .ecrituresEnCours(enCours.size())
+                .joursCorriges(joursCorriges)
+                .ecrituresNonValidees(nonValidees)
+                .build();
+    }
+
+    // Écart à ajouter aux compteurs pour chaque jour non exclu où ils diffèrent des montants attendus
+    private static Map<LocalDate, long[]> ecarts(Map<LocalDate, long[]> attendus, Map<LocalDate, long[]> enregistres,
+                                                 Set<LocalDate> exclus) {
+        Map<LocalDate, long[]> ecarts = new TreeMap<>();
+        attendus.forEach((jour, montants) -> ecarts.put(jour, montants.clone()));
+        enregistres.forEach((jour, montants) -> {
+            long[] ecart = ecarts.computeIfAbsent(jour, j -> new long[2]);
+            ecart[0] -= montants[0];
+            ecart[1] -= montants[1];
+        });
+        ecarts.keySet().removeAll(exclus);
+        ecarts.values().removeIf(ecart -> ecart[0] == 0 && ecart[1] == 0);
+        return ecarts;
+    }
+}
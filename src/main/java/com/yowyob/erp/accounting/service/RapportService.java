@@ -1,93 +1,310 @@
 package com.yowyob.erp.accounting.service;
 
-import com.yowyob.erp.accounting.entity.Compte;
-import com.yowyob.erp.accounting.entity.EcritureComptable;
-import com.yowyob.erp.accounting.repository.CompteRepository;
-import com.yowyob.erp.accounting.repository.EcritureComptableRepository;
+import com.yowyob.erp.accounting.dto.BalanceDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.entity.PeriodeComptable;
+import com.yowyob.erp.accounting.repository.PeriodeComptableRepository;
+import com.yowyob.erp.config.redis.RedisService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.time.Instant;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
 public class RapportService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RapportService.class);
+
+    // Les états d'une période clôturée ne changent plus : cache long
+    private static final Duration TTL_PERIODE_CLOTUREE = Duration.ofDays(30);
+
+    @Autowired
+    private PeriodeComptableRepository periodeComptableRepository;
+    @Autowired
+    private RedisService redisService;
     @Autowired
-    private CompteRepository compteRepository;
+    private PlanComptableIndex planComptableIndex;
     @Autowired
-    private EcritureComptableRepository ecritureComptableRepository;
+    private SoldeCompteService soldeCompteService;
+
+    /**
+     * Balance générale : solde d'ouverture, mouvements de la période et solde de clôture de chaque
+     * compte du plan, avec totaux par classe OHADA. Calculée depuis les soldes journaliers agrégés
+     * par compte, sans relire les lignes d'écriture.
+     */
+    public BalanceDto generateBalance(UUID tenantId, String dateDebut, String dateFin) {
+        LocalDate start = LocalDate.parse(dateDebut, DateTimeFormatter.ISO_LOCAL_DATE);
+        LocalDate end = LocalDate.parse(dateFin, DateTimeFormatter.ISO_LOCAL_DATE);
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("La date de fin doit être postérieure à la date de début");
+        }
+
+        List<PlanComptableDto> comptes = planComptableIndex.findAll(tenantId);
+        Map<UUID, SoldeCompteService.SoldePeriode> soldes = soldeCompteService.getSoldesPeriode(tenantId,
+                comptes.stream().map(PlanComptableDto::getId).collect(Collectors.toList()), start, end);
+
+        List<BalanceDto.BalanceLineDto> lignes = new ArrayList<>(comptes.size());
+        Map<Integer, double[]> parClasse = new TreeMap<>();
+        double totalDebit = 0;
+        double totalCredit = 0;
+        for (PlanComptableDto compte : comptes) {
+            SoldeCompteService.SoldePeriode solde = soldes.get(compte.getId());
+            Integer classe = classeOf(compte);
+            lignes.add(BalanceDto.BalanceLineDto.builder()
+                    .numeroCompte(compte.getNoCompte())
+                    .libelleCompte(compte.getLibelle())
+                    .classe(classe)
+                    .soldePrecedent(solde.soldeOuverture())
+                    .mouvementDebit(solde.mouvementDebit())
+                    .mouvementCredit(solde.mouvementCredit())
+                    .soldeActuel(solde.soldeCloture())
+                    .build());
+
+            double[] totaux = parClasse.computeIfAbsent(classe, c -> new double[4]);
+            totaux[0] += solde.soldeOuverture();
+            totaux[1] += solde.mouvementDebit();
+            totaux[2] += solde.mouvementCredit();
+            totaux[3] += solde.soldeCloture();
+            totalDebit += solde.mouvementDebit();
+            totalCredit += solde.mouvementCredit();
+        }
+
+        List<BalanceDto.BalanceClasseDto> totauxParClasse = parClasse.entrySet().stream()
+                .map(e -> BalanceDto.BalanceClasseDto.builder()
+                        .classe(e.getKey())
+                        .soldePrecedent(e.getValue()[0])
+                        .mouvementDebit(e.getValue()[1])
+                        .mouvementCredit(e.getValue()[2])
+                        .soldeActuel(e.getValue()[3])
+                        .build())
+                .collect(Collectors.toList());
+
+        return BalanceDto.builder()
+                .tenantId(tenantId.toString())
+                .dateDebut(start)
+                .dateFin(end)
+                .totalDebit(totalDebit)
+                .totalCredit(totalCredit)
+                .lignes(lignes)
+                .totauxParClasse(totauxParClasse)
+                .build();
+    }
 
+    /**
+     * Bilan OHADA à la date de fin : classes 1 à 5 réparties en actif et passif selon leur solde de
+     * clôture (les comptes de tiers et de trésorerie selon le sens du solde), le résultat de la plage
+     * (classes 6 à 8) étant porté au passif avec les résultats antérieurs non encore affectés.
+     * Soldes d'ouverture et mouvements sont lus dans les soldes journaliers cumulés, comme la balance :
+     * seules les écritures validées y figurent, à leur date d'écriture.
+     */
+    @SuppressWarnings("unchecked")
     public Map<String, Object> generateBilan(UUID tenantId, String dateDebut, String dateFin) {
         LocalDate start = LocalDate.parse(dateDebut, DateTimeFormatter.ISO_LOCAL_DATE);
         LocalDate end = LocalDate.parse(dateFin, DateTimeFormatter.ISO_LOCAL_DATE);
 
-        Map<String, Object> bilan = new HashMap<>();
-        List<Compte> comptes = compteRepository.findAllByKeyTenantId(tenantId);
-        BigDecimal totalActif = BigDecimal.ZERO;
-        BigDecimal totalPassif = BigDecimal.ZERO;
-/* 
-        for (Compte compte : comptes) {
-            List<EcritureComptable> ecritures = ecritureComptableRepository.findByKeyTenantIdAndCompteId(tenantId, compte.getKey().getId())
-                    .stream()
-                    .filter(e -> e.getDateOperation().toInstant().isAfter(start.atStartOfDay().toInstant(Instant.now().getOffset()))
-                            && e.getDateOperation().toInstant().isBefore(end.atStartOfDay().toInstant(Instant.now().getOffset())))
-                    .collect(Collectors.toList());
-
-            BigDecimal solde = ecritures.stream()
-                    .map(e -> "D".equals(e.getType()) ? e.getMontant() : e.getMontant().negate())
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            if (compte.getTypeCompte() != null && compte.getTypeCompte().startsWith("Actif")) {
-                totalActif = totalActif.add(solde);
-            } else if (compte.getTypeCompte() != null && compte.getTypeCompte().startsWith("Passif")) {
-                totalPassif = totalPassif.add(solde);
+        String cacheKey = String.format("rapport:bilan:%s:%s:%s", tenantId, start, end);
+        boolean cloturee = isPlageCloturee(tenantId, start, end);
+        if (cloturee) {
+            Map<String, Object> cached = redisService.get(cacheKey, Map.class);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<PlanComptableDto> comptes = planComptableIndex.findAll(tenantId);
+        Map<UUID, SoldeCompteService.SoldePeriode> soldes = soldesPeriode(tenantId, comptes, start, end);
+        Map<String, Long> actif = new TreeMap<>();
+        Map<String, Long> passif = new TreeMap<>();
+        List<Map<String, Object>> lignesActif = new ArrayList<>();
+        List<Map<String, Object>> lignesPassif = new ArrayList<>();
+        long totalActif = 0;
+        long totalPassif = 0;
+        long resultat = 0;
+        long resultatsAnterieurs = 0;
+
+        for (PlanComptableDto compte : comptes) {
+            SoldeCompteService.SoldePeriode periode = soldes.get(compte.getId());
+            int classe = classeOf(compte);
+            if (classe >= 6) {
+                resultat -= centimes(periode.mouvementDebit()) - centimes(periode.mouvementCredit());
+                resultatsAnterieurs -= centimes(periode.soldeOuverture());
+                continue;
+            }
+            long solde = centimes(periode.soldeCloture());
+            if (solde == 0) {
+                continue;
             }
+            // Classe 1 : ressources durables au passif ; 2 et 3 à l'actif ; 4 et 5 selon le sens du solde
+            boolean aLActif = classe == 2 || classe == 3 || (classe != 1 && solde >= 0);
+            long montant = aLActif ? solde : -solde;
+            if (aLActif) {
+                actif.merge(String.valueOf(classe), montant, Long::sum);
+                lignesActif.add(ligneCompte(compte, classe, montant));
+                totalActif += montant;
+            } else {
+                passif.merge(String.valueOf(classe), montant, Long::sum);
+                lignesPassif.add(ligneCompte(compte, classe, montant));
+                totalPassif += montant;
+            }
+        }
+
+        Map<String, Object> bilan = new HashMap<>();
+        bilan.put("dateDebut", start.toString());
+        bilan.put("dateFin", end.toString());
+        bilan.put("actifParClasse", enMontants(actif));
+        bilan.put("passifParClasse", enMontants(passif));
+        bilan.put("comptesActif", trierParNumero(lignesActif));
+        bilan.put("comptesPassif", trierParNumero(lignesPassif));
+        bilan.put("resultat", resultat / 100.0);
+        bilan.put("resultatsAnterieursNonAffectes", resultatsAnterieurs / 100.0);
+        bilan.put("totalActif", totalActif / 100.0);
+        bilan.put("totalPassif", (totalPassif + resultat + resultatsAnterieurs) / 100.0);
+        if (cloturee) {
+            redisService.save(cacheKey, bilan, TTL_PERIODE_CLOTUREE);
         }
-*/
-        bilan.put("totalActif", totalActif);
-        bilan.put("totalPassif", totalPassif);
         return bilan;
     }
 
+    /**
+     * Compte de résultat OHADA sur la plage : charges (classe 6, comptes 81, 83, 85, 87, 89)
+     * et produits (classe 7, comptes 82, 84, 86, 88), d'après les mouvements journaliers cumulés.
+     */
+    @SuppressWarnings("unchecked")
     public Map<String, Object> generateCompteResultat(UUID tenantId, String dateDebut, String dateFin) {
         LocalDate start = LocalDate.parse(dateDebut, DateTimeFormatter.ISO_LOCAL_DATE);
         LocalDate end = LocalDate.parse(dateFin, DateTimeFormatter.ISO_LOCAL_DATE);
 
-        Map<String, Object> compteResultat = new HashMap<>();
-        List<Compte> comptes = compteRepository.findAllByKeyTenantId(tenantId);
-        BigDecimal totalCharges = BigDecimal.ZERO;
-        BigDecimal totalProduits = BigDecimal.ZERO;
-
-       /* 
-       for (Compte compte : comptes) {
-            List<EcritureComptable> ecritures = ecritureComptableRepository.findByKeyTenantIdAndCompteId(tenantId, compte.getKey().getId())
-                    .stream()
-                    .filter(e -> e.getDateOperation().toInstant().isAfter(start.atStartOfDay().toInstant(Instant.now().getOffset()))
-                            && e.getDateOperation().toInstant().isBefore(end.atStartOfDay().toInstant(Instant.now().getOffset())))
-                    .collect(Collectors.toList());
-
-            BigDecimal solde = ecritures.stream()
-                    .map(e -> "D".equals(e.getType()) ? e.getMontant() : e.getMontant().negate())
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-    
-            if (compte.getTypeCompte() != null && compte.getTypeCompte().startsWith("Charge")) {
-                totalCharges = totalCharges.add(solde.abs());
-            } else if (compte.getTypeCompte() != null && compte.getTypeCompte().startsWith("Produit")) {
-                totalProduits = totalProduits.add(solde.abs());
+        String cacheKey = String.format("rapport:compte-resultat:%s:%s:%s", tenantId, start, end);
+        boolean cloturee = isPlageCloturee(tenantId, start, end);
+        if (cloturee) {
+            Map<String, Object> cached = redisService.get(cacheKey, Map.class);
+            if (cached != null) {
+                return cached;
             }
         }
-   */
-        compteResultat.put("totalCharges", totalCharges);
-        compteResultat.put("totalProduits", totalProduits);
-        compteResultat.put("resultat", totalProduits.subtract(totalCharges));
+
+        List<PlanComptableDto> comptes = planComptableIndex.findAll(tenantId).stream()
+                .filter(compte -> classeOf(compte) >= 6)
+                .collect(Collectors.toList());
+        Map<UUID, SoldeCompteService.SoldePeriode> soldes = soldesPeriode(tenantId, comptes, start, end);
+        Map<String, Long> charges = new TreeMap<>();
+        Map<String, Long> produits = new TreeMap<>();
+        List<Map<String, Object>> lignesCharges = new ArrayList<>();
+        List<Map<String, Object>> lignesProduits = new ArrayList<>();
+        long totalCharges = 0;
+        long totalProduits = 0;
+
+        for (PlanComptableDto compte : comptes) {
+            SoldeCompteService.SoldePeriode periode = soldes.get(compte.getId());
+            int classe = classeOf(compte);
+            long debit = centimes(periode.mouvementDebit());
+            long credit = centimes(periode.mouvementCredit());
+            if (debit == 0 && credit == 0) {
+                continue;
+            }
+            if (estProduit(compte, classe)) {
+                long montant = credit - debit;
+                produits.merge(String.valueOf(classe), montant, Long::sum);
+                lignesProduits.add(ligneCompte(compte, classe, montant));
+                totalProduits += montant;
+            } else {
+                long montant = debit - credit;
+                charges.merge(String.valueOf(classe), montant, Long::sum);
+                lignesCharges.add(ligneCompte(compte, classe, montant));
+                totalCharges += montant;
+            }
+        }
+
+        Map<String, Object> compteResultat = new HashMap<>();
+        compteResultat.put("dateDebut", start.toString());
+        compteResultat.put("dateFin", end.toString());
+        compteResultat.put("chargesParClasse", enMontants(charges));
+        compteResultat.put("produitsParClasse", enMontants(produits));
+        compteResultat.put("comptesCharges", trierParNumero(lignesCharges));
+        compteResultat.put("comptesProduits", trierParNumero(lignesProduits));
+        compteResultat.put("totalCharges", totalCharges / 100.0);
+        compteResultat.put("totalProduits", totalProduits / 100.0);
+        compteResultat.put("resultat", (totalProduits - totalCharges) / 100.0);
+        if (cloturee) {
+            redisService.save(cacheKey, compteResultat, TTL_PERIODE_CLOTUREE);
+        }
         return compteResultat;
     }
-}
\ No newline at end of file
+
+    private Map<UUID, SoldeCompteService.SoldePeriode> soldesPeriode(UUID tenantId, List<PlanComptableDto> comptes,
+                                                                   LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("La date de fin doit être postérieure à la date de début");
+        }
+        logger.debug("Soldes de {} comptes du tenant {} lus entre {} et {}", comptes.size(), tenantId, start, end);
+        return soldeCompteService.getSoldesPeriode(tenantId,
+                comptes.stream().map(PlanComptableDto::getId).collect(Collectors.toList()), start, end);
+    }
+
+    // Vrai si chaque jour de la plage appartient à une période clôturée
+    private boolean isPlageCloturee(UUID tenantId, LocalDate start, LocalDate end) {
+        List<PeriodeComptable> cloturees = periodeComptableRepository.findByKeyTenantId(tenantId).stream()
+                .filter(p -> Boolean.TRUE.equals(p.getCloturee()))
+                .sorted(Comparator.comparing(PeriodeComptable::getDateDebut))
+                .collect(Collectors.toList());
+        LocalDate couvertJusquA = start.minusDays(1);
+        for (PeriodeComptable periode : cloturees) {
+            if (periode.getDateDebut().isAfter(couvertJusquA.plusDays(1))) {
+                break;
+            }
+            if (periode.getDateFin().isAfter(couvertJusquA)) {
+                couvertJusquA = periode.getDateFin();
+            }
+            if (!couvertJusquA.isBefore(end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long centimes(double montant) {
+        return Math.round(montant * 100);
+    }
+
+    private static int classeOf(PlanComptableDto compte) {
+        return compte.getClasse() != null ? compte.getClasse() : Character.getNumericValue(compte.getNoCompte().charAt(0));
+    }
+
+    // Classe 7, et en classe 8 les comptes de rang pair (82, 84, 86, 88) : produits
+    private static boolean estProduit(PlanComptableDto compte, int classe) {
+        return classe == 7 || (classe == 8 && Character.getNumericValue(compte.getNoCompte().charAt(1)) % 2 == 0);
+    }
+
+    private static Map<String, Object> ligneCompte(PlanComptableDto compte, int classe, long montant) {
+        Map<String, Object> ligne = new LinkedHashMap<>();
+        ligne.put("numeroCompte", compte.getNoCompte());
+        ligne.put("libelleCompte", compte.getLibelle());
+        ligne.put("classe", classe);
+        ligne.put("montant", montant / 100.0);
+        return ligne;
+    }
+
+    private static Map<String, Double> enMontants(Map<String, Long> centimesParClasse) {
+        Map<String, Double> montants = new TreeMap<>();
+        centimesParClasse.forEach((classe, centimes) -> montants.put(classe, centimes / 100.0));
+        return montants;
+    }
+
+    private static List<Map<String, Object>> trierParNumero(List<Map<String, Object>> lignes) {
+        lignes.sort(Comparator.comparing(ligne -> (String) ligne.get("numeroCompte")));
+        return lignes;
+    }
+}
@@ -0,0 +1,301 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.yowyob.erp.accounting.dto.SoldeCompteDto;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Soldes des comptes tenus de façon incrémentale : un mouvement débit/crédit par (tenant, compte, jour)
+ * alimenté à la validation des écritures, et des points de contrôle cumulés écrits périodiquement.
+ * Un solde courant ou à date se calcule à partir du dernier point de contrôle et de quelques mouvements,
+ * sans relire les lignes d'écriture. Les montants sont stockés en centimes.
+ * Chaque report de mouvements change le marqueur de modification du compte : un point de contrôle
+ * calculé pendant un report concurrent est retiré au lieu de masquer le mouvement.
+ */
+@Service
+public class SoldeCompteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoldeCompteService.class);
+
+    private static final String UPDATE_DELTA =
+            "UPDATE solde_compte_delta SET debit_centimes = debit_centimes + ?, credit_centimes = credit_centimes + ? "
+                    + "WHERE tenant_id = ? AND compte_id = ? AND jour = ?";
+    private static final String SELECT_DELTAS =
+            "SELECT jour, debit_centimes, credit_centimes FROM solde_compte_delta "
+                    + "WHERE tenant_id = ? AND compte_id = ? AND jour > ? AND jour <= ?";
+    private static final String SELECT_DELTAS_COMPTE =
+            "SELECT jour, debit_centimes, credit_centimes FROM solde_compte_delta WHERE tenant_id = ? AND compte_id = ?";
+    private static final String SELECT_CHECKPOINT =
+            "SELECT jour, debit_cumule, credit_cumule FROM solde_compte_checkpoint "
+                    + "WHERE tenant_id = ? AND compte_id = ? AND jour <= ? LIMIT 1";
+    private static final String INSERT_CHECKPOINT =
+            "INSERT INTO solde_compte_checkpoint (tenant_id, compte_id, jour, debit_cumule, credit_cumule) VALUES (?, ?, ?, ?, ?)";
+    private static final String DELETE_CHECKPOINTS_DEPUIS =
+            "DELETE FROM solde_compte_checkpoint WHERE tenant_id = ? AND compte_id = ? AND jour >= ?";
+    private static final String DELETE_CHECKPOINT =
+            "DELETE FROM solde_compte_checkpoint WHERE tenant_id = ? AND compte_id = ? AND jour = ?";
+    private static final String UPDATE_MODIFICATION =
+            "UPDATE solde_compte_modification SET modification = ? WHERE tenant_id = ? AND compte_id = ?";
+    private static final String SELECT_MODIFICATION =
+            "SELECT modification FROM solde_compte_modification WHERE tenant_id = ? AND compte_id = ?";
+
+    // Borne basse utilisée quand aucun point de contrôle n'existe encore
+    private static final LocalDate ORIGINE = LocalDate.of(1970, 1, 1);
+    // Nombre de comptes lus en parallèle lors du calcul d'une balance
+    private static final int LECTURES_SIMULTANEES = 256;
+
+    private final CqlSession session;
+    // Comptes mouvementés depuis le dernier passage du job de points de contrôle
+    private final Set<CompteKey> comptesModifies = ConcurrentHashMap.newKeySet();
+
+    public SoldeCompteService(CqlSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Reporte les lignes d'une écriture validée dans les mouvements journaliers de chaque compte,
+     * en un seul batch de compteurs.
+     */
+    public void appliquerEcriture(UUID tenantId, LocalDate dateEcriture, List<DetailEcriture> details) {
+        Map<UUID, long[]> mouvements = new LinkedHashMap<>();
+        for (DetailEcriture detail : details) {
+            long[] mouvement = mouvements.computeIfAbsent(detail.getCompteComptableId(), id -> new long[2]);
+            mouvement[0] += centimes(detail.getMontantDebit());
+            mouvement[1] += centimes(detail.getMontantCredit());
+        }
+        if (mouvements.isEmpty()) {
+            return;
+        }
+        BatchStatementBuilder batch = BatchStatement.builder(DefaultBatchType.COUNTER);
+        mouvements.forEach((compteId, mouvement) -> batch.addStatement(session.prepare(UPDATE_DELTA)
+                .bind(mouvement[0], mouvement[1], tenantId, compteId, dateEcriture)));
+        session.execute(batch.build());
+
+        // Une écriture antidatée rend caducs les points de contrôle postérieurs à sa date
+        mouvements.keySet().forEach(compteId -> invaliderPointsDeControle(tenantId, compteId, dateEcriture));
+        logger.debug("Mouvements du {} reportés sur {} comptes pour le tenant {}", dateEcriture, mouvements.size(), tenantId);
+    }
+
+    /**
+     * Mouvements journaliers enregistrés pour le compte, en centimes [débit, crédit] par jour.
+     */
+    public Map<LocalDate, long[]> getMouvementsJournaliers(UUID tenantId, UUID compteId) {
+        Map<LocalDate, long[]> mouvements = new TreeMap<>();
+        for (Row delta : session.execute(session.prepare(SELECT_DELTAS_COMPTE).bind(tenantId, compteId))) {
+            mouvements.put(delta.getLocalDate("jour"),
+                    new long[]{delta.getLong("debit_centimes"), delta.getLong("credit_centimes")});
+        }
+        return mouvements;
+    }
+
+    /**
+     * Ajoute des écarts (centimes [débit, crédit] par jour) aux mouvements journaliers d'un compte,
+     * un compteur ne pouvant être réécrit, et invalide les points de contrôle qui suivent.
+     */
+    public void corrigerMouvements(UUID tenantId, UUID compteId, Map<LocalDate, long[]> ecarts) {
+        if (ecarts.isEmpty()) {
+            return;
+        }
+        PreparedStatement update = session.prepare(UPDATE_DELTA);
+        BatchStatementBuilder batch = BatchStatement.builder(DefaultBatchType.COUNTER);
+        ecarts.forEach((jour, ecart) -> batch.addStatement(update.bind(ecart[0], ecart[1], tenantId, compteId, jour)));
+        session.execute(batch.build());
+        LocalDate premierJour = ecarts.keySet().stream().min(LocalDate::compareTo).orElseThrow();
+        invaliderPointsDeControle(tenantId, compteId, premierJour);
+        logger.warn("Mouvements du compte {} corrigés sur {} jours depuis le {} pour le tenant {}",
+                compteId, ecarts.size(), premierJour, tenantId);
+    }
+
+    // Marqueur changé avant la suppression : un calcul de point de contrôle en cours le verra changer
+    private void invaliderPointsDeControle(UUID tenantId, UUID compteId, LocalDate depuis) {
+        session.execute(session.prepare(UPDATE_MODIFICATION).bind(Uuids.timeBased(), tenantId, compteId));
+        session.execute(session.prepare(DELETE_CHECKPOINTS_DEPUIS).bind(tenantId, compteId, depuis));
+        comptesModifies.add(new CompteKey(tenantId, compteId));
+    }
+
+    private UUID modification(UUID tenantId, UUID compteId) {
+        Row row = session.execute(session.prepare(SELECT_MODIFICATION).bind(tenantId, compteId)).one();
+        return row != null ? row.getUuid("modification") : null;
+    }
+
+    public SoldeCompteDto getSolde(UUID tenantId, UUID compteId) {
+        return getSoldeAu(tenantId, compteId, LocalDate.now());
+    }
+
+    /**
+     * Solde du compte à la fin de la journée donnée : dernier point de contrôle antérieur
+     * plus les mouvements journaliers qui le suivent.
+     */
+    public SoldeCompteDto getSoldeAu(UUID tenantId, UUID compteId, LocalDate date) {
+        Row checkpoint = session.execute(session.prepare(SELECT_CHECKPOINT).bind(tenantId, compteId, date)).one();
+        LocalDate depuis = ORIGINE;
+        long debit = 0;
+        long credit = 0;
+        if (checkpoint != null) {
+            depuis = checkpoint.getLocalDate("jour");
+            debit = checkpoint.getLong("debit_cumule");
+            credit = checkpoint.getLong("credit_cumule");
+        }
+        for (Row delta : session.execute(session.prepare(SELECT_DELTAS).bind(tenantId, compteId, depuis, date))) {
+            debit += delta.getLong("debit_centimes");
+            credit += delta.getLong("credit_centimes");
+        }
+        return toDto(compteId, date, debit, credit);
+    }
+
+    /**
+     * Mouvements du compte entre deux dates incluses.
+     */
+    public SoldeCompteDto getMouvements(UUID tenantId, UUID compteId, LocalDate dateDebut, LocalDate dateFin) {
+        long debit = 0;
+        long credit = 0;
+        for (Row delta : session.execute(session.prepare(SELECT_DELTAS)
+                .bind(tenantId, compteId, dateDebut.minusDays(1), dateFin))) {
+            debit += delta.getLong("debit_centimes");
+            credit += delta.getLong("credit_centimes");
+        }
+        return toDto(compteId, dateFin, debit, credit);
+    }
+
+    /**
+     * Solde d'ouverture et mouvements de la période pour chaque compte, lus de façon asynchrone
+     * par fenêtres de comptes : deux requêtes par compte (point de contrôle, mouvements journaliers)
+     * quel que soit le nombre de lignes d'écriture.
+     */
+    public Map<UUID, SoldePeriode> getSoldesPeriode(UUID tenantId, Collection<UUID> compteIds,
+                                                    LocalDate dateDebut, LocalDate dateFin) {
+        PreparedStatement selectCheckpoint = session.prepare(SELECT_CHECKPOINT);
+        PreparedStatement selectDeltas = session.prepare(SELECT_DELTAS);
+        LocalDate veille = dateDebut.minusDays(1);
+
+        Map<UUID, SoldePeriode> soldes = new LinkedHashMap<>();
+        List<UUID> ids = List.copyOf(compteIds);
+        for (int debut = 0; debut < ids.size(); debut += LECTURES_SIMULTANEES) {
+            List<UUID> fenetre = ids.subList(debut, Math.min(debut + LECTURES_SIMULTANEES, ids.size()));
+            List<CompletableFuture<long[]>> lectures = new ArrayList<>(fenetre.size());
+            for (UUID compteId : fenetre) {
+                lectures.add(session.executeAsync(selectCheckpoint.bind(tenantId, compteId, veille))
+                        .thenCompose(checkpoint -> {
+                            // [0] débit d'ouverture, [1] crédit d'ouverture, [2] débit période, [3] crédit période
+                            long[] cumuls = new long[4];
+                            LocalDate depuis = ORIGINE;
+                            Row row = checkpoint.one();
+                            if (row != null) {
+                                depuis = row.getLocalDate("jour");
+                                cumuls[0] = row.getLong("debit_cumule");
+                                cumuls[1] = row.getLong("credit_cumule");
+                            }
+                            return session.executeAsync(selectDeltas.bind(tenantId, compteId, depuis, dateFin))
+                                    .thenCompose(deltas -> cumulerMouvements(deltas, cumuls, dateDebut));
+                        })
+                        .toCompletableFuture());
+            }
+            for (int i = 0; i < fenetre.size(); i++) {
+                long[] cumuls = lectures.get(i).join();
+                soldes.put(fenetre.get(i), new SoldePeriode(
+                        (cumuls[0] - cumuls[1]) / 100.0, cumuls[2] / 100.0, cumuls[3] / 100.0));
+            }
+        }
+        return soldes;
+    }
+
+    /**
+     * Écrit un point de contrôle cumulé à la veille pour chaque compte mouvementé,
+     * afin que les lectures de solde ne parcourent que les mouvements récents. Si le marqueur de
+     * modification du compte a changé entre la lecture du solde et l'écriture, le point de contrôle
+     * peut ignorer un mouvement antidaté : il est supprimé et le compte reste à traiter.
+     */
+    @Scheduled(cron = "${app.accounting.soldes.checkpoint-cron:0 30 1 * * *}")
+    public void ecrirePointsDeControle() {
+        LocalDate veille = LocalDate.now().minusDays(1);
+        int ecrits = 0;
+        for (CompteKey compte : Set.copyOf(comptesModifies)) {
+            comptesModifies.remove(compte);
+            try {
+                UUID modification = modification(compte.tenantId(), compte.compteId());
+                SoldeCompteDto solde = getSoldeAu(compte.tenantId(), compte.compteId(), veille);
+                session.execute(session.prepare(INSERT_CHECKPOINT).bind(compte.tenantId(), compte.compteId(), veille,
+                        centimes(solde.getTotalDebit()), centimes(solde.getTotalCredit())));
+                if (Objects.equals(modification, modification(compte.tenantId(), compte.compteId()))) {
+                    ecrits++;
+                } else {
+                    session.execute(session.prepare(DELETE_CHECKPOINT).bind(compte.tenantId(), compte.compteId(), veille));
+                    comptesModifies.add(compte);
+                    logger.debug("Compte {} du tenant {} mouvementé pendant le calcul, point de contrôle retiré",
+                            compte.compteId(), compte.tenantId());
+                }
+            } catch (RuntimeException e) {
+                comptesModifies.add(compte);
+                logger.warn("Point de contrôle non écrit pour le compte {} du tenant {}: {}",
+                        compte.compteId(), compte.tenantId(), e.getMessage());
+            }
+        }
+        if (ecrits > 0) {
+            logger.info("{} points de contrôle de solde écrits au {}", ecrits, veille);
+        }
+    }
+
+    private CompletionStage<long[]> cumulerMouvements(AsyncResultSet deltas, long[] cumuls, LocalDate dateDebut) {
+        for (Row delta : deltas.currentPage()) {
+            int decalage = delta.getLocalDate("jour").isBefore(dateDebut) ? 0 : 2;
+            cumuls[decalage] += delta.getLong("debit_centimes");
+            cumuls[decalage + 1] += delta.getLong("credit_centimes");
+        }
+        if (deltas.hasMorePages()) {
+            return deltas.fetchNextPage().thenCompose(suite -> cumulerMouvements(suite, cumuls, dateDebut));
+        }
+        return CompletableFuture.completedFuture(cumuls);
+    }
+
+    private SoldeCompteDto toDto(UUID compteId, LocalDate date, long debit, long credit) {
+        return SoldeCompteDto.builder()
+                .compteId(compteId)
+                .dateSolde(date)
+                .totalDebit(debit / 100.0)
+                .totalCredit(credit / 100.0)
+                .solde((debit - credit) / 100.0)
+                .build();
+    }
+
+    static long centimes(Double montant) {
+        return montant == null ? 0 : Math.round(montant * 100);
+    }
+
+    /**
+     * Solde d'ouverture (débiteur positif) et mouvements débit/crédit d'un compte sur une période.
+     */
+    public record SoldePeriode(double soldeOuverture, double mouvementDebit, double mouvementCredit) {
+
+        public double soldeCloture() {
+            return soldeOuverture + mouvementDebit - mouvementCredit;
+        }
+    }
+
+    private record CompteKey(UUID tenantId, UUID compteId) {
+    }
+}
@@ -3,6 +3,8 @@ package com.yowyob.erp.accounting.serviceInitialization;
 import com.yowyob.erp.accounting.entity.JournalComptable;
 import com.yowyob.erp.accounting.entityKey.JournalComptableKey;
 import com.yowyob.erp.accounting.repository.JournalComptableRepository;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 
@@ -15,26 +17,33 @@ import java.util.UUID;
 public class JournalComptableInitializationService implements CommandLineRunner {
 
     private final JournalComptableRepository journalComptableRepository;
+    private final VersionReferentielService versionReferentielService;
     private final UUID tenantId;
 
 
     public JournalComptableInitializationService(JournalComptableRepository journalComptableRepository,
+     VersionReferentielService versionReferentielService,
      @Value("${app.tenant.default-tenant:550e8400-e29b-41d4-a716-446655440000}")
      String tenantIdStr) {
         this.journalComptableRepository = journalComptableRepository;
+        this.versionReferentielService = versionReferentielService;
             this.tenantId = UUID.fromString(tenantIdStr);
 
     }
 
     @Override
     public void run(String... args) {
-        createJournalIfNotExists(tenantId, "AN", "Journal des Achats", "ACHAT");
-        createJournalIfNotExists(tenantId, "VE", "Journal des Ventes", "VENTE");
-        createJournalIfNotExists(tenantId, "TR", "Journal de Trésorerie", "TRESORERIE");
-        createJournalIfNotExists(tenantId, "OD", "Journal des Opérations Diverses", "DIVERS");
+        boolean crees = createJournalIfNotExists(tenantId, "AN", "Journal des Achats", "ACHAT");
+        crees |= createJournalIfNotExists(tenantId, "VE", "Journal des Ventes", "VENTE");
+        crees |= createJournalIfNotExists(tenantId, "TR", "Journal de Trésorerie", "TRESORERIE");
+        crees |= createJournalIfNotExists(tenantId, "OD", "Journal des Opérations Diverses", "DIVERS");
+        // Les ETags déjà distribués pour ce tenant ne doivent plus valider la liste des journaux
+        if (crees) {
+            versionReferentielService.incrementer(tenantId, TypeReferentiel.JOURNAL_COMPTABLE);
+        }
     }
 
-    private void createJournalIfNotExists(UUID tenantId, String codeJournal, String libelle, String typeJournal) {
+    private boolean createJournalIfNotExists(UUID tenantId, String codeJournal, String libelle, String typeJournal) {
         if (!journalComptableRepository.existsByKeyTenantIdAndCodeJournal(tenantId, codeJournal)) {
             JournalComptable journal = new JournalComptable();
             JournalComptableKey key = new JournalComptableKey();
@@ -50,6 +59,8 @@ public class JournalComptableInitializationService implements CommandLineRunner
             journal.setCreatedBy("system");
             journal.setUpdatedBy("system");
             journalComptableRepository.save(journal);
+            return true;
         }
+        return false;
     }
 }
@@ -5,6 +5,8 @@ import com.yowyob.erp.accounting.entity.OperationComptable;
 import com.yowyob.erp.accounting.entityKey.OperationComptableKey;
 import com.yowyob.erp.accounting.repository.JournalComptableRepository;
 import com.yowyob.erp.accounting.repository.OperationComptableRepository;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 
@@ -19,14 +21,17 @@ public class OperationComptableInitializationService implements CommandLineRunne
 
     private final OperationComptableRepository operationComptableRepository;
     private final JournalComptableRepository journalComptableRepository;
+    private final VersionReferentielService versionReferentielService;
         private final UUID tenantId ;
 
     public OperationComptableInitializationService(OperationComptableRepository operationComptableRepository,
      JournalComptableRepository journalComptableRepository,
+     VersionReferentielService versionReferentielService,
       @Value("${app.tenant.default-tenant:550e8400-e29b-41d4-a716-446655440000}")
      String tenantIdStr) {
         this.operationComptableRepository = operationComptableRepository;
         this.journalComptableRepository = journalComptableRepository;
+        this.versionReferentielService = versionReferentielService;
 
          this.tenantId = UUID.fromString(tenantIdStr);
     }
@@ -41,12 +46,15 @@ public class OperationComptableInitializationService implements CommandLineRunne
         JournalComptable journalTR = journalComptableRepository.findByKeyTenantIdAndCodeJournal(tenantId, "TR")
                 .orElseThrow(() -> new IllegalStateException("Journal TR not found"));
 
-        createOperationIfNotExists(tenantId, "ACHAT", "ESPECE", "401000", false, "DEBIT", journalAN.getKey().getId(), "HT", 1000000.0);
-        createOperationIfNotExists(tenantId, "VENTE", "ESPECE", "701000", false, "CREDIT", journalVE.getKey().getId(), "TTC", 1000000.0);
-        createOperationIfNotExists(tenantId, "PAIEMENT", "VIREMENT", "512000", false, "CREDIT", journalTR.getKey().getId(), "TTC", 5000000.0);
+        boolean crees = createOperationIfNotExists(tenantId, "ACHAT", "ESPECE", "401000", false, "DEBIT", journalAN.getKey().getId(), "HT", 1000000.0);
+        crees |= createOperationIfNotExists(tenantId, "VENTE", "ESPECE", "701000", false, "CREDIT", journalVE.getKey().getId(), "TTC", 1000000.0);
+        crees |= createOperationIfNotExists(tenantId, "PAIEMENT", "VIREMENT", "512000", false, "CREDIT", journalTR.getKey().getId(), "TTC", 5000000.0);
+        if (crees) {
+            versionReferentielService.incrementer(tenantId, TypeReferentiel.OPERATION_COMPTABLE);
+        }
     }
 
-    private void createOperationIfNotExists(
+    private boolean createOperationIfNotExists(
                        UUID tenantId, String typeOperation, 
                        String modeReglement, String comptePrincipal,
                         boolean estCompteStatique, String sensPrincipal,
@@ -71,6 +79,8 @@ public class OperationComptableInitializationService implements CommandLineRunne
             operation.setCreatedBy("system");
             operation.setUpdatedBy("system");
             operationComptableRepository.save(operation);
+            return true;
         }
+        return false;
     }
 }
@@ -13,23 +13,30 @@ import org.springframework.stereotype.Service;
 import com.yowyob.erp.accounting.entity.PlanComptable;
 import com.yowyob.erp.accounting.entityKey.PlanComptableKey;
 import com.yowyob.erp.accounting.repository.PlanComptableRepository;
+import com.yowyob.erp.config.etag.TypeReferentiel;
+import com.yowyob.erp.config.etag.VersionReferentielService;
 
 @Service
 public class PlanComptableInitializationService implements CommandLineRunner {
 
     private final PlanComptableRepository planComptableRepository;
+
+    private final VersionReferentielService versionReferentielService;
     
     private final UUID tenantId;
 
     public PlanComptableInitializationService(PlanComptableRepository planComptableRepository,
+    VersionReferentielService versionReferentielService,
     @Value("${app.tenant.default-tenant:550e8400-e29b-41d4-a716-446655440000}")
      String tenantIdStr) {
         this.planComptableRepository = planComptableRepository;
+        this.versionReferentielService = versionReferentielService;
         this.tenantId = UUID.fromString(tenantIdStr);
     }
 
     @Override
     public void run(String... args) {
+        boolean crees = false;
         try (InputStream inputStream = getClass().getResourceAsStream("/comptes_comptables.csv");
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             String line;
@@ -44,15 +51,19 @@ public class PlanComptableInitializationService implements CommandLineRunner {
                     String noCompte = data[1].trim();
                     String libelle = data[2].trim();
                     Integer classe = Integer.parseInt(data[3].trim());
-                    createAccountIfNotExists(tenantId, noCompte, libelle, classe);
+                    crees |= createAccountIfNotExists(tenantId, noCompte, libelle, classe);
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // Y compris après une erreur de lecture : les comptes déjà créés changent le plan servi
+        if (crees) {
+            versionReferentielService.incrementer(tenantId, TypeReferentiel.PLAN_COMPTABLE);
+        }
     }
 
-    private void createAccountIfNotExists(UUID tenantId, String noCompte, String libelle, Integer classe) {
+    private boolean createAccountIfNotExists(UUID tenantId, String noCompte, String libelle, Integer classe) {
         if (!planComptableRepository.existsByKeyTenantIdAndNoCompte(tenantId, noCompte)) {
             PlanComptable planComptable = new PlanComptable();
             PlanComptableKey key = new PlanComptableKey();
@@ -69,6 +80,8 @@ public class PlanComptableInitializationService implements CommandLineRunner {
             planComptable.setCreatedBy("system");
             planComptable.setUpdatedBy("system");
             planComptableRepository.save(planComptable);
+            return true;
         }
+        return false;
     }
 }
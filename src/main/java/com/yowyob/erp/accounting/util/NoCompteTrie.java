@@ -0,0 +1,78 @@
+package com.yowyob.erp.accounting.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Arbre préfixe sur les numéros de compte. Les valeurs d'un préfixe sont restituées
+ * dans l'ordre lexicographique des numéros (ordre du plan comptable).
+ * Non thread-safe : la synchronisation est à la charge de l'appelant.
+ */
+public class NoCompteTrie<V> {
+
+    private static final class Node<V> {
+        private final Map<Character, Node<V>> children = new TreeMap<>();
+        private V value;
+    }
+
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    public void put(String noCompte, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < noCompte.length(); i++) {
+            node = node.children.computeIfAbsent(noCompte.charAt(i), c -> new Node<>());
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    public void remove(String noCompte) {
+        remove(root, noCompte, 0);
+    }
+
+    public List<V> findByPrefix(String prefix) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        List<V> values = new ArrayList<>();
+        if (node != null) {
+            collect(node, values);
+        }
+        return values;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Retourne true si le noeud est devenu vide et peut être détaché de son parent
+    private boolean remove(Node<V> node, String noCompte, int depth) {
+        if (depth == noCompte.length()) {
+            if (node.value != null) {
+                node.value = null;
+                size--;
+            }
+        } else {
+            Node<V> child = node.children.get(noCompte.charAt(depth));
+            if (child != null && remove(child, noCompte, depth + 1)) {
+                node.children.remove(noCompte.charAt(depth));
+            }
+        }
+        return node.value == null && node.children.isEmpty();
+    }
+
+    private void collect(Node<V> node, List<V> values) {
+        if (node.value != null) {
+            values.add(node.value);
+        }
+        for (Node<V> child : node.children.values()) {
+            collect(child, values);
+        }
+    }
+}
@@ -59,6 +59,8 @@ public class AppConstants {
     public static final class KafkaEvents {
         public static final String ACCOUNTING_ENTRY_CREATED = "ACCOUNTING_ENTRY_CREATED";
         public static final String ACCOUNTING_ENTRY_VALIDATED = "ACCOUNTING_ENTRY_VALIDATED";
+        public static final String ACCOUNTING_ENTRIES_BATCH_CREATED = "ACCOUNTING_ENTRIES_BATCH_CREATED";
+        public static final String ECRITURE_POSTED = "ECRITURE_POSTED";
         public static final String INVOICE_CREATED = "INVOICE_CREATED";
         public static final String INVOICE_PAID = "INVOICE_PAID";
         public static final String PERIOD_CLOSED = "PERIOD_CLOSED";
@@ -0,0 +1,21 @@
+// DTO pour une page de résultats paginée par curseur (paging state Cassandra)
+package com.yowyob.erp.common.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    // Curseur opaque à renvoyer pour obtenir la page suivante, null s'il n'y en a plus
+    private String nextCursor;
+    private boolean hasNext;
+}
@@ -0,0 +1,27 @@
+package com.yowyob.erp.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Message d'un topic de rejet Kafka, avec son origine et la dernière erreur rencontrée
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterDto {
+    private String topic;
+    private int partition;
+    private long offset;
+    private String origine;
+    private String positionOrigine;
+    private int tentatives;
+    private String erreur;
+    private LocalDateTime dateRejet;
+    private Object payload;
+}
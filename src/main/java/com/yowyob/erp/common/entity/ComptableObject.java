@@ -3,6 +3,7 @@ package com.yowyob.erp.common.entity;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 import com.yowyob.erp.common.enums.SourceType;
 
 import com.yowyob.erp.accounting.entity.DetailEcriture;
@@ -14,5 +15,13 @@ public interface ComptableObject {
     String getLibelle();
     UUID getJournalComptableId();
     List<DetailEcriture> generateEcritureDetails(UUID tenantId, UUID ecritureId);
+
+    /**
+     * Lignes de l'écriture avec les comptes résolus à partir de leur numéro dans le plan comptable
+     * du tenant. Par défaut, les lignes de {@link #generateEcritureDetails(UUID, UUID)}.
+     */
+    default List<DetailEcriture> generateEcritureDetails(UUID tenantId, UUID ecritureId, Function<String, UUID> comptes) {
+        return generateEcritureDetails(tenantId, ecritureId);
+    }
     SourceType getSourceType();
 }
\ No newline at end of file
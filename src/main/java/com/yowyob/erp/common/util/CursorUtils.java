@@ -0,0 +1,76 @@
+// Utilitaires pour la pagination par curseur sur Cassandra
+package com.yowyob.erp.common.util;
+
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.common.exception.BusinessException;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class CursorUtils {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private CursorUtils() {
+    }
+
+    /**
+     * Construit la requête de page à partir du curseur reçu (null pour la première page).
+     */
+    public static Pageable toPageable(String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        PageRequest first = PageRequest.of(0, pageSize);
+        if (cursor == null || cursor.isBlank()) {
+            return CassandraPageRequest.first(pageSize);
+        }
+        try {
+            return CassandraPageRequest.of(first, ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor)));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Curseur de pagination invalide");
+        }
+    }
+
+    /**
+     * Taille de page demandée, bornée côté serveur (taille par défaut si absente).
+     */
+    public static int pageSize(Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new BusinessException("La taille de page doit être comprise entre 1 et " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    /**
+     * Encode le paging state de la page suivante, ou null si la tranche est la dernière.
+     */
+    public static String nextCursor(Slice<?> slice) {
+        if (!slice.hasNext() || !(slice.nextPageable() instanceof CassandraPageRequest next)
+                || next.getPagingState() == null) {
+            return null;
+        }
+        ByteBuffer pagingState = next.getPagingState().duplicate();
+        byte[] bytes = new byte[pagingState.remaining()];
+        pagingState.get(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static <E, D> CursorPage<D> toCursorPage(Slice<E> slice, Function<E, D> mapper) {
+        List<D> content = slice.getContent().stream().map(mapper).collect(Collectors.toList());
+        String nextCursor = nextCursor(slice);
+        return CursorPage.<D>builder()
+                .content(content)
+                .size(content.size())
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.yowyob.erp.common.util;
+
+import org.reactivestreams.Subscription;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+
+/**
+ * Réponses MVC alimentées par un Flux. Les éléments sont écrits un par un et le suivant n'est
+ * demandé qu'une fois le précédent écrit : un client lent ralentit la lecture Cassandra au lieu
+ * d'accumuler la réponse en mémoire. Les flux NDJSON sont pris en charge directement par Spring MVC
+ * (méthode retournant un Flux avec produces application/x-ndjson) ; cette classe couvre le tableau JSON.
+ */
+public final class FluxResponses {
+
+    // Éléments lus d'avance entre le driver et l'écriture de la réponse
+    private static final int PREFETCH = 32;
+
+    private FluxResponses() {
+    }
+
+    /**
+     * Écrit le flux comme un tableau JSON ("[", éléments séparés par des virgules, "]").
+     * La déconnexion du client ou l'expiration de la requête annule la lecture.
+     */
+    public static <T> ResponseBodyEmitter tableauJson(Flux<T> flux) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        BaseSubscriber<T> abonne = new BaseSubscriber<>() {
+            private boolean premier = true;
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                if (envoyer("[")) {
+                    request(1);
+                }
+            }
+
+            @Override
+            protected void hookOnNext(T element) {
+                if ((premier || envoyer(",")) && envoyer(element)) {
+                    premier = false;
+                    request(1);
+                }
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                if (envoyer("]")) {
+                    emitter.complete();
+                }
+            }
+
+            @Override
+            protected void hookOnError(Throwable erreur) {
+                emitter.completeWithError(erreur);
+            }
+
+            private boolean envoyer(Object valeur) {
+                try {
+                    emitter.send(valeur, MediaType.APPLICATION_JSON);
+                    return true;
+                } catch (IOException | IllegalStateException e) {
+                    // Client parti : on arrête de lire
+                    cancel();
+                    emitter.completeWithError(e);
+                    return false;
+                }
+            }
+        };
+        emitter.onTimeout(abonne::dispose);
+        emitter.onError(erreur -> abonne.dispose());
+        // Les écritures bloquantes sur la réponse se font hors des threads du driver Cassandra ;
+        // contextCapture recopie le TenantContext de la requête dans le contexte Reactor
+        flux.publishOn(Schedulers.boundedElastic(), PREFETCH).contextCapture().subscribe(abonne);
+        return emitter;
+    }
+}
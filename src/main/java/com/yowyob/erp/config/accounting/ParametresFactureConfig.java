@@ -0,0 +1,33 @@
+package com.yowyob.erp.config.accounting;
+
+import com.yowyob.erp.accounting.entity.ParametresFacture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Currency;
+
+/**
+ * Paramètres de comptabilisation des factures : comptes de contrôle configurés (résolus ensuite dans
+ * le plan comptable du tenant) et arrondi à l'échelle de la devise comptable.
+ */
+@Configuration
+@Slf4j
+public class ParametresFactureConfig {
+
+    @Bean
+    public ParametresFacture parametresFacture(
+            @Value("${app.accounting.facture.compte-achats:601000}") String compteAchats,
+            @Value("${app.accounting.facture.compte-ventes:701000}") String compteVentes,
+            @Value("${app.accounting.facture.compte-tva-deductible:445620}") String compteTvaDeductible,
+            @Value("${app.accounting.facture.compte-tva-collectee:445710}") String compteTvaCollectee,
+            @Value("${app.accounting.facture.compte-fournisseurs:401000}") String compteFournisseurs,
+            @Value("${app.accounting.facture.compte-clients:411000}") String compteClients,
+            @Value("${app.accounting.devise:XAF}") String devise) {
+        int echelle = Math.max(0, Currency.getInstance(devise).getDefaultFractionDigits());
+        log.info("Factures comptabilisées en {} ({} décimales)", devise, echelle);
+        return new ParametresFacture(compteAchats, compteVentes, compteTvaDeductible, compteTvaCollectee,
+                compteFournisseurs, compteClients, echelle);
+    }
+}
@@ -2,27 +2,67 @@
 package com.yowyob.erp.config.async;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Configuration
 @EnableAsync
 @Slf4j
 public class AsyncConfig {
 
+    // Même interrupteur que Tomcat et les conteneurs Kafka ; ignoré avant Java 21, comme par Spring Boot
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Nombre maximal de tâches simultanées en mode threads virtuels ; au-delà la soumission attend
+    @Value("${app.async.virtual.max-concurrence:200}")
+    private int maxConcurrence;
+
+    /**
+     * Exécuteur des tâches @Async et des traitements de fond. Le TenantContext de l'appelant est
+     * recopié dans la tâche. En mode pool, une tâche soumise quand la file est pleine est refusée
+     * (TaskRejectedException) plutôt qu'exécutée sur le thread de l'appelant, souvent celui d'une
+     * requête : les soumetteurs de tâches de fond (rafraîchissement de cache, reconstruction d'index)
+     * l'abandonnent, elle sera redemandée. En mode threads virtuels, la soumission attend qu'une
+     * place se libère.
+     */
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public Executor taskExecutor(TaskDecorator tenantContextTaskDecorator) {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            log.warn("Threads virtuels demandés mais indisponibles sur Java {}, exécuteur en pool de threads",
+                    Runtime.version().feature());
+        } else if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Async-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxConcurrence);
+            executor.setTaskDecorator(tenantContextTaskDecorator);
+            executor.setTaskTerminationTimeout(30_000);
+            log.info("Exécuteur asynchrone en threads virtuels, {} tâches simultanées au plus", maxConcurrence);
+            return executor;
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("Async-");
-        executor.setRejectedExecutionHandler((r, executor1) -> 
-            log.warn("Tâche rejetée: {}", r.toString()));
+        executor.setTaskDecorator(tenantContextTaskDecorator);
+        executor.setRejectedExecutionHandler((r, executor1) -> {
+            if (!executor1.isShutdown()) {
+                log.warn("File de l'exécuteur pleine, tâche refusée: {}", r);
+            }
+            throw new RejectedExecutionException("Exécuteur " + (executor1.isShutdown() ? "arrêté" : "saturé") + ", tâche refusée: " + r);
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
         executor.initialize();
         return executor;
     }
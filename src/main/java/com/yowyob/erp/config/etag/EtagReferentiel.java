@@ -0,0 +1,20 @@
+package com.yowyob.erp.config.etag;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marque une lecture GET de données de référence : la réponse porte un ETag dérivé de la version
+ * du référentiel pour le tenant, et une requête dont le If-None-Match correspond reçoit un 304
+ * avant l'appel du contrôleur (voir EtagReferentielInterceptor).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EtagReferentiel {
+
+    TypeReferentiel value();
+}
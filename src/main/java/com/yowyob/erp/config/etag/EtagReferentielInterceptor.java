@@ -0,0 +1,67 @@
+package com.yowyob.erp.config.etag;
+
+import com.yowyob.erp.config.tenant.TenantContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.UUID;
+
+/**
+ * Lectures conditionnelles des données de référence. Pour une méthode annotée
+ * {@link EtagReferentiel}, l'ETag est calculé à partir de la version du référentiel avant
+ * l'appel du contrôleur : si le client possède déjà cette version, la réponse 304 est envoyée
+ * sans lecture Cassandra ni construction des DTO. La version est lue avant les données, une
+ * écriture concurrente produit donc au pire une réponse revalidée à la requête suivante.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EtagReferentielInterceptor implements HandlerInterceptor {
+
+    private final VersionReferentielService versionReferentielService;
+
+    @Value("${app.tenant.header-name:X-Tenant-ID}")
+    private String tenantHeaderName;
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod()) || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        EtagReferentiel annotation = handlerMethod.getMethodAnnotation(EtagReferentiel.class);
+        UUID tenantId = TenantContext.getCurrentTenant();
+        if (annotation == null || tenantId == null) {
+            return true;
+        }
+        Long version = versionReferentielService.versionCourante(tenantId, annotation.value());
+        if (version == null) {
+            return true;
+        }
+
+        // Le contenu dépend du tenant de la requête : il fait partie de l'ETag et de Vary.
+        // ETag faible : la représentation peut être compressée par le conteneur.
+        String etag = "W/\"" + annotation.value().getCode() + "-" + tenantId + "-" + version + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        response.addHeader(HttpHeaders.VARY, tenantHeaderName);
+
+        // Positionne l'en-tête ETag et, si le client a cette version, le statut 304
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            log.debug("Référentiel {} inchangé (version {}) pour le tenant {}", annotation.value().getCode(), version, tenantId);
+            return false;
+        }
+        return true;
+    }
+}
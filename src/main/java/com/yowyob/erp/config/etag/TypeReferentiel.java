@@ -0,0 +1,22 @@
+package com.yowyob.erp.config.etag;
+
+/**
+ * Données de référence versionnées par tenant. Chaque type a son propre compteur :
+ * modifier un journal n'invalide pas le plan comptable déjà chargé par le client.
+ */
+public enum TypeReferentiel {
+    PLAN_COMPTABLE("plan-comptable"),
+    JOURNAL_COMPTABLE("journal-comptable"),
+    PERIODE_COMPTABLE("periode-comptable"),
+    OPERATION_COMPTABLE("operation-comptable");
+
+    private final String code;
+
+    TypeReferentiel(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+}
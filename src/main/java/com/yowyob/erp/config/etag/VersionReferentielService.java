@@ -0,0 +1,131 @@
+package com.yowyob.erp.config.etag;
+
+import com.yowyob.erp.config.tenant.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compteurs de version des données de référence, un par tenant et par type, partagés entre
+ * les nœuds via Redis. Toute écriture incrémente le compteur ; les lectures conditionnelles
+ * comparent l'ETag du client à la version courante sans interroger Cassandra.
+ * <p>
+ * Un incrément qui échoue ne doit pas laisser en place l'ancienne version, qui validerait les ETags
+ * des clients sur des données modifiées : le compteur est alors supprimé (il repartira d'une valeur
+ * supérieure à toutes les versions distribuées). Si Redis ne permet pas non plus la suppression,
+ * le compteur est noté incertain : ce nœud lit sans ETag et retente la suppression périodiquement.
+ */
+@Service
+public class VersionReferentielService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionReferentielService.class);
+
+    private static final String PREFIXE_CLE = "referentiel:version:";
+
+    // Un compteur absent (premier accès, perte des données Redis) repart d'une valeur dérivée de
+    // l'horloge : elle dépasse toute version déjà distribuée, un ancien ETag ne peut pas correspondre.
+    // KEYS : compteur ; ARGV : valeur initiale
+    private static final RedisScript<Long> SCRIPT_INCREMENTER = RedisScript.of(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then redis.call('SET', KEYS[1], ARGV[1]) end "
+                    + "return redis.call('INCR', KEYS[1])",
+            Long.class);
+    private static final RedisScript<Long> SCRIPT_LIRE = RedisScript.of(
+            "local v = redis.call('GET', KEYS[1]) "
+                    + "if not v then redis.call('SET', KEYS[1], ARGV[1]) v = ARGV[1] end "
+                    + "return tonumber(v)",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    // Compteurs dont l'incrément et la suppression ont échoué, à supprimer dès que Redis répond
+    private final Set<String> compteursIncertains = ConcurrentHashMap.newKeySet();
+
+    public VersionReferentielService(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Version courante du référentiel pour le tenant, ou null si Redis est indisponible
+     * (la lecture se fait alors sans ETag).
+     */
+    public Long versionCourante(UUID tenantId, TypeReferentiel type) {
+        String cle = cle(tenantId, type);
+        if (compteursIncertains.contains(cle)) {
+            return null;
+        }
+        try {
+            return redisTemplate.execute(SCRIPT_LIRE, List.of(cle), valeurInitiale());
+        } catch (Exception e) {
+            logger.warn("Version du référentiel {} indisponible pour le tenant {}: {}", type.getCode(), tenantId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Incrémente la version du référentiel pour le tenant courant. À appeler après l'écriture en
+     * base : une lecture concurrente obtient au pire l'ancienne version avec les nouvelles données,
+     * et le client recharge à la requête suivante.
+     */
+    public void incrementer(TypeReferentiel type) {
+        UUID tenantId = TenantContext.getCurrentTenant();
+        if (tenantId == null) {
+            return;
+        }
+        incrementer(tenantId, type);
+    }
+
+    /**
+     * Incrémente la version du référentiel pour le tenant donné, pour les écritures faites hors
+     * requête (initialisation des données).
+     */
+    public void incrementer(UUID tenantId, TypeReferentiel type) {
+        String cle = cle(tenantId, type);
+        try {
+            Long version = redisTemplate.execute(SCRIPT_INCREMENTER, List.of(cle), valeurInitiale());
+            logger.debug("Référentiel {} du tenant {} en version {}", type.getCode(), tenantId, version);
+        } catch (Exception e) {
+            logger.error("Échec de l'incrément de version du référentiel {} pour le tenant {}, compteur supprimé: {}",
+                    type.getCode(), tenantId, e.getMessage());
+            supprimer(cle);
+        }
+    }
+
+    /**
+     * Retente la suppression des compteurs incertains ; une fois supprimés, ils sont relus normalement.
+     */
+    @Scheduled(fixedDelayString = "${app.referentiel.version.reprise-intervalle:5000}")
+    public void reprendreCompteursIncertains() {
+        for (String cle : List.copyOf(compteursIncertains)) {
+            supprimer(cle);
+        }
+    }
+
+    private void supprimer(String cle) {
+        try {
+            redisTemplate.delete(cle);
+            if (compteursIncertains.remove(cle)) {
+                logger.info("Compteur de version {} supprimé, ETags de nouveau servis", cle);
+            }
+        } catch (Exception e) {
+            if (compteursIncertains.add(cle)) {
+                logger.warn("Suppression du compteur de version {} impossible, lectures sans ETag sur ce nœud: {}",
+                        cle, e.getMessage());
+            }
+        }
+    }
+
+    private static String cle(UUID tenantId, TypeReferentiel type) {
+        return PREFIXE_CLE + type.getCode() + ":" + tenantId;
+    }
+
+    private static String valeurInitiale() {
+        return String.valueOf(System.currentTimeMillis() * 1000);
+    }
+}
@@ -0,0 +1,140 @@
+package com.yowyob.erp.config.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Équilibre des partitions des topics consommés, les messages étant répartis par tenant :
+ * <ul>
+ *   <li>kafka.partition.retard{topic, partition} : messages non encore consommés par le groupe ;</li>
+ *   <li>kafka.partition.desequilibre{topic} : messages reçus depuis la mesure précédente par la
+ *   partition la plus chargée, rapportés à la moyenne des partitions (1 = répartition égale).
+ *   Une valeur durablement élevée signale un tenant chaud à déclarer dans app.kafka.tenants-chauds.</li>
+ * </ul>
+ * Le retard par tenant est publié par TenantDispatcher.
+ */
+@Component
+@Profile("!no-kafka")
+public class KafkaPartitionMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaPartitionMetrics.class);
+    private static final long DELAI_ADMIN_SECONDES = 10;
+
+    private final KafkaAdmin kafkaAdmin;
+    private final MeterRegistry meterRegistry;
+    private final List<String> topics;
+    private final String groupe;
+    private final Map<TopicPartition, AtomicLong> retards = new ConcurrentHashMap<>();
+    // Valeurs double stockées sous forme de bits
+    private final Map<String, AtomicLong> desequilibres = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> finsPrecedentes = new HashMap<>();
+    private AdminClient adminClient;
+
+    public KafkaPartitionMetrics(KafkaAdmin kafkaAdmin,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.kafka.equilibrage.topics:invoice.events,accounting.entries}") List<String> topics,
+                                 @Value("${spring.kafka.consumer.group-id}") String groupe) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.meterRegistry = meterRegistry;
+        this.topics = topics;
+        this.groupe = groupe;
+    }
+
+    @Scheduled(fixedDelayString = "${app.kafka.equilibrage.metriques-intervalle:30000}")
+    public synchronized void mesurer() {
+        try {
+            AdminClient admin = admin();
+            Map<TopicPartition, OffsetSpec> fins = new HashMap<>();
+            for (TopicDescription description : admin.describeTopics(topics).allTopicNames()
+                    .get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS).values()) {
+                description.partitions().forEach(p ->
+                        fins.put(new TopicPartition(description.name(), p.partition()), OffsetSpec.latest()));
+            }
+            Map<TopicPartition, ListOffsetsResultInfo> finsLues = admin.listOffsets(fins).all()
+                    .get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS);
+            Map<TopicPartition, OffsetAndMetadata> consommes = admin.listConsumerGroupOffsets(groupe)
+                    .partitionsToOffsetAndMetadata().get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS);
+
+            Map<String, long[]> recusParTopic = new HashMap<>();
+            finsLues.forEach((tp, fin) -> {
+                OffsetAndMetadata consomme = consommes.get(tp);
+                retard(tp).set(consomme != null ? Math.max(0, fin.offset() - consomme.offset()) : fin.offset());
+
+                Long precedente = finsPrecedentes.put(tp, fin.offset());
+                long recus = precedente != null ? Math.max(0, fin.offset() - precedente) : 0;
+                // [total, maximum, nombre de partitions]
+                long[] cumul = recusParTopic.computeIfAbsent(tp.topic(), t -> new long[3]);
+                cumul[0] += recus;
+                cumul[1] = Math.max(cumul[1], recus);
+                cumul[2]++;
+            });
+            recusParTopic.forEach((topic, cumul) ->
+                    desequilibre(topic).set(Double.doubleToLongBits(
+                            cumul[0] > 0 ? cumul[1] * (double) cumul[2] / cumul[0] : 1.0)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            logger.warn("Mesure de l'équilibre des partitions Kafka impossible : {}", e.getMessage());
+        }
+    }
+
+    private AtomicLong retard(TopicPartition tp) {
+        return retards.computeIfAbsent(tp, t -> {
+            AtomicLong valeur = new AtomicLong();
+            Gauge.builder("kafka.partition.retard", valeur, AtomicLong::get)
+                    .description("Messages de la partition non encore consommés par le groupe")
+                    .tag("topic", t.topic())
+                    .tag("partition", String.valueOf(t.partition()))
+                    .register(meterRegistry);
+            return valeur;
+        });
+    }
+
+    private AtomicLong desequilibre(String topic) {
+        return desequilibres.computeIfAbsent(topic, t -> {
+            AtomicLong valeur = new AtomicLong(Double.doubleToLongBits(1.0));
+            Gauge.builder("kafka.partition.desequilibre", valeur, v -> Double.longBitsToDouble(v.get()))
+                    .description("Débit de la partition la plus chargée rapporté au débit moyen")
+                    .tag("topic", t)
+                    .register(meterRegistry);
+            return valeur;
+        });
+    }
+
+    private synchronized AdminClient admin() {
+        if (adminClient == null) {
+            adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        }
+        return adminClient;
+    }
+
+    @PreDestroy
+    public synchronized void arreter() {
+        if (adminClient != null) {
+            adminClient.close();
+        }
+    }
+}
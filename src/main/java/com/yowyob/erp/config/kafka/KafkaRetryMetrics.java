@@ -0,0 +1,136 @@
+package com.yowyob.erp.config.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Profondeur des réessais Kafka : pour chaque topic d'origine, nombre de messages en attente
+ * sur chaque niveau de réessai (retard du groupe de réessai) et nombre de messages sur le topic
+ * de rejet. Publiée en jauge kafka.retry.profondeur{origine, etape}.
+ */
+@Component
+@Profile("!no-kafka")
+public class KafkaRetryMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaRetryMetrics.class);
+    private static final long DELAI_ADMIN_SECONDES = 10;
+
+    private final KafkaAdmin kafkaAdmin;
+    private final KafkaRetryService kafkaRetryService;
+    private final MeterRegistry meterRegistry;
+    private final String groupeReessai;
+    private final Map<String, AtomicLong> profondeurs = new ConcurrentHashMap<>();
+    private AdminClient adminClient;
+
+    public KafkaRetryMetrics(KafkaAdmin kafkaAdmin,
+                             KafkaRetryService kafkaRetryService,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.kafka.retry.group-id}") String groupeReessai) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.kafkaRetryService = kafkaRetryService;
+        this.meterRegistry = meterRegistry;
+        this.groupeReessai = groupeReessai;
+    }
+
+    @Scheduled(fixedDelayString = "${app.kafka.retry.metriques-intervalle:30000}")
+    public void mesurer() {
+        try {
+            List<String> reessais = new ArrayList<>();
+            List<String> rejets = new ArrayList<>();
+            for (String origine : kafkaRetryService.getOrigines()) {
+                for (int niveau = 0; niveau < kafkaRetryService.getNiveaux(); niveau++) {
+                    reessais.add(KafkaRetryService.topicReessai(origine, niveau));
+                }
+                rejets.add(KafkaRetryService.topicRejet(origine));
+            }
+            List<String> topics = new ArrayList<>(reessais);
+            topics.addAll(rejets);
+
+            AdminClient admin = admin();
+            Map<TopicPartition, OffsetSpec> fins = new HashMap<>();
+            Map<TopicPartition, OffsetSpec> debuts = new HashMap<>();
+            for (TopicDescription description : admin.describeTopics(topics).allTopicNames()
+                    .get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS).values()) {
+                description.partitions().forEach(p -> {
+                    TopicPartition tp = new TopicPartition(description.name(), p.partition());
+                    fins.put(tp, OffsetSpec.latest());
+                    debuts.put(tp, OffsetSpec.earliest());
+                });
+            }
+            Map<TopicPartition, ListOffsetsResultInfo> finsLues = admin.listOffsets(fins).all()
+                    .get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS);
+            Map<TopicPartition, ListOffsetsResultInfo> debutsLus = admin.listOffsets(debuts).all()
+                    .get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS);
+            Map<TopicPartition, OffsetAndMetadata> consommes = admin.listConsumerGroupOffsets(groupeReessai)
+                    .partitionsToOffsetAndMetadata().get(DELAI_ADMIN_SECONDES, TimeUnit.SECONDS);
+
+            Map<String, Long> parTopic = new HashMap<>();
+            finsLues.forEach((tp, fin) -> {
+                // Réessais : messages non encore consommés par le groupe de réessai ; rejets : taille du topic
+                OffsetAndMetadata consomme = consommes.get(tp);
+                long depart = reessais.contains(tp.topic()) && consomme != null
+                        ? consomme.offset() : debutsLus.get(tp).offset();
+                parTopic.merge(tp.topic(), Math.max(0, fin.offset() - depart), Long::sum);
+            });
+            parTopic.forEach(this::publier);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            logger.warn("Mesure de la profondeur des réessais Kafka impossible : {}", e.getMessage());
+        }
+    }
+
+    private void publier(String topic, long profondeur) {
+        profondeurs.computeIfAbsent(topic, t -> {
+            String origine = kafkaRetryService.getOrigines().stream()
+                    .filter(o -> t.startsWith(o + "."))
+                    .findFirst()
+                    .orElse(t);
+            AtomicLong valeur = new AtomicLong();
+            Gauge.builder("kafka.retry.profondeur", valeur, AtomicLong::get)
+                    .description("Messages en attente de réessai ou rejetés")
+                    .tag("origine", origine)
+                    .tag("etape", t.substring(origine.length() + 1))
+                    .register(meterRegistry);
+            return valeur;
+        }).set(profondeur);
+    }
+
+    private synchronized AdminClient admin() {
+        if (adminClient == null) {
+            adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        }
+        return adminClient;
+    }
+
+    @PreDestroy
+    public synchronized void arreter() {
+        if (adminClient != null) {
+            adminClient.close();
+        }
+    }
+}
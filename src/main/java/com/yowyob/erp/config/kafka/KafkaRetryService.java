@@ -0,0 +1,493 @@
+package com.yowyob.erp.config.kafka;
+
+import com.datastax.oss.driver.api.core.AllNodesFailedException;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.QueryExecutionException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.common.dto.DeadLetterDto;
+import com.yowyob.erp.common.exception.ResourceNotFoundException;
+import com.yowyob.erp.config.kafka.avro.AvroKafkaMessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Réessais non bloquants des listeners Kafka. Un message en échec est acquitté puis republié sur
+ * le niveau de réessai suivant de son topic d'origine (&lt;topic&gt;.retry.&lt;n&gt;, délai croissant
+ * de façon exponentielle) ; une fois les niveaux épuisés, ou s'il est illisible, il part sur le topic
+ * de rejet (&lt;topic&gt;.dlt). La partition d'origine continue donc d'avancer pendant l'attente.
+ * Chaque niveau a un délai fixe : les échéances y sont croissantes et la partition n'est mise en pause
+ * que jusqu'à l'échéance de son premier message. Les rejets sont consultés et rejoués par tenant.
+ */
+@Service
+public class KafkaRetryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaRetryService.class);
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(KafkaRetryService.class);
+
+    public static final String HEADER_ORIGINE = "x-retry-origine";
+    public static final String HEADER_TENTATIVE = "x-retry-tentative";
+    public static final String HEADER_ECHEANCE = "x-retry-echeance";
+    public static final String HEADER_ERREUR = "x-retry-erreur";
+    public static final String HEADER_POSITION = "x-retry-position";
+
+    private static final String SUFFIXE_REESSAI = ".retry.";
+    private static final String SUFFIXE_REJET = ".dlt";
+    private static final int TAILLE_MAX_ERREUR = 500;
+    private static final Set<String> HEADERS_NON_RECOPIES = Set.of(HEADER_ORIGINE, HEADER_TENTATIVE, HEADER_ECHEANCE,
+            HEADER_ERREUR, HEADER_POSITION,
+            AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+            SerializationUtils.KEY_DESERIALIZER_EXCEPTION_HEADER, SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER);
+
+    // Même sérialisation que le JsonSerializer du producteur
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+    private final KafkaProperties kafkaProperties;
+    private final SslBundles sslBundles;
+    private final ObjectProvider<KafkaListenerEndpointRegistry> registry;
+    private final TaskScheduler taskScheduler;
+    private final TenantRecordInterceptor tenantRecordInterceptor;
+    private final MeterRegistry meterRegistry;
+    private final AvroKafkaMessageCodec avroCodec;
+    private final DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final List<String> origines;
+    private final int niveaux;
+    private final Duration delaiInitial;
+    private final double multiplicateur;
+    private final Duration delaiMax;
+    private final Duration delaiEnvoi;
+    private final int fenetreRejets;
+
+    // Partitions de réessai en pause : position relue à la reprise et échéance attendue
+    private final Map<TopicPartition, Attente> enAttente = new ConcurrentHashMap<>();
+
+    public KafkaRetryService(KafkaProperties kafkaProperties,
+                             ObjectProvider<SslBundles> sslBundles,
+                             ObjectProvider<KafkaListenerEndpointRegistry> registry,
+                             TaskScheduler taskScheduler,
+                             TenantRecordInterceptor tenantRecordInterceptor,
+                             MeterRegistry meterRegistry,
+                             AvroKafkaMessageCodec avroCodec,
+                             @Value("${app.kafka.retry.topics}") List<String> origines,
+                             @Value("${app.kafka.retry.niveaux:4}") int niveaux,
+                             @Value("${app.kafka.retry.delai-initial:2s}") Duration delaiInitial,
+                             @Value("${app.kafka.retry.multiplicateur:5}") double multiplicateur,
+                             @Value("${app.kafka.retry.delai-max:10m}") Duration delaiMax,
+                             @Value("${app.kafka.retry.delai-envoi:30s}") Duration delaiEnvoi,
+                             @Value("${app.kafka.retry.fenetre-rejets:1000}") int fenetreRejets) {
+        this.kafkaProperties = kafkaProperties;
+        this.sslBundles = sslBundles.getIfAvailable();
+        this.registry = registry;
+        this.taskScheduler = taskScheduler;
+        this.tenantRecordInterceptor = tenantRecordInterceptor;
+        this.meterRegistry = meterRegistry;
+        this.avroCodec = avroCodec;
+        this.origines = List.copyOf(origines);
+        this.niveaux = niveaux;
+        this.delaiInitial = delaiInitial;
+        this.multiplicateur = multiplicateur;
+        this.delaiMax = delaiMax;
+        this.delaiEnvoi = delaiEnvoi;
+        this.fenetreRejets = fenetreRejets;
+
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(this.sslBundles);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.remove(ProducerConfig.TRANSACTIONAL_ID_CONFIG);
+        this.producerFactory = new DefaultKafkaProducerFactory<>(props);
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+    }
+
+    public static String topicReessai(String origine, int niveau) {
+        return origine + SUFFIXE_REESSAI + niveau;
+    }
+
+    public static String topicRejet(String origine) {
+        return origine + SUFFIXE_REJET;
+    }
+
+    public List<String> getOrigines() {
+        return origines;
+    }
+
+    public int getNiveaux() {
+        return niveaux;
+    }
+
+    /**
+     * Motif des topics de réessai de toutes les origines, pour le listener de réessai.
+     */
+    public String motifReessais() {
+        return origines.stream().map(Pattern::quote).collect(Collectors.joining("|", "(", ")"))
+                + Pattern.quote(SUFFIXE_REESSAI) + "[0-9]+";
+    }
+
+    /**
+     * Délai du niveau : délai initial × multiplicateur^niveau, borné par le délai maximal.
+     */
+    public Duration delai(int niveau) {
+        double millis = delaiInitial.toMillis() * Math.pow(multiplicateur, niveau);
+        return millis >= delaiMax.toMillis() ? delaiMax : Duration.ofMillis((long) millis);
+    }
+
+    /**
+     * Republie le message en échec sur le niveau de réessai suivant, ou sur le topic de rejet
+     * si tous les niveaux ont été essayés. L'envoi est attendu : une exception signifie que le
+     * message d'origine ne doit pas être acquitté.
+     */
+    public void renvoyer(ConsumerRecord<?, ?> record, Throwable erreur) {
+        String origine = origine(record);
+        int tentative = entier(record, HEADER_TENTATIVE);
+        if (tentative >= niveaux) {
+            logger.error("Message {}-{}@{} rejeté après {} tentatives : {}", record.topic(), record.partition(),
+                    record.offset(), tentative, erreur.getMessage());
+            envoyer(record, origine, topicRejet(origine), tentative, 0L, erreur);
+            return;
+        }
+        long echeance = System.currentTimeMillis() + delai(tentative).toMillis();
+        logger.warn("Message {}-{}@{} renvoyé en réessai niveau {} : {}", record.topic(), record.partition(),
+                record.offset(), tentative, erreur.getMessage());
+        envoyer(record, origine, topicReessai(origine, tentative), tentative + 1, echeance, erreur);
+    }
+
+    /**
+     * Envoie directement le message sur le topic de rejet (message illisible ou invalide).
+     */
+    public void rejeter(ConsumerRecord<?, ?> record, Throwable erreur) {
+        String origine = origine(record);
+        logger.error("Message {}-{}@{} rejeté : {}", record.topic(), record.partition(), record.offset(), erreur.getMessage());
+        envoyer(record, origine, topicRejet(origine), entier(record, HEADER_TENTATIVE), 0L, erreur);
+    }
+
+    /**
+     * À appeler en tête du listener de réessai. Si le message n'est pas encore échu, la partition
+     * est repositionnée sur lui et mise en pause jusqu'à son échéance ; les messages suivants du même
+     * poll sont ignorés sans acquittement. Retourne true si le message ne doit pas être traité.
+     */
+    public boolean differer(String conteneur, ConsumerRecord<?, ?> record, Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        long maintenant = System.currentTimeMillis();
+        Attente attente = enAttente.get(partition);
+        if (attente != null) {
+            if (record.offset() > attente.offset() && maintenant < attente.echeance()) {
+                return true;
+            }
+            enAttente.remove(partition, attente);
+        }
+
+        long echeance = longHeader(record, HEADER_ECHEANCE);
+        if (echeance <= maintenant) {
+            return false;
+        }
+        MessageListenerContainer container = registry.getObject().getListenerContainer(conteneur);
+        consumer.seek(partition, record.offset());
+        enAttente.put(partition, new Attente(record.offset(), echeance));
+        if (container != null) {
+            container.pausePartition(partition);
+            taskScheduler.schedule(() -> container.resumePartition(partition), Instant.ofEpochMilli(echeance));
+        }
+        logger.debug("Partition {} en pause jusqu'à l'échéance du message {}", partition, record.offset());
+        return true;
+    }
+
+    /**
+     * Erreur due à l'indisponibilité passagère d'un service (envoi Kafka, Cassandra, Redis), d'après
+     * sa chaîne de causes : le message sera traité une fois le service revenu et ne doit pas être rejeté.
+     */
+    public static boolean estTransitoire(Throwable erreur) {
+        for (Throwable cause = erreur; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof RetriableException
+                    || cause instanceof TimeoutException
+                    || cause instanceof InterruptedException
+                    || cause instanceof TransientDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof AllNodesFailedException
+                    || cause instanceof DriverTimeoutException
+                    || cause instanceof QueryExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Topic d'origine du message : en-tête posé au premier renvoi, sinon le topic lu.
+     */
+    public String origine(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(HEADER_ORIGINE);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : record.topic();
+    }
+
+    /**
+     * Derniers rejets du tenant pour ce topic d'origine, du plus récent au plus ancien. Seuls les
+     * derniers messages de chaque partition (fenêtre configurée) sont parcourus.
+     */
+    public List<DeadLetterDto> lireRejets(String origine, UUID tenantId, int limite) {
+        verifierOrigine(origine);
+        return lireFenetre(topicRejet(origine), tenantId).stream()
+                .sorted(Comparator.comparingLong(ConsumerRecord<String, byte[]>::timestamp).reversed())
+                .limit(limite)
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Republie un rejet du tenant sur son topic d'origine, compteur de tentatives remis à zéro.
+     */
+    public DeadLetterDto rejouer(String origine, UUID tenantId, int partition, long offset) {
+        verifierOrigine(origine);
+        TopicPartition tp = new TopicPartition(topicRejet(origine), partition);
+        try (KafkaConsumer<String, byte[]> consumer = lecteur()) {
+            consumer.assign(List.of(tp));
+            consumer.seek(tp, offset);
+            ConsumerRecord<String, byte[]> rejet = consumer.poll(Duration.ofSeconds(5)).records(tp).stream()
+                    .filter(r -> r.offset() == offset)
+                    .findFirst()
+                    .filter(r -> tenantId.equals(tenantRecordInterceptor.extractTenantId(r)))
+                    .orElseThrow(() -> new ResourceNotFoundException("Message rejeté", tp + "@" + offset));
+            republier(origine, rejet);
+            return toDto(rejet);
+        }
+    }
+
+    /**
+     * Republie tous les rejets du tenant présents dans la fenêtre. Les traitements étant idempotents,
+     * un message rejoué deux fois ne produit qu'une écriture.
+     */
+    public int rejouerTout(String origine, UUID tenantId) {
+        verifierOrigine(origine);
+        List<ConsumerRecord<String, byte[]>> rejets = lireFenetre(topicRejet(origine), tenantId);
+        rejets.forEach(rejet -> republier(origine, rejet));
+        logger.info("{} messages rejetés rejoués sur {} pour le tenant {}", rejets.size(), origine, tenantId);
+        return rejets.size();
+    }
+
+    private void envoyer(ConsumerRecord<?, ?> record, String origine, String destination, int tentative,
+                         long echeance, Throwable erreur) {
+        ProducerRecord<String, byte[]> envoi = new ProducerRecord<>(destination, cle(record), valeur(record));
+        for (Header header : record.headers()) {
+            if (!HEADERS_NON_RECOPIES.contains(header.key())) {
+                envoi.headers().add(header);
+            }
+        }
+        if (record.value() != null) {
+            envoi.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                    record.value().getClass().getName().getBytes(StandardCharsets.UTF_8));
+        }
+        Header position = record.headers().lastHeader(HEADER_POSITION);
+        envoi.headers().add(HEADER_ORIGINE, origine.getBytes(StandardCharsets.UTF_8));
+        envoi.headers().add(HEADER_POSITION, position != null ? position.value()
+                : (record.partition() + "@" + record.offset()).getBytes(StandardCharsets.UTF_8));
+        envoi.headers().add(HEADER_TENTATIVE, ByteBuffer.allocate(Integer.BYTES).putInt(tentative).array());
+        if (echeance > 0) {
+            envoi.headers().add(HEADER_ECHEANCE, ByteBuffer.allocate(Long.BYTES).putLong(echeance).array());
+        }
+        envoi.headers().add(HEADER_ERREUR, tronquer(erreur).getBytes(StandardCharsets.UTF_8));
+        attendre(envoi);
+        Counter.builder("kafka.retry.envois")
+                .description("Messages renvoyés en réessai ou rejetés")
+                .tag("origine", origine)
+                .tag("etape", destination.substring(origine.length() + 1))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void republier(String origine, ConsumerRecord<String, byte[]> rejet) {
+        ProducerRecord<String, byte[]> envoi = new ProducerRecord<>(origine, rejet.key(), rejet.value());
+        for (Header header : rejet.headers()) {
+            if (!header.key().startsWith("x-retry-")) {
+                envoi.headers().add(header);
+            }
+        }
+        attendre(envoi);
+    }
+
+    private void attendre(ProducerRecord<String, byte[]> envoi) {
+        try {
+            kafkaTemplate.send(envoi).get(delaiEnvoi.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Envoi interrompu vers " + envoi.topic(), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new KafkaException("Échec de l'envoi vers " + envoi.topic(), e);
+        }
+    }
+
+    private List<ConsumerRecord<String, byte[]>> lireFenetre(String topic, UUID tenantId) {
+        List<ConsumerRecord<String, byte[]>> trouves = new ArrayList<>();
+        try (KafkaConsumer<String, byte[]> consumer = lecteur()) {
+            List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+                    .map(p -> new TopicPartition(topic, p.partition()))
+                    .collect(Collectors.toList());
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> debuts = consumer.beginningOffsets(partitions);
+            Map<TopicPartition, Long> fins = consumer.endOffsets(partitions);
+            partitions.forEach(tp -> consumer.seek(tp, Math.max(debuts.get(tp), fins.get(tp) - fenetreRejets)));
+
+            long limite = System.currentTimeMillis() + delaiEnvoi.toMillis();
+            while (partitions.stream().anyMatch(tp -> consumer.position(tp) < fins.get(tp))
+                    && System.currentTimeMillis() < limite) {
+                for (ConsumerRecord<String, byte[]> r : consumer.poll(Duration.ofMillis(500))) {
+                    if (r.offset() < fins.get(new TopicPartition(r.topic(), r.partition()))
+                            && tenantId.equals(tenantRecordInterceptor.extractTenantId(r))) {
+                        trouves.add(r);
+                    }
+                }
+            }
+        }
+        return trouves;
+    }
+
+    private KafkaConsumer<String, byte[]> lecteur() {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(sslBundles);
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        Properties properties = new Properties();
+        properties.putAll(props);
+        return new KafkaConsumer<>(properties);
+    }
+
+    private DeadLetterDto toDto(ConsumerRecord<String, byte[]> rejet) {
+        return DeadLetterDto.builder()
+                .topic(rejet.topic())
+                .partition(rejet.partition())
+                .offset(rejet.offset())
+                .origine(origine(rejet))
+                .positionOrigine(texte(rejet, HEADER_POSITION))
+                .tentatives(entier(rejet, HEADER_TENTATIVE))
+                .erreur(texte(rejet, HEADER_ERREUR))
+                .dateRejet(LocalDateTime.ofInstant(Instant.ofEpochMilli(rejet.timestamp()), ZoneId.systemDefault()))
+                .payload(lirePayload(rejet.value()))
+                .build();
+    }
+
+    private Object lirePayload(byte[] valeur) {
+        if (valeur == null) {
+            return null;
+        }
+        if (AvroKafkaMessageCodec.estAvro(valeur)) {
+            return objectMapper.valueToTree(avroCodec.decoder(valeur));
+        }
+        try {
+            return objectMapper.readValue(valeur, JsonNode.class);
+        } catch (IOException e) {
+            return new String(valeur, StandardCharsets.UTF_8);
+        }
+    }
+
+    private byte[] valeur(ConsumerRecord<?, ?> record) {
+        Object valeur = record.value();
+        if (valeur instanceof byte[] octets) {
+            return octets;
+        }
+        if (valeur == null) {
+            // Désérialisation impossible : on conserve les octets reçus
+            DeserializationException erreur = SerializationUtils.getExceptionFromHeader(record,
+                    SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+            return erreur != null ? erreur.getData() : null;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(valeur);
+        } catch (JsonProcessingException e) {
+            throw new KafkaException("Sérialisation du message " + record.topic() + "@" + record.offset() + " impossible", e);
+        }
+    }
+
+    private static String cle(ConsumerRecord<?, ?> record) {
+        return record.key() != null ? record.key().toString() : null;
+    }
+
+    private void verifierOrigine(String origine) {
+        if (!origines.contains(origine)) {
+            throw new ResourceNotFoundException("Topic", origine);
+        }
+    }
+
+    private static int entier(ConsumerRecord<?, ?> record, String nom) {
+        Header header = record.headers().lastHeader(nom);
+        return header != null && header.value().length == Integer.BYTES ? ByteBuffer.wrap(header.value()).getInt() : 0;
+    }
+
+    private static long longHeader(ConsumerRecord<?, ?> record, String nom) {
+        Header header = record.headers().lastHeader(nom);
+        return header != null && header.value().length == Long.BYTES ? ByteBuffer.wrap(header.value()).getLong() : 0L;
+    }
+
+    private static String texte(ConsumerRecord<?, ?> record, String nom) {
+        Header header = record.headers().lastHeader(nom);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private static String tronquer(Throwable erreur) {
+        String message = erreur.getClass().getSimpleName() + ": " + erreur.getMessage();
+        return message.length() > TAILLE_MAX_ERREUR ? message.substring(0, TAILLE_MAX_ERREUR) : message;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        producerFactory.destroy();
+    }
+
+    private record Attente(long offset, long echeance) {
+    }
+}
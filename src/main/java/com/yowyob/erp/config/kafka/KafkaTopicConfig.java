@@ -1,18 +1,29 @@
 package com.yowyob.erp.config.kafka;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -68,4 +79,59 @@ public class KafkaTopicConfig {
                 .replicas(1)
                 .build();
     }
+
+    // Niveaux de réessai et topic de rejet de chaque topic consommé
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics(KafkaRetryService kafkaRetryService) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String origine : kafkaRetryService.getOrigines()) {
+            for (int niveau = 0; niveau < kafkaRetryService.getNiveaux(); niveau++) {
+                topics.add(TopicBuilder.name(KafkaRetryService.topicReessai(origine, niveau))
+                        .partitions(3)
+                        .replicas(1)
+                        .build());
+            }
+            topics.add(TopicBuilder.name(KafkaRetryService.topicRejet(origine))
+                    .partitions(3)
+                    .replicas(1)
+                    .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(Duration.ofDays(30).toMillis()))
+                    .build());
+        }
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
+
+    /**
+     * Erreurs remontées jusqu'au conteneur. Un message illisible part directement sur le topic de
+     * rejet. Une erreur transitoire (renvoi en réessai impossible, Kafka, Cassandra ou Redis
+     * indisponible) est réessayée sans limite, délai doublé jusqu'au délai maximal : le message attend
+     * le retour du service au lieu d'être rejeté. Les autres erreurs ont deux nouvelles tentatives
+     * rapprochées avant le rejet. Les lots en échec suivent le délai des erreurs transitoires.
+     */
+    @Bean
+    public CommonErrorHandler kafkaErrorHandler(KafkaRetryService kafkaRetryService,
+                                                @Value("${app.kafka.erreurs.delai-initial:1s}") Duration delaiInitial,
+                                                @Value("${app.kafka.erreurs.delai-max:30s}") Duration delaiMax) {
+        ExponentialBackOff transitoire = new ExponentialBackOff(delaiInitial.toMillis(), 2.0);
+        // Sous max.poll.interval.ms : le consommateur reste dans le groupe pendant l'attente
+        transitoire.setMaxInterval(delaiMax.toMillis());
+        DefaultErrorHandler handler = new DefaultErrorHandler(kafkaRetryService::rejeter, transitoire);
+        handler.setBackOffFunction((record, erreur) ->
+                KafkaRetryService.estTransitoire(erreur) ? null : new FixedBackOff(1000L, 2L));
+        return handler;
+    }
+
+    /**
+     * Conteneurs des listeners qui confient leurs messages au TenantDispatcher : les acquittements
+     * arrivent des workers, dans le désordre d'un tenant à l'autre. Le conteneur ne valide l'offset
+     * d'une partition qu'une fois tous les messages précédents acquittés.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> tenantDispatchContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> kafkaConsumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory);
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
 }
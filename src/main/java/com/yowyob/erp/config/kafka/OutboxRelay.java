@@ -0,0 +1,279 @@
+package com.yowyob.erp.config.kafka;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.data.ByteUtils;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publie les messages de la table outbox_message vers Kafka. Chaque shard est relu par un seul nœud
+ * à la fois (bail Redis), tranche de temps par tranche de temps depuis la plus ancienne non publiée
+ * (position durable dans outbox_position), dans l'ordre des id. Les messages sont envoyés par lots avec
+ * un producteur idempotent compressé, non transactionnel, puis supprimés une fois tous acquittés. En cas
+ * d'échec le lot entier est renvoyé au passage suivant : livraison au moins une fois.
+ * <p>
+ * Une tranche n'est close qu'une fois dépassée de la marge : la marge doit couvrir le décalage
+ * d'horloge entre les nœuds qui écrivent. Les messages restés dans l'ancienne table outbox (partition
+ * par shard seul) sont publiés en premier.
+ */
+@Component
+@Profile("!no-kafka")
+@ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String COLONNES = "id, topic, message_key, type_payload, payload, payload_binaire";
+    private static final String SELECT_EN_ATTENTE = "SELECT " + COLONNES
+            + " FROM outbox_message WHERE shard = ? AND time_bucket = ? AND id > ? AND id <= ? LIMIT ?";
+    private static final String DELETE_PUBLIES = "DELETE FROM outbox_message WHERE shard = ? AND time_bucket = ? AND id IN ?";
+    private static final String SELECT_POSITION = "SELECT time_bucket FROM outbox_position WHERE shard = ?";
+    private static final String UPDATE_POSITION = "UPDATE outbox_position SET time_bucket = ? WHERE shard = ?";
+    private static final String SELECT_ANCIENS = "SELECT " + COLONNES + " FROM outbox WHERE shard = ? LIMIT ?";
+    private static final String DELETE_ANCIENS = "DELETE FROM outbox WHERE shard = ? AND id IN ?";
+    private static final String CLE_BAIL = "outbox:relais:";
+    private static final UUID DEBUT = Uuids.startOf(0);
+
+    private final CqlSession session;
+    private final RedisCacheLoader cacheLoader;
+    private final DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final int shards;
+    private final long tailleTrancheMs;
+    private final int tailleLot;
+    private final Duration marge;
+    private final Duration horizonInitial;
+    private final Duration delaiEnvoi;
+    private final Duration dureeBail;
+
+    // Préparées au premier passage, une fois le schéma en place
+    private volatile Requetes requetes;
+    // Position de relecture par shard : tranche courante et dernier id publié dans cette tranche
+    private final Map<Integer, Position> positions = new ConcurrentHashMap<>();
+    // Shards dont l'ancienne table outbox est vide
+    private final Set<Integer> anciensVides = ConcurrentHashMap.newKeySet();
+
+    public OutboxRelay(CqlSession session,
+                       RedisCacheLoader cacheLoader,
+                       KafkaProperties kafkaProperties,
+                       ObjectProvider<SslBundles> sslBundles,
+                       @Value("${app.outbox.shards:16}") int shards,
+                       @Value("${app.outbox.tranche:5m}") Duration tranche,
+                       @Value("${app.outbox.relay.taille-lot:500}") int tailleLot,
+                       @Value("${app.outbox.relay.marge:2s}") Duration marge,
+                       @Value("${app.outbox.relay.horizon-initial:1d}") Duration horizonInitial,
+                       @Value("${app.outbox.relay.delai-envoi:30s}") Duration delaiEnvoi,
+                       @Value("${app.outbox.relay.compression:lz4}") String compression,
+                       @Value("${app.outbox.relay.linger-ms:20}") int lingerMs,
+                       @Value("${app.outbox.relay.batch-size:262144}") int batchSize) {
+        this.session = session;
+        this.cacheLoader = cacheLoader;
+        this.shards = shards;
+        this.tailleTrancheMs = tranche.toMillis();
+        this.tailleLot = tailleLot;
+        this.marge = marge;
+        this.horizonInitial = horizonInitial;
+        this.delaiEnvoi = delaiEnvoi;
+        this.dureeBail = delaiEnvoi.plus(delaiEnvoi);
+
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        // L'idempotence conserve l'ordre par partition avec plusieurs requêtes en vol
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        props.remove(ProducerConfig.TRANSACTIONAL_ID_CONFIG);
+        this.producerFactory = new DefaultKafkaProducerFactory<>(props);
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.intervalle:200}")
+    public void relayer() {
+        for (int shard = 0; shard < shards; shard++) {
+            // Un shard plein est vidé lot après lot avant de passer au suivant
+            while (relayerShard(shard) == tailleLot) {
+                logger.debug("Shard outbox {} : lot complet, relecture immédiate", shard);
+            }
+        }
+    }
+
+    /**
+     * Repart du début de la tranche durable de chaque shard pour rattraper les messages écrits avec
+     * un id antérieur à la position (horloge d'un nœud en retard de plus que la marge), et relit la
+     * position éventuellement avancée par un autre nœud.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.relay.relecture-complete:60000}")
+    public void reinitialiserPositions() {
+        positions.clear();
+    }
+
+    private int relayerShard(int shard) {
+        String bail = cacheLoader.acquerirBail(CLE_BAIL + shard, dureeBail);
+        if (bail == null) {
+            // Un autre nœud relaie ce shard
+            return 0;
+        }
+        try {
+            Requetes r = requetes();
+            if (r.selectAnciens() != null && !anciensVides.contains(shard)) {
+                int publies = relayerAnciens(r, shard);
+                if (publies > 0) {
+                    return publies;
+                }
+            }
+            // Les écritures encore en cours (ids des dernières millisecondes) sont laissées au passage suivant
+            long limite = System.currentTimeMillis() - marge.toMillis();
+            UUID jusqua = Uuids.endOf(limite);
+            long trancheOuverte = OutboxService.tranche(limite, tailleTrancheMs);
+            Position position = positions.computeIfAbsent(shard, s -> lirePosition(r, s));
+            while (true) {
+                List<Row> lignes = session.execute(r.select().bind(shard, position.tranche(), position.depuis(), jusqua, tailleLot)).all();
+                if (!lignes.isEmpty()) {
+                    List<UUID> ids = publier(lignes);
+                    session.execute(r.delete().bind(shard, position.tranche(), ids));
+                    positions.put(shard, new Position(position.tranche(), ids.get(ids.size() - 1)));
+                    logger.debug("{} messages outbox publiés depuis le shard {}", ids.size(), shard);
+                    return ids.size();
+                }
+                if (position.tranche() >= trancheOuverte) {
+                    return 0;
+                }
+                // Tranche close et entièrement publiée : la position durable passe à la suivante
+                position = new Position(position.tranche() + 1, DEBUT);
+                session.execute(r.updatePosition().bind(position.tranche(), shard));
+                positions.put(shard, position);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            logger.warn("Publication du shard outbox {} interrompue, nouvel essai au prochain passage : {}",
+                    shard, e.getMessage());
+            return 0;
+        } finally {
+            cacheLoader.libererBail(CLE_BAIL + shard, bail);
+        }
+    }
+
+    private int relayerAnciens(Requetes r, int shard) throws InterruptedException, ExecutionException, TimeoutException {
+        List<Row> lignes = session.execute(r.selectAnciens().bind(shard, tailleLot)).all();
+        if (lignes.isEmpty()) {
+            anciensVides.add(shard);
+            return 0;
+        }
+        List<UUID> ids = publier(lignes);
+        session.execute(r.deleteAnciens().bind(shard, ids));
+        logger.info("{} messages de l'ancienne table outbox publiés depuis le shard {}", ids.size(), shard);
+        return ids.size();
+    }
+
+    // Envoie les lignes et attend tous les acquittements ; renvoie leurs ids dans l'ordre de lecture
+    private List<UUID> publier(List<Row> lignes) throws InterruptedException, ExecutionException, TimeoutException {
+        List<CompletableFuture<?>> envois = new ArrayList<>(lignes.size());
+        List<UUID> ids = new ArrayList<>(lignes.size());
+        for (Row ligne : lignes) {
+            ByteBuffer binaire = ligne.getByteBuffer("payload_binaire");
+            byte[] valeur = binaire != null ? ByteUtils.getArray(binaire) : ligne.getString("payload").getBytes(StandardCharsets.UTF_8);
+            ProducerRecord<String, byte[]> record = new ProducerRecord<>(ligne.getString("topic"),
+                    ligne.getString("message_key"), valeur);
+            String type = ligne.getString("type_payload");
+            if (type != null) {
+                // Avro : content-type du schéma ; JSON : classe lue par le JsonDeserializer
+                record.headers().add(binaire != null ? MessageHeaders.CONTENT_TYPE : AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                        type.getBytes(StandardCharsets.UTF_8));
+            }
+            envois.add(kafkaTemplate.send(record));
+            ids.add(ligne.getUuid("id"));
+        }
+        kafkaTemplate.flush();
+        CompletableFuture.allOf(envois.toArray(new CompletableFuture<?>[0])).get(delaiEnvoi.toMillis(), TimeUnit.MILLISECONDS);
+        return ids;
+    }
+
+    // Sans position enregistrée (premier démarrage), la relecture part de l'horizon initial
+    private Position lirePosition(Requetes r, int shard) {
+        Row ligne = session.execute(r.selectPosition().bind(shard)).one();
+        long tranche = ligne != null && !ligne.isNull("time_bucket")
+                ? ligne.getLong("time_bucket")
+                : OutboxService.tranche(System.currentTimeMillis() - horizonInitial.toMillis(), tailleTrancheMs);
+        return new Position(tranche, DEBUT);
+    }
+
+    private Requetes requetes() {
+        Requetes r = requetes;
+        if (r == null) {
+            synchronized (this) {
+                r = requetes;
+                if (r == null) {
+                    PreparedStatement selectAnciens = null;
+                    PreparedStatement deleteAnciens = null;
+                    try {
+                        selectAnciens = session.prepare(SELECT_ANCIENS);
+                        deleteAnciens = session.prepare(DELETE_ANCIENS);
+                    } catch (InvalidQueryException e) {
+                        // Schéma créé sans l'ancienne table : rien à reprendre
+                        logger.debug("Ancienne table outbox absente : {}", e.getMessage());
+                    }
+                    r = new Requetes(session.prepare(SELECT_EN_ATTENTE), session.prepare(DELETE_PUBLIES),
+                            session.prepare(SELECT_POSITION), session.prepare(UPDATE_POSITION),
+                            selectAnciens, deleteAnciens);
+                    requetes = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    private record Position(long tranche, UUID depuis) {
+    }
+
+    private record Requetes(PreparedStatement select, PreparedStatement delete,
+                            PreparedStatement selectPosition, PreparedStatement updatePosition,
+                            PreparedStatement selectAnciens, PreparedStatement deleteAnciens) {
+    }
+
+    @PreDestroy
+    public void arreter() {
+        producerFactory.destroy();
+    }
+}
@@ -0,0 +1,167 @@
+package com.yowyob.erp.config.kafka;
+
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entity.OutboxMessage;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.accounting.entityKey.OutboxMessageKey;
+import com.yowyob.erp.common.dto.KafkaMessage;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.kafka.avro.AvroKafkaMessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outbox transactionnelle : les événements Kafka sont écrits comme des lignes de la table outbox,
+ * dans le même batch LOGGED que les lignes métier, puis publiés par OutboxRelay. Une écriture
+ * réussie garantit donc la publication (au moins une fois), et Kafka sort du temps de réponse.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    // Même sérialisation que le JsonSerializer du producteur : les consommateurs ne voient pas la différence
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+    private final CassandraOperations cassandraOperations;
+    private final AvroKafkaMessageCodec avroCodec;
+    private final int shards;
+    private final long tailleTrancheMs;
+    private final boolean avro;
+
+    @Value("${app.kafka.topics.accounting-entries}")
+    private String accountingEntriesTopic;
+
+    @Value("${app.kafka.topics.audit-logs}")
+    private String auditLogsTopic;
+
+    public OutboxService(CassandraOperations cassandraOperations,
+                         AvroKafkaMessageCodec avroCodec,
+                         @Value("${app.outbox.shards:16}") int shards,
+                         @Value("${app.outbox.tranche:5m}") Duration tranche,
+                         @Value("${app.kafka.avro.enabled:false}") boolean avro) {
+        this.cassandraOperations = cassandraOperations;
+        this.avroCodec = avroCodec;
+        this.shards = shards;
+        this.tailleTrancheMs = tranche.toMillis();
+        this.avro = avro;
+    }
+
+    /**
+     * Message pour le topic, avec l'id du tenant comme clé Kafka (ordre conservé par tenant).
+     */
+    public OutboxMessage message(UUID tenantId, String topic, Object payload) {
+        OutboxMessage message = new OutboxMessage();
+        message.setKey(cle(tenantId));
+        message.setTenantId(tenantId);
+        message.setTopic(topic);
+        message.setMessageKey(tenantId.toString());
+        message.setTypePayload(payload.getClass().getName());
+        try {
+            message.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new BusinessException("Sérialisation du message " + topic + " impossible : " + e.getOriginalMessage());
+        }
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    // Équivalent outbox de KafkaMessageService.sendAuditLog
+    public OutboxMessage auditLog(Object payload, UUID tenantId, String action) {
+        return evenement(tenantId, auditLogsTopic, enveloppe(payload, tenantId, action));
+    }
+
+    // Équivalent outbox de KafkaMessageService.sendAccountingEntry
+    public OutboxMessage accountingEntry(Object payload, UUID tenantId, String eventType) {
+        return evenement(tenantId, accountingEntriesTopic, enveloppe(payload, tenantId, eventType));
+    }
+
+    // Événements comptables décrits par le schéma Avro : encodés en binaire, les autres en JSON
+    private OutboxMessage evenement(UUID tenantId, String topic, KafkaMessage enveloppe) {
+        OutboxMessage message;
+        if (!avro || !avroCodec.supporte(enveloppe)) {
+            message = message(tenantId, topic, enveloppe);
+        } else {
+            message = new OutboxMessage();
+            message.setKey(cle(tenantId));
+            message.setTenantId(tenantId);
+            message.setTopic(topic);
+            message.setTypePayload(AvroKafkaMessageCodec.CONTENT_TYPE);
+            message.setPayloadBinaire(ByteBuffer.wrap(avroCodec.encoder(enveloppe)));
+            message.setCreatedAt(LocalDateTime.now());
+        }
+        // Sous-clé écriture : un tenant chaud réparti sur plusieurs partitions garde l'ordre par écriture
+        message.setMessageKey(TenantPartitioner.cle(tenantId, ecriture(enveloppe.getPayload())));
+        return message;
+    }
+
+    private static UUID ecriture(Object payload) {
+        if (payload instanceof EcriturePosted posted) {
+            return posted.getEcritureId();
+        }
+        if (payload instanceof JournalAudit audit) {
+            return audit.getEcritureComptableId();
+        }
+        return null;
+    }
+
+    /**
+     * Écrit l'entité et ses messages dans un seul batch LOGGED : soit tout est écrit, soit rien.
+     */
+    public void enregistrer(Object entite, List<OutboxMessage> messages) {
+        cassandraOperations.batchOps(DefaultBatchType.LOGGED)
+                .insert(entite)
+                .insert(messages)
+                .execute();
+    }
+
+    public void enregistrer(Object entite, OutboxMessage message) {
+        enregistrer(entite, List.of(message));
+    }
+
+    /**
+     * Écrit des messages seuls, pour les écritures qui ne peuvent pas partager le batch
+     * (suppressions par clé, suites de requêtes).
+     */
+    public void publier(OutboxMessage message) {
+        cassandraOperations.insert(message);
+        logger.debug("Message {} mis en attente pour le topic {}", message.getKey().getId(), message.getTopic());
+    }
+
+    private OutboxMessageKey cle(UUID tenantId) {
+        UUID id = Uuids.timeBased();
+        return new OutboxMessageKey(shard(tenantId, shards), tranche(Uuids.unixTimestamp(id), tailleTrancheMs), id);
+    }
+
+    // Tranche de temps d'un id : borne la taille des partitions, relues dans l'ordre des tranches
+    public static long tranche(long epochMillis, long tailleTrancheMs) {
+        return Math.floorDiv(epochMillis, tailleTrancheMs);
+    }
+
+    // Un tenant reste sur le même shard : ses messages sont relus dans l'ordre de leur id
+    public static int shard(UUID tenantId, int shards) {
+        return Math.floorMod(tenantId.hashCode(), shards);
+    }
+
+    private static KafkaMessage enveloppe(Object payload, UUID tenantId, String eventType) {
+        return KafkaMessage.builder()
+                .payload(payload)
+                .tenantId(tenantId.toString())
+                .eventType(eventType)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.yowyob.erp.config.kafka;
+
+import com.yowyob.erp.config.tenant.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Pendant de TenantRecordInterceptor pour les listeners batch : le TenantContext du thread d'écoute
+ * est effacé avant et après chaque lot, et positionné seulement si tous les enregistrements du lot
+ * ont le même tenant. Un lot de plusieurs tenants reste sans tenant : le listener le positionne
+ * lui-même par groupe (AccountingKafkaListener confie chaque tenant à sa file du TenantDispatcher,
+ * dont les workers positionnent le tenant traité).
+ */
+@Component
+@Slf4j
+public class TenantBatchInterceptor implements BatchInterceptor<Object, Object> {
+
+    private final TenantRecordInterceptor tenantRecordInterceptor;
+
+    public TenantBatchInterceptor(TenantRecordInterceptor tenantRecordInterceptor) {
+        this.tenantRecordInterceptor = tenantRecordInterceptor;
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> intercept(@NonNull ConsumerRecords<Object, Object> records,
+                                                     @NonNull Consumer<Object, Object> consumer) {
+        TenantContext.clear();
+        UUID tenantId = tenantUnique(records);
+        if (tenantId != null) {
+            TenantContext.setCurrentTenant(tenantId);
+        } else {
+            log.debug("Lot de {} enregistrements sans tenant unique, tenant positionné par le listener", records.count());
+        }
+        return records;
+    }
+
+    @Override
+    public void success(@NonNull ConsumerRecords<Object, Object> records, @NonNull Consumer<Object, Object> consumer) {
+        TenantContext.clear();
+    }
+
+    @Override
+    public void failure(@NonNull ConsumerRecords<Object, Object> records, @NonNull Exception exception,
+                        @NonNull Consumer<Object, Object> consumer) {
+        TenantContext.clear();
+    }
+
+    @Override
+    public void clearThreadState(@NonNull Consumer<?, ?> consumer) {
+        TenantContext.clear();
+    }
+
+    // Tenant commun à tous les enregistrements, null s'il en manque un ou s'ils diffèrent
+    private UUID tenantUnique(ConsumerRecords<Object, Object> records) {
+        UUID tenantId = null;
+        for (ConsumerRecord<Object, Object> record : records) {
+            UUID courant = tenantRecordInterceptor.extractTenantId(record);
+            if (courant == null || (tenantId != null && !Objects.equals(tenantId, courant))) {
+                return null;
+            }
+            tenantId = courant;
+        }
+        return tenantId;
+    }
+}
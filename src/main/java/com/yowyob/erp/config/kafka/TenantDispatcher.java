@@ -0,0 +1,193 @@
+package com.yowyob.erp.config.kafka;
+
+import com.yowyob.erp.config.tenant.TenantContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Répartit le traitement des messages Kafka par tenant : chaque tenant a sa file bornée, vidée par
+ * un pool de workers partagé. Un tenant n'est traité que par un worker à la fois (ordre conservé
+ * par tenant) et rend la main après un quantum de tâches : un tenant en rafale n'occupe qu'un
+ * worker et ne retarde plus les autres tenants de sa partition. Une file pleine bloque le thread
+ * d'écoute qui la remplit (contre-pression), sans arrêter les files des autres tenants.
+ * Les files (et leurs jauges) des tenants inactifs depuis app.kafka.dispatch.inactivite sont retirées.
+ */
+@Component
+public class TenantDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantDispatcher.class);
+
+    private final ExecutorService workers;
+    private final MeterRegistry meterRegistry;
+    private final int capaciteParTenant;
+    private final int quantum;
+    private final long inactiviteMs;
+    private final Map<UUID, FileTenant> files = new ConcurrentHashMap<>();
+
+    public TenantDispatcher(MeterRegistry meterRegistry,
+                            @Value("${app.kafka.dispatch.workers:8}") int nombreWorkers,
+                            @Value("${app.kafka.dispatch.capacite-par-tenant:500}") int capaciteParTenant,
+                            @Value("${app.kafka.dispatch.quantum:50}") int quantum,
+                            @Value("${app.kafka.dispatch.inactivite:10m}") Duration inactivite) {
+        this.meterRegistry = meterRegistry;
+        this.capaciteParTenant = capaciteParTenant;
+        this.quantum = quantum;
+        this.inactiviteMs = inactivite.toMillis();
+        this.workers = Executors.newFixedThreadPool(nombreWorkers, new CustomizableThreadFactory("kafka-tenant-"));
+    }
+
+    /**
+     * Met la tâche dans la file du tenant et retourne aussitôt, sauf si la file est pleine.
+     * Le futur est complété une fois la tâche exécutée (en erreur si elle a échoué).
+     *
+     * @param horodatage horodatage du message Kafka, pour mesurer le retard du tenant
+     */
+    public CompletableFuture<Void> soumettre(UUID tenantId, long horodatage, Runnable tache) {
+        // Soumission comptée sous le verrou de la map : la purge ne retire pas une file en cours de remplissage
+        FileTenant file = files.compute(tenantId, (id, existante) -> {
+            FileTenant f = existante != null ? existante : nouvelleFile(id);
+            f.soumissions().incrementAndGet();
+            return f;
+        });
+        Tache element = new Tache(tache, horodatage, new CompletableFuture<>());
+        try {
+            if (!file.taches().offer(element)) {
+                logger.debug("File du tenant {} pleine ({} tâches), attente du worker", tenantId, capaciteParTenant);
+                file.taches().put(element);
+            }
+            planifier(tenantId, file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            element.resultat().completeExceptionally(e);
+        } finally {
+            file.toucher();
+            file.soumissions().decrementAndGet();
+        }
+        return element.resultat();
+    }
+
+    /**
+     * Retire les files vides, non planifiées et sans soumission en cours des tenants inactifs
+     * depuis app.kafka.dispatch.inactivite, avec leurs jauges.
+     */
+    @Scheduled(fixedDelayString = "${app.kafka.dispatch.purge-intervalle:60000}")
+    public void purger() {
+        long limite = System.currentTimeMillis() - inactiviteMs;
+        for (UUID tenantId : files.keySet()) {
+            files.computeIfPresent(tenantId, (id, file) -> {
+                if (!file.inactiveDepuis(limite)) {
+                    return file;
+                }
+                file.jauges().forEach(meterRegistry::remove);
+                logger.debug("File inactive du tenant {} retirée", id);
+                return null;
+            });
+        }
+    }
+
+    int nombreFiles() {
+        return files.size();
+    }
+
+    private void planifier(UUID tenantId, FileTenant file) {
+        if (file.planifiee().compareAndSet(false, true)) {
+            workers.execute(() -> vider(tenantId, file));
+        }
+    }
+
+    private void vider(UUID tenantId, FileTenant file) {
+        try {
+            int traitees = 0;
+            Tache tache;
+            while (traitees < quantum && (tache = file.taches().peek()) != null) {
+                TenantContext.setCurrentTenant(tenantId);
+                try {
+                    tache.action().run();
+                    tache.resultat().complete(null);
+                } catch (Throwable e) {
+                    // Toute erreur (Error comprise) complète le futur : l'appelant n'attend jamais indéfiniment
+                    logger.error("Traitement Kafka en échec pour le tenant {}: {}", tenantId, e.getMessage());
+                    tache.resultat().completeExceptionally(e);
+                } finally {
+                    TenantContext.clear();
+                    // Retirée après exécution : la tête de file donne le retard du tenant
+                    file.taches().poll();
+                    file.toucher();
+                }
+                traitees++;
+            }
+        } finally {
+            // Quantum épuisé : le tenant repasse en fin de file du pool, derrière les autres tenants
+            file.planifiee().set(false);
+            if (!file.taches().isEmpty()) {
+                planifier(tenantId, file);
+            }
+        }
+    }
+
+    private FileTenant nouvelleFile(UUID tenantId) {
+        BlockingQueue<Tache> taches = new ArrayBlockingQueue<>(capaciteParTenant);
+        AtomicLong derniereActivite = new AtomicLong(System.currentTimeMillis());
+        Meter attente = Gauge.builder("kafka.tenant.attente", taches, BlockingQueue::size)
+                .description("Messages reçus en attente de traitement pour le tenant")
+                .tag("tenant", tenantId.toString())
+                .register(meterRegistry);
+        Meter retard = Gauge.builder("kafka.tenant.retard", taches, FileTenant::retardSecondes)
+                .description("Âge en secondes du plus ancien message non traité du tenant")
+                .tag("tenant", tenantId.toString())
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        return new FileTenant(taches, new AtomicBoolean(), new AtomicInteger(), derniereActivite, List.of(attente, retard));
+    }
+
+    @PreDestroy
+    public void arreter() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    private record Tache(Runnable action, long horodatage, CompletableFuture<Void> resultat) {
+    }
+
+    private record FileTenant(BlockingQueue<Tache> taches, AtomicBoolean planifiee, AtomicInteger soumissions,
+                              AtomicLong derniereActivite, List<Meter> jauges) {
+
+        void toucher() {
+            derniereActivite.set(System.currentTimeMillis());
+        }
+
+        boolean inactiveDepuis(long limite) {
+            return soumissions.get() == 0 && !planifiee.get() && taches.isEmpty() && derniereActivite.get() <= limite;
+        }
+
+        static double retardSecondes(BlockingQueue<Tache> taches) {
+            Tache tete = taches.peek();
+            return tete != null ? Math.max(0, System.currentTimeMillis() - tete.horodatage()) / 1000.0 : 0.0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.yowyob.erp.config.kafka;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Partitionneur des producteurs de l'application. La clé Kafka est l'id du tenant, éventuellement
+ * suivi d'une sous-clé (« tenant#sous-cle ») :
+ * <ul>
+ *   <li>tenant ordinaire : partition du hachage murmur2 de l'id du tenant, comme le partitionneur
+ *   par défaut avec une clé simple ; la sous-clé est ignorée et l'ordre reste garanti par tenant ;</li>
+ *   <li>tenant chaud (propriété {@value #TENANTS_CHAUDS}, « id:etalement,... ») : ses messages sont
+ *   répartis sur « etalement » partitions consécutives à partir de la sienne, selon la sous-clé
+ *   (à défaut, le contenu du message). L'ordre n'est alors garanti que par sous-clé.</li>
+ * </ul>
+ */
+public class TenantPartitioner implements Partitioner {
+
+    public static final String TENANTS_CHAUDS = "yowyob.tenants.chauds";
+    public static final char SEPARATEUR = '#';
+
+    private Map<String, Integer> etalements = Map.of();
+
+    /**
+     * Clé Kafka d'un message : l'id du tenant, suivi de la sous-clé si elle est connue.
+     */
+    public static String cle(UUID tenantId, Object sousCle) {
+        return sousCle != null ? tenantId.toString() + SEPARATEUR + sousCle : tenantId.toString();
+    }
+
+    /**
+     * Partie tenant d'une clé Kafka.
+     */
+    public static String tenant(String cle) {
+        int separateur = cle.indexOf(SEPARATEUR);
+        return separateur < 0 ? cle : cle.substring(0, separateur);
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object valeur = configs.get(TENANTS_CHAUDS);
+        if (valeur == null || valeur.toString().isBlank()) {
+            return;
+        }
+        Map<String, Integer> lus = new HashMap<>();
+        for (String entree : valeur.toString().split(",")) {
+            String[] parties = entree.trim().split(":");
+            if (parties[0].isEmpty()) {
+                continue;
+            }
+            String tenantId = UUID.fromString(parties[0]).toString();
+            lus.put(tenantId, parties.length > 1 ? Integer.parseInt(parties[1].trim()) : 2);
+        }
+        this.etalements = Map.copyOf(lus);
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionsForTopic(topic).size();
+        if (key == null) {
+            return ThreadLocalRandom.current().nextInt(partitions);
+        }
+        String cle = key.toString();
+        String tenantId = tenant(cle);
+        int partition = hachage(tenantId.getBytes(StandardCharsets.UTF_8)) % partitions;
+
+        int etalement = Math.min(etalements.getOrDefault(tenantId, 1), partitions);
+        if (etalement <= 1) {
+            return partition;
+        }
+        byte[] sousCle = tenantId.length() < cle.length()
+                ? cle.substring(tenantId.length() + 1).getBytes(StandardCharsets.UTF_8)
+                : valueBytes;
+        int decalage = sousCle != null
+                ? hachage(sousCle) % etalement
+                : ThreadLocalRandom.current().nextInt(etalement);
+        return (partition + decalage) % partitions;
+    }
+
+    private static int hachage(byte[] octets) {
+        return Utils.toPositive(Utils.murmur2(octets));
+    }
+
+    @Override
+    public void close() {
+    }
+}
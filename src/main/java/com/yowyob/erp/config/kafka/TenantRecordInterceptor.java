@@ -0,0 +1,74 @@
+package com.yowyob.erp.config.kafka;
+
+import com.yowyob.erp.config.tenant.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Positionne le TenantContext du thread d'écoute Kafka pour chaque enregistrement, à partir
+ * de l'en-tête tenant ou, à défaut, de la clé (les producteurs de l'application utilisent
+ * l'id du tenant comme clé, suivi le cas échéant d'une sous-clé, voir TenantPartitioner).
+ * Le contexte est effacé après chaque enregistrement.
+ */
+@Component
+@Slf4j
+public class TenantRecordInterceptor implements RecordInterceptor<Object, Object> {
+
+    @Value("${app.tenant.header-name:X-Tenant-ID}")
+    private String tenantHeaderName;
+
+    @Override
+    public ConsumerRecord<Object, Object> intercept(@NonNull ConsumerRecord<Object, Object> record,
+                                                    @NonNull Consumer<Object, Object> consumer) {
+        TenantContext.clear();
+        UUID tenantId = extractTenantId(record);
+        if (tenantId != null) {
+            TenantContext.setCurrentTenant(tenantId);
+        } else {
+            log.debug("Aucun tenant dans l'enregistrement {}-{}@{}", record.topic(), record.partition(), record.offset());
+        }
+        return record;
+    }
+
+    @Override
+    public void afterRecord(@NonNull ConsumerRecord<Object, Object> record, @NonNull Consumer<Object, Object> consumer) {
+        TenantContext.clear();
+    }
+
+    @Override
+    public void clearThreadState(@NonNull Consumer<?, ?> consumer) {
+        TenantContext.clear();
+    }
+
+    /**
+     * Tenant d'un enregistrement (en-tête puis clé), pour les listeners batch auxquels
+     * l'intercepteur ne s'applique pas.
+     */
+    public UUID extractTenantId(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(tenantHeaderName);
+        if (header != null && header.value() != null) {
+            UUID tenantId = parse(new String(header.value(), StandardCharsets.UTF_8));
+            if (tenantId != null) {
+                return tenantId;
+            }
+        }
+        return record.key() != null ? parse(TenantPartitioner.tenant(record.key().toString())) : null;
+    }
+
+    private static UUID parse(String valeur) {
+        try {
+            return UUID.fromString(valeur.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
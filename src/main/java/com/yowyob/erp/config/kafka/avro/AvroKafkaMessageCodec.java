@@ -0,0 +1,297 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.KafkaMessage;
+import com.yowyob.erp.common.enums.SourceType;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodage Avro binaire des KafkaMessage comptables (EcriturePosted, audit, lot d'écritures) avec
+ * le schéma avro/accounting-event.avsc. Format du message : octet magique 0, identifiant du schéma
+ * dans le registre (4 octets), puis l'enregistrement Avro. Les autres payloads restent en JSON ;
+ * un JSON commençant toujours par '{', le premier octet suffit à distinguer les deux formats.
+ */
+@Component
+public class AvroKafkaMessageCodec {
+
+    public static final byte MAGIC = 0;
+    public static final String SUJET = "accounting-event";
+    public static final String CONTENT_TYPE = "application/vnd.yowyob.accounting-event+avro";
+    private static final int ENTETE = 1 + Integer.BYTES;
+
+    private final SchemaRegistreFichier registre;
+    private final Schema schema;
+    private final int schemaId;
+    private final Schema uuidSchema;
+    private final Schema ecriturePostedSchema;
+    private final Schema ligneSchema;
+    private final Schema sensSchema;
+    private final Schema auditSchema;
+    private final Schema lotSchema;
+    private final GenericDatumWriter<GenericRecord> writer;
+    // Lecteurs par schéma d'écrivain, résolus vers le schéma courant
+    private final Map<Integer, DatumReader<GenericRecord>> lecteurs = new ConcurrentHashMap<>();
+
+    public AvroKafkaMessageCodec() {
+        this(SchemaRegistreFichier.depuisClasspath(), schemaCourant());
+    }
+
+    public AvroKafkaMessageCodec(SchemaRegistreFichier registre, Schema schema) {
+        this.registre = registre;
+        this.schema = schema;
+        this.schemaId = registre.id(SUJET, schema);
+        this.uuidSchema = schema.getField("tenantId").schema();
+        Schema payload = schema.getField("payload").schema();
+        this.ecriturePostedSchema = payload.getTypes().get(payload.getIndexNamed("com.yowyob.erp.avro.EcriturePosted"));
+        this.ligneSchema = ecriturePostedSchema.getField("lignes").schema().getElementType();
+        this.sensSchema = ligneSchema.getField("sens").schema();
+        this.auditSchema = payload.getTypes().get(payload.getIndexNamed("com.yowyob.erp.avro.JournalAuditEvent"));
+        this.lotSchema = payload.getTypes().get(payload.getIndexNamed("com.yowyob.erp.avro.EcrituresBatchCreated"));
+        this.writer = new GenericDatumWriter<>(schema);
+    }
+
+    /**
+     * Schéma courant des événements comptables, embarqué dans l'application.
+     */
+    public static Schema schemaCourant() {
+        try (InputStream fichier = AvroKafkaMessageCodec.class.getClassLoader()
+                .getResourceAsStream("avro/" + SUJET + ".avsc")) {
+            if (fichier == null) {
+                throw new IllegalStateException("Schéma avro/" + SUJET + ".avsc introuvable");
+            }
+            return new Schema.Parser().parse(fichier);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static boolean estAvro(byte[] donnees) {
+        return donnees != null && donnees.length > ENTETE && donnees[0] == MAGIC;
+    }
+
+    /**
+     * Vrai si le payload du message a une représentation dans le schéma.
+     */
+    public boolean supporte(KafkaMessage message) {
+        Object payload = message.getPayload();
+        return payload instanceof EcriturePosted
+                || payload instanceof JournalAudit
+                || (AppConstants.KafkaEvents.ACCOUNTING_ENTRIES_BATCH_CREATED.equals(message.getEventType())
+                && payload instanceof Map<?, ?> map && map.get("ecritureIds") instanceof Collection<?>);
+    }
+
+    public byte[] encoder(KafkaMessage message) {
+        GenericRecord enveloppe = new GenericData.Record(schema);
+        enveloppe.put("tenantId", fixe(UUID.fromString(message.getTenantId())));
+        enveloppe.put("eventType", message.getEventType());
+        enveloppe.put("timestamp", millis(message.getTimestamp()));
+        enveloppe.put("correlationId", message.getCorrelationId());
+        enveloppe.put("source", message.getSource());
+        enveloppe.put("payload", payload(message.getPayload()));
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream(256);
+        sortie.write(MAGIC);
+        sortie.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(schemaId).array());
+        try {
+            BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(sortie, null);
+            writer.write(enveloppe, encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Encodage Avro du message " + message.getEventType() + " impossible", e);
+        }
+        return sortie.toByteArray();
+    }
+
+    public KafkaMessage decoder(byte[] donnees) {
+        if (!estAvro(donnees)) {
+            throw new IllegalArgumentException("Message non encodé en Avro");
+        }
+        int id = ByteBuffer.wrap(donnees, 1, Integer.BYTES).getInt();
+        DatumReader<GenericRecord> lecteur = lecteurs.computeIfAbsent(id,
+                writerId -> new GenericDatumReader<>(registre.schema(writerId), schema));
+        GenericRecord enveloppe;
+        try {
+            enveloppe = lecteur.read(null, DecoderFactory.get().binaryDecoder(donnees, ENTETE, donnees.length - ENTETE, null));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Décodage Avro impossible (schéma " + id + ")", e);
+        }
+        return KafkaMessage.builder()
+                .tenantId(uuid(enveloppe.get("tenantId")).toString())
+                .eventType(texte(enveloppe.get("eventType")))
+                .timestamp(dateHeure(enveloppe.get("timestamp")))
+                .correlationId(texte(enveloppe.get("correlationId")))
+                .source(texte(enveloppe.get("source")))
+                .payload(lirePayload((GenericRecord) enveloppe.get("payload")))
+                .build();
+    }
+
+    private GenericRecord payload(Object payload) {
+        if (payload instanceof EcriturePosted evenement) {
+            GenericRecord record = new GenericData.Record(ecriturePostedSchema);
+            record.put("version", evenement.getVersion());
+            record.put("ecritureId", fixe(evenement.getEcritureId()));
+            record.put("numeroEcriture", evenement.getNumeroEcriture());
+            record.put("libelle", evenement.getLibelle());
+            record.put("dateEcriture", evenement.getDateEcriture() != null ? (int) evenement.getDateEcriture().toEpochDay() : null);
+            record.put("journalComptableId", fixe(evenement.getJournalComptableId()));
+            record.put("periodeComptableId", fixe(evenement.getPeriodeComptableId()));
+            record.put("montantTotal", evenement.getMontantTotal());
+            record.put("referenceExterne", evenement.getReferenceExterne());
+            record.put("sourceType", evenement.getSourceType() != null ? evenement.getSourceType().name() : null);
+            record.put("sourceId", fixe(evenement.getSourceId()));
+            record.put("action", evenement.getAction());
+            record.put("utilisateur", evenement.getUtilisateur());
+            record.put("dateAction", millis(evenement.getDateAction()));
+            List<GenericRecord> lignes = new ArrayList<>(evenement.getLignes().size());
+            for (EcriturePosted.Ligne ligne : evenement.getLignes()) {
+                GenericRecord l = new GenericData.Record(ligneSchema);
+                l.put("id", fixe(ligne.getId()));
+                l.put("compteId", fixe(ligne.getCompteId()));
+                l.put("sens", new GenericData.EnumSymbol(sensSchema, ligne.getSens()));
+                l.put("montant", ligne.getMontant() != null ? ligne.getMontant() : 0.0);
+                l.put("libelle", ligne.getLibelle());
+                lignes.add(l);
+            }
+            record.put("lignes", lignes);
+            return record;
+        }
+        if (payload instanceof JournalAudit audit) {
+            GenericRecord record = new GenericData.Record(auditSchema);
+            record.put("id", fixe(audit.getKey().getId()));
+            record.put("ecritureComptableId", fixe(audit.getEcritureComptableId()));
+            record.put("action", audit.getAction());
+            record.put("dateAction", millis(audit.getDateAction()));
+            record.put("utilisateur", audit.getUtilisateur());
+            record.put("details", audit.getDetails());
+            record.put("adresseIP", audit.getAdresseIP());
+            record.put("donneesAvant", audit.getDonneesAvant());
+            record.put("donneesApres", audit.getDonneesApres());
+            return record;
+        }
+        if (payload instanceof Map<?, ?> lot) {
+            GenericRecord record = new GenericData.Record(lotSchema);
+            Collection<?> ids = (Collection<?>) lot.get("ecritureIds");
+            List<GenericData.Fixed> ecritureIds = new ArrayList<>(ids.size());
+            ids.forEach(id -> ecritureIds.add(fixe(id instanceof UUID u ? u : UUID.fromString(id.toString()))));
+            record.put("count", lot.get("count") instanceof Number n ? n.intValue() : ecritureIds.size());
+            record.put("ecritureIds", ecritureIds);
+            return record;
+        }
+        return null;
+    }
+
+    private Object lirePayload(GenericRecord record) {
+        if (record == null) {
+            return null;
+        }
+        String nom = record.getSchema().getName();
+        if ("EcriturePosted".equals(nom)) {
+            List<EcriturePosted.Ligne> lignes = new ArrayList<>();
+            for (Object o : (Collection<?>) record.get("lignes")) {
+                GenericRecord l = (GenericRecord) o;
+                lignes.add(new EcriturePosted.Ligne(uuid(l.get("id")), uuid(l.get("compteId")), texte(l.get("sens")),
+                        (Double) l.get("montant"), texte(l.get("libelle"))));
+            }
+            String sourceType = texte(record.get("sourceType"));
+            return EcriturePosted.builder()
+                    .version((Integer) record.get("version"))
+                    .ecritureId(uuid(record.get("ecritureId")))
+                    .numeroEcriture(texte(record.get("numeroEcriture")))
+                    .libelle(texte(record.get("libelle")))
+                    .dateEcriture(record.get("dateEcriture") != null ? LocalDate.ofEpochDay((Integer) record.get("dateEcriture")) : null)
+                    .journalComptableId(uuid(record.get("journalComptableId")))
+                    .periodeComptableId(uuid(record.get("periodeComptableId")))
+                    .montantTotal((Double) record.get("montantTotal"))
+                    .referenceExterne(texte(record.get("referenceExterne")))
+                    .sourceType(sourceType != null ? SourceType.valueOf(sourceType) : null)
+                    .sourceId(uuid(record.get("sourceId")))
+                    .action(texte(record.get("action")))
+                    .utilisateur(texte(record.get("utilisateur")))
+                    .dateAction(dateHeure(record.get("dateAction")))
+                    .lignes(lignes)
+                    .build();
+        }
+        if ("JournalAuditEvent".equals(nom)) {
+            JournalAudit audit = new JournalAudit();
+            JournalAuditKey key = new JournalAuditKey();
+            key.setId(uuid(record.get("id")));
+            audit.setKey(key);
+            audit.setEcritureComptableId(uuid(record.get("ecritureComptableId")));
+            audit.setAction(texte(record.get("action")));
+            audit.setDateAction(dateHeure(record.get("dateAction")));
+            audit.setUtilisateur(texte(record.get("utilisateur")));
+            audit.setDetails(texte(record.get("details")));
+            audit.setAdresseIP(texte(record.get("adresseIP")));
+            audit.setDonneesAvant(texte(record.get("donneesAvant")));
+            audit.setDonneesApres(texte(record.get("donneesApres")));
+            return audit;
+        }
+        // Lot d'écritures : même forme que le payload JSON
+        Map<String, Object> lot = new LinkedHashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        ((Collection<?>) record.get("ecritureIds")).forEach(id -> ids.add(uuid(id)));
+        lot.put("count", record.get("count"));
+        lot.put("ecritureIds", ids);
+        return lot;
+    }
+
+    private GenericData.Fixed fixe(UUID uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        return new GenericData.Fixed(uuidSchema, ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array());
+    }
+
+    private static UUID uuid(Object valeur) {
+        if (valeur == null) {
+            return null;
+        }
+        ByteBuffer octets = ByteBuffer.wrap(((GenericData.Fixed) valeur).bytes());
+        return new UUID(octets.getLong(), octets.getLong());
+    }
+
+    // local-timestamp-millis : date et heure locales, sans fuseau, comme les LocalDateTime du JSON
+    private static Long millis(LocalDateTime dateHeure) {
+        return dateHeure != null ? dateHeure.toInstant(ZoneOffset.UTC).toEpochMilli() : null;
+    }
+
+    private static LocalDateTime dateHeure(Object millis) {
+        return millis != null ? LocalDateTime.ofInstant(Instant.ofEpochMilli((Long) millis), ZoneOffset.UTC) : null;
+    }
+
+    private static String texte(Object valeur) {
+        return valeur != null ? valeur.toString() : null;
+    }
+}
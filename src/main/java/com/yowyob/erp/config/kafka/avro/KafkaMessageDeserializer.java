@@ -0,0 +1,46 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * Désérialiseur des consommateurs : les messages Avro (octet magique 0) sont décodés en KafkaMessage
+ * avec le registre embarqué, les autres sont confiés au JsonDeserializer habituel (en-tête de type).
+ * Les deux formats coexistent pendant la migration des producteurs.
+ */
+public class KafkaMessageDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+    private AvroKafkaMessageCodec avro;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+        avro = new AvroKafkaMessageCodec();
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return AvroKafkaMessageCodec.estAvro(data) ? codec().decoder(data) : json.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        return AvroKafkaMessageCodec.estAvro(data) ? codec().decoder(data) : json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+
+    private AvroKafkaMessageCodec codec() {
+        if (avro == null) {
+            avro = new AvroKafkaMessageCodec();
+        }
+        return avro;
+    }
+}
@@ -0,0 +1,119 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Registre de schémas Avro sur fichiers, en remplacement local d'un registre de schémas : un index
+ * (index.properties) associe à chaque identifiant un sujet et une version, dont le schéma est le
+ * fichier &lt;sujet&gt;/&lt;version&gt;.avsc. L'identifiant est écrit en tête de chaque message ; le
+ * lecteur retrouve ainsi le schéma de l'écrivain et le résout vers le sien.
+ */
+public class SchemaRegistreFichier {
+
+    public static final String EMPLACEMENT = "avro/registre/";
+    private static final String INDEX = "index.properties";
+
+    private final Map<Integer, Version> versions;
+
+    private SchemaRegistreFichier(Map<Integer, Version> versions) {
+        this.versions = versions;
+    }
+
+    /**
+     * Registre embarqué dans l'application (ressources avro/registre).
+     */
+    public static SchemaRegistreFichier depuisClasspath() {
+        ClassLoader classLoader = SchemaRegistreFichier.class.getClassLoader();
+        return charger(chemin -> classLoader.getResourceAsStream(EMPLACEMENT + chemin));
+    }
+
+    /**
+     * Registre lu depuis un répertoire, pour les vérifications de build et les essais locaux.
+     */
+    public static SchemaRegistreFichier depuisRepertoire(Path repertoire) {
+        return charger(chemin -> {
+            Path fichier = repertoire.resolve(chemin);
+            return Files.exists(fichier) ? Files.newInputStream(fichier) : null;
+        });
+    }
+
+    public Schema schema(int id) {
+        Version version = versions.get(id);
+        if (version == null) {
+            throw new IllegalArgumentException("Schéma Avro inconnu du registre : " + id);
+        }
+        return version.schema();
+    }
+
+    /**
+     * Identifiant de ce schéma dans le registre, comparé sous forme canonique.
+     */
+    public int id(String sujet, Schema schema) {
+        long empreinte = SchemaNormalization.parsingFingerprint64(schema);
+        return versions.entrySet().stream()
+                .filter(e -> e.getValue().sujet().equals(sujet) && e.getValue().empreinte() == empreinte)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Le schéma courant du sujet " + sujet
+                        + " n'est pas enregistré dans " + EMPLACEMENT));
+    }
+
+    /**
+     * Versions enregistrées du sujet, de la plus ancienne à la plus récente.
+     */
+    public List<Schema> versions(String sujet) {
+        List<Schema> schemas = new ArrayList<>();
+        versions.values().stream()
+                .filter(v -> v.sujet().equals(sujet))
+                .forEach(v -> schemas.add(v.schema()));
+        return Collections.unmodifiableList(schemas);
+    }
+
+    private static SchemaRegistreFichier charger(Lecteur lecteur) {
+        try (InputStream index = lecteur.ouvrir(INDEX)) {
+            if (index == null) {
+                throw new IllegalStateException("Index du registre de schémas introuvable : " + EMPLACEMENT + INDEX);
+            }
+            Properties proprietes = new Properties();
+            proprietes.load(index);
+            // Trié par identifiant : les versions d'un sujet sont dans l'ordre d'enregistrement
+            Map<Integer, Version> versions = new TreeMap<>();
+            for (String cle : proprietes.stringPropertyNames()) {
+                String reference = proprietes.getProperty(cle).trim();
+                String sujet = reference.substring(0, reference.indexOf('/'));
+                try (InputStream fichier = lecteur.ouvrir(reference + ".avsc")) {
+                    if (fichier == null) {
+                        throw new IllegalStateException("Schéma enregistré introuvable : " + reference);
+                    }
+                    Schema schema = new Schema.Parser().parse(fichier);
+                    versions.put(Integer.parseInt(cle.trim()),
+                            new Version(sujet, schema, SchemaNormalization.parsingFingerprint64(schema)));
+                }
+            }
+            return new SchemaRegistreFichier(versions);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lecture du registre de schémas impossible", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lecteur {
+        InputStream ouvrir(String chemin) throws IOException;
+    }
+
+    private record Version(String sujet, Schema schema, long empreinte) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Vérification de build (phase process-classes) des schémas Avro de avro/ : chaque schéma courant
+ * doit pouvoir lire les données de toutes les versions enregistrées de son sujet (compatibilité
+ * ascendante transitive), être lisible par la dernière version enregistrée (consommateurs non
+ * encore mis à jour) et être lui-même enregistré. Pour faire évoluer un schéma, copier le nouveau
+ * fichier en &lt;sujet&gt;/v&lt;n+1&gt;.avsc dans le registre et l'ajouter à l'index.
+ */
+public final class VerificationSchemas {
+
+    private VerificationSchemas() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path repertoire = Path.of(args.length > 0 ? args[0] : "src/main/resources/avro");
+        SchemaRegistreFichier registre = SchemaRegistreFichier.depuisRepertoire(repertoire.resolve("registre"));
+        List<String> erreurs = new ArrayList<>();
+
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            for (Path fichier : fichiers.filter(f -> f.toString().endsWith(".avsc")).sorted().toList()) {
+                String sujet = fichier.getFileName().toString().replace(".avsc", "");
+                Schema courant = new Schema.Parser().parse(fichier.toFile());
+                erreurs.addAll(verifier(sujet, courant, registre));
+            }
+        }
+
+        if (!erreurs.isEmpty()) {
+            erreurs.forEach(System.err::println);
+            throw new IllegalStateException(erreurs.size() + " incompatibilité(s) de schémas Avro");
+        }
+        System.out.println("Schémas Avro compatibles avec le registre " + repertoire.resolve("registre"));
+    }
+
+    static List<String> verifier(String sujet, Schema courant, SchemaRegistreFichier registre) {
+        List<String> erreurs = new ArrayList<>();
+        List<Schema> versions = registre.versions(sujet);
+        if (versions.isEmpty()) {
+            erreurs.add(sujet + " : aucune version enregistrée dans le registre");
+            return erreurs;
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            var lecture = SchemaCompatibility.checkReaderWriterCompatibility(courant, versions.get(i));
+            if (lecture.getType() != SchemaCompatibilityType.COMPATIBLE) {
+                erreurs.add(sujet + " : le schéma courant ne lit pas la version " + (i + 1) + " : " + lecture.getDescription());
+            }
+        }
+        var ecriture = SchemaCompatibility.checkReaderWriterCompatibility(versions.get(versions.size() - 1), courant);
+        if (ecriture.getType() != SchemaCompatibilityType.COMPATIBLE) {
+            erreurs.add(sujet + " : la dernière version enregistrée ne lit pas le schéma courant : " + ecriture.getDescription());
+        }
+        try {
+            registre.id(sujet, courant);
+        } catch (IllegalStateException e) {
+            erreurs.add(e.getMessage());
+        }
+        return erreurs;
+    }
+}
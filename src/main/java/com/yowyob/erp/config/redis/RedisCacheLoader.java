@@ -0,0 +1,396 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Chargement de cache protégé contre les rafales de requêtes sur une clé expirée :
+ * <ul>
+ *     <li>les chargements simultanés d'une même clé sur un nœud n'exécutent qu'une requête ;</li>
+ *     <li>un bail Redis court désigne un seul nœud chargeur, les autres attendent la valeur ;</li>
+ *     <li>une clé lue peu avant son expiration est rechargée en tâche de fond, avec une probabilité
+ *     croissante à l'approche de l'échéance et proportionnelle au temps de chargement mesuré.</li>
+ * </ul>
+ * Une clé invalidée par {@link #invalider} change de génération : un chargement commencé avant
+ * l'invalidation n'écrit pas sa valeur, devenue potentiellement périmée.
+ * Les valeurs gérées par {@link #get} sont stockées sous la forme "durée de chargement ms|valeur", la
+ * valeur étant encodée au format configuré pour son cache (RedisCodecs).
+ */
+@Component
+public class RedisCacheLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCacheLoader.class);
+
+    private static final String SUFFIXE_BAIL = ":bail";
+    private static final String SUFFIXE_GENERATION = ":generation";
+    // Survit largement à un chargement en cours : une génération expirée ne peut revenir à une valeur lue
+    private static final Duration TTL_GENERATION = Duration.ofHours(1);
+    // Jeton utilisé quand Redis est indisponible : le chargement a lieu sans coordination entre nœuds
+    private static final String SANS_BAIL = "";
+    // Relectures pendant l'attente du bail : intervalle doublé à chaque tentative, dans ces bornes
+    private static final long INTERVALLE_ATTENTE_MIN_MS = 10;
+    private static final long INTERVALLE_ATTENTE_MAX_MS = 100;
+
+    // KEYS : bail ; ARGV : jeton
+    private static final RedisScript<Long> SCRIPT_LIBERER_BAIL = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+    // KEYS : valeur, génération ; ARGV : génération lue, valeur, ttl ms
+    private static final String SCRIPT_ECRIRE_SI_GENERATION =
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) "
+                    + "return 1";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCodecs codecs;
+    private final Executor taskExecutor;
+    private final Duration dureeBail;
+    private final Duration attenteMax;
+    private final double beta;
+
+    private final Map<String, CompletableFuture<Object>> chargementsEnCours = new ConcurrentHashMap<>();
+    private final Map<String, Instant> rafraichissementsEnCours = new ConcurrentHashMap<>();
+
+    public RedisCacheLoader(StringRedisTemplate redisTemplate,
+                            RedisCodecs codecs,
+                            @Qualifier("taskExecutor") Executor taskExecutor,
+                            @Value("${app.cache.bail-duree:5s}") Duration dureeBail,
+                            @Value("${app.cache.attente-max:500ms}") Duration attenteMax,
+                            @Value("${app.cache.rafraichissement-beta:1.0}") double beta) {
+        this.redisTemplate = redisTemplate;
+        this.codecs = codecs;
+        this.taskExecutor = taskExecutor;
+        this.dureeBail = dureeBail;
+        this.attenteMax = attenteMax;
+        this.beta = beta;
+    }
+
+    /**
+     * Valeur en cache de la clé, chargée par le loader en cas d'absence (une seule fois pour tous
+     * les appelants concurrents) et rafraîchie en tâche de fond peu avant son expiration.
+     * Un loader retournant null n'est pas mis en cache.
+     *
+     * @param cache nom du cache, qui détermine le format de la valeur
+     */
+    public <T> T get(String cache, String key, Duration ttl, TypeReference<T> type, Supplier<T> loader) {
+        RedisValueCodec codec = codecs.codec(cache);
+        Lecture lecture = lire(key);
+        T valeur = lecture == null ? null : convertir(codec, key, lecture.entree().valeur(), type);
+        if (valeur != null) {
+            if (doitRafraichir(lecture.entree().dureeChargementMillis(), lecture.ttlRestantMillis())) {
+                rafraichirEnFond(key, () -> chargerEtEcrire(codec, key, ttl, loader));
+            }
+            return valeur;
+        }
+        return coalesce(key,
+                () -> {
+                    Lecture relue = lire(key);
+                    return relue == null ? null : convertir(codec, key, relue.entree().valeur(), type);
+                },
+                () -> chargerEtEcrire(codec, key, ttl, loader));
+    }
+
+    /**
+     * Exécute le chargement d'une clé absente une seule fois : les appelants concurrents du nœud
+     * partagent le résultat, et sur les autres nœuds l'attente du bail se fait en relisant le cache
+     * (lectureCache retourne null tant que la valeur n'y est pas). Passé le délai d'attente,
+     * l'appelant charge lui-même plutôt que d'échouer.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String key, Supplier<T> lectureCache, Supplier<T> chargement) {
+        CompletableFuture<Object> nouveau = new CompletableFuture<>();
+        CompletableFuture<Object> existant = chargementsEnCours.putIfAbsent(key, nouveau);
+        if (existant != null) {
+            try {
+                return (T) existant.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            T valeur = chargerSousBail(key, lectureCache, chargement);
+            nouveau.complete(valeur);
+            return valeur;
+        } catch (RuntimeException e) {
+            nouveau.completeExceptionally(e);
+            throw e;
+        } finally {
+            chargementsEnCours.remove(key, nouveau);
+        }
+    }
+
+    /**
+     * Supprime les clés et change leur génération, en un seul aller-retour : les chargements en cours
+     * de ces clés n'écriront pas leur valeur.
+     */
+    public void invalider(List<String> keys) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    byte[] generation = (key + SUFFIXE_GENERATION).getBytes(StandardCharsets.UTF_8);
+                    connection.stringCommands().incr(generation);
+                    connection.keyCommands().expire(generation, TTL_GENERATION.toSeconds());
+                }
+                connection.keyCommands().del(keys.stream().map(k -> k.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Invalidation des clés de cache {} impossible : {}", keys, e.getMessage());
+        }
+    }
+
+    /**
+     * Expiration anticipée probabiliste : vrai avec une probabilité qui croît à mesure que le TTL
+     * restant se rapproche du temps de chargement de la valeur.
+     */
+    public boolean doitRafraichir(long dureeChargementMillis, long ttlRestantMillis) {
+        if (ttlRestantMillis <= 0 || dureeChargementMillis <= 0) {
+            return false;
+        }
+        double tirage = -Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+        return dureeChargementMillis * beta * tirage >= ttlRestantMillis;
+    }
+
+    /**
+     * Lance le rafraîchissement de la clé en tâche de fond, sauf s'il est déjà en cours sur ce nœud
+     * ou qu'un autre nœud détient le bail de la clé.
+     */
+    public void rafraichirEnFond(String key, Runnable rafraichissement) {
+        Instant maintenant = Instant.now();
+        Instant precedent = rafraichissementsEnCours.putIfAbsent(key, maintenant);
+        // Une réservation plus ancienne que le bail correspond à une tâche perdue (arrêt de l'exécuteur)
+        if (precedent != null && (precedent.isAfter(maintenant.minus(dureeBail))
+                || !rafraichissementsEnCours.replace(key, precedent, maintenant))) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> rafraichir(key, rafraichissement));
+        } catch (RejectedExecutionException e) {
+            // Exécuteur saturé : la clé sera rafraîchie à une lecture suivante, ou rechargée à expiration
+            rafraichissementsEnCours.remove(key);
+            logger.debug("Rafraîchissement anticipé de la clé {} abandonné, exécuteur saturé", key);
+        }
+    }
+
+    private void rafraichir(String key, Runnable rafraichissement) {
+        String bail = acquerirBail(key + SUFFIXE_BAIL, dureeBail);
+        try {
+            if (bail != null) {
+                rafraichissement.run();
+                logger.debug("Clé de cache {} rafraîchie avant expiration", key);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Rafraîchissement anticipé de la clé {} impossible : {}", key, e.getMessage());
+        } finally {
+            libererBail(key + SUFFIXE_BAIL, bail);
+            rafraichissementsEnCours.remove(key);
+        }
+    }
+
+    /**
+     * Prend le bail de la clé pour la durée donnée ; retourne le jeton à présenter à la libération,
+     * ou null si un autre détenteur l'a déjà.
+     */
+    public String acquerirBail(String key, Duration duree) {
+        String jeton = UUID.randomUUID().toString();
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, jeton, duree)) ? jeton : null;
+        } catch (RuntimeException e) {
+            logger.warn("Bail {} non pris, Redis indisponible : {}", key, e.getMessage());
+            return SANS_BAIL;
+        }
+    }
+
+    public void libererBail(String key, String jeton) {
+        if (jeton == null || jeton.equals(SANS_BAIL)) {
+            return;
+        }
+        try {
+            redisTemplate.execute(SCRIPT_LIBERER_BAIL, List.of(key), jeton);
+        } catch (RuntimeException e) {
+            logger.warn("Libération du bail {} impossible, il expirera de lui-même : {}", key, e.getMessage());
+        }
+    }
+
+    public static byte[] envelopper(long dureeChargementMillis, byte[] valeur) {
+        byte[] prefixe = (dureeChargementMillis + "|").getBytes(StandardCharsets.US_ASCII);
+        byte[] enveloppe = Arrays.copyOf(prefixe, prefixe.length + valeur.length);
+        System.arraycopy(valeur, 0, enveloppe, prefixe.length, valeur.length);
+        return enveloppe;
+    }
+
+    public static String envelopper(long dureeChargementMillis, String valeur) {
+        return dureeChargementMillis + "|" + valeur;
+    }
+
+    /**
+     * Valeur et durée de chargement d'une valeur enveloppée, ou null si elle n'est pas dans ce format
+     * (valeur écrite par une version précédente).
+     */
+    public static Entree deballer(byte[] stockee) {
+        if (stockee == null) {
+            return null;
+        }
+        long duree = 0;
+        // Au plus 19 chiffres avant le séparateur
+        for (int i = 0; i < Math.min(stockee.length, 20); i++) {
+            byte octet = stockee[i];
+            if (octet == '|') {
+                return i == 0 ? null : new Entree(duree, Arrays.copyOfRange(stockee, i + 1, stockee.length));
+            }
+            if (octet < '0' || octet > '9') {
+                return null;
+            }
+            duree = duree * 10 + (octet - '0');
+        }
+        return null;
+    }
+
+    public static Entree deballer(String stockee) {
+        return stockee == null ? null : deballer(stockee.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private <T> T chargerSousBail(String key, Supplier<T> lectureCache, Supplier<T> chargement) {
+        String bailKey = key + SUFFIXE_BAIL;
+        String bail = acquerirBail(bailKey, dureeBail);
+        if (bail == null) {
+            T valeur = attendreValeur(key, bailKey, lectureCache);
+            if (valeur != null) {
+                return valeur;
+            }
+            logger.debug("Valeur de {} toujours absente après l'attente du bail, chargement local", key);
+            return chargement.get();
+        }
+        try {
+            // Un autre nœud a pu terminer entre la lecture manquée et la prise du bail
+            T valeur = bail.equals(SANS_BAIL) ? null : lectureCache.get();
+            return valeur != null ? valeur : chargement.get();
+        } finally {
+            libererBail(bailKey, bail);
+        }
+    }
+
+    /**
+     * Relit le cache pendant qu'un autre nœud charge la clé, à intervalles croissants. L'attente cesse
+     * au délai maximal (attente-max, 500 ms par défaut) ou dès que le bail est libéré ou expiré : le
+     * détenteur a alors écrit sa valeur ou abandonné, et une dernière lecture suffit.
+     */
+    private <T> T attendreValeur(String key, String bailKey, Supplier<T> lectureCache) {
+        long limite = System.nanoTime() + attenteMax.toNanos();
+        long intervalle = INTERVALLE_ATTENTE_MIN_MS;
+        boolean bailDetenu = true;
+        while (bailDetenu && System.nanoTime() < limite) {
+            try {
+                Thread.sleep(Math.min(intervalle, Math.max(1, (limite - System.nanoTime()) / 1_000_000)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            intervalle = Math.min(intervalle * 2, INTERVALLE_ATTENTE_MAX_MS);
+            try {
+                bailDetenu = Boolean.TRUE.equals(redisTemplate.hasKey(bailKey));
+                T valeur = lectureCache.get();
+                if (valeur != null) {
+                    return valeur;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Lecture de {} impossible pendant l'attente du bail : {}", key, e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private <T> T chargerEtEcrire(RedisValueCodec codec, String key, Duration ttl, Supplier<T> loader) {
+        // Lue avant le chargement : une invalidation survenue entre-temps empêche l'écriture
+        String generation = generation(key);
+        long debut = System.nanoTime();
+        T valeur = loader.get();
+        long duree = Math.max(1, (System.nanoTime() - debut) / 1_000_000);
+        if (valeur != null && generation != null) {
+            try {
+                byte[][] keysEtArgs = {
+                        key.getBytes(StandardCharsets.UTF_8),
+                        (key + SUFFIXE_GENERATION).getBytes(StandardCharsets.UTF_8),
+                        generation.getBytes(StandardCharsets.UTF_8),
+                        envelopper(duree, codec.encoder(valeur)),
+                        Long.toString(ttl.toMillis()).getBytes(StandardCharsets.UTF_8)};
+                Long ecrite = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                        .eval(SCRIPT_ECRIRE_SI_GENERATION.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 2, keysEtArgs));
+                if (ecrite == null || ecrite == 0) {
+                    logger.debug("Clé de cache {} invalidée pendant son chargement, valeur non écrite", key);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Mise en cache de la clé {} impossible : {}", key, e.getMessage());
+            }
+        }
+        return valeur;
+    }
+
+    // Génération courante de la clé ("0" si elle n'a pas été invalidée récemment), null si Redis est indisponible
+    private String generation(String key) {
+        try {
+            String generation = redisTemplate.opsForValue().get(key + SUFFIXE_GENERATION);
+            return generation != null ? generation : "0";
+        } catch (RuntimeException e) {
+            logger.warn("Génération de la clé de cache {} illisible : {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private Lecture lire(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        try {
+            List<Object> resultats = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().get(bytes);
+                connection.keyCommands().pTtl(bytes);
+                return null;
+            }, RedisSerializer.byteArray());
+            Entree entree = deballer((byte[]) resultats.get(0));
+            return entree == null ? null : new Lecture(entree, resultats.get(1) instanceof Long ttl ? ttl : -1);
+        } catch (RuntimeException e) {
+            logger.warn("Lecture du cache {} impossible : {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T convertir(RedisValueCodec codec, String key, byte[] valeur, TypeReference<T> type) {
+        try {
+            return codec.decoder(valeur, type);
+        } catch (SerializationException e) {
+            logger.warn("Valeur de cache illisible pour {} : {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    public record Entree(long dureeChargementMillis, byte[] valeur) {
+    }
+
+    private record Lecture(Entree entree, long ttlRestantMillis) {
+    }
+}
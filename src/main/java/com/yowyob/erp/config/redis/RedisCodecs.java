@@ -0,0 +1,35 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codecs des caches applicatifs par nom de cache : format déclaré dans app.redis.serialization.caches,
+ * format par défaut sinon. Les mêmes noms servent au CacheManager et aux caches écrits directement
+ * dans Redis (ecritures, ecrituresSearch, compteAll...).
+ */
+public class RedisCodecs {
+
+    private final ObjectMapper objectMapper;
+    private final RedisFormat formatParDefaut;
+    private final Map<String, RedisFormat> formats;
+    private final int seuilCompression;
+    private final int tailleMaxDecompressee;
+    private final Map<String, RedisValueCodec> codecs = new ConcurrentHashMap<>();
+
+    public RedisCodecs(ObjectMapper objectMapper, RedisFormat formatParDefaut, Map<String, RedisFormat> formats,
+                       int seuilCompression, int tailleMaxDecompressee) {
+        this.objectMapper = objectMapper;
+        this.formatParDefaut = formatParDefaut;
+        this.formats = Map.copyOf(formats);
+        this.seuilCompression = seuilCompression;
+        this.tailleMaxDecompressee = tailleMaxDecompressee;
+    }
+
+    public RedisValueCodec codec(String cache) {
+        return codecs.computeIfAbsent(cache, nom -> new RedisValueCodec(objectMapper,
+                formats.getOrDefault(nom, formatParDefaut), seuilCompression, tailleMaxDecompressee));
+    }
+}
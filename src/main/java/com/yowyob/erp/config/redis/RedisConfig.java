@@ -1,9 +1,10 @@
 package com.yowyob.erp.config.redis;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.cache.RedisCacheManagerBuilderCustomizer;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -15,7 +16,10 @@ import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.unit.DataSize;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -39,6 +43,21 @@ public class RedisConfig {
     @Value("${spring.data.redis.timeout}")
     private Duration redisTimeout;
 
+    @Value("${app.redis.serialization.template:JSON}")
+    private RedisFormat templateFormat;
+
+    @Value("${app.redis.serialization.default:JSON}")
+    private RedisFormat defaultFormat;
+
+    @Value("${app.redis.serialization.caches:}")
+    private String cacheFormats;
+
+    @Value("${app.redis.serialization.compression-threshold:1024}")
+    private int compressionThreshold;
+
+    @Value("${app.redis.serialization.max-decompressed-size:16MB}")
+    private DataSize maxDecompressedSize;
+
     @Bean
     public LettuceConnectionFactory redisConnectionFactory() {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
@@ -57,63 +76,88 @@ public class RedisConfig {
         template.setConnectionFactory(connectionFactory);
         
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        RedisSerializer<Object> valueSerializer;
+        if (templateFormat == RedisFormat.JSON) {
+            ObjectMapper objectMapper = new ObjectMapper();
+            objectMapper.registerModule(new JavaTimeModule());
+            valueSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        } else {
+            valueSerializer = valueSerializer(templateFormat);
+        }
         
         template.setKeySerializer(stringSerializer);
         template.setHashKeySerializer(stringSerializer);
-        template.setValueSerializer(jsonSerializer);
-        template.setHashValueSerializer(jsonSerializer);
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
         
         template.afterPropertiesSet();
-        log.info("RedisTemplate configured with JSON serialization and timeout {}", redisTimeout.toMillis());
+        log.info("RedisTemplate configured with {} serialization and timeout {}", templateFormat, redisTimeout.toMillis());
         return template;
     }
 
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMillis(600000)) // Aligné avec spring.cache.redis.time-to-live
-                .serializeKeysWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair
-                        .fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()))
+        Map<String, RedisFormat> formats = formatsParCache();
+        RedisCacheConfiguration defaultConfig = cacheConfiguration(Duration.ofMillis(600000), defaultFormat) // Aligné avec spring.cache.redis.time-to-live
                 .disableCachingNullValues(); // Aligné avec spring.cache.redis.cache-null-values=false
 
-        RedisCacheManagerBuilderCustomizer customizer = builder -> {
-            builder.withCacheConfiguration("ecrituresAll", 
-                    RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)));
-            builder.withCacheConfiguration("ecrituresNonValidated", 
-                    RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)));
-            builder.withCacheConfiguration("ecrituresSearch", 
-                    RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)));
-            builder.withCacheConfiguration("compteSolde", 
-                    RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(5)));
-            builder.withCacheConfiguration("compteAll", 
-                    RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofHours(1)));
-            builder.withCacheConfiguration("compteByNoCompte", 
-                    RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(15)));
-        };
-
-        RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(defaultConfig)
-                .withCacheConfiguration("ecrituresAll", 
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)))
-                .withCacheConfiguration("ecrituresNonValidated", 
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)))
-                .withCacheConfiguration("ecrituresSearch", 
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)))
-                .withCacheConfiguration("compteSolde", 
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(5)))
-                .withCacheConfiguration("compteAll", 
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofHours(1)))
-                .withCacheConfiguration("compteByNoCompte", 
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(15)))
-                .build();
+        Map<String, Duration> ttls = new LinkedHashMap<>();
+        ttls.put("ecrituresAll", Duration.ofMinutes(10));
+        ttls.put("ecrituresNonValidated", Duration.ofMinutes(10));
+        ttls.put("ecrituresSearch", Duration.ofMinutes(10));
+        ttls.put("compteSolde", Duration.ofMinutes(5));
+        ttls.put("compteAll", Duration.ofHours(1));
+        ttls.put("compteByNoCompte", Duration.ofMinutes(15));
+        formats.keySet().forEach(name -> ttls.putIfAbsent(name, Duration.ofMillis(600000)));
+
+        RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(defaultConfig);
+        ttls.forEach((name, ttl) -> builder.withCacheConfiguration(name,
+                cacheConfiguration(ttl, formats.getOrDefault(name, defaultFormat))));
+        RedisCacheManager cacheManager = builder.build();
 
         log.info("CacheManager configured with TTLs: ecrituresAll=10m, ecrituresNonValidated=10m, ecrituresSearch=10m, " +
-                "compteSolde=5m, compteAll=1h, compteByNoCompte=15m");
+                "compteSolde=5m, compteAll=1h, compteByNoCompte=15m; default format {}, per cache {}", defaultFormat, formats);
         return cacheManager;
     }
-}
\ No newline at end of file
+
+    /**
+     * Codecs des caches qui écrivent eux-mêmes dans Redis, aux formats déclarés pour le CacheManager.
+     */
+    @Bean
+    public RedisCodecs redisCodecs(ObjectMapper objectMapper) {
+        return new RedisCodecs(objectMapper, defaultFormat, formatsParCache(), compressionThreshold,
+                (int) maxDecompressedSize.toBytes());
+    }
+
+    private RedisCacheConfiguration cacheConfiguration(Duration ttl, RedisFormat format) {
+        RedisSerializer<Object> serializer = format == RedisFormat.JSON
+                ? new GenericJackson2JsonRedisSerializer()
+                : valueSerializer(format);
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(ttl)
+                .serializeKeysWith(SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(SerializationPair.fromSerializer(serializer));
+    }
+
+    private RedisSerializer<Object> valueSerializer(RedisFormat format) {
+        return new SmileRedisSerializer(format == RedisFormat.SMILE_LZ4 ? compressionThreshold : -1,
+                (int) maxDecompressedSize.toBytes());
+    }
+
+    // app.redis.serialization.caches=nomCache:FORMAT,autreCache:FORMAT
+    private Map<String, RedisFormat> formatsParCache() {
+        Map<String, RedisFormat> formats = new LinkedHashMap<>();
+        for (String entree : cacheFormats.split(",")) {
+            if (entree.isBlank()) {
+                continue;
+            }
+            String[] parties = entree.split(":");
+            if (parties.length != 2) {
+                throw new IllegalStateException("Format de cache Redis invalide : " + entree);
+            }
+            formats.put(parties[0].trim(), RedisFormat.valueOf(parties[1].trim().toUpperCase()));
+        }
+        return formats;
+    }
+}
@@ -0,0 +1,16 @@
+package com.yowyob.erp.config.redis;
+
+/**
+ * Format de sérialisation des valeurs Redis, choisi par cache ou pour le RedisTemplate.
+ */
+public enum RedisFormat {
+
+    // JSON typé (GenericJackson2JsonRedisSerializer), lisible avec redis-cli
+    JSON,
+
+    // Smile : équivalent binaire du JSON, noms de champs partagés et nombres compacts
+    SMILE,
+
+    // Smile compressé en LZ4 au-delà du seuil configuré
+    SMILE_LZ4
+}
@@ -2,11 +2,15 @@
 package com.yowyob.erp.config.redis;
 
 import java.time.Duration;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import com.yowyob.erp.accounting.service.PlanComptableIndex;
+import com.yowyob.erp.accounting.service.SoldeCompteService;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -20,6 +24,8 @@ public class RedisService {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final SoldeCompteService soldeCompteService;
+    private final PlanComptableIndex planComptableIndex;
 
     /**
      * Sauvegarde une valeur avec TTL
@@ -81,19 +87,36 @@ public class RedisService {
     }
 
     /**
-     * Sauvegarde des soldes de comptes
+     * Recalcule le solde courant d'un compte depuis les mouvements journaliers et le met en cache
      */
-    public void saveAccountBalance(String tenantId, String accountNumber, Double balance) {
-        String key = String.format("balance:%s:%s", tenantId, accountNumber);
-        save(key, balance, Duration.ofMinutes(30));
+    public Double saveAccountBalance(String tenantId, String accountNumber) {
+        UUID tenant = UUID.fromString(tenantId);
+        Double balance = planComptableIndex.findByNoCompte(tenant, accountNumber)
+                .map(compte -> soldeCompteService.getSolde(tenant, compte.getId()).getSolde())
+                .orElse(null);
+        if (balance != null) {
+            save(balanceKey(tenantId, accountNumber), balance, Duration.ofMinutes(30));
+        }
+        return balance;
     }
 
     /**
-     * Récupère le solde d'un compte
+     * Récupère le solde d'un compte (cache, sinon table des mouvements journaliers)
      */
     public Double getAccountBalance(String tenantId, String accountNumber) {
-        String key = String.format("balance:%s:%s", tenantId, accountNumber);
-        return get(key, Double.class);
+        Double balance = get(balanceKey(tenantId, accountNumber), Double.class);
+        return balance != null ? balance : saveAccountBalance(tenantId, accountNumber);
+    }
+
+    /**
+     * Invalide le solde en cache après un nouveau mouvement sur le compte
+     */
+    public void evictAccountBalance(String tenantId, String accountNumber) {
+        delete(balanceKey(tenantId, accountNumber));
+    }
+
+    private String balanceKey(String tenantId, String accountNumber) {
+        return String.format("balance:%s:%s", tenantId, accountNumber);
     }
 
     /**
@@ -0,0 +1,143 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodage des valeurs que les caches applicatifs écrivent eux-mêmes dans Redis (écritures, segments
+ * de recherche, valeurs du RedisCacheLoader), au format configuré pour leur cache. Le type attendu
+ * étant fourni à la lecture, aucune information de type n'est embarquée dans la valeur.
+ * Le format est reconnu au premier octet : 'L' pour une valeur compressée (suivi de sa taille d'origine
+ * sur 4 octets), ':' pour l'en-tête Smile, du JSON sinon. Les valeurs écrites avant un changement de
+ * format restent donc lisibles.
+ */
+public class RedisValueCodec {
+
+    static final byte MARQUEUR_LZ4 = 'L';
+    static final int TAILLE_EN_TETE_LZ4 = 5;
+    static final byte EN_TETE_SMILE = ':';
+
+    private static final LZ4Compressor COMPRESSEUR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSEUR = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final RedisFormat format;
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final int seuilCompression;
+    private final int tailleMaxDecompressee;
+
+    public RedisValueCodec(ObjectMapper objectMapper, RedisFormat format, int seuilCompression, int tailleMaxDecompressee) {
+        this.format = format;
+        this.jsonMapper = objectMapper;
+        // Mêmes modules et options que le JSON de l'application
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.seuilCompression = seuilCompression;
+        this.tailleMaxDecompressee = tailleMaxDecompressee;
+    }
+
+    public RedisFormat format() {
+        return format;
+    }
+
+    public byte[] encoder(Object valeur) {
+        try {
+            if (format == RedisFormat.JSON) {
+                return jsonMapper.writeValueAsBytes(valeur);
+            }
+            byte[] smile = smileMapper.writeValueAsBytes(valeur);
+            return format == RedisFormat.SMILE_LZ4 ? compresser(smile, seuilCompression) : smile;
+        } catch (IOException e) {
+            throw new SerializationException("Encodage de la valeur Redis impossible : " + e.getMessage(), e);
+        }
+    }
+
+    public <T> T decoder(byte[] valeur, Class<T> type) {
+        return decoder(valeur, jsonMapper.constructType(type));
+    }
+
+    public <T> T decoder(byte[] valeur, TypeReference<T> type) {
+        return decoder(valeur, jsonMapper.constructType(type));
+    }
+
+    private <T> T decoder(byte[] valeur, JavaType type) {
+        if (valeur == null || valeur.length == 0) {
+            return null;
+        }
+        try {
+            if (valeur[0] == MARQUEUR_LZ4) {
+                return smileMapper.readValue(decompresser(valeur, tailleMaxDecompressee), type);
+            }
+            if (valeur[0] == EN_TETE_SMILE) {
+                return smileMapper.readValue(valeur, type);
+            }
+            return jsonMapper.readValue(valeur, type);
+        } catch (IOException e) {
+            throw new SerializationException("Décodage de la valeur Redis impossible : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compresse la valeur Smile si elle atteint le seuil (jamais si le seuil est négatif) et si la
+     * compression la réduit effectivement.
+     */
+    static byte[] compresser(byte[] smile, int seuil) {
+        if (seuil < 0 || smile.length < seuil) {
+            return smile;
+        }
+        byte[] compresse = new byte[TAILLE_EN_TETE_LZ4 + COMPRESSEUR.maxCompressedLength(smile.length)];
+        compresse[0] = MARQUEUR_LZ4;
+        ecrireEntier(compresse, 1, smile.length);
+        int taille = COMPRESSEUR.compress(smile, 0, smile.length, compresse, TAILLE_EN_TETE_LZ4, compresse.length - TAILLE_EN_TETE_LZ4);
+        // Une valeur peu compressible reste en Smile brut
+        if (TAILLE_EN_TETE_LZ4 + taille >= smile.length) {
+            return smile;
+        }
+        return Arrays.copyOf(compresse, TAILLE_EN_TETE_LZ4 + taille);
+    }
+
+    /**
+     * Valeur Smile d'une valeur compressée. La taille annoncée par l'en-tête est bornée avant toute
+     * allocation, et le flux LZ4 doit la produire exactement.
+     */
+    static byte[] decompresser(byte[] valeur, int tailleMax) {
+        if (valeur.length < TAILLE_EN_TETE_LZ4) {
+            throw new SerializationException("Valeur LZ4 tronquée");
+        }
+        int taille = lireEntier(valeur, 1);
+        if (taille < 0 || taille > tailleMax) {
+            throw new SerializationException("Taille décompressée annoncée invalide : " + taille + " octets (maximum " + tailleMax + ")");
+        }
+        byte[] smile = new byte[taille];
+        try {
+            int lue = DECOMPRESSEUR.decompress(valeur, TAILLE_EN_TETE_LZ4, valeur.length - TAILLE_EN_TETE_LZ4, smile, 0, taille);
+            if (lue != taille) {
+                throw new SerializationException("Valeur LZ4 incohérente : " + lue + " octets lus pour " + taille + " annoncés");
+            }
+        } catch (LZ4Exception e) {
+            throw new SerializationException("Valeur LZ4 illisible : " + e.getMessage(), e);
+        }
+        return smile;
+    }
+
+    private static void ecrireEntier(byte[] bytes, int position, int valeur) {
+        bytes[position] = (byte) (valeur >>> 24);
+        bytes[position + 1] = (byte) (valeur >>> 16);
+        bytes[position + 2] = (byte) (valeur >>> 8);
+        bytes[position + 3] = (byte) valeur;
+    }
+
+    private static int lireEntier(byte[] bytes, int position) {
+        return ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+    }
+}
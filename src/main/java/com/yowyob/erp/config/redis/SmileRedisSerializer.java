@@ -0,0 +1,120 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Sérialiseur Redis binaire : Smile typé, compressé en LZ4 quand la valeur dépasse le seuil.
+ * Une valeur compressée commence par l'octet 'L' suivi de sa taille d'origine sur 4 octets ;
+ * une valeur Smile commence par son en-tête ":)". Les valeurs JSON écrites avant le changement
+ * de format restent lisibles, ce qui permet de basculer un cache sans le vider.
+ * La taille annoncée d'une valeur compressée est bornée avant la décompression.
+ */
+public class SmileRedisSerializer implements RedisSerializer<Object> {
+
+    // Classes du JDK dont le type peut être embarqué : collections et maps de java.util, hors sous-paquetages
+    private static final Pattern TYPES_JDK_AUTORISES = Pattern.compile("java\\.util\\.[A-Z][\\w$]*");
+
+    private final ObjectMapper smileMapper;
+    private final GenericJackson2JsonRedisSerializer jsonSerializer;
+    // Taille Smile à partir de laquelle la valeur est compressée ; négatif pour ne jamais compresser
+    private final int seuilCompression;
+    private final int tailleMaxDecompressee;
+
+    public SmileRedisSerializer(int seuilCompression, int tailleMaxDecompressee) {
+        this.smileMapper = creerSmileMapper();
+        this.jsonSerializer = new GenericJackson2JsonRedisSerializer();
+        this.seuilCompression = seuilCompression;
+        this.tailleMaxDecompressee = tailleMaxDecompressee;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] smile;
+        try {
+            smile = smileMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Sérialisation Smile impossible : " + e.getMessage(), e);
+        }
+        return RedisValueCodec.compresser(smile, seuilCompression);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte[] smile = bytes;
+        if (bytes[0] == RedisValueCodec.MARQUEUR_LZ4) {
+            smile = RedisValueCodec.decompresser(bytes, tailleMaxDecompressee);
+        } else if (bytes[0] != RedisValueCodec.EN_TETE_SMILE) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        try {
+            return smileMapper.readValue(smile, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Désérialisation Smile impossible : " + e.getMessage(), e);
+        }
+    }
+
+    private static ObjectMapper creerSmileMapper() {
+        ObjectMapper mapper = new SmileMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // Type de chaque valeur embarqué, comme le sérialiseur JSON générique, limité aux classes de
+        // l'application, aux collections du JDK et aux grands nombres
+        PolymorphicTypeValidator validator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.yowyob.erp.")
+                .allowIfSubType(TYPES_JDK_AUTORISES)
+                .allowIfSubType(BigDecimal.class)
+                .allowIfSubType(BigInteger.class)
+                .build();
+        mapper.setDefaultTyping(new TypageValeurs(validator)
+                .init(JsonTypeInfo.Id.CLASS, null)
+                .inclusion(JsonTypeInfo.As.PROPERTY));
+        return mapper;
+    }
+
+    /**
+     * Typage de GenericJackson2JsonRedisSerializer : toutes les valeurs sauf les types finaux du JDK
+     * (chaînes, nombres, UUID, dates) et les énumérations, qui se relisent sans information de type.
+     */
+    private static final class TypageValeurs extends ObjectMapper.DefaultTypeResolverBuilder {
+
+        TypageValeurs(PolymorphicTypeValidator validator) {
+            super(ObjectMapper.DefaultTyping.NON_FINAL, validator);
+        }
+
+        @Override
+        public boolean useForType(JavaType type) {
+            while (type.isArrayType() || type.isReferenceType()) {
+                type = type.isArrayType() ? type.getContentType() : type.getReferencedType();
+            }
+            if (type.isJavaLangObject()) {
+                return true;
+            }
+            if (type.isPrimitive() || type.isEnumType() || TreeNode.class.isAssignableFrom(type.getRawClass())) {
+                return false;
+            }
+            return !(type.isFinal() && type.getRawClass().getName().startsWith("java."));
+        }
+    }
+}
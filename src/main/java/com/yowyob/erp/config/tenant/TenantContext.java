@@ -1,37 +1,49 @@
 package com.yowyob.erp.config.tenant;
 
-import jakarta.validation.constraints.Size;
 import org.springframework.stereotype.Component;
 import java.util.UUID;
 /**
  * Contexte tenant pour isoler les données par tenant
- * Utilise ThreadLocal pour maintenir le tenantId par thread
+ * Utilise ThreadLocal pour maintenir le tenantId et l'utilisateur par thread ; les valeurs sont
+ * recopiées vers les tâches asynchrones, les threads virtuels et les chaînes Reactor par
+ * context-propagation (voir TenantContextPropagationConfig).
  */
 @Component
 public class TenantContext {
-    
+
+    // Clés sous lesquelles le tenant et l'utilisateur sont propagés (ContextRegistry, contexte Reactor)
+    public static final String TENANT_KEY = "yowyob.tenant";
+    public static final String USER_KEY = "yowyob.user";
+
     private static final ThreadLocal<UUID> currentTenant = new ThreadLocal<>();
-    
+    private static final ThreadLocal<String> currentUser = new ThreadLocal<>();
+
     public static void setCurrentTenant(UUID tenantId) {
         currentTenant.set(tenantId);
     }
-    
+
     public static UUID getCurrentTenant() {
         return currentTenant.get();
     }
-    
+
     public static void clear() {
         currentTenant.remove();
+        currentUser.remove();
     }
 
+    public static void clearTenant() {
+        currentTenant.remove();
+    }
 
-    public static @Size(max = 255, message = "Mis à jour par ne doit pas dépasser 255 caractères") String getCurrentUser() {
-        //Je devrais implementer
-        return null;
+    public static String getCurrentUser() {
+        return currentUser.get();
     }
+
     public static void setCurrentUser(String user) {
-        //Je devrais implementer
-        // Pour l'instant, on ne stocke pas l'utilisateur dans le contexte  
-        // mais on pourrait le faire si nécessaire
+        currentUser.set(user);
+    }
+
+    public static void clearUser() {
+        currentUser.remove();
     }
 }
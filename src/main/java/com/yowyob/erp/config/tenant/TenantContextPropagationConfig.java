@@ -0,0 +1,44 @@
+package com.yowyob.erp.config.tenant;
+
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.context.ContextSnapshotFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import reactor.core.publisher.Hooks;
+
+/**
+ * Propagation du TenantContext hors du thread de la requête :
+ * <ul>
+ *     <li>tâches soumises aux exécuteurs (pool ou threads virtuels) via un TaskDecorator ;</li>
+ *     <li>chaînes Reactor via la propagation automatique du contexte (le tenant suit les
+ *     changements de thread des opérateurs) ;</li>
+ *     <li>écoutes Kafka via TenantRecordInterceptor, le tenant étant lu dans l'enregistrement, et
+ *     TenantBatchInterceptor pour les lots d'un seul tenant, puis workers de TenantDispatcher, qui
+ *     positionnent le tenant de la file traitée.</li>
+ * </ul>
+ */
+@Configuration
+@Slf4j
+public class TenantContextPropagationConfig {
+
+    static {
+        ContextRegistry registry = ContextRegistry.getInstance();
+        registry.registerThreadLocalAccessor(TenantContext.TENANT_KEY,
+                TenantContext::getCurrentTenant, TenantContext::setCurrentTenant, TenantContext::clearTenant);
+        registry.registerThreadLocalAccessor(TenantContext.USER_KEY,
+                TenantContext::getCurrentUser, TenantContext::setCurrentUser, TenantContext::clearUser);
+        Hooks.enableAutomaticContextPropagation();
+        log.info("Propagation du contexte tenant activée (exécuteurs, Reactor)");
+    }
+
+    @Bean
+    public TaskDecorator tenantContextTaskDecorator() {
+        return new ContextPropagatingTaskDecorator(ContextSnapshotFactory.builder()
+                .contextRegistry(ContextRegistry.getInstance())
+                .clearMissing(true)
+                .build());
+    }
+}
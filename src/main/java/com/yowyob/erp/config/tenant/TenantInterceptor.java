@@ -7,14 +7,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import java.security.Principal;
 import java.util.UUID;
 
 // Intercepteur pour extraire le tenantId des requêtes
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class TenantInterceptor implements HandlerInterceptor {
+public class TenantInterceptor implements AsyncHandlerInterceptor {
 
     @Value("${app.tenant.header-name:X-Tenant-ID}")
     private String tenantHeaderName;
@@ -28,10 +29,20 @@ public class TenantInterceptor implements HandlerInterceptor {
                            @NonNull Object handler) {
         UUID tenantId = extractTenantId(request);
         TenantContext.setCurrentTenant(tenantId);
+        Principal principal = request.getUserPrincipal();
+        TenantContext.setCurrentUser(principal != null ? principal.getName() : null);
         log.debug("Tenant défini: {}", tenantId);
         return true;
     }
 
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request,
+                                               @NonNull HttpServletResponse response,
+                                               @NonNull Object handler) {
+        // Réponse asynchrone (flux) : afterCompletion n'est pas appelé sur ce thread, qui retourne au pool
+        TenantContext.clear();
+    }
+
     @Override
     public void afterCompletion(@NonNull HttpServletRequest request, 
                               @NonNull HttpServletResponse response, 
@@ -1,16 +1,18 @@
 package com.yowyob.erp.config.tenant;
 
+import com.yowyob.erp.config.etag.EtagReferentielInterceptor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-// Configuration Web pour enregistrer l'intercepteur
+// Configuration Web pour enregistrer les intercepteurs
 @Configuration
 @RequiredArgsConstructor
 public class TenantWebConfig implements WebMvcConfigurer {
 
     private final TenantInterceptor tenantInterceptor;
+    private final EtagReferentielInterceptor etagReferentielInterceptor;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
@@ -22,5 +24,8 @@ public class TenantWebConfig implements WebMvcConfigurer {
                     "/swagger-ui/**",
                     "/api-docs/**"
                 );
+        // Après l'intercepteur tenant : l'ETag dépend du tenant courant
+        registry.addInterceptor(etagReferentielInterceptor)
+                .addPathPatterns("/api/accounting/**");
     }
 }
@@ -0,0 +1,67 @@
+package com.yowyob.erp.accounting.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FactureComptableTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    private final Map<String, UUID> comptes = new HashMap<>();
+    private final Function<String, UUID> resolveur = no -> comptes.computeIfAbsent(no, n -> UUID.randomUUID());
+
+    private static FactureComptable facture(double montantHT, boolean achat) {
+        return new FactureComptable(UUID.randomUUID(), montantHT, LocalDate.of(2025, 3, 14), "Facture",
+                UUID.randomUUID(), UUID.randomUUID(), achat);
+    }
+
+    private static double debit(List<DetailEcriture> lignes) {
+        return lignes.stream().mapToDouble(DetailEcriture::getMontantDebit).sum();
+    }
+
+    private static double credit(List<DetailEcriture> lignes) {
+        return lignes.stream().mapToDouble(DetailEcriture::getMontantCredit).sum();
+    }
+
+    @Test
+    void montantsArrondisALaDeviseSansDecimales() {
+        FactureComptable vente = facture(1001.0, false);
+
+        List<DetailEcriture> lignes = vente.generateEcritureDetails(TENANT, UUID.randomUUID(), resolveur);
+
+        // TVA 180,18 arrondie à 180 ; TTC = HT + TVA
+        assertThat(lignes).extracting(DetailEcriture::getMontantCredit).containsExactly(0.0, 1001.0, 180.0);
+        assertThat(lignes.get(0).getMontantDebit()).isEqualTo(1181.0);
+        assertThat(vente.getMontant()).isEqualTo(1181.0);
+    }
+
+    @Test
+    void ecritureEquilibreeALEchelleDeLaDevise() {
+        FactureComptable achat = facture(0.07, true);
+        achat.setParametres(new ParametresFacture("601000", "701000", "445620", "445710", "401000", "411000", 2));
+
+        List<DetailEcriture> lignes = achat.generateEcritureDetails(TENANT, UUID.randomUUID(), resolveur);
+
+        // 0,07 × 0,18 = 0,0126 → 0,01 ; sans arrondi, 0,07 + 0,0126 ≠ 0,0826 en double
+        assertThat(lignes).extracting(DetailEcriture::getMontantDebit).containsExactly(0.07, 0.01, 0.0);
+        assertThat(debit(lignes)).isEqualTo(credit(lignes)).isEqualTo(0.08);
+    }
+
+    @Test
+    void comptesDeControleLusDansLesParametres() {
+        FactureComptable vente = facture(500.0, false);
+        vente.setParametres(new ParametresFacture("6011", "7011", "4452", "4431", "4011", "4111", 0));
+
+        vente.generateEcritureDetails(TENANT, UUID.randomUUID(), resolveur);
+
+        assertThat(comptes).containsOnlyKeys("4111", "7011", "4431");
+    }
+}
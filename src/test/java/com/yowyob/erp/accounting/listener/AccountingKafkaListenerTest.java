@@ -0,0 +1,92 @@
+package com.yowyob.erp.accounting.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.service.EcritureComptableService;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.KafkaMessage;
+import com.yowyob.erp.config.kafka.KafkaRetryService;
+import com.yowyob.erp.config.kafka.TenantDispatcher;
+import com.yowyob.erp.config.kafka.TenantRecordInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AccountingKafkaListenerTest {
+
+    @Mock
+    private EcritureComptableService ecritureComptableService;
+    @Mock
+    private TenantRecordInterceptor tenantRecordInterceptor;
+    @Mock
+    private KafkaRetryService kafkaRetryService;
+    @Mock
+    private TenantDispatcher tenantDispatcher;
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private AccountingKafkaListener listener;
+    private final UUID tenantId = UUID.randomUUID();
+    private ConsumerRecord<String, KafkaMessage> record;
+
+    @BeforeEach
+    void setUp() {
+        listener = new AccountingKafkaListener(ecritureComptableService, tenantRecordInterceptor,
+                kafkaRetryService, tenantDispatcher, new ObjectMapper());
+        record = new ConsumerRecord<>("accounting.entries", 0, 42L, "cle", KafkaMessage.builder()
+                .tenantId(tenantId.toString())
+                .eventType(AppConstants.KafkaEvents.ECRITURE_POSTED)
+                .build());
+    }
+
+    @Test
+    void evenementTraiteEstAcquitte() {
+        when(tenantDispatcher.soumettre(eq(tenantId), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        listener.handleAccountingEvents(record, acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verify(kafkaRetryService, never()).rejeter(any(), any());
+    }
+
+    @Test
+    void evenementEnEchecEstRejetePuisAcquitte() {
+        StackOverflowError erreur = new StackOverflowError();
+        when(tenantDispatcher.soumettre(eq(tenantId), anyLong(), any())).thenReturn(CompletableFuture.failedFuture(erreur));
+
+        listener.handleAccountingEvents(record, acknowledgment);
+
+        verify(kafkaRetryService).rejeter(record, erreur);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void evenementNonRejeteResteNonAcquitte() {
+        when(tenantDispatcher.soumettre(eq(tenantId), anyLong(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("broker indisponible")));
+        doThrow(new KafkaException("broker indisponible")).when(kafkaRetryService).rejeter(any(), any());
+
+        listener.handleAccountingEvents(record, acknowledgment);
+
+        verify(acknowledgment, never()).acknowledge();
+    }
+}
@@ -0,0 +1,64 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.entity.Compte;
+import com.yowyob.erp.accounting.entityKey.CompteKey;
+import com.yowyob.erp.accounting.repository.CompteRepository;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@SuppressWarnings("unchecked")
+class CompteServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    @Mock CompteRepository compteRepository;
+    @Mock RedisTemplate<String, Object> redisTemplate;
+    @Mock RedisCacheLoader cacheLoader;
+
+    @InjectMocks CompteService service;
+
+    @Test
+    void renumerotationInvalideAussiLAncienNumero() {
+        CompteKey key = new CompteKey();
+        key.setTenantId(TENANT);
+        key.setId(UUID.randomUUID());
+        Compte existant = new Compte();
+        existant.setKey(key);
+        existant.setNoCompte("411000");
+        Compte modifie = new Compte();
+        modifie.setKey(key);
+        modifie.setNoCompte("411100");
+        when(compteRepository.findByKey(key)).thenReturn(Optional.of(existant));
+        when(compteRepository.save(any(Compte.class))).thenAnswer(i -> i.getArgument(0));
+
+        service.updateCompte(modifie);
+
+        ArgumentCaptor<Collection<String>> keys = ArgumentCaptor.forClass(Collection.class);
+        verify(redisTemplate).delete(keys.capture());
+        assertThat(keys.getValue()).containsExactlyInAnyOrder(
+                "compte:entite:" + TENANT + ":" + key.getId(),
+                "compte:nocompte:" + TENANT + ":411100",
+                "compte:nocompte:" + TENANT + ":411000");
+        verify(cacheLoader).invalider(List.of("compte:all:" + TENANT));
+    }
+}
@@ -0,0 +1,100 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
+import com.yowyob.erp.config.kafka.OutboxService;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.cassandra.core.CassandraBatchOperations;
+import org.springframework.data.cassandra.core.CassandraOperations;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EcritureAggregateWriterTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    @Mock CassandraOperations cassandraOperations;
+    @Mock PlanComptableIndex planComptableIndex;
+    @Mock Validator validator;
+    @Mock OutboxService outboxService;
+
+    private EcritureAggregateWriter writer;
+    private CassandraBatchOperations batch;
+
+    @BeforeEach
+    void setUp() {
+        writer = new EcritureAggregateWriter(cassandraOperations, planComptableIndex, validator, outboxService, false);
+        batch = mock(CassandraBatchOperations.class, RETURNS_SELF);
+        when(cassandraOperations.batchOps(any())).thenReturn(batch);
+    }
+
+    @Test
+    void ecritureValideeUneFoisPuisEcriteSansNouveauControle() {
+        EcritureComptable ecriture = ecriture();
+        List<DetailEcriture> lignes = List.of(ligne("DEBIT", 100.0, 0.0), ligne("CREDIT", 0.0, 100.0));
+
+        writer.validate(ecriture, lignes);
+        writer.write(ecriture, lignes, "comptable", "CREATE", "Created ecriture");
+
+        // Chaque ligne n'est contrôlée (validateur, compte actif) qu'une seule fois par écriture
+        verify(validator, times(2)).validate(any());
+        verify(planComptableIndex, times(2)).requireActiveAccount(any(), any());
+        verify(batch).execute();
+    }
+
+    @Test
+    void ecritureDesequilibreeRefuseeSansEcriture() {
+        EcritureComptable ecriture = ecriture();
+        List<DetailEcriture> lignes = List.of(ligne("DEBIT", 100.0, 0.0), ligne("CREDIT", 0.0, 90.0));
+
+        assertThatThrownBy(() -> writer.validate(ecriture, lignes)).isInstanceOf(IllegalStateException.class);
+        verify(cassandraOperations, never()).batchOps(any());
+    }
+
+    private static EcritureComptable ecriture() {
+        EcritureComptable ecriture = new EcritureComptable();
+        EcritureComptableKey key = new EcritureComptableKey();
+        key.setTenantId(TENANT);
+        key.setId(UUID.randomUUID());
+        ecriture.setKey(key);
+        ecriture.setJournalComptableId(UUID.randomUUID());
+        ecriture.setPeriodeComptableId(UUID.randomUUID());
+        ecriture.setDateEcriture(LocalDate.of(2025, 3, 14));
+        ecriture.setLibelle("Vente");
+        ecriture.setNumeroEcriture("VT-2025-03-000001");
+        ecriture.setMontantTotalDebit(100.0);
+        ecriture.setMontantTotalCredit(100.0);
+        ecriture.setValidee(false);
+        return ecriture;
+    }
+
+    private static DetailEcriture ligne(String sens, double debit, double credit) {
+        DetailEcriture detail = new DetailEcriture();
+        detail.setCompteComptableId(UUID.randomUUID());
+        detail.setSens(sens);
+        detail.setMontantDebit(debit);
+        detail.setMontantCredit(credit);
+        return detail;
+    }
+}
@@ -0,0 +1,115 @@
+package com.yowyob.erp.accounting.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import com.yowyob.erp.config.redis.RedisCodecs;
+import com.yowyob.erp.config.redis.RedisFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EcritureComptableCacheTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock RedisCacheLoader cacheLoader;
+    @Mock RedisConnection connection;
+    @Mock RedisScriptingCommands scripting;
+
+    private EcritureComptableCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new EcritureComptableCache(redisTemplate,
+                new RedisCodecs(new ObjectMapper().findAndRegisterModules(), RedisFormat.JSON, Map.of(), 1024, 1 << 20), cacheLoader);
+        when(connection.scriptingCommands()).thenReturn(scripting);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(i -> {
+            i.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+    }
+
+    @Test
+    void ecritureReluesNeRemplaceQuUneVersionPlusAncienne() {
+        LocalDateTime modification = LocalDateTime.of(2025, 3, 14, 10, 0);
+        EcritureComptableDto ecriture = EcritureComptableDto.builder().id(UUID.randomUUID())
+                .dateEcriture(LocalDate.of(2025, 3, 14)).validee(false).updatedAt(modification).build();
+
+        cache.completer(TENANT, List.of(ecriture));
+        byte[][] relue = appel();
+        cache.upsert(TENANT, List.of(ecriture));
+        byte[][] directe = appel();
+
+        // KEYS : entrée, index, non validées, version ; ARGV : json, ttl, membre, validée, version, conditionnel
+        assertThat(texte(relue[3])).isEqualTo("ecriture-version:" + TENANT + ":" + ecriture.getId());
+        assertThat(texte(relue[8])).isEqualTo(Long.toString(modification.toInstant(ZoneOffset.UTC).toEpochMilli()));
+        assertThat(texte(relue[9])).isEqualTo("1");
+        assertThat(texte(directe[9])).isEqualTo("0");
+    }
+
+    @Test
+    void suppressionLaisseUnePierreTombale() {
+        UUID id = UUID.randomUUID();
+
+        cache.remove(TENANT, id, LocalDate.of(2025, 3, 14));
+
+        byte[][] appel = appel();
+        assertThat(texte(appel[3])).isEqualTo("ecriture-version:" + TENANT + ":" + id);
+        assertThat(texte(appel[4])).isEqualTo("2025-03-14|" + id);
+    }
+
+    @Test
+    void curseurRedisPorteSaPosition() {
+        UUID id = UUID.randomUUID();
+        String curseur = EcritureComptableCache.curseur(LocalDate.of(2025, 3, 14), id);
+
+        assertThat(EcritureComptableCache.isCurseurCache(curseur)).isTrue();
+        assertThat(EcritureComptableCache.position(curseur))
+                .isEqualTo(new EcritureComptableCache.Position(LocalDate.of(2025, 3, 14), id));
+        assertThatThrownBy(() -> EcritureComptableCache.position("r.bm9uLXZhbGlkZQ"))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    private byte[][] appel() {
+        ArgumentCaptor<byte[][]> arguments = ArgumentCaptor.forClass(byte[][].class);
+        verify(scripting).evalSha(anyString(), eq(ReturnType.INTEGER), eq(4), arguments.capture());
+        clearInvocations(scripting);
+        return arguments.getValue();
+    }
+
+    private static String texte(byte[] octets) {
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+}
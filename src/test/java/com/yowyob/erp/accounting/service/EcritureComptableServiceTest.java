@@ -0,0 +1,374 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.WriteType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.DetailEcritureDto;
+import com.yowyob.erp.accounting.dto.EcritureBatchResultDto;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.accounting.dto.JournalComptableDto;
+import com.yowyob.erp.accounting.dto.PeriodeComptableDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entity.EcritureNonValidee;
+import com.yowyob.erp.accounting.entity.EcritureParJournal;
+import com.yowyob.erp.accounting.entity.FactureComptable;
+import com.yowyob.erp.accounting.entity.ParametresFacture;
+import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
+import com.yowyob.erp.accounting.repository.EcritureComptableRepository;
+import com.yowyob.erp.accounting.repository.EcritureNonValideeRepository;
+import com.yowyob.erp.accounting.repository.EcritureParJournalRepository;
+import com.yowyob.erp.accounting.repository.OperationComptableRepository;
+import com.yowyob.erp.accounting.repository.TransactionRepository;
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.common.enums.SourceType;
+import com.yowyob.erp.config.kafka.OutboxService;
+import com.yowyob.erp.config.redis.RedisService;
+import com.yowyob.erp.config.tenant.TenantContext;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.cassandra.CassandraWriteTimeoutException;
+import org.springframework.data.cassandra.core.CassandraBatchOperations;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.EntityWriteResult;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@SuppressWarnings("unchecked")
+class EcritureComptableServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID JOURNAL = UUID.randomUUID();
+    private static final UUID PERIODE = UUID.randomUUID();
+
+    @Mock EcritureComptableRepository ecritureRepository;
+    @Mock EcritureNonValideeRepository ecritureNonValideeRepository;
+    @Mock EcritureParJournalRepository ecritureParJournalRepository;
+    @Mock OperationComptableRepository operationComptableRepository;
+    @Mock TransactionRepository transactionRepository;
+    @Mock DetailEcritureService detailEcritureService;
+    @Mock PlanComptableIndex planComptableIndex;
+    @Mock JournalComptableService journalComptableService;
+    @Mock PeriodeComptableService periodeComptableService;
+    @Mock Validator validator;
+    @Mock OutboxService outboxService;
+    @Mock CassandraOperations cassandraOperations;
+    @Mock EcritureAggregateWriter ecritureAggregateWriter;
+    @Mock NumerotationEcritureService numerotationEcritureService;
+    @Mock EcritureSourceService ecritureSourceService;
+    @Mock ProjectionEcritureService projectionEcritureService;
+    @Mock EcritureComptableCache ecritureComptableCache;
+    @Mock EcritureSearchCache ecritureSearchCache;
+    @Mock RedisService redisService;
+
+    private final Executor executeurDirect = Runnable::run;
+    private EcritureComptableService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new EcritureComptableService(ecritureRepository, ecritureNonValideeRepository,
+                ecritureParJournalRepository, operationComptableRepository, transactionRepository,
+                detailEcritureService, planComptableIndex, journalComptableService, periodeComptableService, validator,
+                outboxService, cassandraOperations, new ObjectMapper(), ecritureAggregateWriter, numerotationEcritureService,
+                ecritureSourceService, ParametresFacture.PAR_DEFAUT, projectionEcritureService, ecritureComptableCache, ecritureSearchCache,
+                executeurDirect, redisService);
+        TenantContext.setCurrentTenant(TENANT);
+        TenantContext.setCurrentUser("comptable");
+        when(journalComptableService.getActiveJournalComptable(JOURNAL)).thenReturn(Optional.of(
+                JournalComptableDto.builder().id(JOURNAL).codeJournal("VT").actif(true).build()));
+        when(periodeComptableService.getPeriodeComptable(PERIODE)).thenReturn(Optional.of(
+                PeriodeComptableDto.builder().id(PERIODE).code("2025-03").cloturee(false).build()));
+        when(numerotationEcritureService.nextNumber(TENANT, JOURNAL, PERIODE)).thenReturn(1L, 2L, 3L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void lotEcritChaqueEcritureAvecSesLignesDansUnSeulBatch() {
+        CassandraBatchOperations batch = batchOps();
+
+        EcritureBatchResultDto resultat = service.createEcrituresBatch(List.of(ecriture(100.0), ecriture(250.0)));
+
+        assertThat(resultat.getSucceeded()).isEqualTo(2);
+        // Un batch par écriture : en-tête, entrée d'index, lignes et événement ensemble
+        verify(cassandraOperations, times(2)).batchOps(any());
+        verify(batch, times(2)).insert(any(EcritureComptable.class));
+        verify(batch, times(6)).insert(anyList());
+        verify(batch, times(2)).execute();
+    }
+
+    @Test
+    void echecDUneEcritureNeRendQueSonNumero() {
+        CassandraBatchOperations batch = batchOps();
+        when(batch.execute()).thenReturn(null).thenThrow(new IllegalStateException("Cassandra indisponible"));
+
+        EcritureBatchResultDto resultat = service.createEcrituresBatch(List.of(ecriture(100.0), ecriture(250.0)));
+
+        assertThat(resultat.getSucceeded()).isEqualTo(1);
+        assertThat(resultat.getResults().get(0).isSuccess()).isTrue();
+        assertThat(resultat.getResults().get(1).isSuccess()).isFalse();
+        verify(numerotationEcritureService, never()).release(TENANT, JOURNAL, PERIODE, 1L);
+        verify(numerotationEcritureService).release(eq(TENANT), eq(JOURNAL), eq(PERIODE), eq(2L));
+    }
+
+    @Test
+    void delaiDepasseNeRendPasLeNumero() {
+        CassandraBatchOperations batch = batchOps();
+        CassandraWriteTimeoutException delai = new CassandraWriteTimeoutException("BATCH", "Write timeout", null);
+        when(batch.execute()).thenThrow(delai);
+
+        EcritureBatchResultDto resultat = service.createEcrituresBatch(List.of(ecriture(100.0)));
+
+        assertThat(resultat.getSucceeded()).isZero();
+        verify(numerotationEcritureService, never()).release(any(), any(), any(), anyLong());
+        verify(numerotationEcritureService).signalerNumeroIncertain(TENANT, JOURNAL, PERIODE, 1L, delai);
+    }
+
+    @Test
+    void ecritureUnitaireNeRendSonNumeroQueSiLEcritureAEchoue() {
+        when(ecritureAggregateWriter.write(any(), anyList(), any(), any(), any()))
+                .thenThrow(new QueryTimeoutException("Délai dépassé"))
+                .thenThrow(new IllegalStateException("Ecriture comptable unbalanced"));
+
+        assertThatThrownBy(() -> service.createEcriture(ecriture(100.0))).isInstanceOf(QueryTimeoutException.class);
+        assertThatThrownBy(() -> service.createEcriture(ecriture(100.0))).isInstanceOf(IllegalStateException.class);
+
+        verify(numerotationEcritureService).signalerNumeroIncertain(eq(TENANT), eq(JOURNAL), eq(PERIODE), eq(1L), any());
+        verify(numerotationEcritureService, never()).release(TENANT, JOURNAL, PERIODE, 1L);
+        verify(numerotationEcritureService).release(TENANT, JOURNAL, PERIODE, 2L);
+    }
+
+    @Test
+    void issueIncertaineSuitLaChaineDesCauses() {
+        assertThat(EcritureAggregateWriter.issueIncertaine(
+                new IllegalStateException("enveloppe", new QueryTimeoutException("délai")))).isTrue();
+        assertThat(EcritureAggregateWriter.issueIncertaine(new IllegalStateException("rejet"))).isFalse();
+    }
+
+    @Test
+    void suppressionLibereLaSourceDansLeMemeBatch() {
+        CassandraBatchOperations batch = batchOps();
+        BoundStatement liberation = mock(BoundStatement.class);
+        EcritureComptable ecriture = ecritureEnregistree(false);
+        ecriture.setSourceType(SourceType.FACTURE);
+        ecriture.setSourceId(UUID.randomUUID());
+        when(ecritureRepository.findByKeyTenantIdAndKeyId(TENANT, ecriture.getKey().getId())).thenReturn(Optional.of(ecriture));
+        when(ecritureSourceService.suppression(TENANT, SourceType.FACTURE, ecriture.getSourceId())).thenReturn(liberation);
+
+        service.deleteEcriture(ecriture.getKey().getId());
+
+        verify(batch).delete(ecriture);
+        verify(batch).delete(any(EcritureNonValidee.class));
+        verify(batch).addStatement(liberation);
+        verify(batch).execute();
+        verify(ecritureRepository, never()).delete(any());
+    }
+
+    @Test
+    void validationNeReporteLEcritureQueSiLeBasculementAReussi() {
+        EcritureComptable ecriture = ecritureEnregistree(false);
+        UUID id = ecriture.getKey().getId();
+        when(ecritureRepository.findByKeyTenantIdAndKeyId(TENANT, id)).thenReturn(Optional.of(ecriture));
+        when(detailEcritureService.findByKeyTenantIdAndKeyEcritureComptableId(TENANT, id)).thenReturn(List.of());
+        EntityWriteResult<EcritureComptable> appliquee = mock(EntityWriteResult.class);
+        EntityWriteResult<EcritureComptable> refusee = mock(EntityWriteResult.class);
+        when(appliquee.wasApplied()).thenReturn(true);
+        when(refusee.wasApplied()).thenReturn(false);
+        when(cassandraOperations.update(any(EcritureComptable.class), any(UpdateOptions.class)))
+                .thenReturn(appliquee, refusee);
+
+        service.validateEcriture(id, "comptable");
+        // Relecture concurrente : l'écriture paraissait encore non validée
+        ecriture.setValidee(false);
+        assertThatThrownBy(() -> service.validateEcriture(id, "comptable")).isInstanceOf(IllegalStateException.class);
+
+        verify(projectionEcritureService, times(1)).reporter(eq(TENANT), any(), anyList());
+        verify(ecritureNonValideeRepository, times(1)).delete(any(EcritureNonValidee.class));
+        assertThat(ecriture.getSoldesAppliques()).isFalse();
+        verify(ecritureRepository, never()).save(any());
+    }
+
+    @Test
+    void ecrituresNonValideesLuesDepuisLIndexSansFiltrage() {
+        EcritureComptable nonValidee = ecritureEnregistree(false);
+        EcritureComptable valideeDepuis = ecritureEnregistree(true);
+        EcritureComptable supprimee = ecritureEnregistree(false);
+        when(ecritureComptableCache.etatIndex(TENANT)).thenReturn(EcritureComptableCache.EtatIndex.ABSENT);
+        when(ecritureNonValideeRepository.findSliceByTenantIdOrderByDateDesc(eq(TENANT), any())).thenReturn(new SliceImpl<>(List.of(
+                EcritureNonValidee.of(nonValidee), EcritureNonValidee.of(valideeDepuis), EcritureNonValidee.of(supprimee))));
+        when(ecritureRepository.findByKeyTenantIdAndKeyIdIn(eq(TENANT), anyList())).thenReturn(List.of(valideeDepuis, nonValidee));
+
+        CursorPage<EcritureComptableDto> page = service.getNonValidatedEcritures(null, 50, false);
+
+        assertThat(page.getContent()).extracting(EcritureComptableDto::getId).containsExactly(nonValidee.getKey().getId());
+        assertThat(page.isHasNext()).isFalse();
+        // L'entrée restée après une validation est retirée, celle d'une écriture absente est ignorée
+        verify(ecritureNonValideeRepository).delete(EcritureNonValidee.of(valideeDepuis));
+        verify(ecritureNonValideeRepository, times(1)).delete(any(EcritureNonValidee.class));
+    }
+
+    @Test
+    void curseurRedisRepriseDansCassandraQuandLIndexNeSertPlus() {
+        EcritureComptable premiere = ecritureEnregistree(false);
+        EcritureComptable seconde = ecritureEnregistree(false);
+        EcritureComptable troisieme = ecritureEnregistree(false);
+        UUID derniereServie = UUID.randomUUID();
+        when(ecritureComptableCache.etatIndex(TENANT)).thenReturn(EcritureComptableCache.EtatIndex.ABSENT);
+        when(ecritureRepository.findSliceByTenantIdBeforeOrderByDateDesc(eq(TENANT), eq(LocalDate.of(2025, 3, 20)),
+                eq(derniereServie), any())).thenReturn(new SliceImpl<>(List.of(premiere, seconde, troisieme)));
+
+        CursorPage<EcritureComptableDto> page = service.getAllEcritures(
+                EcritureComptableCache.curseur(LocalDate.of(2025, 3, 20), derniereServie), 2, false);
+
+        assertThat(page.getContent()).extracting(EcritureComptableDto::getId)
+                .containsExactly(premiere.getKey().getId(), seconde.getKey().getId());
+        // La suite repart de la dernière écriture servie, que l'index soit revenu ou non
+        assertThat(page.getNextCursor()).isEqualTo(EcritureComptableCache.curseur(seconde.getDateEcriture(), seconde.getKey().getId()));
+    }
+
+    @Test
+    void rechercheParJournalPasseParLIndexDuJournal() {
+        EcritureComptable premiere = ecritureEnregistree(true);
+        EcritureComptable seconde = ecritureEnregistree(false);
+        when(ecritureSearchCache.search(eq(TENANT), eq(JOURNAL), any(), any(), any()))
+                .thenAnswer(i -> i.<BiFunction<LocalDate, LocalDate, List<EcritureComptableDto>>>getArgument(4)
+                        .apply(i.getArgument(2), i.getArgument(3)));
+        when(ecritureParJournalRepository.findByTenantIdAndJournalIdAndDateRange(TENANT, JOURNAL,
+                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)))
+                .thenReturn(List.of(EcritureParJournal.of(premiere), EcritureParJournal.of(seconde)));
+        when(ecritureRepository.findByKeyTenantIdAndKeyIdIn(eq(TENANT), anyList())).thenReturn(List.of(seconde, premiere));
+
+        List<EcritureComptableDto> resultat = service.searchEcritures(LocalDate.of(2025, 3, 1).atStartOfDay(),
+                LocalDate.of(2025, 3, 31).atStartOfDay(), JOURNAL);
+
+        assertThat(resultat).extracting(EcritureComptableDto::getId)
+                .containsExactly(premiere.getKey().getId(), seconde.getKey().getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void factureDontLaReservationAbandonneeEstRepriseEstComptabilisee() {
+        batchOps();
+        UUID clients = UUID.randomUUID();
+        when(periodeComptableService.getPeriodeByDate(any())).thenReturn(Optional.of(
+                PeriodeComptableDto.builder().id(PERIODE).code("2025-03").cloturee(false).build()));
+        when(planComptableIndex.findByNoCompte(eq(TENANT), anyString())).thenAnswer(inv -> "411000".equals(inv.getArgument(1))
+                ? Optional.empty()
+                : Optional.of(PlanComptableDto.builder().id(UUID.randomUUID()).noCompte(inv.getArgument(1)).actif(true).build()));
+        when(planComptableIndex.findByPrefix(TENANT, "411")).thenReturn(List.of(
+                PlanComptableDto.builder().id(UUID.randomUUID()).noCompte("411200").actif(true).build(),
+                PlanComptableDto.builder().id(clients).noCompte("411100").actif(true).build()));
+        EcritureSourceService.Reservation abandonnee =
+                new EcritureSourceService.Reservation(UUID.randomUUID(), Instant.now().minus(Duration.ofHours(1)));
+        when(ecritureSourceService.claim(eq(TENANT), eq(SourceType.FACTURE), any(), any())).thenReturn(Optional.of(abandonnee));
+        when(ecritureRepository.findByKeyTenantIdAndKeyId(TENANT, abandonnee.ecritureId())).thenReturn(Optional.empty());
+        when(ecritureSourceService.reprendre(eq(TENANT), eq(SourceType.FACTURE), any(), eq(abandonnee), any())).thenReturn(true);
+
+        EcritureBatchResultDto resultat = service.generateFromComptableObjects(List.of(new FactureComptable(
+                UUID.randomUUID(), 1000.0, LocalDate.of(2025, 3, 14), "Facture", JOURNAL, UUID.randomUUID(), false)));
+
+        assertThat(resultat.getSucceeded()).isEqualTo(1);
+        // Compte client absent du plan : premier compte actif de la racine 411
+        ArgumentCaptor<List<DetailEcriture>> lignes = ArgumentCaptor.forClass(List.class);
+        verify(ecritureAggregateWriter).validate(any(), lignes.capture());
+        assertThat(lignes.getValue().get(0).getCompteComptableId()).isEqualTo(clients);
+    }
+
+    @Test
+    void delaiDepasseConserveLaReservationDeLaSource() {
+        when(periodeComptableService.getPeriodeByDate(any())).thenReturn(Optional.of(
+                PeriodeComptableDto.builder().id(PERIODE).code("2025-03").cloturee(false).build()));
+        when(planComptableIndex.findByNoCompte(eq(TENANT), anyString())).thenAnswer(inv -> Optional.of(
+                PlanComptableDto.builder().id(UUID.randomUUID()).noCompte(inv.getArgument(1)).actif(true).build()));
+        when(ecritureSourceService.claim(eq(TENANT), eq(SourceType.FACTURE), any(), any())).thenReturn(Optional.empty());
+        when(ecritureAggregateWriter.write(any(), anyList(), any(), any(), any()))
+                .thenThrow(new WriteTimeoutException(null, DefaultConsistencyLevel.QUORUM, 1, 2, WriteType.BATCH))
+                .thenThrow(new IllegalStateException("Ecriture comptable unbalanced"));
+        FactureComptable facture = new FactureComptable(
+                UUID.randomUUID(), 1000.0, LocalDate.of(2025, 3, 14), "Facture", JOURNAL, UUID.randomUUID(), false);
+
+        // Le batch LOGGED a pu être rejoué : la source reste réservée pour ne pas créer de doublon
+        assertThatThrownBy(() -> service.generateFromComptableObject(facture)).isInstanceOf(WriteTimeoutException.class);
+        verify(ecritureSourceService, never()).release(any(), any(), any(), any());
+
+        // Échec certain : la réservation est libérée
+        assertThatThrownBy(() -> service.generateFromComptableObject(facture)).isInstanceOf(IllegalStateException.class);
+        verify(ecritureSourceService).release(eq(TENANT), eq(SourceType.FACTURE), eq(facture.getId()), any());
+    }
+
+    private CassandraBatchOperations batchOps() {
+        CassandraBatchOperations batch = mock(CassandraBatchOperations.class, RETURNS_SELF);
+        when(cassandraOperations.batchOps(any())).thenReturn(batch);
+        return batch;
+    }
+
+    private static EcritureComptable ecritureEnregistree(boolean validee) {
+        EcritureComptable ecriture = new EcritureComptable();
+        EcritureComptableKey key = new EcritureComptableKey();
+        key.setTenantId(TENANT);
+        key.setId(UUID.randomUUID());
+        ecriture.setKey(key);
+        ecriture.setJournalComptableId(JOURNAL);
+        ecriture.setPeriodeComptableId(PERIODE);
+        ecriture.setDateEcriture(LocalDate.of(2025, 3, 14));
+        ecriture.setLibelle("Vente");
+        ecriture.setMontantTotalDebit(100.0);
+        ecriture.setMontantTotalCredit(100.0);
+        ecriture.setValidee(validee);
+        return ecriture;
+    }
+
+    private static EcritureComptableDto ecriture(double montant) {
+        return EcritureComptableDto.builder()
+                .libelle("Vente")
+                .dateEcriture(LocalDate.of(2025, 3, 14))
+                .journalComptableId(JOURNAL)
+                .periodeComptableId(PERIODE)
+                .montantTotalDebit(montant)
+                .montantTotalCredit(montant)
+                .detailsEcriture(List.of(
+                        DetailEcritureDto.builder().compteComptableId(UUID.randomUUID()).sens("DEBIT").montantDebit(montant).build(),
+                        DetailEcritureDto.builder().compteComptableId(UUID.randomUUID()).sens("CREDIT").montantCredit(montant).build()))
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.yowyob.erp.accounting.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.common.exception.BusinessException;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import com.yowyob.erp.config.redis.RedisCodecs;
+import com.yowyob.erp.config.redis.RedisFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@SuppressWarnings("unchecked")
+class EcritureSearchCacheTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock ValueOperations<String, String> valeurs;
+    @Mock RedisCacheLoader cacheLoader;
+    @Mock RedisConnection connection;
+    @Mock RedisScriptingCommands scripting;
+
+    private RedisCodecs codecs;
+    private EcritureSearchCache cache;
+
+    @BeforeEach
+    void setUp() {
+        codecs = new RedisCodecs(new ObjectMapper().findAndRegisterModules(), RedisFormat.JSON,
+                Map.of(EcritureSearchCache.CACHE, RedisFormat.SMILE_LZ4), 0, 1 << 20);
+        cache = new EcritureSearchCache(redisTemplate, codecs, cacheLoader, 40);
+        when(redisTemplate.opsForValue()).thenReturn(valeurs);
+        when(connection.scriptingCommands()).thenReturn(scripting);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(i -> i.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        // Aucun segment en cache ; le chargement coalescé est exécuté directement
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class))).thenAnswer(i -> {
+            List<Object> absents = new ArrayList<>();
+            for (int n = 0; n < 200; n++) {
+                absents.add(null);
+            }
+            return absents;
+        });
+        when(cacheLoader.coalesce(anyString(), any(Supplier.class), any(Supplier.class)))
+                .thenAnswer(i -> i.<Supplier<?>>getArgument(2).get());
+    }
+
+    @Test
+    void segmentsEcritsSeulementSiLaGenerationNAPasChange() {
+        when(valeurs.get("ecritures:search-generation:" + TENANT)).thenReturn("7");
+        EcritureComptableDto ecriture = EcritureComptableDto.builder().id(UUID.randomUUID())
+                .dateEcriture(LocalDate.of(2025, 3, 14)).build();
+
+        List<EcritureComptableDto> resultat = cache.search(TENANT, null, LocalDate.of(2025, 3, 1),
+                LocalDate.of(2025, 3, 31), (debut, fin) -> List.of(ecriture));
+
+        assertThat(resultat).containsExactly(ecriture);
+        ArgumentCaptor<byte[][]> keysEtArgs = ArgumentCaptor.forClass(byte[][].class);
+        verify(scripting).eval(any(byte[].class), eq(ReturnType.INTEGER), eq(2), keysEtArgs.capture());
+        byte[][] appel = keysEtArgs.getValue();
+        assertThat(texte(appel[0])).isEqualTo("ecritures:search-generation:" + TENANT);
+        assertThat(texte(appel[1])).isEqualTo("ecritures:search:" + TENANT + ":all:2025-03");
+        // Le script compare la génération lue avant le chargement à la génération courante
+        assertThat(texte(appel[2])).isEqualTo("7");
+        // Segment enveloppé puis encodé au format configuré pour le cache (Smile compressé)
+        RedisCacheLoader.Entree segment = RedisCacheLoader.deballer(appel[4]);
+        assertThat(segment.valeur()[0]).isEqualTo((byte) 'L');
+        assertThat(codecs.codec(EcritureSearchCache.CACHE).decoder(segment.valeur(), EcritureComptableDto[].class))
+                .containsExactly(ecriture);
+    }
+
+    @Test
+    void plageTropEtendueRefusee() {
+        assertThatThrownBy(() -> cache.search(TENANT, null, LocalDate.of(2020, 1, 15),
+                LocalDate.of(2025, 3, 31), (debut, fin) -> List.of()))
+                .isInstanceOf(BusinessException.class);
+        assertThat(EcritureSearchCache.decouper(LocalDate.of(2025, 1, 15), LocalDate.of(2025, 3, 2), 40))
+                .extracting(EcritureSearchCache.Segment::code)
+                .contains("2025-02", "2025-01-31", "2025-03-02")
+                .hasSize(17 + 1 + 2);
+        verify(scripting, never()).eval(any(byte[].class), any(ReturnType.class), anyInt(), any(byte[][].class));
+    }
+
+    private static String texte(byte[] octets) {
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+}
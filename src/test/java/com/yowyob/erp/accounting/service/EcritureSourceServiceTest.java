@@ -0,0 +1,106 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.yowyob.erp.common.enums.SourceType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EcritureSourceServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID FACTURE = UUID.randomUUID();
+
+    @Mock CqlSession session;
+    @Mock PreparedStatement preparee;
+    @Mock BoundStatement requete;
+    @Mock ResultSet resultSet;
+    @Mock Row ligne;
+
+    private EcritureSourceService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new EcritureSourceService(session, Duration.ofMinutes(5));
+        when(session.prepare(anyString())).thenReturn(preparee);
+        when(preparee.bind(any(Object[].class))).thenReturn(requete);
+        when(session.execute(requete)).thenReturn(resultSet);
+        when(resultSet.one()).thenReturn(ligne);
+    }
+
+    @Test
+    void premiereReservationReussitEnUnSeulAllerRetour() {
+        when(ligne.getBoolean("[applied]")).thenReturn(true);
+
+        assertThat(service.claim(TENANT, SourceType.FACTURE, FACTURE, UUID.randomUUID())).isEmpty();
+        verify(session, times(1)).execute(requete);
+    }
+
+    @Test
+    void sourceDejaComptabiliseeRenvoieLEcritureExistante() {
+        UUID existante = UUID.randomUUID();
+        when(ligne.getBoolean("[applied]")).thenReturn(false);
+        when(ligne.getUuid("ecriture_id")).thenReturn(existante);
+        Instant reserveeLe = Instant.now();
+        when(ligne.getInstant("created_at")).thenReturn(reserveeLe);
+
+        assertThat(service.claim(TENANT, SourceType.FACTURE, FACTURE, UUID.randomUUID()))
+                .contains(new EcritureSourceService.Reservation(existante, reserveeLe));
+    }
+
+    @Test
+    void reservationRecenteNEstPasReprise() {
+        EcritureSourceService.Reservation recente =
+                new EcritureSourceService.Reservation(UUID.randomUUID(), Instant.now().minusSeconds(30));
+
+        assertThat(service.reprendre(TENANT, SourceType.FACTURE, FACTURE, recente, UUID.randomUUID())).isFalse();
+        verify(session, never()).execute(requete);
+    }
+
+    @Test
+    void reservationExpireeEstRepriseParUnLwtSurLEcritureAbandonnee() {
+        UUID abandonnee = UUID.randomUUID();
+        UUID nouvelle = UUID.randomUUID();
+        when(ligne.getBoolean("[applied]")).thenReturn(true);
+
+        boolean reprise = service.reprendre(TENANT, SourceType.FACTURE, FACTURE,
+                new EcritureSourceService.Reservation(abandonnee, Instant.now().minus(Duration.ofMinutes(10))), nouvelle);
+
+        assertThat(reprise).isTrue();
+        verify(session).prepare(contains("IF ecriture_id = ?"));
+        verify(preparee).bind(eq(nouvelle), any(Instant.class), eq(TENANT), eq("FACTURE"), eq(FACTURE), eq(abandonnee));
+    }
+
+    @Test
+    void repriseConcurrenteNEstAccordeeQuAUnSeulNoeud() {
+        when(ligne.getBoolean("[applied]")).thenReturn(false);
+
+        assertThat(service.reprendre(TENANT, SourceType.FACTURE, FACTURE,
+                new EcritureSourceService.Reservation(UUID.randomUUID(), Instant.now().minus(Duration.ofHours(1))),
+                UUID.randomUUID())).isFalse();
+    }
+}
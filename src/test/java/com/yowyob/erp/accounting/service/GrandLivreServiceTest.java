@@ -0,0 +1,142 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.dto.SoldeCompteDto;
+import com.yowyob.erp.common.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GrandLivreServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID CLIENTS = UUID.randomUUID();
+    private static final LocalDate DEBUT = LocalDate.of(2025, 1, 1);
+    private static final LocalDate FIN = LocalDate.of(2025, 12, 31);
+
+    @Mock CqlSession session;
+    @Mock PreparedStatement preparee;
+    @Mock BoundStatement requete;
+    @Mock ResultSet resultSet;
+    @Mock PlanComptableIndex planComptableIndex;
+    @Mock SoldeCompteService soldeCompteService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private GrandLivreService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new GrandLivreService(session, planComptableIndex, soldeCompteService, objectMapper, "cle-de-test");
+        when(session.prepare(anyString())).thenReturn(preparee);
+        when(preparee.bind(any(Object[].class))).thenReturn(requete);
+        when(requete.setPageSize(anyInt())).thenReturn(requete);
+        when(session.execute(requete)).thenReturn(resultSet);
+        when(planComptableIndex.findAll(TENANT)).thenReturn(List.of(
+                PlanComptableDto.builder().id(CLIENTS).noCompte("411000").libelle("Clients").build()));
+        when(soldeCompteService.getSoldeAu(eq(TENANT), eq(CLIENTS), any()))
+                .thenReturn(SoldeCompteDto.builder().solde(10.0).build());
+    }
+
+    @Test
+    void curseurSigneReprendAvecLeSoldeProgressif() throws Exception {
+        lignes(ligne(LocalDate.of(2025, 3, 14), 100.0, 0.0));
+        JsonNode premiere = exporter(null);
+        assertThat(premiere.get("soldeProgressive").asDouble()).isEqualTo(110.0);
+
+        lignes(ligne(LocalDate.of(2025, 4, 2), 0.0, 30.0));
+        JsonNode suite = exporter(premiere.get("curseur").asText());
+        assertThat(suite.get("soldeProgressive").asDouble()).isEqualTo(80.0);
+    }
+
+    @Test
+    void chaqueLigneDUnMemeExportPorteUnCurseurValide() throws Exception {
+        lignes(ligne(LocalDate.of(2025, 3, 14), 100.0, 0.0), ligne(LocalDate.of(2025, 3, 15), 0.0, 40.0),
+                ligne(LocalDate.of(2025, 3, 16), 5.0, 0.0));
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        preparer(null, TENANT, DEBUT).ecrire(sortie);
+        List<String> curseurs = sortie.toString(StandardCharsets.UTF_8).lines()
+                .map(l -> {
+                    try {
+                        return objectMapper.readTree(l).get("curseur").asText();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+
+        // Signatures produites par le même Mac réutilisé ligne après ligne
+        assertThat(curseurs).hasSize(3).doesNotHaveDuplicates();
+        curseurs.forEach(curseur -> preparer(curseur, TENANT, DEBUT));
+    }
+
+    @Test
+    void curseurModifieEstRefuse() throws Exception {
+        lignes(ligne(LocalDate.of(2025, 3, 14), 100.0, 0.0));
+        String curseur = exporter(null).get("curseur").asText();
+        String[] parties = curseur.split("\\.");
+        String position = new String(Base64.getUrlDecoder().decode(parties[0]), StandardCharsets.UTF_8);
+        String falsifiee = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                position.replace("|11000", "|99911000").getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> preparer(falsifiee + "." + parties[1], TENANT, DEBUT)).isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> preparer(parties[0], TENANT, DEBUT)).isInstanceOf(BusinessException.class);
+        // Signature liée au tenant et à la date de début dont le solde a été calculé
+        assertThatThrownBy(() -> preparer(curseur, UUID.randomUUID(), DEBUT)).isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> preparer(curseur, TENANT, DEBUT.plusMonths(1))).isInstanceOf(BusinessException.class);
+    }
+
+    private JsonNode exporter(String curseur) throws Exception {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        preparer(curseur, TENANT, DEBUT).ecrire(sortie);
+        return objectMapper.readTree(sortie.toString(StandardCharsets.UTF_8).lines().findFirst().orElseThrow());
+    }
+
+    private GrandLivreService.Export preparer(String curseur, UUID tenantId, LocalDate debut) {
+        return service.preparerExport(tenantId, "411000", null, debut, FIN, GrandLivreService.Format.NDJSON, curseur);
+    }
+
+    private void lignes(Row... lignes) {
+        when(resultSet.iterator()).thenAnswer(i -> List.of(lignes).iterator());
+    }
+
+    private static Row ligne(LocalDate date, double debit, double credit) {
+        Row row = mock(Row.class);
+        when(row.getLocalDate("date_ecriture")).thenReturn(date);
+        when(row.getUuid("ecriture_id")).thenReturn(UUID.randomUUID());
+        when(row.getUuid("ligne_id")).thenReturn(UUID.randomUUID());
+        when(row.getString("numero_ecriture")).thenReturn("VT-2025-03-000001");
+        when(row.getString("libelle")).thenReturn("Vente");
+        when(row.getDouble("montant_debit")).thenReturn(debit);
+        when(row.getDouble("montant_credit")).thenReturn(credit);
+        return row;
+    }
+}
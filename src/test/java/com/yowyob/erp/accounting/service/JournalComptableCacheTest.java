@@ -0,0 +1,76 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.entity.JournalComptable;
+import com.yowyob.erp.accounting.entityKey.JournalComptableKey;
+import com.yowyob.erp.accounting.repository.JournalComptableRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class JournalComptableCacheTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID JOURNAL = UUID.randomUUID();
+
+    @Mock JournalComptableRepository journalComptableRepository;
+
+    private JournalComptableCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new JournalComptableCache(journalComptableRepository);
+    }
+
+    @Test
+    void journauxActifsChargesUneSeuleFoisParTenant() {
+        when(journalComptableRepository.findByKeyTenantIdAndActifTrue(TENANT)).thenReturn(List.of(journal("VT")));
+
+        assertThat(cache.getActiveJournal(TENANT, JOURNAL)).hasValueSatisfying(j -> assertThat(j.getCodeJournal()).isEqualTo("VT"));
+        assertThat(cache.getActiveJournal(TENANT, UUID.randomUUID())).isEmpty();
+
+        verify(journalComptableRepository, times(1)).findByKeyTenantIdAndActifTrue(TENANT);
+    }
+
+    @Test
+    void invalidationPendantLeChargementNeConservePasLaVersionLue() {
+        // Le journal est renommé (invalidation) pendant la lecture Cassandra de l'ancienne version
+        when(journalComptableRepository.findByKeyTenantIdAndActifTrue(TENANT))
+                .thenAnswer(inv -> {
+                    cache.invalidate(TENANT);
+                    return List.of(journal("VT"));
+                })
+                .thenReturn(List.of(journal("VE")));
+
+        assertThat(cache.getActiveJournal(TENANT, JOURNAL)).hasValueSatisfying(j -> assertThat(j.getCodeJournal()).isEqualTo("VT"));
+        assertThat(cache.getActiveJournal(TENANT, JOURNAL)).hasValueSatisfying(j -> assertThat(j.getCodeJournal()).isEqualTo("VE"));
+
+        verify(journalComptableRepository, times(2)).findByKeyTenantIdAndActifTrue(TENANT);
+    }
+
+    private static JournalComptable journal(String code) {
+        JournalComptable journal = new JournalComptable();
+        JournalComptableKey key = new JournalComptableKey();
+        key.setTenantId(TENANT);
+        key.setId(JOURNAL);
+        journal.setKey(key);
+        journal.setCodeJournal(code);
+        journal.setLibelle("Ventes");
+        journal.setTypeJournal("VENTE");
+        journal.setActif(true);
+        return journal;
+    }
+}
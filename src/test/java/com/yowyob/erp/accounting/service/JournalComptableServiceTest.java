@@ -0,0 +1,132 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entity.EcritureParJournal;
+import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
+import com.yowyob.erp.accounting.entityKey.EcritureParJournalKey;
+import com.yowyob.erp.accounting.repository.EcritureComptableRepository;
+import com.yowyob.erp.accounting.repository.EcritureParJournalRepository;
+import com.yowyob.erp.accounting.repository.JournalComptableRepository;
+import com.yowyob.erp.common.dto.CursorPage;
+import com.yowyob.erp.config.etag.VersionReferentielService;
+import com.yowyob.erp.config.kafka.OutboxService;
+import com.yowyob.erp.config.tenant.TenantContext;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class JournalComptableServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID JOURNAL = UUID.randomUUID();
+
+    @Mock JournalComptableRepository journalComptableRepository;
+    @Mock EcritureComptableRepository ecritureComptableRepository;
+    @Mock EcritureParJournalRepository ecritureParJournalRepository;
+    @Mock Validator validator;
+    @Mock OutboxService outboxService;
+    @Mock JournalComptableCache journalComptableCache;
+    @Mock VersionReferentielService versionReferentielService;
+
+    private JournalComptableService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new JournalComptableService(journalComptableRepository, ecritureComptableRepository,
+                ecritureParJournalRepository, validator, outboxService, journalComptableCache, versionReferentielService);
+        TenantContext.setCurrentTenant(TENANT);
+        when(journalComptableRepository.existsByKeyTenantIdAndKeyId(TENANT, JOURNAL)).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void ecrituresDuJournalLuesParLIndexDansLOrdreDesDates() {
+        List<EcritureComptable> ecritures = new ArrayList<>();
+        for (int jour = 1; jour <= 250; jour++) {
+            ecritures.add(ecriture(LocalDate.of(2025, 1, 1).plusDays(jour)));
+        }
+        // L'écriture du milieu a disparu entre l'index et la table principale
+        EcritureComptable absente = ecritures.get(125);
+        when(ecritureParJournalRepository.findSliceByTenantIdAndJournalId(eq(TENANT), eq(JOURNAL), any()))
+                .thenReturn(new SliceImpl<>(ecritures.stream().map(JournalComptableServiceTest::entree).collect(Collectors.toList()),
+                        CassandraPageRequest.of(PageRequest.of(0, 250), ByteBuffer.wrap(new byte[] {1, 2, 3})), true));
+        when(ecritureComptableRepository.findByKeyTenantIdAndKeyIdIn(eq(TENANT), anyList())).thenAnswer(inv -> {
+            List<UUID> ids = inv.getArgument(1);
+            assertThat(ids).hasSizeLessThanOrEqualTo(100);
+            // Renvoyées dans le désordre : l'ordre de l'index fait foi
+            List<EcritureComptable> lues = ecritures.stream()
+                    .filter(e -> e != absente && ids.contains(e.getKey().getId()))
+                    .collect(Collectors.toList());
+            Collections.reverse(lues);
+            return lues;
+        });
+
+        CursorPage<EcritureComptableDto> page = service.getEcrituresJournal(JOURNAL, null, 250);
+
+        assertThat(page.getContent()).hasSize(249);
+        assertThat(page.getContent()).extracting(EcritureComptableDto::getDateEcriture).isSorted();
+        assertThat(page.getContent()).extracting(EcritureComptableDto::getId).doesNotContain(absente.getKey().getId());
+        assertThat(page.isHasNext()).isTrue();
+        verify(ecritureComptableRepository, times(3)).findByKeyTenantIdAndKeyIdIn(eq(TENANT), anyList());
+        verify(ecritureComptableRepository, never()).findByKeyTenantIdAndJournalComptableId(any(), any(), any());
+    }
+
+    private static EcritureParJournal entree(EcritureComptable ecriture) {
+        EcritureParJournalKey key = new EcritureParJournalKey();
+        key.setTenantId(TENANT);
+        key.setJournalComptableId(JOURNAL);
+        key.setDateEcriture(ecriture.getDateEcriture());
+        key.setId(ecriture.getKey().getId());
+        EcritureParJournal entree = new EcritureParJournal();
+        entree.setKey(key);
+        return entree;
+    }
+
+    private static EcritureComptable ecriture(LocalDate date) {
+        EcritureComptable ecriture = new EcritureComptable();
+        EcritureComptableKey key = new EcritureComptableKey();
+        key.setTenantId(TENANT);
+        key.setId(UUID.randomUUID());
+        ecriture.setKey(key);
+        ecriture.setJournalComptableId(JOURNAL);
+        ecriture.setDateEcriture(date);
+        ecriture.setLibelle("Vente");
+        ecriture.setMontantTotalDebit(100.0);
+        ecriture.setMontantTotalCredit(100.0);
+        ecriture.setValidee(false);
+        return ecriture;
+    }
+}
@@ -0,0 +1,62 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.JournalAuditDto;
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
+import com.yowyob.erp.accounting.reactive.ReactiveJournalAuditRepository;
+import com.yowyob.erp.config.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LectureFluxServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    @Mock ReactiveJournalAuditRepository journalAuditRepository;
+
+    @InjectMocks LectureFluxService service;
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void journalAuditExposeSansLaCleDuTenant() {
+        JournalAuditKey key = new JournalAuditKey();
+        key.setTenantId(TENANT);
+        key.setId(UUID.randomUUID());
+        JournalAudit audit = new JournalAudit();
+        audit.setKey(key);
+        audit.setAction("VALIDATION");
+        audit.setUtilisateur("comptable");
+        audit.setDateAction(LocalDateTime.of(2025, 3, 14, 10, 0));
+        TenantContext.setCurrentTenant(TENANT);
+        when(journalAuditRepository.findByKeyTenantId(TENANT)).thenReturn(Flux.just(audit));
+
+        List<JournalAuditDto> lues = service.streamJournalAudit().collectList().block();
+
+        assertThat(lues).containsExactly(JournalAuditDto.builder()
+                .id(key.getId())
+                .action("VALIDATION")
+                .utilisateur("comptable")
+                .dateAction(LocalDateTime.of(2025, 3, 14, 10, 0))
+                .build());
+    }
+}
@@ -0,0 +1,121 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.entity.PlanComptable;
+import com.yowyob.erp.accounting.entityKey.PlanComptableKey;
+import com.yowyob.erp.accounting.repository.PlanComptableRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlanComptableIndexTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID CLIENTS = UUID.randomUUID();
+    private static final UUID FOURNISSEURS = UUID.randomUUID();
+    private static final UUID VENTES = UUID.randomUUID();
+
+    @Mock PlanComptableRepository planComptableRepository;
+
+    private PlanComptableIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PlanComptableIndex(planComptableRepository);
+    }
+
+    @Test
+    void chargeLeTenantUneSeuleFoisEtSertLesRecherches() {
+        chargerPlan();
+
+        assertThat(index.findByNoCompte(TENANT, "411000")).map(PlanComptableDto::getId).contains(CLIENTS);
+        assertThat(index.findByPrefix(TENANT, "4")).extracting(PlanComptableDto::getNoCompte)
+                .containsExactly("401000", "411000");
+        assertThat(index.findByClasse(TENANT, 7)).extracting(PlanComptableDto::getId).containsExactly(VENTES);
+        assertThat(index.findById(TENANT, FOURNISSEURS)).isPresent();
+        verify(planComptableRepository, times(1)).findAllByKeyTenantId(TENANT);
+    }
+
+    @Test
+    void renumerotationRetireLAncienNumero() {
+        chargerPlan();
+        index.findAll(TENANT);
+
+        index.upsert(TENANT, compte(CLIENTS, "411100", 4, true));
+
+        assertThat(index.findByNoCompte(TENANT, "411000")).isEmpty();
+        assertThat(index.findByNoCompte(TENANT, "411100")).map(PlanComptableDto::getId).contains(CLIENTS);
+        assertThat(index.findByPrefix(TENANT, "411")).extracting(PlanComptableDto::getNoCompte)
+                .containsExactly("411100");
+    }
+
+    @Test
+    void compteDesactiveEstRefusePourLesEcritures() {
+        chargerPlan();
+        index.findAll(TENANT);
+
+        index.deactivate(TENANT, VENTES);
+
+        assertThat(index.requireActiveAccount(TENANT, CLIENTS).getNoCompte()).isEqualTo("411000");
+        assertThatThrownBy(() -> index.requireActiveAccount(TENANT, VENTES))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("701000");
+        assertThatThrownBy(() -> index.requireActiveAccount(TENANT, UUID.randomUUID()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void miseAJourSansIndexChargeEstIgnoree() {
+        index.upsert(TENANT, compte(CLIENTS, "411000", 4, true));
+        index.deactivate(TENANT, CLIENTS);
+
+        verifyNoInteractions(planComptableRepository);
+    }
+
+    @Test
+    void invalidationForceUnRechargement() {
+        chargerPlan();
+        index.findAll(TENANT);
+
+        index.invalidate(TENANT);
+        index.findAll(TENANT);
+
+        verify(planComptableRepository, times(2)).findAllByKeyTenantId(TENANT);
+    }
+
+    private void chargerPlan() {
+        when(planComptableRepository.findAllByKeyTenantId(TENANT)).thenReturn(List.of(
+                entite(CLIENTS, "411000", 4), entite(FOURNISSEURS, "401000", 4), entite(VENTES, "701000", 7)));
+    }
+
+    private static PlanComptable entite(UUID id, String noCompte, int classe) {
+        PlanComptable compte = new PlanComptable();
+        PlanComptableKey key = new PlanComptableKey();
+        key.setTenantId(TENANT);
+        key.setId(id);
+        compte.setKey(key);
+        compte.setNoCompte(noCompte);
+        compte.setLibelle("Compte " + noCompte);
+        compte.setClasse(classe);
+        compte.setActif(true);
+        return compte;
+    }
+
+    private static PlanComptableDto compte(UUID id, String noCompte, int classe, boolean actif) {
+        return PlanComptableDto.builder().id(id).noCompte(noCompte).libelle("Compte " + noCompte)
+                .classe(classe).actif(actif).build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.dto.ReconstructionSoldesDto;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import com.yowyob.erp.accounting.entity.EcritureComptable;
+import com.yowyob.erp.accounting.entityKey.DetailEcritureKey;
+import com.yowyob.erp.accounting.entityKey.EcritureComptableKey;
+import com.yowyob.erp.accounting.repository.DetailEcritureRepository;
+import com.yowyob.erp.accounting.repository.EcritureComptableRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@SuppressWarnings("unchecked")
+class ProjectionEcritureServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID CLIENTS = UUID.randomUUID();
+    private static final UUID VENTES = UUID.randomUUID();
+    private static final LocalDate MARS = LocalDate.of(2025, 3, 14);
+    private static final LocalDate AVRIL = LocalDate.of(2025, 4, 2);
+    private static final LocalDate MAI = LocalDate.of(2025, 5, 20);
+
+    @Mock CqlSession session;
+    @Mock PreparedStatement preparee;
+    @Mock BoundStatement requete;
+    @Mock EcritureComptableRepository ecritureRepository;
+    @Mock DetailEcritureRepository detailEcritureRepository;
+    @Mock SoldeCompteService soldeCompteService;
+    @Mock GrandLivreService grandLivreService;
+    @Mock PlanComptableIndex planComptableIndex;
+
+    private ProjectionEcritureService service;
+    private final List<EcritureComptable> ecritures = new ArrayList<>();
+    private final List<DetailEcriture> lignes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new ProjectionEcritureService(session, ecritureRepository, detailEcritureRepository,
+                soldeCompteService, grandLivreService, planComptableIndex, Duration.ofMinutes(5));
+        when(session.prepare(anyString())).thenReturn(preparee);
+        when(preparee.bind(any(Object[].class))).thenReturn(requete);
+        when(ecritureRepository.findByKeyTenantId(eq(TENANT), any())).thenAnswer(i -> new SliceImpl<>(ecritures));
+        when(detailEcritureRepository.findByKeyTenantId(eq(TENANT), any())).thenAnswer(i -> new SliceImpl<>(lignes));
+        when(planComptableIndex.findAll(TENANT)).thenReturn(List.of(
+                PlanComptableDto.builder().id(CLIENTS).noCompte("411000").build(),
+                PlanComptableDto.builder().id(VENTES).noCompte("701000").build()));
+    }
+
+    @Test
+    void reconstructionAligneLesCompteursSurLesEcrituresValidees() {
+        EcritureComptable reportee = ecriture(MARS, true, true, LocalDateTime.now().minusDays(10));
+        EcritureComptable anterieure = ecriture(AVRIL, true, null, LocalDateTime.now().minusDays(5));
+        EcritureComptable enCours = ecriture(MARS, true, false, LocalDateTime.now().minusMinutes(1));
+        EcritureComptable brouillon = ecriture(MAI, false, null, null);
+        vente(reportee, 100.0);
+        vente(anterieure, 50.0);
+        vente(enCours, 30.0);
+        vente(brouillon, 999.0);
+        // Report en cours déjà appliqué au compte client, pas encore au compte de ventes ; un mouvement parasite en mai
+        when(soldeCompteService.getMouvementsJournaliers(TENANT, CLIENTS)).thenReturn(Map.of(MARS, new long[]{13000, 0}));
+        when(soldeCompteService.getMouvementsJournaliers(TENANT, VENTES)).thenReturn(Map.of(
+                MARS, new long[]{0, 10000}, MAI, new long[]{0, 700}));
+        when(ecritureRepository.findByKeyTenantIdAndKeyId(TENANT, anterieure.getKey().getId())).thenReturn(Optional.of(anterieure));
+
+        ReconstructionSoldesDto resultat = service.reconstruire(TENANT);
+
+        Map<LocalDate, long[]> clients = ecarts(CLIENTS);
+        assertThat(clients).containsOnlyKeys(AVRIL);
+        assertThat(clients.get(AVRIL)).containsExactly(5000, 0);
+        Map<LocalDate, long[]> ventes = ecarts(VENTES);
+        assertThat(ventes).containsOnlyKeys(AVRIL, MAI);
+        assertThat(ventes.get(AVRIL)).containsExactly(0, 5000);
+        assertThat(ventes.get(MAI)).containsExactly(0, -700);
+
+        verify(grandLivreService).enregistrerLignes(eq(TENANT), eq(anterieure), anyList());
+        verify(grandLivreService, never()).enregistrerLignes(eq(TENANT), eq(reportee), anyList());
+        assertThat(resultat.getEcrituresValidees()).isEqualTo(3);
+        assertThat(resultat.getEcrituresReportees()).isEqualTo(1);
+        assertThat(resultat.getEcrituresEnCours()).isEqualTo(1);
+        assertThat(resultat.getJoursCorriges()).isEqualTo(3);
+        // Le brouillon est (ré)inscrit dans l'index des écritures non validées
+        assertThat(resultat.getEcrituresNonValidees()).isEqualTo(1);
+        verify(preparee).bind(TENANT, MAI, brouillon.getKey().getId());
+    }
+
+    @Test
+    void reportInterrompuPlanifieLaReconstructionDuTenant() {
+        EcritureComptable ecriture = ecriture(MARS, true, false, LocalDateTime.now().minusDays(1));
+        doThrow(new IllegalStateException("Cassandra indisponible"))
+                .when(soldeCompteService).appliquerEcriture(any(), any(), anyList());
+
+        assertThat(service.reporter(TENANT, ecriture, List.of())).isFalse();
+        verify(session, never()).execute(requete);
+
+        service.reconstruireTenantsInterrompus();
+        verify(planComptableIndex).findAll(TENANT);
+    }
+
+    private Map<LocalDate, long[]> ecarts(UUID compteId) {
+        ArgumentCaptor<Map<LocalDate, long[]>> ecarts = ArgumentCaptor.forClass(Map.class);
+        verify(soldeCompteService).corrigerMouvements(eq(TENANT), eq(compteId), ecarts.capture());
+        return ecarts.getValue();
+    }
+
+    private EcritureComptable ecriture(LocalDate date, boolean validee, Boolean soldesAppliques, LocalDateTime dateValidation) {
+        EcritureComptable ecriture = new EcritureComptable();
+        EcritureComptableKey key = new EcritureComptableKey();
+        key.setTenantId(TENANT);
+        key.setId(UUID.randomUUID());
+        ecriture.setKey(key);
+        ecriture.setDateEcriture(date);
+        ecriture.setValidee(validee);
+        ecriture.setSoldesAppliques(soldesAppliques);
+        ecriture.setDateValidation(dateValidation);
+        ecritures.add(ecriture);
+        return ecriture;
+    }
+
+    private void vente(EcritureComptable ecriture, double montant) {
+        lignes.add(ligne(ecriture, CLIENTS, montant, 0.0));
+        lignes.add(ligne(ecriture, VENTES, 0.0, montant));
+    }
+
+    private static DetailEcriture ligne(EcritureComptable ecriture, UUID compteId, double debit, double credit) {
+        DetailEcriture ligne = new DetailEcriture();
+        DetailEcritureKey key = new DetailEcritureKey();
+        key.setTenantId(TENANT);
+        key.setEcritureComptableId(ecriture.getKey().getId());
+        key.setId(UUID.randomUUID());
+        ligne.setKey(key);
+        ligne.setCompteComptableId(compteId);
+        ligne.setMontantDebit(debit);
+        ligne.setMontantCredit(credit);
+        return ligne;
+    }
+}
@@ -0,0 +1,116 @@
+package com.yowyob.erp.accounting.service;
+
+import com.yowyob.erp.accounting.dto.BalanceDto;
+import com.yowyob.erp.accounting.dto.PlanComptableDto;
+import com.yowyob.erp.accounting.repository.PeriodeComptableRepository;
+import com.yowyob.erp.config.redis.RedisService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@SuppressWarnings("unchecked")
+class RapportServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+
+    @Mock PeriodeComptableRepository periodeComptableRepository;
+    @Mock RedisService redisService;
+    @Mock PlanComptableIndex planComptableIndex;
+    @Mock SoldeCompteService soldeCompteService;
+    @InjectMocks RapportService rapportService;
+
+    private final Map<UUID, SoldeCompteService.SoldePeriode> soldes = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        // Ouverture : capital apporté en banque, ventes de l'exercice précédent non affectées
+        PlanComptableDto capital = compte("101000", 1, -1000, 0, 0);
+        PlanComptableDto clients = compte("411000", 4, 200, 500, 0);
+        PlanComptableDto banque = compte("521000", 5, 1000, 0, 300);
+        PlanComptableDto achats = compte("601000", 6, 0, 300, 0);
+        PlanComptableDto ventes = compte("701000", 7, -200, 0, 500);
+        when(planComptableIndex.findAll(TENANT)).thenReturn(List.of(capital, clients, banque, achats, ventes));
+        when(soldeCompteService.getSoldesPeriode(eq(TENANT), anyCollection(), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(soldes);
+    }
+
+    @Test
+    void balanceReprendOuvertureMouvementsEtClotureParCompteEtParClasse() {
+        BalanceDto balance = rapportService.generateBalance(TENANT, "2025-01-01", "2025-12-31");
+
+        assertThat(balance.getTotalDebit()).isEqualTo(800.0);
+        assertThat(balance.getTotalCredit()).isEqualTo(800.0);
+        assertThat(balance.getLignes()).extracting(BalanceDto.BalanceLineDto::getNumeroCompte,
+                        BalanceDto.BalanceLineDto::getSoldePrecedent, BalanceDto.BalanceLineDto::getMouvementDebit,
+                        BalanceDto.BalanceLineDto::getMouvementCredit, BalanceDto.BalanceLineDto::getSoldeActuel)
+                .containsExactly(
+                        tuple("101000", -1000.0, 0.0, 0.0, -1000.0),
+                        tuple("411000", 200.0, 500.0, 0.0, 700.0),
+                        tuple("521000", 1000.0, 0.0, 300.0, 700.0),
+                        tuple("601000", 0.0, 300.0, 0.0, 300.0),
+                        tuple("701000", -200.0, 0.0, 500.0, -700.0));
+        assertThat(balance.getTotauxParClasse()).extracting(BalanceDto.BalanceClasseDto::getClasse,
+                        BalanceDto.BalanceClasseDto::getSoldePrecedent, BalanceDto.BalanceClasseDto::getSoldeActuel)
+                .containsExactly(
+                        tuple(1, -1000.0, -1000.0),
+                        tuple(4, 200.0, 700.0),
+                        tuple(5, 1000.0, 700.0),
+                        tuple(6, 0.0, 300.0),
+                        tuple(7, -200.0, -700.0));
+    }
+
+    @Test
+    void balanceRefuseUnePeriodeInversee() {
+        assertThatThrownBy(() -> rapportService.generateBalance(TENANT, "2025-12-31", "2025-01-01"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bilanPrendLesSoldesCumulesEtEstEquilibre() {
+        Map<String, Object> bilan = rapportService.generateBilan(TENANT, "2025-01-01", "2025-12-31");
+
+        assertThat(bilan.get("totalActif")).isEqualTo(1400.0);
+        assertThat(bilan.get("totalPassif")).isEqualTo(1400.0);
+        assertThat(bilan.get("resultat")).isEqualTo(200.0);
+        assertThat(bilan.get("resultatsAnterieursNonAffectes")).isEqualTo(200.0);
+        assertThat((Map<String, Double>) bilan.get("actifParClasse")).containsEntry("4", 700.0).containsEntry("5", 700.0);
+        assertThat((Map<String, Double>) bilan.get("passifParClasse")).containsEntry("1", 1000.0);
+    }
+
+    @Test
+    void compteDeResultatNeRetientQueLesMouvementsDeLaPlage() {
+        Map<String, Object> compteResultat = rapportService.generateCompteResultat(TENANT, "2025-01-01", "2025-12-31");
+
+        assertThat(compteResultat.get("totalCharges")).isEqualTo(300.0);
+        assertThat(compteResultat.get("totalProduits")).isEqualTo(500.0);
+        assertThat(compteResultat.get("resultat")).isEqualTo(200.0);
+    }
+
+    private PlanComptableDto compte(String noCompte, int classe, double ouverture, double debit, double credit) {
+        PlanComptableDto compte = PlanComptableDto.builder()
+                .id(UUID.randomUUID()).noCompte(noCompte).libelle("Compte " + noCompte).classe(classe).actif(true).build();
+        soldes.put(compte.getId(), new SoldeCompteService.SoldePeriode(ouverture, debit, credit));
+        return compte;
+    }
+}
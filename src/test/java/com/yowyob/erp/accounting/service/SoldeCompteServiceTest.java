@@ -0,0 +1,285 @@
+package com.yowyob.erp.accounting.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.yowyob.erp.accounting.entity.DetailEcriture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SoldeCompteServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final UUID CLIENTS = UUID.randomUUID();
+    private static final UUID VENTES = UUID.randomUUID();
+    private static final LocalDate VEILLE = LocalDate.now().minusDays(1);
+
+    private final TablesSoldes tables = new TablesSoldes();
+    private SoldeCompteService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SoldeCompteService(tables.session);
+    }
+
+    @Test
+    void pointDeControleEcritPuisInvalideParUneEcritureAntidatee() {
+        service.appliquerEcriture(TENANT, VEILLE.minusDays(10), vente(100.0));
+        service.ecrirePointsDeControle();
+        assertThat(tables.pointDeControle(CLIENTS, VEILLE)).containsExactly(10000L, 0L);
+
+        service.appliquerEcriture(TENANT, VEILLE.minusDays(3), vente(50.0));
+
+        assertThat(tables.pointDeControle(CLIENTS, VEILLE)).isNull();
+        assertThat(service.getSoldeAu(TENANT, CLIENTS, VEILLE).getSolde()).isEqualTo(150.0);
+    }
+
+    @Test
+    void ecritureAntidateePendantLeCalculNeLaissePasDePointDeControlePerime() {
+        service.appliquerEcriture(TENANT, VEILLE.minusDays(10), vente(100.0));
+        // Report concurrent entre la lecture des mouvements et l'écriture du point de contrôle
+        tables.apresLectureMouvements.put(CLIENTS, () -> service.appliquerEcriture(TENANT, VEILLE.minusDays(3), vente(50.0)));
+
+        service.ecrirePointsDeControle();
+
+        assertThat(tables.pointDeControle(CLIENTS, VEILLE)).isNull();
+        assertThat(service.getSoldeAu(TENANT, CLIENTS, VEILLE).getSolde()).isEqualTo(150.0);
+
+        // Le compte reste à traiter : le passage suivant écrit le cumul à jour
+        service.ecrirePointsDeControle();
+        assertThat(tables.pointDeControle(CLIENTS, VEILLE)).containsExactly(15000L, 0L);
+    }
+
+    @Test
+    void soldesPeriodeRepartisEnOuvertureMouvementsEtCloture() {
+        LocalDate debut = LocalDate.of(2025, 1, 1);
+        LocalDate fin = LocalDate.of(2025, 12, 31);
+        service.appliquerEcriture(TENANT, LocalDate.of(2024, 11, 20), vente(100.0));
+        service.appliquerEcriture(TENANT, LocalDate.of(2025, 3, 14), vente(50.0));
+        service.appliquerEcriture(TENANT, LocalDate.of(2025, 6, 1), List.of(ligne(CLIENTS, 0.0, 30.0), ligne(VENTES, 30.0, 0.0)));
+        service.appliquerEcriture(TENANT, LocalDate.of(2026, 1, 5), vente(20.0));
+        // Points de contrôle des clients : l'un avant la période, l'autre à l'intérieur (non utilisé pour l'ouverture)
+        tables.ajouterPointDeControle(CLIENTS, LocalDate.of(2024, 12, 1), 10000L, 0L);
+        tables.ajouterPointDeControle(CLIENTS, LocalDate.of(2025, 4, 1), 15000L, 0L);
+
+        Map<UUID, SoldeCompteService.SoldePeriode> soldes = service.getSoldesPeriode(TENANT, List.of(CLIENTS, VENTES), debut, fin);
+
+        SoldeCompteService.SoldePeriode clients = soldes.get(CLIENTS);
+        assertThat(clients.soldeOuverture()).isEqualTo(100.0);
+        assertThat(clients.mouvementDebit()).isEqualTo(50.0);
+        assertThat(clients.mouvementCredit()).isEqualTo(30.0);
+        assertThat(clients.soldeCloture()).isEqualTo(120.0);
+        // Compte sans point de contrôle : cumul depuis l'origine
+        SoldeCompteService.SoldePeriode ventes = soldes.get(VENTES);
+        assertThat(ventes.soldeOuverture()).isEqualTo(-100.0);
+        assertThat(ventes.mouvementDebit()).isEqualTo(30.0);
+        assertThat(ventes.mouvementCredit()).isEqualTo(50.0);
+        assertThat(ventes.soldeCloture()).isEqualTo(-120.0);
+        assertThat(soldes).containsOnlyKeys(CLIENTS, VENTES);
+    }
+
+    @Test
+    void soldesPeriodeLusParFenetresEtSurPlusieursPages() {
+        LocalDate debut = LocalDate.of(2025, 1, 1);
+        LocalDate fin = LocalDate.of(2025, 12, 31);
+        tables.taillePage = 2;
+        List<UUID> comptes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            UUID compte = UUID.randomUUID();
+            comptes.add(compte);
+            for (int mois = 1; mois <= 5; mois++) {
+                service.appliquerEcriture(TENANT, LocalDate.of(2025, mois, 10), List.of(ligne(compte, i + 1.0, 0.0)));
+            }
+        }
+
+        Map<UUID, SoldeCompteService.SoldePeriode> soldes = service.getSoldesPeriode(TENANT, comptes, debut, fin);
+
+        assertThat(soldes.keySet()).containsExactlyElementsOf(comptes);
+        for (int i = 0; i < comptes.size(); i++) {
+            SoldeCompteService.SoldePeriode solde = soldes.get(comptes.get(i));
+            assertThat(solde.soldeOuverture()).isZero();
+            assertThat(solde.mouvementDebit()).isEqualTo(5 * (i + 1.0));
+            assertThat(solde.soldeCloture()).isEqualTo(5 * (i + 1.0));
+        }
+    }
+
+    private static List<DetailEcriture> vente(double montant) {
+        return List.of(ligne(CLIENTS, montant, 0.0), ligne(VENTES, 0.0, montant));
+    }
+
+    static DetailEcriture ligne(UUID compteId, double debit, double credit) {
+        DetailEcriture detail = new DetailEcriture();
+        detail.setCompteComptableId(compteId);
+        detail.setMontantDebit(debit);
+        detail.setMontantCredit(credit);
+        return detail;
+    }
+
+    /**
+     * Tables des soldes en mémoire derrière un CqlSession simulé, requêtes reconnues à leur texte.
+     */
+    static class TablesSoldes {
+
+        final CqlSession session = mock(CqlSession.class);
+        final Map<List<UUID>, NavigableMap<LocalDate, long[]>> deltas = new HashMap<>();
+        final Map<List<UUID>, NavigableMap<LocalDate, long[]>> checkpoints = new HashMap<>();
+        final Map<List<UUID>, UUID> modifications = new HashMap<>();
+        private final Map<BoundStatement, Object[]> valeurs = new IdentityHashMap<>();
+        final Map<UUID, Runnable> apresLectureMouvements = new HashMap<>();
+
+        TablesSoldes() {
+            when(session.prepare(anyString())).thenAnswer(inv -> {
+                String cql = inv.getArgument(0);
+                PreparedStatement preparee = mock(PreparedStatement.class);
+                when(preparee.getQuery()).thenReturn(cql);
+                when(preparee.bind(any(Object[].class))).thenAnswer(bind -> {
+                    BoundStatement requete = mock(BoundStatement.class);
+                    when(requete.getPreparedStatement()).thenReturn(preparee);
+                    synchronized (valeurs) {
+                        valeurs.put(requete, bind.getArguments());
+                    }
+                    return requete;
+                });
+                return preparee;
+            });
+            when(session.execute(any(Statement.class))).thenAnswer(inv -> resultat(executer(inv.getArgument(0))));
+            when(session.executeAsync(any(Statement.class))).thenAnswer(inv ->
+                    CompletableFuture.completedFuture(page(executer(inv.getArgument(0)), 0)));
+        }
+
+        // Nombre de lignes par page des lectures asynchrones
+        int taillePage = 5000;
+
+        void ajouterPointDeControle(UUID compteId, LocalDate jour, long debit, long credit) {
+            checkpoints.computeIfAbsent(List.of(TENANT, compteId), k -> new TreeMap<>()).put(jour, new long[]{debit, credit});
+        }
+
+        private AsyncResultSet page(List<Row> rows, int debut) {
+            int fin = Math.min(debut + taillePage, rows.size());
+            AsyncResultSet page = mock(AsyncResultSet.class);
+            when(page.currentPage()).thenReturn(rows.subList(debut, fin));
+            when(page.hasMorePages()).thenReturn(fin < rows.size());
+            when(page.fetchNextPage()).thenAnswer(inv -> CompletableFuture.completedFuture(page(rows, fin)));
+            return page;
+        }
+
+        long[] pointDeControle(UUID compteId, LocalDate jour) {
+            NavigableMap<LocalDate, long[]> parJour = checkpoints.get(List.of(TENANT, compteId));
+            return parJour != null ? parJour.get(jour) : null;
+        }
+
+        synchronized List<Row> executer(Statement<?> statement) {
+            if (statement instanceof BatchStatement batch) {
+                for (BatchableStatement<?> element : batch) {
+                    executer(element);
+                }
+                return List.of();
+            }
+            BoundStatement requete = (BoundStatement) statement;
+            String cql = requete.getPreparedStatement().getQuery();
+            Object[] v;
+            synchronized (valeurs) {
+                v = valeurs.get(requete);
+            }
+            if (cql.startsWith("UPDATE solde_compte_delta")) {
+                long[] mouvement = deltas.computeIfAbsent(List.of((UUID) v[2], (UUID) v[3]), k -> new TreeMap<>())
+                        .computeIfAbsent((LocalDate) v[4], j -> new long[2]);
+                mouvement[0] += (long) v[0];
+                mouvement[1] += (long) v[1];
+                return List.of();
+            }
+            if (cql.startsWith("SELECT jour, debit_centimes")) {
+                NavigableMap<LocalDate, long[]> parJour = deltas.getOrDefault(List.of((UUID) v[0], (UUID) v[1]), new TreeMap<>());
+                if (v.length > 2) {
+                    parJour = parJour.subMap((LocalDate) v[2], false, (LocalDate) v[3], true);
+                }
+                List<Row> rows = new ArrayList<>();
+                parJour.forEach((jour, m) -> rows.add(ligneDelta(jour, m)));
+                Runnable concurrent = apresLectureMouvements.remove((UUID) v[1]);
+                if (concurrent != null) {
+                    concurrent.run();
+                }
+                return rows;
+            }
+            if (cql.startsWith("SELECT jour, debit_cumule")) {
+                Map.Entry<LocalDate, long[]> checkpoint = checkpoints.getOrDefault(List.of((UUID) v[0], (UUID) v[1]), new TreeMap<>())
+                        .floorEntry((LocalDate) v[2]);
+                return checkpoint == null ? List.of() : List.of(ligneCheckpoint(checkpoint.getKey(), checkpoint.getValue()));
+            }
+            if (cql.startsWith("INSERT INTO solde_compte_checkpoint")) {
+                checkpoints.computeIfAbsent(List.of((UUID) v[0], (UUID) v[1]), k -> new TreeMap<>())
+                        .put((LocalDate) v[2], new long[]{(long) v[3], (long) v[4]});
+                return List.of();
+            }
+            if (cql.startsWith("DELETE FROM solde_compte_checkpoint")) {
+                NavigableMap<LocalDate, long[]> parJour = checkpoints.getOrDefault(List.of((UUID) v[0], (UUID) v[1]), new TreeMap<>());
+                if (cql.contains("jour >=")) {
+                    parJour.tailMap((LocalDate) v[2], true).clear();
+                } else {
+                    parJour.remove((LocalDate) v[2]);
+                }
+                return List.of();
+            }
+            if (cql.startsWith("UPDATE solde_compte_modification")) {
+                modifications.put(List.of((UUID) v[1], (UUID) v[2]), (UUID) v[0]);
+                return List.of();
+            }
+            if (cql.startsWith("SELECT modification")) {
+                UUID modification = modifications.get(List.of((UUID) v[0], (UUID) v[1]));
+                if (modification == null) {
+                    return List.of();
+                }
+                Row row = mock(Row.class);
+                when(row.getUuid("modification")).thenReturn(modification);
+                return List.of(row);
+            }
+            throw new IllegalArgumentException("Requête non simulée : " + cql);
+        }
+
+        static ResultSet resultat(List<Row> rows) {
+            ResultSet resultSet = mock(ResultSet.class);
+            when(resultSet.one()).thenReturn(rows.isEmpty() ? null : rows.get(0));
+            when(resultSet.iterator()).thenAnswer(inv -> rows.iterator());
+            return resultSet;
+        }
+
+        private static Row ligneDelta(LocalDate jour, long[] mouvement) {
+            Row row = mock(Row.class);
+            when(row.getLocalDate("jour")).thenReturn(jour);
+            when(row.getLong("debit_centimes")).thenReturn(mouvement[0]);
+            when(row.getLong("credit_centimes")).thenReturn(mouvement[1]);
+            return row;
+        }
+
+        private static Row ligneCheckpoint(LocalDate jour, long[] cumul) {
+            Row row = mock(Row.class);
+            when(row.getLocalDate("jour")).thenReturn(jour);
+            when(row.getLong("debit_cumule")).thenReturn(cumul[0]);
+            when(row.getLong("credit_cumule")).thenReturn(cumul[1]);
+            return row;
+        }
+    }
+}
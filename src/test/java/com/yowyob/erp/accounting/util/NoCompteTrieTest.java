@@ -0,0 +1,47 @@
+package com.yowyob.erp.accounting.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NoCompteTrieTest {
+
+    @Test
+    void prefixeRestitueLesComptesDansLOrdreDuPlan() {
+        NoCompteTrie<String> trie = new NoCompteTrie<>();
+        trie.put("411000", "Clients");
+        trie.put("401000", "Fournisseurs");
+        trie.put("4110", "Clients - groupe");
+        trie.put("701000", "Ventes");
+
+        assertThat(trie.findByPrefix("4")).containsExactly("Fournisseurs", "Clients - groupe", "Clients");
+        assertThat(trie.findByPrefix("411")).containsExactly("Clients - groupe", "Clients");
+        assertThat(trie.findByPrefix("")).hasSize(4);
+        assertThat(trie.findByPrefix("5")).isEmpty();
+        assertThat(trie.size()).isEqualTo(4);
+    }
+
+    @Test
+    void remplacementNeCompteQuUneFois() {
+        NoCompteTrie<String> trie = new NoCompteTrie<>();
+        trie.put("411000", "Clients");
+        trie.put("411000", "Clients France");
+
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(trie.findByPrefix("411000")).containsExactly("Clients France");
+    }
+
+    @Test
+    void suppressionConserveLesComptesDuMemePrefixe() {
+        NoCompteTrie<String> trie = new NoCompteTrie<>();
+        trie.put("4110", "Clients - groupe");
+        trie.put("411000", "Clients");
+
+        trie.remove("411000");
+        trie.remove("999999");
+
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(trie.findByPrefix("411")).containsExactly("Clients - groupe");
+        assertThat(trie.findByPrefix("4110")).containsExactly("Clients - groupe");
+    }
+}
@@ -0,0 +1,61 @@
+package com.yowyob.erp.config.async;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncConfigTest {
+
+    @Test
+    void tacheRefuseeQuandLaFileEstPleineSansOccuperLAppelant() throws InterruptedException {
+        AsyncConfig config = new AsyncConfig();
+        ReflectionTestUtils.setField(config, "virtualThreads", false);
+        Executor executor = config.taskExecutor(tache -> tache);
+        CountDownLatch liberation = new CountDownLatch(1);
+        try {
+            // 10 threads occupés et 100 tâches en file
+            for (int i = 0; i < 110; i++) {
+                executor.execute(() -> {
+                    try {
+                        liberation.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            AtomicReference<Thread> executant = new AtomicReference<>();
+
+            assertThatThrownBy(() -> executor.execute(() -> executant.set(Thread.currentThread())))
+                    .isInstanceOf(TaskRejectedException.class);
+            assertThat(executant.get()).isNull();
+        } finally {
+            liberation.countDown();
+            ((ThreadPoolTaskExecutor) executor).shutdown();
+        }
+    }
+
+    @Test
+    void threadsVirtuelsIgnoresAvantJava21() {
+        AsyncConfig config = new AsyncConfig();
+        ReflectionTestUtils.setField(config, "virtualThreads", true);
+        ReflectionTestUtils.setField(config, "maxConcurrence", 10);
+
+        Executor executor = config.taskExecutor(tache -> tache);
+
+        try {
+            assertThat(executor instanceof ThreadPoolTaskExecutor).isEqualTo(Runtime.version().feature() < 21);
+        } finally {
+            if (executor instanceof ThreadPoolTaskExecutor pool) {
+                pool.shutdown();
+            }
+        }
+    }
+}
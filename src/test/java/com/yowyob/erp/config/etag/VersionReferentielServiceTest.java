@@ -0,0 +1,79 @@
+package com.yowyob.erp.config.etag;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class VersionReferentielServiceTest {
+
+    private static final UUID TENANT = UUID.randomUUID();
+    private static final String CLE = "referentiel:version:" + TypeReferentiel.PLAN_COMPTABLE.getCode() + ":" + TENANT;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @InjectMocks
+    private VersionReferentielService service;
+
+    @SuppressWarnings("unchecked")
+    private void incrementEchoue() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("indisponible"));
+    }
+
+    @Test
+    void incrementer_supprimeLeCompteurSiLIncrementEchoue() {
+        incrementEchoue();
+
+        service.incrementer(TENANT, TypeReferentiel.PLAN_COMPTABLE);
+
+        verify(redisTemplate).delete(CLE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void incrementer_neSupprimeRienSiLIncrementReussit() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(42L);
+
+        service.incrementer(TENANT, TypeReferentiel.PLAN_COMPTABLE);
+
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void versionCourante_sansETagTantQueLeCompteurNAPuEtreSupprime() {
+        incrementEchoue();
+        when(redisTemplate.delete(CLE)).thenThrow(new RedisConnectionFailureException("indisponible"));
+
+        service.incrementer(TENANT, TypeReferentiel.PLAN_COMPTABLE);
+
+        assertThat(service.versionCourante(TENANT, TypeReferentiel.PLAN_COMPTABLE)).isNull();
+
+        doReturn(true).when(redisTemplate).delete(CLE);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(7L);
+        service.reprendreCompteursIncertains();
+
+        assertThat(service.versionCourante(TENANT, TypeReferentiel.PLAN_COMPTABLE)).isEqualTo(7L);
+    }
+}
@@ -0,0 +1,76 @@
+package com.yowyob.erp.config.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.NotLeaderOrFollowerException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class KafkaTopicConfigTest {
+
+    @Mock KafkaRetryService kafkaRetryService;
+    @Mock Consumer<Object, Object> consumer;
+    @Mock MessageListenerContainer container;
+
+    private CommonErrorHandler handler;
+    private final ConsumerRecord<Object, Object> record = new ConsumerRecord<>("invoice.events", 0, 42L, "cle", "valeur");
+
+    @BeforeEach
+    void setUp() {
+        handler = new KafkaTopicConfig().kafkaErrorHandler(kafkaRetryService, Duration.ofMillis(1), Duration.ofMillis(2));
+    }
+
+    private boolean echec(Exception erreur) {
+        return handler.handleOne(new ListenerExecutionFailedException("échec", erreur), record, consumer, container);
+    }
+
+    @Test
+    void renvoiEnReessaiImpossibleNEstJamaisRejete() {
+        KafkaException envoi = new KafkaException("Échec de l'envoi vers invoice.events.retry.0",
+                new ExecutionException(new NotLeaderOrFollowerException("leader en cours d'élection")));
+
+        for (int tentative = 0; tentative < 20; tentative++) {
+            assertThat(echec(envoi)).isFalse();
+        }
+        verify(kafkaRetryService, never()).rejeter(any(), any());
+    }
+
+    @Test
+    void erreurNonTransitoireEstRejeteeApresDeuxNouvellesTentatives() {
+        IllegalStateException erreur = new IllegalStateException("incohérence");
+
+        assertThat(echec(erreur)).isFalse();
+        assertThat(echec(erreur)).isFalse();
+        assertThat(echec(erreur)).isTrue();
+        verify(kafkaRetryService).rejeter(eq(record), any());
+    }
+
+    @Test
+    void estTransitoireSuitLaChaineDesCauses() {
+        assertThat(KafkaRetryService.estTransitoire(new RuntimeException(new RedisConnectionFailureException("down")))).isTrue();
+        assertThat(KafkaRetryService.estTransitoire(new KafkaException("envoi", new TimeoutException()))).isTrue();
+        assertThat(KafkaRetryService.estTransitoire(new IllegalArgumentException("invalide"))).isFalse();
+    }
+}
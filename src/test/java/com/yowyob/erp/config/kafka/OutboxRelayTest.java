@@ -0,0 +1,109 @@
+package com.yowyob.erp.config.kafka;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.yowyob.erp.config.redis.RedisCacheLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OutboxRelayTest {
+
+    private static final Duration TRANCHE = Duration.ofMinutes(5);
+
+    @Mock CqlSession session;
+    @Mock RedisCacheLoader cacheLoader;
+    @Mock ObjectProvider<SslBundles> sslBundles;
+
+    private final Map<String, PreparedStatement> preparees = new HashMap<>();
+    private final List<Long> positionsEcrites = new ArrayList<>();
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheLoader.acquerirBail(anyString(), any())).thenReturn("jeton");
+        ResultSet vide = mock(ResultSet.class);
+        when(vide.all()).thenReturn(List.of());
+        when(session.execute(any(Statement.class))).thenReturn(vide);
+        when(session.prepare(anyString())).thenAnswer(inv -> preparees.computeIfAbsent(inv.getArgument(0), requete -> {
+            PreparedStatement preparee = mock(PreparedStatement.class);
+            when(preparee.bind(any(Object[].class))).thenAnswer(bind -> {
+                if (requete.startsWith("UPDATE outbox_position")) {
+                    positionsEcrites.add(bind.getArgument(0));
+                }
+                return mock(BoundStatement.class);
+            });
+            return preparee;
+        }));
+        relay = new OutboxRelay(session, cacheLoader, new KafkaProperties(), sslBundles, 1, TRANCHE,
+                500, Duration.ofSeconds(2), Duration.ofMinutes(30), Duration.ofSeconds(30), "lz4", 20, 262144);
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.arreter();
+    }
+
+    @Test
+    void relayer_avanceDeTrancheEnTrancheJusquALaTrancheOuverte() {
+        long ouverte = OutboxService.tranche(System.currentTimeMillis() - 2000, TRANCHE.toMillis());
+        long depart = OutboxService.tranche(System.currentTimeMillis() - Duration.ofMinutes(30).toMillis(), TRANCHE.toMillis());
+
+        relay.relayer();
+
+        // Sans position enregistrée, départ à l'horizon initial ; chaque tranche close et vide est dépassée
+        assertThat(positionsEcrites).isNotEmpty();
+        assertThat(positionsEcrites.get(0)).isEqualTo(depart + 1);
+        assertThat(positionsEcrites.get(positionsEcrites.size() - 1)).isBetween(ouverte, ouverte + 1);
+    }
+
+    @Test
+    void relayer_prepareLesRequetesUneSeuleFois() {
+        relay.relayer();
+        relay.relayer();
+        relay.reinitialiserPositions();
+        relay.relayer();
+
+        assertThat(preparees).isNotEmpty();
+        preparees.keySet().forEach(requete -> verify(session, times(1)).prepare(requete));
+    }
+
+    @Test
+    void relayer_neRelitPasLaPositionDurableAChaquePassage() {
+        relay.relayer();
+        int ecritures = positionsEcrites.size();
+
+        relay.relayer();
+
+        // Tranche ouverte déjà atteinte : aucune nouvelle avance de position
+        assertThat(positionsEcrites).hasSize(ecritures);
+        verify(preparees.get("SELECT time_bucket FROM outbox_position WHERE shard = ?"), times(1)).bind(any(Object[].class));
+    }
+}
@@ -0,0 +1,67 @@
+package com.yowyob.erp.config.kafka;
+
+import com.yowyob.erp.config.tenant.TenantContext;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@SuppressWarnings("unchecked")
+class TenantBatchInterceptorTest {
+
+    private final Consumer<Object, Object> consumer = mock(Consumer.class);
+    private TenantBatchInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        TenantRecordInterceptor recordInterceptor = new TenantRecordInterceptor();
+        ReflectionTestUtils.setField(recordInterceptor, "tenantHeaderName", "X-Tenant-ID");
+        interceptor = new TenantBatchInterceptor(recordInterceptor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void lotDUnSeulTenantPositionneLeTenant() {
+        UUID tenant = UUID.randomUUID();
+
+        interceptor.intercept(lot(TenantPartitioner.cle(tenant, "FAC-1"), TenantPartitioner.cle(tenant, "FAC-2")), consumer);
+
+        assertThat(TenantContext.getCurrentTenant()).isEqualTo(tenant);
+        interceptor.success(lot(), consumer);
+        assertThat(TenantContext.getCurrentTenant()).isNull();
+    }
+
+    @Test
+    void lotMultiTenantLaisseLeTenantAuListener() {
+        TenantContext.setCurrentTenant(UUID.randomUUID());
+
+        interceptor.intercept(lot(UUID.randomUUID().toString(), UUID.randomUUID().toString()), consumer);
+
+        assertThat(TenantContext.getCurrentTenant()).isNull();
+    }
+
+    private static ConsumerRecords<Object, Object> lot(String... cles) {
+        TopicPartition partition = new TopicPartition("invoice.events", 0);
+        List<ConsumerRecord<Object, Object>> records = new ArrayList<>();
+        for (int i = 0; i < cles.length; i++) {
+            records.add(new ConsumerRecord<>(partition.topic(), partition.partition(), i, cles[i], "{}"));
+        }
+        return new ConsumerRecords<>(Map.of(partition, records));
+    }
+}
@@ -0,0 +1,91 @@
+package com.yowyob.erp.config.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TenantDispatcher dispatcher = new TenantDispatcher(meterRegistry, 2, 10, 5, Duration.ZERO);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.arreter();
+    }
+
+    @Test
+    void uneErreurCompleteLeFuturEtLaFileContinue() throws Exception {
+        UUID tenant = UUID.randomUUID();
+
+        CompletableFuture<Void> enErreur = dispatcher.soumettre(tenant, System.currentTimeMillis(), () -> {
+            throw new StackOverflowError("pile épuisée");
+        });
+        CompletableFuture<Void> suivante = dispatcher.soumettre(tenant, System.currentTimeMillis(), () -> { });
+
+        assertThatThrownBy(() -> enErreur.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StackOverflowError.class);
+        suivante.get(5, TimeUnit.SECONDS);
+        // La file a été replanifiée : une nouvelle tâche est encore traitée
+        dispatcher.soumettre(tenant, System.currentTimeMillis(), () -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void purgeRetireLesFilesInactivesEtLeursJauges() throws Exception {
+        UUID tenant = UUID.randomUUID();
+        dispatcher.soumettre(tenant, System.currentTimeMillis(), () -> { }).get(5, TimeUnit.SECONDS);
+        assertThat(meterRegistry.find("kafka.tenant.attente").tag("tenant", tenant.toString()).gauge()).isNotNull();
+
+        attendreFinDuWorker();
+        dispatcher.purger();
+
+        assertThat(dispatcher.nombreFiles()).isZero();
+        assertThat(meterRegistry.find("kafka.tenant.attente").tag("tenant", tenant.toString()).gauge()).isNull();
+        assertThat(meterRegistry.find("kafka.tenant.retard").tag("tenant", tenant.toString()).gauge()).isNull();
+
+        // Un nouveau message recrée la file et ses jauges
+        dispatcher.soumettre(tenant, System.currentTimeMillis(), () -> { }).get(5, TimeUnit.SECONDS);
+        assertThat(meterRegistry.find("kafka.tenant.attente").tag("tenant", tenant.toString()).gauge()).isNotNull();
+    }
+
+    @Test
+    void purgeConserveUneFileEnCoursDeTraitement() throws Exception {
+        UUID tenant = UUID.randomUUID();
+        CountDownLatch demarree = new CountDownLatch(1);
+        CountDownLatch liberee = new CountDownLatch(1);
+        CompletableFuture<Void> bloquee = dispatcher.soumettre(tenant, System.currentTimeMillis(), () -> {
+            demarree.countDown();
+            try {
+                liberee.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(demarree.await(5, TimeUnit.SECONDS)).isTrue();
+
+        dispatcher.purger();
+
+        assertThat(dispatcher.nombreFiles()).isEqualTo(1);
+        liberee.countDown();
+        bloquee.get(5, TimeUnit.SECONDS);
+    }
+
+    // Le futur est complété avant que le worker ne relâche la file
+    private void attendreFinDuWorker() throws InterruptedException {
+        for (int i = 0; i < 100 && dispatcher.nombreFiles() > 0; i++) {
+            dispatcher.purger();
+            Thread.sleep(10);
+        }
+    }
+}
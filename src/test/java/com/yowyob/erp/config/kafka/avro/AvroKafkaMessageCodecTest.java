@@ -0,0 +1,141 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.KafkaMessage;
+import com.yowyob.erp.common.enums.SourceType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvroKafkaMessageCodecTest {
+
+    private static final String TOPIC = "accounting.entries";
+    private static final UUID TENANT = UUID.randomUUID();
+
+    private final AvroKafkaMessageCodec codec = new AvroKafkaMessageCodec();
+    private final KafkaMessageDeserializer deserializer = new KafkaMessageDeserializer();
+
+    @BeforeEach
+    void setUp() {
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.yowyob.erp.*"), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deserializer.close();
+    }
+
+    static KafkaMessage ecriturePosted() {
+        EcriturePosted evenement = EcriturePosted.builder()
+                .version(EcriturePosted.VERSION)
+                .ecritureId(UUID.randomUUID())
+                .numeroEcriture("VT-2025-000123")
+                .libelle("Vente marchandises FAC-10123")
+                .dateEcriture(LocalDate.of(2025, 3, 14))
+                .journalComptableId(UUID.randomUUID())
+                .periodeComptableId(UUID.randomUUID())
+                .montantTotal(1180.0)
+                .referenceExterne("FAC-10123")
+                .sourceType(SourceType.FACTURE)
+                .sourceId(UUID.randomUUID())
+                .action("CREATE")
+                .utilisateur("comptable@yowyob.com")
+                .dateAction(LocalDateTime.of(2025, 3, 14, 10, 30))
+                .lignes(List.of(
+                        new EcriturePosted.Ligne(UUID.randomUUID(), UUID.randomUUID(), "D", 1180.0, "Client"),
+                        new EcriturePosted.Ligne(UUID.randomUUID(), UUID.randomUUID(), "C", 1000.0, null),
+                        new EcriturePosted.Ligne(UUID.randomUUID(), UUID.randomUUID(), "C", 180.0, null)))
+                .build();
+        return KafkaMessage.builder()
+                .payload(evenement)
+                .tenantId(TENANT.toString())
+                .eventType(AppConstants.KafkaEvents.ECRITURE_POSTED)
+                .timestamp(LocalDateTime.of(2025, 3, 14, 10, 30, 5))
+                .correlationId("corr-1")
+                .build();
+    }
+
+    @Test
+    void ecriturePostedRelueParLeDeserialiseurDesConsommateurs() {
+        KafkaMessage message = ecriturePosted();
+
+        byte[] octets = codec.encoder(message);
+        Object relu = deserializer.deserialize(TOPIC, new RecordHeaders(), octets);
+
+        assertThat(octets[0]).isEqualTo(AvroKafkaMessageCodec.MAGIC);
+        assertThat(relu).isInstanceOf(KafkaMessage.class);
+        KafkaMessage lu = (KafkaMessage) relu;
+        assertThat(lu.getTenantId()).isEqualTo(message.getTenantId());
+        assertThat(lu.getEventType()).isEqualTo(message.getEventType());
+        assertThat(lu.getTimestamp()).isEqualTo(message.getTimestamp());
+        assertThat(lu.getCorrelationId()).isEqualTo("corr-1");
+        // Le tenant n'est porté que par l'enveloppe
+        assertThat(lu.getPayload()).usingRecursiveComparison().ignoringFields("tenantId").isEqualTo(message.getPayload());
+    }
+
+    @Test
+    void auditRelu() {
+        JournalAudit audit = new JournalAudit();
+        JournalAuditKey key = new JournalAuditKey();
+        key.setId(UUID.randomUUID());
+        audit.setKey(key);
+        audit.setEcritureComptableId(UUID.randomUUID());
+        audit.setAction("VALIDATE");
+        audit.setUtilisateur("comptable@yowyob.com");
+        audit.setDetails("Validated ecriture: VT-2025-000123");
+        audit.setDateAction(LocalDateTime.of(2025, 3, 14, 10, 30));
+        KafkaMessage message = KafkaMessage.builder().payload(audit).tenantId(TENANT.toString()).eventType("VALIDATE").build();
+
+        KafkaMessage lu = (KafkaMessage) deserializer.deserialize(TOPIC, new RecordHeaders(), codec.encoder(message));
+
+        JournalAudit relu = (JournalAudit) lu.getPayload();
+        assertThat(relu.getKey().getId()).isEqualTo(key.getId());
+        assertThat(relu).usingRecursiveComparison().ignoringFields("key").isEqualTo(audit);
+    }
+
+    @Test
+    void lotDEcrituresReluSousLaFormeDuJson() {
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        Map<String, Object> lot = new LinkedHashMap<>();
+        lot.put("count", 2);
+        lot.put("ecritureIds", ids);
+        KafkaMessage message = KafkaMessage.builder().payload(lot).tenantId(TENANT.toString())
+                .eventType(AppConstants.KafkaEvents.ACCOUNTING_ENTRIES_BATCH_CREATED).build();
+
+        assertThat(codec.supporte(message)).isTrue();
+        KafkaMessage lu = (KafkaMessage) deserializer.deserialize(TOPIC, new RecordHeaders(), codec.encoder(message));
+
+        assertThat(lu.getPayload()).isEqualTo(Map.of("count", 2, "ecritureIds", ids));
+    }
+
+    @Test
+    void messageJsonToujoursConfieAuJsonDeserializer() {
+        KafkaMessage message = ecriturePosted();
+        RecordHeaders headers = new RecordHeaders();
+        byte[] json;
+        try (JsonSerializer<Object> serializer = new JsonSerializer<>()) {
+            json = serializer.serialize(TOPIC, headers, message);
+        }
+
+        Object relu = deserializer.deserialize(TOPIC, headers, json);
+
+        assertThat(AvroKafkaMessageCodec.estAvro(json)).isFalse();
+        assertThat(relu).isInstanceOf(KafkaMessage.class);
+        assertThat(((KafkaMessage) relu).getEventType()).isEqualTo(AppConstants.KafkaEvents.ECRITURE_POSTED);
+    }
+}
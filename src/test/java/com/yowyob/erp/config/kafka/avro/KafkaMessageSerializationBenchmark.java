@@ -0,0 +1,152 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import com.yowyob.erp.accounting.entity.JournalAudit;
+import com.yowyob.erp.accounting.entityKey.JournalAuditKey;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.common.constants.AppConstants;
+import com.yowyob.erp.common.dto.KafkaMessage;
+import com.yowyob.erp.common.enums.SourceType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compare la taille et le temps d'encodage/décodage des événements comptables entre le JSON actuel
+ * (JsonSerializer avec en-tête de type) et l'encodage Avro, sur des EcriturePosted de 2, 10 et 50 lignes.
+ * Exclu du build par défaut ; lancement : mvn test -Pbenchmark -Dtest=KafkaMessageSerializationBenchmark
+ */
+@Tag("benchmark")
+class KafkaMessageSerializationBenchmark {
+
+    private static final int[] LIGNES = {2, 10, 50};
+    private static final int ITERATIONS = 20_000;
+    private static final int ECHAUFFEMENT = 5_000;
+    private static final String TOPIC = "accounting.entries";
+
+    @Test
+    void compareJsonEtAvroSurLesEvenementsComptables() {
+        JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+        JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+        jsonDeserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.yowyob.erp.*"), false);
+        AvroKafkaMessageCodec avro = new AvroKafkaMessageCodec();
+        Random random = new Random(42);
+
+        System.out.printf("%-16s %-6s %10s %14s %14s%n", "événement", "format", "octets", "encodage µs", "décodage µs");
+        for (int lignes : LIGNES) {
+            KafkaMessage message = ecriturePosted(lignes, random);
+            String nom = "EcriturePosted/" + lignes;
+            mesurer(nom, "JSON", message, m -> jsonSerializer.serialize(TOPIC, new RecordHeaders(), m),
+                    bytes -> jsonDeserializer.deserialize(TOPIC, entetesJson(jsonSerializer, message), bytes));
+            mesurer(nom, "AVRO", message, avro::encoder, avro::decoder);
+        }
+        KafkaMessage audit = audit();
+        mesurer("Audit", "JSON", audit, m -> jsonSerializer.serialize(TOPIC, new RecordHeaders(), m),
+                bytes -> jsonDeserializer.deserialize(TOPIC, entetesJson(jsonSerializer, audit), bytes));
+        mesurer("Audit", "AVRO", audit, avro::encoder, avro::decoder);
+    }
+
+    private static void mesurer(String nom, String format, KafkaMessage message,
+                                Function<KafkaMessage, byte[]> encodeur, Function<byte[], Object> decodeur) {
+        byte[] bytes = encodeur.apply(message);
+        for (int i = 0; i < ECHAUFFEMENT; i++) {
+            decodeur.apply(encodeur.apply(message));
+        }
+
+        long debut = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes = encodeur.apply(message);
+        }
+        long encodage = (System.nanoTime() - debut) / ITERATIONS;
+
+        debut = System.nanoTime();
+        Object relu = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            relu = decodeur.apply(bytes);
+        }
+        long decodage = (System.nanoTime() - debut) / ITERATIONS;
+
+        assertThat(relu).as("Relecture de %s en %s", nom, format)
+                .isInstanceOfSatisfying(KafkaMessage.class, lu -> assertThat(lu.getEventType()).isEqualTo(message.getEventType()));
+        System.out.printf("%-16s %-6s %10d %14.2f %14.2f%n", nom, format, bytes.length,
+                encodage / 1000.0, decodage / 1000.0);
+    }
+
+    // En-tête de type posé par le JsonSerializer, nécessaire au JsonDeserializer
+    private static RecordHeaders entetesJson(JsonSerializer<Object> serializer, KafkaMessage message) {
+        RecordHeaders headers = new RecordHeaders();
+        serializer.serialize(TOPIC, headers, message);
+        return headers;
+    }
+
+    private static KafkaMessage ecriturePosted(int nombreLignes, Random random) {
+        UUID tenantId = UUID.randomUUID();
+        List<EcriturePosted.Ligne> lignes = new ArrayList<>(nombreLignes);
+        double total = 0;
+        for (int i = 0; i < nombreLignes; i++) {
+            double montant = Math.round(random.nextDouble() * 1_000_000) / 100.0;
+            boolean debit = i % 2 == 0;
+            if (debit) {
+                total += montant;
+            }
+            lignes.add(new EcriturePosted.Ligne(UUID.randomUUID(), UUID.randomUUID(), debit ? "D" : "C", montant,
+                    i % 5 == 0 ? "Ligne " + i : null));
+        }
+        EcriturePosted evenement = EcriturePosted.builder()
+                .version(EcriturePosted.VERSION)
+                .tenantId(tenantId)
+                .ecritureId(UUID.randomUUID())
+                .numeroEcriture("VT-2025-000123")
+                .libelle("Vente marchandises FAC-10123")
+                .dateEcriture(LocalDate.of(2025, 3, 14))
+                .journalComptableId(UUID.randomUUID())
+                .periodeComptableId(UUID.randomUUID())
+                .montantTotal(total)
+                .referenceExterne("FAC-10123")
+                .sourceType(SourceType.FACTURE)
+                .sourceId(UUID.randomUUID())
+                .action("CREATE")
+                .utilisateur("comptable@yowyob.com")
+                .dateAction(LocalDateTime.of(2025, 3, 14, 10, 30))
+                .lignes(lignes)
+                .build();
+        return KafkaMessage.builder()
+                .payload(evenement)
+                .tenantId(tenantId.toString())
+                .eventType(AppConstants.KafkaEvents.ECRITURE_POSTED)
+                .timestamp(LocalDateTime.of(2025, 3, 14, 10, 30))
+                .build();
+    }
+
+    private static KafkaMessage audit() {
+        UUID tenantId = UUID.randomUUID();
+        JournalAudit audit = new JournalAudit();
+        JournalAuditKey key = new JournalAuditKey();
+        key.setTenantId(tenantId);
+        key.setId(UUID.randomUUID());
+        audit.setKey(key);
+        audit.setEcritureComptableId(UUID.randomUUID());
+        audit.setUtilisateur("comptable@yowyob.com");
+        audit.setAction("VALIDATE");
+        audit.setDetails("Validated ecriture: VT-2025-000123");
+        audit.setDateAction(LocalDateTime.of(2025, 3, 14, 10, 30));
+        return KafkaMessage.builder()
+                .payload(audit)
+                .tenantId(tenantId.toString())
+                .eventType("VALIDATE")
+                .timestamp(LocalDateTime.of(2025, 3, 14, 10, 30))
+                .build();
+    }
+}
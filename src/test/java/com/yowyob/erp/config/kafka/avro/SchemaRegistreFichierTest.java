@@ -0,0 +1,105 @@
+package com.yowyob.erp.config.kafka.avro;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yowyob.erp.accounting.event.EcriturePosted;
+import com.yowyob.erp.common.dto.KafkaMessage;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SchemaRegistreFichierTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @TempDir
+    Path repertoire;
+
+    // Schéma courant augmenté d'un champ de EcriturePosted, avec ou sans valeur par défaut
+    private static Schema schemaAvecChamp(boolean avecDefaut) throws IOException {
+        ObjectNode racine = (ObjectNode) JSON.readTree(AvroKafkaMessageCodec.schemaCourant().toString());
+        for (JsonNode champ : racine.get("fields")) {
+            if ("payload".equals(champ.get("name").asText())) {
+                for (JsonNode type : champ.get("type")) {
+                    if (type.isObject() && "EcriturePosted".equals(type.get("name").asText())) {
+                        ObjectNode canal = ((ArrayNode) type.get("fields")).addObject();
+                        canal.put("name", "canal");
+                        if (avecDefaut) {
+                            canal.putArray("type").add("null").add("string");
+                            canal.putNull("default");
+                        } else {
+                            canal.put("type", "string");
+                        }
+                    }
+                }
+            }
+        }
+        return new Schema.Parser().parse(racine.toString());
+    }
+
+    private SchemaRegistreFichier registre(Schema... versions) throws IOException {
+        Files.createDirectories(repertoire.resolve(AvroKafkaMessageCodec.SUJET));
+        StringBuilder index = new StringBuilder();
+        for (int i = 0; i < versions.length; i++) {
+            Files.writeString(repertoire.resolve(AvroKafkaMessageCodec.SUJET + "/v" + (i + 1) + ".avsc"), versions[i].toString());
+            index.append(i + 1).append('=').append(AvroKafkaMessageCodec.SUJET).append("/v").append(i + 1).append('\n');
+        }
+        Files.writeString(repertoire.resolve("index.properties"), index);
+        return SchemaRegistreFichier.depuisRepertoire(repertoire);
+    }
+
+    @Test
+    void registreEmbarqueContientLeSchemaCourant() {
+        SchemaRegistreFichier registre = SchemaRegistreFichier.depuisClasspath();
+
+        int id = registre.id(AvroKafkaMessageCodec.SUJET, AvroKafkaMessageCodec.schemaCourant());
+
+        assertThat(registre.schema(id)).isEqualTo(AvroKafkaMessageCodec.schemaCourant());
+        assertThat(VerificationSchemas.verifier(AvroKafkaMessageCodec.SUJET, AvroKafkaMessageCodec.schemaCourant(), registre)).isEmpty();
+    }
+
+    @Test
+    void messageDeLaVersionPrecedenteLuAvecLeSchemaSuivant() throws IOException {
+        Schema v1 = AvroKafkaMessageCodec.schemaCourant();
+        Schema v2 = schemaAvecChamp(true);
+        SchemaRegistreFichier registre = registre(v1, v2);
+        KafkaMessage message = AvroKafkaMessageCodecTest.ecriturePosted();
+
+        // Producteur encore en v1, consommateur déjà en v2
+        byte[] octets = new AvroKafkaMessageCodec(registre, v1).encoder(message);
+        KafkaMessage lu = new AvroKafkaMessageCodec(registre, v2).decoder(octets);
+
+        assertThat(lu.getEventType()).isEqualTo(message.getEventType());
+        assertThat(((EcriturePosted) lu.getPayload()).getLignes()).hasSize(3);
+        assertThat(lu.getPayload()).usingRecursiveComparison().ignoringFields("tenantId").isEqualTo(message.getPayload());
+    }
+
+    @Test
+    void champObligatoireAjouteEstRefuse() throws IOException {
+        Schema v1 = AvroKafkaMessageCodec.schemaCourant();
+        Schema incompatible = schemaAvecChamp(false);
+        SchemaRegistreFichier registre = registre(v1, incompatible);
+
+        assertThat(VerificationSchemas.verifier(AvroKafkaMessageCodec.SUJET, incompatible, registre))
+                .anyMatch(erreur -> erreur.contains("ne lit pas la version 1"));
+    }
+
+    @Test
+    void schemaNonEnregistreEstSignale() throws IOException {
+        SchemaRegistreFichier registre = registre(AvroKafkaMessageCodec.schemaCourant());
+        Schema nonEnregistre = schemaAvecChamp(true);
+
+        assertThat(VerificationSchemas.verifier(AvroKafkaMessageCodec.SUJET, nonEnregistre, registre))
+                .anyMatch(erreur -> erreur.contains("n'est pas enregistré"));
+        assertThatThrownBy(() -> registre.schema(99)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
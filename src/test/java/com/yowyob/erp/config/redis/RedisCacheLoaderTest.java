@@ -0,0 +1,114 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@SuppressWarnings("unchecked")
+class RedisCacheLoaderTest {
+
+    private static final TypeReference<List<String>> TYPE = new TypeReference<>() {
+    };
+
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock ValueOperations<String, String> valeurs;
+    @Mock RedisConnection connection;
+    @Mock RedisScriptingCommands scripting;
+
+    private RedisCacheLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        loader = new RedisCacheLoader(redisTemplate,
+                new RedisCodecs(new ObjectMapper(), RedisFormat.JSON, Map.of(), 1024, 1 << 20),
+                Runnable::run, Duration.ofSeconds(5), Duration.ofSeconds(5), 1.0);
+        when(redisTemplate.opsForValue()).thenReturn(valeurs);
+        when(connection.scriptingCommands()).thenReturn(scripting);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(i -> i.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        // Clé absente du cache
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(Arrays.asList(null, -2L));
+    }
+
+    @Test
+    void ecritureConditionneeALaGenerationLueAvantLeChargement() {
+        when(valeurs.setIfAbsent(eq("compte:all:t:bail"), anyString(), any(Duration.class))).thenReturn(true);
+        when(valeurs.get("compte:all:t:generation")).thenReturn("3");
+        when(scripting.eval(any(byte[].class), eq(ReturnType.INTEGER), eq(2), any(byte[][].class))).thenReturn(0L);
+
+        List<String> valeur = loader.get("compteAll", "compte:all:t", Duration.ofMinutes(1), TYPE, () -> List.of("411000"));
+
+        assertThat(valeur).containsExactly("411000");
+        ArgumentCaptor<byte[][]> keysEtArgs = ArgumentCaptor.forClass(byte[][].class);
+        verify(scripting).eval(any(byte[].class), eq(ReturnType.INTEGER), eq(2), keysEtArgs.capture());
+        byte[][] appel = keysEtArgs.getValue();
+        assertThat(texte(appel[1])).isEqualTo("compte:all:t:generation");
+        assertThat(texte(appel[2])).isEqualTo("3");
+        assertThat(texte(appel[3])).endsWith("|[\"411000\"]");
+    }
+
+    @Test
+    void attenteInterrompueDesQueLeBailEstLibere() {
+        when(valeurs.setIfAbsent(eq("compte:all:t:bail"), anyString(), any(Duration.class))).thenReturn(false);
+        // Le détenteur du bail a abandonné sans écrire de valeur
+        when(redisTemplate.hasKey("compte:all:t:bail")).thenReturn(false);
+
+        long debut = System.nanoTime();
+        List<String> valeur = loader.get("compteAll", "compte:all:t", Duration.ofMinutes(1), TYPE, () -> List.of("411000"));
+
+        assertThat(valeur).containsExactly("411000");
+        assertThat(Duration.ofNanos(System.nanoTime() - debut)).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void rafraichissementRefuseParLExecuteurPeutEtreRedemande() {
+        AtomicInteger soumissions = new AtomicInteger();
+        RedisCacheLoader sature = new RedisCacheLoader(redisTemplate,
+                new RedisCodecs(new ObjectMapper(), RedisFormat.JSON, Map.of(), 1024, 1 << 20),
+                tache -> {
+                    soumissions.incrementAndGet();
+                    throw new RejectedExecutionException("saturé");
+                }, Duration.ofSeconds(5), Duration.ofSeconds(5), 1.0);
+
+        sature.rafraichirEnFond("compte:all:t", () -> { });
+        sature.rafraichirEnFond("compte:all:t", () -> { });
+
+        // La réservation de la première tentative a été levée : la seconde est soumise aussitôt
+        assertThat(soumissions).hasValue(2);
+    }
+
+    private static String texte(byte[] octets) {
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,122 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.DetailEcritureDto;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compare la taille et le temps d'encodage/décodage des formats Redis (JSON, Smile, Smile+LZ4) sur des
+ * listes d'écritures comptables semblables à celles mises en cache, via le RedisValueCodec des caches.
+ * Exclu du build par défaut ; lancement : mvn test -Pbenchmark -Dtest=RedisSerializationBenchmark
+ */
+@Tag("benchmark")
+class RedisSerializationBenchmark {
+
+    private static final TypeReference<List<EcritureComptableDto>> TYPE_LISTE = new TypeReference<>() {
+    };
+    private static final int[] TAILLES = {10, 100, 1000};
+    private static final int ITERATIONS = 200;
+    private static final int ECHAUFFEMENT = 50;
+    private static final int SEUIL_COMPRESSION = 1024;
+    private static final int TAILLE_MAX_DECOMPRESSEE = 64 << 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void compareLesFormatsSurDesListesDEcritures() {
+        System.out.printf("%-10s %10s %12s %14s %14s%n", "format", "écritures", "octets", "encodage µs", "décodage µs");
+        for (int taille : TAILLES) {
+            List<EcritureComptableDto> ecritures = genererEcritures(taille, new Random(42));
+            for (RedisFormat format : RedisFormat.values()) {
+                mesurer(new RedisValueCodec(objectMapper, format, SEUIL_COMPRESSION, TAILLE_MAX_DECOMPRESSEE), ecritures);
+            }
+        }
+    }
+
+    private static void mesurer(RedisValueCodec codec, List<EcritureComptableDto> ecritures) {
+        byte[] bytes = codec.encoder(ecritures);
+        for (int i = 0; i < ECHAUFFEMENT; i++) {
+            codec.decoder(codec.encoder(ecritures), TYPE_LISTE);
+        }
+
+        long debut = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes = codec.encoder(ecritures);
+        }
+        long encodage = (System.nanoTime() - debut) / ITERATIONS;
+
+        debut = System.nanoTime();
+        List<EcritureComptableDto> relues = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            relues = codec.decoder(bytes, TYPE_LISTE);
+        }
+        long decodage = (System.nanoTime() - debut) / ITERATIONS;
+
+        assertThat(relues).isEqualTo(ecritures);
+        System.out.printf("%-10s %10d %12d %14.1f %14.1f%n", codec.format(), ecritures.size(), bytes.length,
+                encodage / 1000.0, decodage / 1000.0);
+    }
+
+    private static List<EcritureComptableDto> genererEcritures(int nombre, Random random) {
+        UUID journalId = UUID.randomUUID();
+        UUID periodeId = UUID.randomUUID();
+        List<UUID> comptes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            comptes.add(UUID.randomUUID());
+        }
+
+        List<EcritureComptableDto> ecritures = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            UUID ecritureId = UUID.randomUUID();
+            LocalDate date = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365));
+            double montant = Math.round(random.nextDouble() * 1_000_000) / 100.0;
+
+            List<DetailEcritureDto> details = new ArrayList<>();
+            int lignes = 2 + random.nextInt(3);
+            for (int j = 0; j < lignes; j++) {
+                boolean debit = j % 2 == 0;
+                details.add(DetailEcritureDto.builder()
+                        .id(UUID.randomUUID())
+                        .ecritureComptableId(ecritureId)
+                        .compteComptableId(comptes.get(random.nextInt(comptes.size())))
+                        .libelle("Facture client FAC-" + (10000 + i))
+                        .sens(debit ? "DEBIT" : "CREDIT")
+                        .montantDebit(debit ? montant : 0.0)
+                        .montantCredit(debit ? 0.0 : montant)
+                        .dateEcriture(date.atTime(10, 0))
+                        .build());
+            }
+
+            ecritures.add(EcritureComptableDto.builder()
+                    .id(ecritureId)
+                    .numeroEcriture("VT-2025-" + String.format("%06d", i))
+                    .libelle("Vente marchandises FAC-" + (10000 + i))
+                    .dateEcriture(date)
+                    .journalComptableId(journalId)
+                    .journalComptableLibelle("Journal des ventes")
+                    .periodeComptableId(periodeId)
+                    .periodeComptableCode("2025")
+                    .montantTotalDebit(montant * (lignes / 2))
+                    .montantTotalCredit(montant * (lignes / 2))
+                    .validee(random.nextBoolean())
+                    .referenceExterne("FAC-" + (10000 + i))
+                    .detailsEcriture(details)
+                    .createdAt(LocalDateTime.of(2025, 1, 1, 8, 0).plusMinutes(i))
+                    .updatedAt(LocalDateTime.of(2025, 1, 1, 8, 0).plusMinutes(i))
+                    .build());
+        }
+        return ecritures;
+    }
+}
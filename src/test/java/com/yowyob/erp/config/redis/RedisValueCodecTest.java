@@ -0,0 +1,109 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yowyob.erp.accounting.dto.DetailEcritureDto;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisValueCodecTest {
+
+    private static final TypeReference<List<EcritureComptableDto>> TYPE_LISTE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @ParameterizedTest
+    @EnumSource(RedisFormat.class)
+    void relitLesEcrituresEncodeesDansChaqueFormat(RedisFormat format) {
+        RedisValueCodec codec = new RedisValueCodec(objectMapper, format, 256, 1 << 20);
+        List<EcritureComptableDto> ecritures = ecritures(50);
+
+        byte[] valeur = codec.encoder(ecritures);
+
+        assertThat(codec.decoder(valeur, TYPE_LISTE)).isEqualTo(ecritures);
+        assertThat(valeur[0]).isEqualTo(switch (format) {
+            case JSON -> (byte) '[';
+            case SMILE -> (byte) ':';
+            case SMILE_LZ4 -> (byte) 'L';
+        });
+    }
+
+    @Test
+    void valeurJsonEcriteAvantLeChangementDeFormatResteLisible() throws Exception {
+        EcritureComptableDto ecriture = ecritures(1).get(0);
+        byte[] json = objectMapper.writeValueAsBytes(ecriture);
+        RedisValueCodec codec = new RedisValueCodec(objectMapper, RedisFormat.SMILE_LZ4, 0, 1 << 20);
+
+        assertThat(codec.decoder(json, EcritureComptableDto.class)).isEqualTo(ecriture);
+    }
+
+    @Test
+    void tailleDecompresseeAnnonceeBornee() {
+        RedisValueCodec codec = new RedisValueCodec(objectMapper, RedisFormat.SMILE_LZ4, 0, 1 << 20);
+        byte[] valeur = codec.encoder(ecritures(50));
+        assertThat(valeur[0]).isEqualTo((byte) 'L');
+
+        RedisValueCodec borne = new RedisValueCodec(objectMapper, RedisFormat.SMILE_LZ4, 0, 1024);
+        assertThatThrownBy(() -> borne.decoder(valeur, TYPE_LISTE)).isInstanceOf(SerializationException.class);
+        // En-tête forgé annonçant 2 Go : rejeté avant toute allocation
+        byte[] forge = {'L', 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x00};
+        assertThatThrownBy(() -> codec.decoder(forge, TYPE_LISTE)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void enveloppeBinaireConserveLaDureeDeChargement() {
+        RedisValueCodec codec = new RedisValueCodec(objectMapper, RedisFormat.SMILE, -1, 1 << 20);
+        byte[] enveloppe = RedisCacheLoader.envelopper(42, codec.encoder(Map.of("cle", "valeur")));
+
+        RedisCacheLoader.Entree entree = RedisCacheLoader.deballer(enveloppe);
+
+        assertThat(entree.dureeChargementMillis()).isEqualTo(42);
+        assertThat(codec.decoder(entree.valeur(), new TypeReference<Map<String, String>>() {
+        })).containsEntry("cle", "valeur");
+        assertThat(RedisCacheLoader.deballer("{\"ancien\":true}".getBytes(StandardCharsets.UTF_8))).isNull();
+    }
+
+    static List<EcritureComptableDto> ecritures(int nombre) {
+        List<EcritureComptableDto> ecritures = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            UUID ecritureId = UUID.randomUUID();
+            LocalDate date = LocalDate.of(2025, 1, 1).plusDays(i % 365);
+            ecritures.add(EcritureComptableDto.builder()
+                    .id(ecritureId)
+                    .numeroEcriture("VT-2025-" + String.format("%06d", i))
+                    .libelle("Vente marchandises FAC-" + (10000 + i))
+                    .dateEcriture(date)
+                    .journalComptableLibelle("Journal des ventes")
+                    .montantTotalDebit(150.25)
+                    .montantTotalCredit(150.25)
+                    .validee(i % 2 == 0)
+                    .detailsEcriture(List.of(DetailEcritureDto.builder()
+                            .id(UUID.randomUUID())
+                            .ecritureComptableId(ecritureId)
+                            .libelle("Facture client FAC-" + (10000 + i))
+                            .sens("DEBIT")
+                            .montantDebit(150.25)
+                            .montantCredit(0.0)
+                            .dateEcriture(date.atTime(10, 0))
+                            .build()))
+                    .updatedAt(LocalDateTime.of(2025, 1, 1, 8, 0).plusMinutes(i))
+                    .build());
+        }
+        return ecritures;
+    }
+}
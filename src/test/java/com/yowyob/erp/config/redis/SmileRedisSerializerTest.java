@@ -0,0 +1,56 @@
+package com.yowyob.erp.config.redis;
+
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.yowyob.erp.accounting.dto.EcritureComptableDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmileRedisSerializerTest {
+
+    @Test
+    void relitLesValeursTypeesCompresseesOuNon() {
+        List<EcritureComptableDto> ecritures = RedisValueCodecTest.ecritures(50);
+
+        for (SmileRedisSerializer serializer : List.of(new SmileRedisSerializer(-1, 1 << 20), new SmileRedisSerializer(256, 1 << 20))) {
+            Object relu = serializer.deserialize(serializer.serialize(ecritures));
+
+            assertThat(relu).isEqualTo(ecritures);
+        }
+        // Valeur écrite par le sérialiseur JSON avant le passage à Smile
+        List<String> json = new ArrayList<>(List.of("a", "b"));
+        assertThat(new SmileRedisSerializer(-1, 1 << 20).deserialize(new GenericJackson2JsonRedisSerializer().serialize(json)))
+                .isEqualTo(json);
+    }
+
+    @Test
+    void refuseLesTypesHorsApplicationEtCollections() throws Exception {
+        SmileRedisSerializer serializer = new SmileRedisSerializer(-1, 1 << 20);
+        Map<String, Object> valeur = new LinkedHashMap<>();
+        valeur.put("@class", "java.util.concurrent.ConcurrentHashMap");
+        valeur.put("cle", "valeur");
+        byte[] smile = new SmileMapper().writeValueAsBytes(valeur);
+
+        assertThatThrownBy(() -> serializer.deserialize(smile)).isInstanceOf(SerializationException.class);
+
+        valeur.put("@class", "java.util.HashMap");
+        assertThat(serializer.deserialize(new SmileMapper().writeValueAsBytes(valeur))).isEqualTo(Map.of("cle", "valeur"));
+    }
+
+    @Test
+    void tailleDecompresseeBornee() {
+        byte[] valeur = new SmileRedisSerializer(0, 1 << 20).serialize(RedisValueCodecTest.ecritures(50));
+
+        assertThat(valeur[0]).isEqualTo((byte) 'L');
+        assertThatThrownBy(() -> new SmileRedisSerializer(0, 1024).deserialize(valeur))
+                .isInstanceOf(SerializationException.class);
+    }
+}